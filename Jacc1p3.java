@@ -2,6 +2,28 @@ import java.io.*;
 import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.Hashtable;
+import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.BitSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.security.MessageDigest;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Rhonald Lua
@@ -11,7 +33,7 @@ import java.util.Hashtable;
  * The algorithm is driven by an SLR(1) table constructed from a BNF specification.
  * This program was built around the ideas of chapter 4 of the Dragon Book and parts of Lex & Yacc (by Levine et al).
  */
-public class Jacc
+public class Jacc implements Cloneable
 {
 	final String APPNAME="JACC 1.3";
 	final String START="RCLstart";	// auxilliary starting nonterminal symbol
@@ -29,8 +51,18 @@ public class Jacc
 	String filename="input.txt";
 	String outputh="";
 	String outputc="";
-	String trace="";
+	String conflictlog="";	// the conflicts resolved by constructSLR(), which begin the trace
+	String cachedir=null;	// directory of the table cache, null if caching is off
+	boolean shared=true;	// in daemon mode, keep the tables in the resident cache; off for compile(), whose grammars are the caller's
+	String cachekey=null;	// hash of the grammar, names the cache entry
+	static final int CACHEMAGIC=0x4a4a4300;	// "JJC\0", the start of every cache entry, then CACHEVERSION
+	static final int CACHEVERSION=2;	// the fields of a cache entry and their layout, see saveCache(); bump it whenever they change
+	static final int TAG_NULL=0, TAG_STRING=1, TAG_INTEGER=2, TAG_INTS=3, TAG_STRINGS=4, TAG_VECTOR=5, TAG_HASHTABLE=6;	// see writeValue()
 	int option=1;
+	boolean direct=false;	// code each state of the C and Java parsers directly instead of the action and goto tables, see directCodeC()
+	boolean collect=true;	// run the garbage collector between phases; off in batch mode, where other grammars are being built meanwhile
+	File cwd=null;	// the directory relative file names are resolved against, null for the current one
+	PrintStream out=System.out;	// where messages go
 	Vector terms=new Vector();	// a vector of strings representing the terminals
 	Vector nonterms=new Vector();	// a vector of strings representing the nonterminals
 	Vector rules=new Vector();	// a vector of a vector of strings representing the productions;
@@ -44,46 +76,203 @@ public class Jacc
 	Hashtable prec=new Hashtable();	// a map of terminals to precedences
 	Hashtable unionmem=new Hashtable();	// a map of terminals to union members
 	Vector epsilon=new Vector();	// a vector of symbols which are lhs of epsilon/empty productions
+	Vector lexrules=new Vector();	// the %lex section, a vector of { pattern, token, action } strings; an empty token skips the text
+	Tables tables=null;	// the model of the symbols, rules and tables read by the backends
+	Hashtable followsets=new Hashtable();	// a map of symbols to their follow(), filled in while constructing the action table
+	SemAction[] semirs=null;	// the scanned semantic actions per rule, see semAction()
+	Hashtable outputs=new Hashtable();	// a map of output file names to their contents, filled in by genCode()
+	Stats stats=null;	// the measurements of the phases, if asked for with -stats
+	String statsfile=null;	// where the statistics go as JSON
+	int srconflicts=0;	// the shift-reduce conflicts resolved by default, see constructSLR()
+	int rrconflicts=0;	// the reduce-reduce conflicts
+	String profile=null;	// the counts of a run of a generated parser to lay out the tables by, see layout()
+	boolean renumber=false;	// without a profile, number the states and terminals for locality, see localLayout()
+	boolean unit=false;	// bypass the reductions by unit rules without actions, see bypassUnits()
+	int[] unitcounts=null;	// the rules bypassed, the entries rewritten and the most reductions one of them saves
+	boolean defred=false;	// reduce without a lookahead in the states which can only reduce by one rule, see defaultReductions()
+	int defreds=0;	// the number of those states, numbered last and given no row of actions
+	int[] ruleorder=null;	// the rules in the order of the cases of the semantic actions, null for rule order
+	int[] hotrules=new int[0];	// the rules reduced most in the profile, which the parsing loop reduces by in branches of their own
+	static final int HOTRULES=4;	// at most so many of them, each reduced in at least a tenth of the reductions
+	static final int JSTATES=64;	// with -d, the Java parser codes at most so many states in jjparse(), more in methods of so many
+	String traceformat=null;	// write a trace of the automaton as "text", "jsonl" or "dot", see writeTrace(); null for none
+	String tracefile=null;	// where it goes, null for traceName() in the current directory
+	static Hashtable resident=null;	// in daemon mode, a map of cache keys to cache entries kept in memory, see entry()
+	static Hashtable residentLast=new Hashtable();	// in daemon mode, a map of grammar files to the key of their last entry
+	static final String USAGE=
+		"usage: java Jacc [-c] [-j] [-p] [-y] [-d] [-cache dir] [-stats file] [-profile file] [-renumber] [-unit] [-defred]\r\n"+
+		"\t[-trace[=text|jsonl|dot]] grammar\r\n"+
+		"       java Jacc -batch [-jobs n] [options] grammars or directories\r\n"+
+		"       java Jacc -daemon socket\r\n"+
+		"       java Jacc -client socket [options] grammar\r\n"+
+		"  -c, -j, -p, -y  generate C (the default), Java, Perl, Python; any number of them\r\n"+
+		"  -d              code each state of the C and Java parsers directly, instead of the action and goto tables\r\n";
+	static final String[] OUTPUTS={ "j.tab.h.txt", "j.tab.c.txt", "jjclass.java.txt", "jjscript.pl.txt", "jjscript.py.txt" };	// in the order they are written
 
 	public static void main (String[] args)
+	{
+		int status;
+		if(args.length>=2 && (args[0].equals("-daemon") || args[0].equals("-client")))
+			status=daemon(args);
+		else
+			status=run(args,null,System.out);
+		if(status!=0)
+			System.exit(status);
+	}
+
+	// -daemon or -client, served by JaccDaemon, which needs the Unix domain sockets of JDK 16 and is only loaded for them.
+	// Without it a client runs the request here, as it does when no daemon is listening; returns the exit status
+	static int daemon(String[] args)
+	{
+		try
+		{
+			Class<?> c=Class.forName("JaccDaemon");
+			return ((Integer)c.getDeclaredMethod("run",new Class<?>[] { String[].class }).invoke(null,new Object[] { args })).intValue();
+		}
+		catch(InvocationTargetException e)
+		{
+			System.out.print("Error in daemon;"+e.getTargetException().toString()+"\r\n");
+			return 1;
+		}
+		catch(Exception e)
+		{
+			return noDaemon(args,e);
+		}
+		catch(LinkageError e)
+		{
+			return noDaemon(args,e);
+		}
+	}
+
+	// when JaccDaemon cannot be loaded, for the reason e
+	static int noDaemon(String[] args, Throwable e)
+	{
+		if(args[0].equals("-client"))
+		{
+			String[] rest=new String[args.length-2];
+			System.arraycopy(args,2,rest,0,rest.length);
+			return run(rest,null,System.out);
+		}
+		System.out.print("Error in daemon;-daemon needs JDK 16 or later and JaccDaemon;"+e.toString()+"\r\n");
+		return 1;
+	}
+
+	// one run of the command line, with file names relative to cwd and messages to out; returns the exit status
+	static int run(String[] args, File cwd, PrintStream out)
 	{
 		Jacc jc=new Jacc();
+		jc.cwd=cwd;
+		jc.out=out;
+		int targets=0;	// the target flags given, any number of them; C if none
+		boolean batch=false;
+		int jobs=Runtime.getRuntime().availableProcessors();
+		Vector names=new Vector();	// the grammar files, or in batch mode also directories of them
 
 		for(int i=0;i<args.length;i++)
 		{
-			if(args[i].equals("-c"))
+			if(args[i].equals("-help") || args[i].equals("-?"))
+			{
+				out.print(USAGE);
+				return 0;
+			}
+			else if(args[i].equals("-c"))
 			{
-				jc.option=1;
+				targets|=1;
 			}
 			else if(args[i].equals("-j"))
 			{
-				jc.option=2;
+				targets|=2;
 			}
 			else if(args[i].equals("-p"))
 			{
-				jc.option=4;
+				targets|=4;
 			}
 			else if(args[i].equals("-y"))
 			{
-				jc.option=8;
+				targets|=8;
+			}
+			else if(args[i].equals("-d"))
+			{
+				jc.direct=true;
+			}
+			else if(args[i].equals("-cache") && i+1<args.length)
+			{
+				jc.cachedir=jc.file(args[++i]).getPath();
+			}
+			else if(args[i].equals("-batch"))
+			{
+				batch=true;
+			}
+			else if(args[i].equals("-jobs"))
+			{
+				jobs=0;
+				try
+				{
+					if(i+1<args.length)
+						jobs=Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e)
+				{
+				}
+				if(jobs<1)
+				{
+					out.print("Error; -jobs needs a number of threads, 1 or more\r\n"+USAGE);
+					return 1;
+				}
+			}
+			else if(args[i].equals("-stats") && i+1<args.length)
+			{
+				jc.statsfile=args[++i];
+			}
+			else if(args[i].equals("-profile") && i+1<args.length)
+			{
+				jc.profile=jc.file(args[++i]).getPath();
+			}
+			else if(args[i].equals("-renumber"))
+			{
+				jc.renumber=true;
+			}
+			else if(args[i].equals("-unit"))
+			{
+				jc.unit=true;
+			}
+			else if(args[i].equals("-defred"))
+			{
+				jc.defred=true;
+			}
+			else if(args[i].equals("-trace") || args[i].startsWith("-trace="))
+			{
+				jc.traceformat=(args[i].length()>6 ? args[i].substring(7) : "text");
+				if(!jc.traceformat.equals("text") && !jc.traceformat.equals("jsonl") && !jc.traceformat.equals("dot"))
+				{
+					out.print("Error; unknown trace format:"+jc.traceformat+"\r\n");
+					return 1;
+				}
 			}
 			else
 			{
-				jc.filename=args[i];
+				names.addElement(args[i]);
 			}
 		}
+		if(targets!=0)
+			jc.option=targets;
+
+		if(batch)
+			return batch(jc,names,jobs) ? 0 : 1;
+
+		if(names.size()>0)
+			jc.filename=(String)names.lastElement();
+		if(jc.statsfile!=null)
+			jc.stats=new Stats(resident==null);	// the daemon builds for several clients at once
 		try
 		{
-			RandomAccessFile raf=new RandomAccessFile (jc.filename,"r");
-			byte[] buf=new byte[(int)raf.length()];
-			raf.readFully(buf);
-			jc.input=new String(buf);
-			raf.close();
+			jc.input=readGrammar(jc.file(jc.filename).getPath());
 		}
 		catch(Exception e)
 		{
-			System.out.print("Error accessing file:"+jc.filename+";"+e.toString()+"\r\n");
+			out.print("Error accessing file:"+jc.filename+";"+e.toString()+"\r\n");
 		}
+		jc.mark("read");
 
 		try
 		{
@@ -91,85 +280,259 @@ public class Jacc
 		}
 		catch(Exception e)
 		{
-			System.out.print(e.toString());
-			return;
+			out.print(e.toString());
+			return 1;
 		}
 
-		if((jc.option & 0x01)>0)
+		for(int i=0;i<OUTPUTS.length;i++)
 		{
-			try
-			{
-				RandomAccessFile raf=new RandomAccessFile ("j.tab.h.txt","rw");
-				raf.writeBytes(jc.outputh);
-				raf.close();
-			}
-			catch(Exception e)
-			{
-			}
-			try
-			{
-				RandomAccessFile raf=new RandomAccessFile ("j.tab.c.txt","rw");
-				raf.writeBytes(jc.outputc);
-				raf.close();
-			}
-			catch(Exception e)
-			{
-			}
+			String content=(String)jc.outputs.get(OUTPUTS[i]);
+			if(content!=null)
+				jc.writeOutput(OUTPUTS[i],content);
 		}
-		else if((jc.option & 0x02)>0)
+		if(jc.stats!=null)
 		{
-			try
-			{
-				RandomAccessFile raf=new RandomAccessFile ("jjclass.java.txt","rw");
-				raf.writeBytes(jc.outputc);
-				raf.close();
-			}
-			catch(Exception e)
-			{
-			}
+			jc.mark("write");
+			jc.writeOutput(jc.statsfile,jc.statsJson()+"\n");
 		}
-		else if((jc.option & 0x04)>0)
+		return 0;
+	}
+
+	// a file name resolved against cwd
+	File file(String name)
+	{
+		File f=new File(name);
+		if(cwd!=null && !f.isAbsolute())
+			f=new File(cwd,name);
+		return f;
+	}
+
+	/**
+	 * Generates many grammars in one run, on a pool of the given number of threads.  The names are
+	 * grammar files or directories, of which the *.y and *.jacc files are taken.  Each grammar is
+	 * generated by a fresh instance with the options of the prototype, and its outputs are written
+	 * next to it, prefixed with its name less the extension (calc.y gives calc.j.tab.c.txt, ...).
+	 * The errors are reported together at the end; returns false if any grammar failed.
+	 */
+	static boolean batch(Jacc proto, Vector names, int jobs)
+	{
+		Vector grammars=new Vector();
+		for(int i=0;i<names.size();i++)
 		{
-			try
-			{
-				RandomAccessFile raf=new RandomAccessFile ("jjscript.pl.txt","rw");
-				raf.writeBytes(jc.outputc);
-				raf.close();
-			}
-			catch(Exception e)
-			{
-			}
-			try
-			{
-				RandomAccessFile raf=new RandomAccessFile ("trace.txt","rw");
-				raf.writeBytes(jc.trace);
-				raf.close();
-			}
-			catch(Exception e)
+			File f=proto.file((String)names.elementAt(i));
+			if(f.isDirectory())
 			{
+				String[] list=f.list();
+				if(list==null)
+					list=new String[0];
+				Arrays.sort(list);
+				for(int j=0;j<list.length;j++)
+				{
+					File g=new File(f,list[j]);
+					if((list[j].endsWith(".y") || list[j].endsWith(".jacc")) && g.isFile())
+						grammars.addElement(g);
+				}
 			}
+			else
+				grammars.addElement(f);
+		}
+
+		ExecutorService pool=Executors.newFixedThreadPool(jobs);
+		Vector<Future<Jacc>> results=new Vector<Future<Jacc>>();
+		for(int i=0;i<grammars.size();i++)
+		{
+			final Jacc jc=new Jacc();
+			jc.option=proto.option;
+			jc.direct=proto.direct;
+			jc.cachedir=proto.cachedir;
+			jc.profile=proto.profile;
+			jc.renumber=proto.renumber;
+			jc.unit=proto.unit;
+			jc.defred=proto.defred;
+			jc.traceformat=proto.traceformat;
+			jc.collect=false;
+			jc.filename=((File)grammars.elementAt(i)).getPath();
+			final boolean stats=(proto.statsfile!=null);
+			final boolean heap=(resident==null && Math.min(jobs,grammars.size())==1);	// the heap is shared by the grammars built at once
+			results.addElement(pool.submit(new Callable<Jacc>() {
+				public Jacc call() throws Exception
+				{
+					if(stats)
+						jc.stats=new Stats(heap);	// on the thread which does the work, whose CPU time and allocation it measures
+					jc.generate();
+					return jc;
+				}
+			}));
 		}
-		else if((jc.option & 0x08)>0)
+		pool.shutdown();
+
+		StringBuffer report=new StringBuffer();
+		StringBuffer stats=new StringBuffer();
+		int failed=0;
+		for(int i=0;i<results.size();i++)
 		{
 			try
 			{
-				RandomAccessFile raf=new RandomAccessFile ("jjscript.py.txt","rw");
-				raf.writeBytes(jc.outputc);
-				raf.close();
+				Jacc jc=results.elementAt(i).get();
+				if(jc.stats!=null)
+					stats.append((stats.length()>0 ? ",\n" : "")+jc.statsJson());
 			}
 			catch(Exception e)
 			{
+				Throwable t=(e instanceof ExecutionException && e.getCause()!=null) ? e.getCause() : e;
+				String msg=t.toString();
+				if(!msg.endsWith("\n"))
+					msg+="\r\n";
+				report.append(((File)grammars.elementAt(i)).getPath()+": "+msg);
+				failed++;
 			}
+		}
+		if(failed>0)
+			proto.out.print(failed+" of "+results.size()+" grammars failed\r\n"+report);
+		if(proto.statsfile!=null)
+			proto.writeOutput(proto.statsfile,"[\n"+stats+"\n]\n");	// the grammars which were generated
+		return failed==0;
+	}
+
+	// read, build and write the outputs of one grammar in batch mode, see batch()
+	void generate() throws Exception
+	{
+		File f=new File(filename).getAbsoluteFile();
+		String prefix=f.getName();
+		if(prefix.lastIndexOf('.')>0)
+			prefix=prefix.substring(0,prefix.lastIndexOf('.'));
+		tracefile=new File(f.getParentFile(),prefix+"."+traceName()).getPath();
+
+		input=readGrammar(filename);
+		mark("read");
+		parse();
+
+		for(int i=0;i<OUTPUTS.length;i++)
+		{
+			String content=(String)outputs.get(OUTPUTS[i]);
+			if(content!=null)
+				writeFile(new File(f.getParentFile(),prefix+"."+OUTPUTS[i]),content);
+		}
+		mark("write");
+	}
+
+	/**
+	 * Writes an output file as UTF-8, unless it already holds exactly this content, so that
+	 * unchanged outputs keep their timestamps and do not trigger rebuilds downstream.
+	 * The content goes to a temporary file in the same directory which is then moved over the
+	 * output, so readers never see a partial file.  Returns false if the file was left as it was.
+	 */
+	boolean writeOutput(String name, String content)
+	{
+		try
+		{
+			return writeFile(file(name).getAbsoluteFile(),content);
+		}
+		catch(Exception e)
+		{
+			out.print("Error writing file:"+name+";"+e.toString()+"\r\n");
+			return false;
+		}
+	}
+
+	// see writeOutput(); throws on failure
+	static boolean writeFile(File f, String content) throws Exception
+	{
+		byte[] b=content.getBytes("UTF-8");
+		if(f.isFile() && f.length()==b.length && MessageDigest.isEqual(sha1(f),MessageDigest.getInstance("SHA-1").digest(b)))
+			return false;
+		File tmp=new File(f.getParentFile(),f.getName()+"."+Long.toHexString(System.nanoTime())+".tmp");	// created with the default permissions, unlike createTempFile()
+		try
+		{
+			FileChannel ch=new FileOutputStream(tmp).getChannel();
 			try
 			{
-				RandomAccessFile raf=new RandomAccessFile ("trace.txt","rw");
-				raf.writeBytes(jc.trace);
-				raf.close();
+				ByteBuffer buf=ByteBuffer.wrap(b);
+				while(buf.hasRemaining())
+					ch.write(buf);
 			}
-			catch(Exception e)
+			finally
 			{
+				ch.close();
 			}
+			moveOver(tmp,f);
+			return true;
+		}
+		catch(Exception e)
+		{
+			tmp.delete();
+			throw e;
+		}
+	}
+
+	// replaces f by tmp, atomically where the file system can
+	static void moveOver(File tmp, File f) throws Exception
+	{
+		try
+		{
+			Files.move(tmp.toPath(),f.toPath(),StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(AtomicMoveNotSupportedException e)
+		{
+			Files.move(tmp.toPath(),f.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// hash of the contents of a file
+	static byte[] sha1(File f) throws Exception
+	{
+		MessageDigest md=MessageDigest.getInstance("SHA-1");
+		InputStream in=new FileInputStream(f);
+		try
+		{
+			byte[] buf=new byte[65536];
+			int n;
+			while((n=in.read(buf))>0)
+				md.update(buf,0,n);
+		}
+		finally
+		{
+			in.close();
+		}
+		return md.digest();
+	}
+
+	// the grammar file, read through a channel and decoded as UTF-8; malformed input is an error
+	static String readGrammar(String filename) throws Exception
+	{
+		FileInputStream in=new FileInputStream(filename);
+		try
+		{
+			FileChannel ch=in.getChannel();
+			ByteBuffer buf=ByteBuffer.allocate((int)ch.size());
+			while(buf.hasRemaining() && ch.read(buf)>0);
+			buf.flip();
+			return Charset.forName("UTF-8").newDecoder().decode(buf).toString();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	// the text with its comments removed, in one pass
+	static String stripComments(String s, String section) throws Exception
+	{
+		int pos=0,pos2;
+		StringBuffer sb=null;
+		while((pos2=s.indexOf("/*",pos))!=-1)
+		{
+			if(sb==null)
+				sb=new StringBuffer(s.length());
+			sb.append(s,pos,pos2);
+			if((pos=s.indexOf("*/",pos2+2))==-1)
+				throw new Exception("Syntax error in "+section+" section; Unmatched comment\r\n");
+			pos+=2;
 		}
+		if(sb==null)
+			return s;
+		sb.append(s,pos,s.length());
+		return sb.toString();
 	}
 
 	void preprocess() throws Exception
@@ -191,13 +554,7 @@ public class Jacc
 		support+=input.substring(pos2+2);
 
 		// strip out comments from translation rules section
-		while((pos=trans.indexOf("/*"))!=-1)
-		{
-			if((pos2=trans.indexOf("*/",pos+2))==-1)
-				throw new Exception("Syntax error in rules section; Unmatched comment\r\n");
-			trans=trans.substring(0,pos)+trans.substring(pos2+2);
-		}
-		trans=trans.trim();
+		trans=stripComments(trans,"rules").trim();
 		if(trans.length()<4)
 			throw new Exception("Useless rules section\r\n");
 		// add auxilliary start rule
@@ -224,14 +581,25 @@ public class Jacc
 			decl=decl.substring(0,i)+decl.substring(j+2);	// remove literal block from declarations
 		}
 
-		// strip out comments
-		while((i=decl.indexOf("/*"))!=-1)
+		// parse %lex section, a pattern per line
+		if((i=decl.indexOf("%lex"))!=-1)
 		{
-			if((j=decl.indexOf("*/",i+2))==-1)
-				throw new Exception("Syntax error in declarations section; Unmatched comment\r\n");
-			decl=decl.substring(0,i)+decl.substring(j+2);
+			j=decl.indexOf("%endlex",i+4);
+			if(j==-1)
+				throw new Exception("Syntax error in declarations section; Unmatched \'%lex\'\r\n");
+			StringTokenizer lines=new StringTokenizer(decl.substring(i+4,j),"\r\n");
+			while(lines.hasMoreTokens())
+			{
+				String l=lines.nextToken().trim();
+				if(l.length()>0)
+					lexrules.addElement(lexrule(l));
+			}
+			decl=decl.substring(0,i)+decl.substring(j+"%endlex".length());	// remove %lex section from declarations
 		}
 
+		// strip out comments
+		decl=stripComments(decl,"declarations");
+
 		i=decl.indexOf("%union");
 		if(i!=-1)
 		{
@@ -349,6 +717,60 @@ public class Jacc
 		}
 	}
 
+	// split a line of the %lex section into pattern, token and action: regex [token] [{ action }]
+	String[] lexrule(String l) throws Exception
+	{
+		int pos=0;
+		boolean inclass=false,inquote=false;
+		while(pos<l.length())
+		{
+			char c=l.charAt(pos);
+			if(c=='\\')
+				pos++;
+			else if(inclass)
+				inclass=(c!=']');
+			else if(inquote)
+				inquote=(c!='"');
+			else if(c=='[')
+				inclass=true;
+			else if(c=='"')
+				inquote=true;
+			else if(Character.isWhitespace(c))
+				break;
+			pos++;
+		}
+		if(inclass || inquote || pos>l.length())
+			throw new Exception("Syntax error in %lex section; Incomplete pattern "+l+"\r\n");
+		String pattern=l.substring(0,pos);
+		String rest=l.substring(pos).trim();
+		String token="";
+		if(rest.length()>0 && rest.charAt(0)!='{')
+		{
+			pos=0;
+			if(rest.charAt(0)=='\'')	// a literal token, may be a quoted blank
+			{
+				pos++;
+				while(pos<rest.length() && rest.charAt(pos)!='\'')
+				{
+					if(rest.charAt(pos)=='\\')
+						pos++;
+					pos++;
+				}
+				pos++;
+			}
+			while(pos<rest.length() && !Character.isWhitespace(rest.charAt(pos)) && rest.charAt(pos)!='{')
+				pos++;
+			if(pos>rest.length())
+				throw new Exception("Syntax error in %lex section; Unmatched \'\r\n");
+			token=rest.substring(0,pos);
+			rest=rest.substring(pos).trim();
+		}
+		if(rest.length()>0 && (rest.charAt(0)!='{' || rest.charAt(rest.length()-1)!='}'))
+			throw new Exception("Syntax error in %lex section; Action must be enclosed in braces\r\n");
+		String[] r={ pattern, token, rest };
+		return r;
+	}
+
 	void processtrans() throws Exception
 	{
 		int pos=0,pos2;
@@ -359,6 +781,9 @@ public class Jacc
 		int ruleno=-1;
 		String tmpprec=null;
 		char c;
+		Hashtable symbols=new Hashtable();	// the terminals and nonterminals collected so far, for quick lookup
+		for(int i=0;i<terms.size();i++)
+			symbols.put(terms.elementAt(i),"t");
 		while(pos<len)
 		{
 			c=trans.charAt(pos);
@@ -391,8 +816,11 @@ public class Jacc
 							throw new Exception("Syntax error in lhs\r\n");
 						String t=trans.substring(pos2,pos);
 						v.addElement(t);
-						if(terms.indexOf(t)==-1)
+						if(symbols.get(t)==null)
+						{
 							terms.addElement(t);
+							symbols.put(t,"t");
+						}
 						String t2=(String)prec.get(t);
 						if(t2!=null)
 							tmpprec=t2;
@@ -497,17 +925,20 @@ public class Jacc
 						{
 							if(t.equals("%prec"))
 							{
-								StringTokenizer st=new StringTokenizer(trans.substring(pos));
-								if(st.hasMoreTokens())
+								// the next blank-separated word is the argument
+								while(pos<len && " \t\n\r\f".indexOf(trans.charAt(pos))!=-1)
+									pos++;
+								if(pos<len)
 								{
-									String t2=st.nextToken();
+									int pos3=pos;
+									while(pos<len && " \t\n\r\f".indexOf(trans.charAt(pos))==-1)
+										pos++;
+									String t2=trans.substring(pos3,pos);
 									if(Character.isLetterOrDigit(t2.charAt(0)))
 									{
 										String t3=(String)prec.get(t2);
 										if(t3!=null)
 											tmpprec=t3;
-										pos=trans.indexOf(t2,pos);
-										pos+=t2.length();
 									}
 									else
 									{
@@ -537,8 +968,12 @@ public class Jacc
 						// process lhs nonterminal
 						v=new Vector();
 						lhs=trans.substring(pos2,pos);
-						if(nonterms.indexOf(lhs)==-1)
-							nonterms.addElement(lhs);
+						if(!"n".equals(symbols.get(lhs)))
+						{
+							if(symbols.get(lhs)==null || nonterms.indexOf(lhs)==-1)
+								nonterms.addElement(lhs);
+							symbols.put(lhs,"n");
+						}
 						v.addElement(lhs);
 						semactions.addElement("");
 						ruleno++;
@@ -551,2064 +986,6907 @@ public class Jacc
 
 	void parse() throws Exception
 	{
+		build();
+		if(traceformat!=null)
+		{
+			writeTrace();
+			mark("trace");
+		}
+
+		genCode();
+		mark("genCode");
+		gc();
+	}
+
+	// read the grammar and construct its tables; the backends only consume the resulting model
+	void build() throws Exception
+	{
+		Hashtable prev=null;
+		if(cachedir!=null || (shared && resident!=null))
+		{
+			cachekey=cacheKey();
+			if(loadCache())
+			{
+				saveLast();
+				tables=new Tables(this);
+				bypassUnits();
+				layout();
+				defaultReductions();
+				mark("loadCache");
+				return;
+			}
+			prev=lastEntry();	// automaton of the previous version of this grammar, if any
+			mark("loadCache");
+		}
+
 		preprocess();
+		mark("preprocess");
 
 		processdecl();
+		mark("processdecl");
 
 		processtrans();
-			System.gc();
-		constructCSOI();
-			System.gc();
+		mark("processtrans");
+		gc();
+		if(prev!=null)
+			constructCSOI(prev);
+		else
+			constructCSOI();
+		mark("constructCSOI");
+		gc();
 		constructSLR();
-			System.gc();
-		genCode();
-			System.gc();
+		mark("constructSLR");
+		gc();
+		if(cachedir!=null || (shared && resident!=null))
+		{
+			saveCache();
+			mark("saveCache");
+		}
+		tables=new Tables(this);
+		bypassUnits();
+		layout();
+		defaultReductions();
+		mark("tables");
 	}
 
-	void genTrace() throws Exception
+	/**
+	 * Bypasses the reductions by unit rules, A : B with no semantic action, for -unit.  Where a shift or a goto
+	 * leads to a state which does nothing but reduce by such a rule, it leads instead to the state which the
+	 * goto on A would, and so on down a chain of them; the value of B is left as it is for A.
+	 * The start rule is kept, for the accept.
+	 */
+	void bypassUnits() throws Exception
 	{
-		//
-		// trace/check/test
-		//
-		trace+="***productions, semantic actions and precedences\r\n";
-		int i,j;
-		for(i=0;i<rules.size();i++)
+		if(!unit)
+			return;
+		boolean[] units=new boolean[tables.numRules()];
+		for(int r=1;r<units.length;r++)
+			units[r]=plainUnit(r);
+		unitcounts=new int[3];
+		tables=tables.bypass(units,lexrules,unitcounts);
+	}
+
+	/**
+	 * Lays out the tables after the counts of a profile, if one is given with -profile: the states
+	 * which are visited most come first, the start state staying 0, and the terminals which are
+	 * shifted most come first, in the action table and in the terminal map searched by maptoken().
+	 * How often a terminal is shifted is taken from the reductions of the rules which have it on their rhs.
+	 * The cases of the semantic actions are ordered by how often their rule is reduced, the Perl and
+	 * Python ones being tested in turn.  The few rules reduced most get a branch of their own in the
+	 * parsing loop, ahead of the one for any rule, which has their length and lhs as constants and
+	 * leaves out the semantic action of a unit rule without one.
+	 * A profile is written by jjstats_write() of a parser built with its counters on; it has a line
+	 *	s <state> <visits>	or	r <rule> <reductions>
+	 * for each state and rule counted, '#' starting a comment.  The states are numbered as in trace.txt,
+	 * whatever the numbering of the parser which wrote it.
+	 */
+	void layout() throws Exception
+	{
+		if(profile==null)
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			for(j=0;j<v.size();j++)
-			{
-				trace+=(String)v.elementAt(j)+" ";
-			}
-			trace+="\r\n";
-			trace+="\t"+(String)semactions.elementAt(i)+"\r\n";
-			trace+="\t"+(String)ruleprec.elementAt(i)+"\r\n";
+			if(renumber)
+				localLayout();
+			return;
 		}
-		trace+="***terminals\r\n";
-		for(i=0;i<terms.size();i++)
+		long[] visits=new long[tables.numStates()];
+		long[] reductions=new long[tables.numRules()];
+		readProfile(profile,visits,reductions);
+
+		long[] shifts=new long[tables.numTerms()];
+		for(int r=0;r<reductions.length;r++)
 		{
-			trace+=(String)terms.elementAt(i)+"\r\n";
+			String[] rule=tables.rule(r);
+			for(int k=1;k<rule.length;k++)
+			{
+				int t=tables.termIndex(rule[k]);
+				if(t>=0)
+					shifts[t]+=reductions[r];
+			}
 		}
-		trace+="***nonterminals\r\n";
-		for(i=0;i<nonterms.size();i++)
+		int[] hot=byCount(visits);
+		int[] states=new int[hot.length];	// the start state stays 0
+		for(int i=0,n=1;i<hot.length;i++)
 		{
-			trace+=(String)nonterms.elementAt(i)+"\r\n";
+			if(hot[i]!=0)
+				states[n++]=hot[i];
 		}
-		trace+="\r\n***nonterminals which are lhs of epsilon productions\r\n";
-		for(i=0;i<epsilon.size();i++)
+		tables=tables.renumber(states,byCount(shifts),lexrules);
+		ruleorder=byCount(reductions);
+
+		long total=0;
+		for(int r=0;r<reductions.length;r++)
+			total+=reductions[r];
+		int n=0;
+		while(n<HOTRULES && n<ruleorder.length && reductions[ruleorder[n]]>0 && reductions[ruleorder[n]]*10>=total)
+			n++;
+		hotrules=new int[n];
+		System.arraycopy(ruleorder,0,hotrules,0,n);
+	}
+
+	// a rule of one symbol without a semantic action, whose reduction leaves the value stack as it is
+	boolean plainUnit(int r)
+	{
+		return tables.ruleLength(r)==1 && tables.semaction(r).trim().length()==0;
+	}
+
+	/**
+	 * Numbers the states and terminals by the structure of the automaton, for -renumber without a profile.
+	 * The states are numbered breadth first from the start state along the transitions, the shifts in the
+	 * order of the terminals and then the gotos, so that a state lies near the states it goes to and comes from.
+	 * The terminals are chained greedily, beginning with the one which has an action in the most states
+	 * and following each with the one which has an action in the most of the same states, so that the
+	 * columns read in the same rows lie together.
+	 */
+	void localLayout() throws Exception
+	{
+		int i,j,k;
+		int nstates=tables.numStates();
+		int nterms=tables.numTerms();
+
+		BitSet[] rows=new BitSet[nterms];	// the states in which each terminal has an action
+		for(j=0;j<nterms;j++)
 		{
-			trace+=(String)epsilon.elementAt(i)+"\r\n";
+			rows[j]=new BitSet(nstates);
+			for(i=0;i<nstates;i++)
+			{
+				if(tables.actionInst(i,j)!=Tables.INST_ERROR)
+					rows[j].set(i);
+			}
 		}
-		trace+="\r\n***states; sets of items\r\n";
-		for(i=0;i<LR0.size();i++)
+		int[] order=new int[nterms];
+		boolean[] placed=new boolean[nterms];
+		for(k=0;k<nterms;k++)
 		{
-			Vector v=(Vector)LR0.elementAt(i);
-			trace+="	state "+i+"\r\n";
-			for(j=0;j<v.size();j++)
+			int best=-1,bestshared=-1;
+			for(j=0;j<nterms;j++)
 			{
-				trace+="		";
-				Vector v2=(Vector)v.elementAt(j);
-				for(int k=0;k<v2.size();k++)
+				if(placed[j])
+					continue;
+				int shared;
+				if(k==0)
+					shared=rows[j].cardinality();
+				else
+				{
+					BitSet b=(BitSet)rows[order[k-1]].clone();
+					b.and(rows[j]);
+					shared=b.cardinality();
+				}
+				if(shared>bestshared || (shared==bestshared && rows[j].cardinality()>rows[best].cardinality()))
 				{
-					trace+=(String)v2.elementAt(k)+" ";
+					best=j;
+					bestshared=shared;
 				}
-				trace+="\r\n";
 			}
+			order[k]=best;
+			placed[best]=true;
 		}
-		trace+="\r\n***DFA transitions\r\n";
-		for(i=0;i<LR0goto.size();i++)
+
+		int[] states=new int[nstates];
+		boolean[] seen=new boolean[nstates];
+		int n=1;
+		seen[0]=true;
+		for(i=0;i<n;i++)
 		{
-			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
-			trace+="	state "+i+"\r\n";
-			for(j=0;j<terms.size();j++)
+			int s=states[i];
+			for(j=0;j<nterms;j++)
 			{
-				Integer state=(Integer)ht.get(terms.elementAt(j));
-				if(state!=null)
+				if(tables.actionInst(s,order[j])==Tables.INST_SHIFT)
 				{
-					trace+="		"+(String)terms.elementAt(j)+" --> "+state+"\r\n";
+					int t=tables.actionParam(s,order[j]);
+					if(!seen[t])
+					{
+						seen[t]=true;
+						states[n++]=t;
+					}
 				}
 			}
-			for(j=0;j<nonterms.size();j++)
+			for(j=0;j<tables.numNonterms();j++)
 			{
-				Integer state=(Integer)ht.get(nonterms.elementAt(j));
-				if(state!=null)
+				int t=tables.gotoState(s,j);
+				if(t>=0 && !seen[t])
 				{
-					trace+="		"+(String)nonterms.elementAt(j)+" --> "+state+"\r\n";
+					seen[t]=true;
+					states[n++]=t;
 				}
 			}
 		}
-		trace+="\r\n***action table\r\n";
-		for(i=0;i<action.size();i++)
+		for(i=0;i<nstates;i++)	// none should be left, every state being reachable
 		{
-			Hashtable ht=(Hashtable)action.elementAt(i);
-			trace+="	state "+i+"\r\n";
-			for(j=0;j<terms.size();j++)
-			{
-				String act=(String)ht.get(terms.elementAt(j));
-				if(act!=null)
-				{
-					trace+="		"+(String)terms.elementAt(j)+" --> "+act+"\r\n";
-				}
-			}
+			if(!seen[i])
+				states[n++]=i;
 		}
-/*
-		// test
-		Vector f;
-		String t;
-		t=START;
-		f=follow(t);
-		trace+="\r\n**follow "+t+": ";
-		for(i=0;i<f.size();i++)
+		tables=tables.renumber(states,order,lexrules);
+	}
+
+	/**
+	 * Finds the states which do nothing but reduce by one rule, whatever the lookahead, for -defred.
+	 * The parsers reduce in them without consulting the lookahead, and without reading it if it has not
+	 * been read yet, so that a parser reading a line at a time finishes with it before asking for the next.
+	 * They are numbered after all the other states, keeping their order, and have no row in the action table;
+	 * the start state keeps its number and its row.  An error is found in the state which the reduction leads to.
+	 */
+	void defaultReductions() throws Exception
+	{
+		if(!defred)
+			return;
+		int nstates=tables.numStates();
+		int[] states=new int[nstates];
+		int n=0;
+		for(int i=0;i<nstates;i++)
 		{
-			trace+=(String)f.elementAt(i)+" ";
+			if(i==0 || tables.defaultReduction(i)<0)
+				states[n++]=i;
 		}
-*/
-//		outputc+="\r\n/**********begin trace**********\r\n\r\n"+trace+"\r\n**********end trace**********/\r\n";
+		defreds=nstates-n;
+		for(int i=1;i<nstates;i++)
+		{
+			if(tables.defaultReduction(i)>=0)
+				states[n++]=i;
+		}
+		int[] order=new int[tables.numTerms()];
+		for(int j=0;j<order.length;j++)
+			order[j]=j;
+		tables=tables.renumber(states,order,lexrules);
 	}
 
-	Vector closure(Vector set1) throws Exception
-	{	
-		int i,j;
-		Vector set=(Vector)set1.clone();
-		Vector dirty=new Vector();	// vector of non-kernel items processed
-		for(i=0;i<set.size();i++)
-		{
-			// fetch a single item
-			Vector arule=(Vector)set.elementAt(i);
-			// look for the 'dot'
-			if((j=arule.indexOf(POINTER))==-1)
-				throw new Exception("Error; Missing dot in closure\r\n");	// no dot
-			if(j+1>=arule.size())
-				continue;	// reducible
-			String sym=(String)arule.elementAt(j+1);	// symbol after the dot
-			if(dirty.indexOf(sym)==-1)
+	// the number of states with a row in the action table, those before the default reductions
+	int actionRows()	{	return tables.numStates()-defreds;	}
+
+	// the rule each state reduces by without a lookahead, -1 for those with a row of actions
+	int[] defaultRules()
+	{
+		int[] a=new int[tables.numStates()];
+		for(int i=0;i<a.length;i++)
+			a[i]=(i<actionRows() ? -1 : tables.defaultReduction(i));
+		return a;
+	}
+
+	// the indexes of the counts, the largest count first; equal counts stay in order
+	static int[] byCount(long[] counts)
+	{
+		Integer[] order=new Integer[counts.length];
+		for(int i=0;i<order.length;i++)
+			order[i]=Integer.valueOf(i);
+		final long[] c=counts;
+		Arrays.sort(order,new Comparator<Integer>() {
+			public int compare(Integer a, Integer b)
 			{
-				dirty.addElement(sym);
+				long ca=c[a.intValue()];
+				long cb=c[b.intValue()];
+				return (ca>cb ? -1 : (ca<cb ? 1 : 0));
 			}
-			else
-			{
+		});
+		int[] a=new int[order.length];
+		for(int i=0;i<a.length;i++)
+			a[i]=order[i].intValue();
+		return a;
+	}
+
+	// adds the counts of a profile written by jjstats_write() to visits and reductions
+	void readProfile(String name, long[] visits, long[] reductions) throws Exception
+	{
+		StringTokenizer lines=new StringTokenizer(readGrammar(name),"\r\n");
+		while(lines.hasMoreTokens())
+		{
+			String line=lines.nextToken().trim();
+			if(line.length()==0 || line.startsWith("#"))
 				continue;
+			StringTokenizer st=new StringTokenizer(line);
+			try
+			{
+				String kind=st.nextToken();
+				int n=Integer.parseInt(st.nextToken());
+				long count=Long.parseLong(st.nextToken());
+				if(kind.equals("s"))
+					visits[n]+=count;
+				else if(kind.equals("r"))
+					reductions[n]+=count;
+				else
+					throw new Exception();
 			}
-			for(j=0;j<rules.size();j++)
+			catch(Exception e)
 			{
-				Vector v=(Vector)((Vector)rules.elementAt(j)).clone();
-				if(((String)v.elementAt(0)).equals(sym))
-				{
-					v.insertElementAt(POINTER,1);
-					set.addElement(v);
-				}
+				throw new Exception("Error; profile "+name+" does not match the grammar: "+line+"\r\n");
 			}
 		}
-		//return set.size()>0 ? set : null;
-		return set;
 	}
 
-	Vector gotoOp(Vector set1, String sym) throws Exception
+	// the number in the construction of each state of the tables
+	int[] stateIds()
 	{
-		Vector set=new Vector();
-		for(int i=0;i<set1.size();i++)
+		int[] ids=new int[tables.numStates()];
+		for(int i=0;i<ids.length;i++)
+			ids[i]=tables.stateId(i);
+		return ids;
+	}
+
+	// the rule of the i-th case of the semantic actions
+	int caseRule(int i)
+	{
+		return (ruleorder==null ? i : ruleorder[i]);
+	}
+
+	// collect the garbage between phases, unless other grammars are being built meanwhile
+	void gc()
+	{
+		if(collect)
 		{
-			// for each item, find presence of symbol after dot
-			Vector v=(Vector)((Vector)set1.elementAt(i)).clone();
-			// find dot
-			int pos;
-			if((pos=v.indexOf(POINTER))==-1)
-				throw new Exception("Error; Missing dot in gotoOp\r\n");
-			if(pos+1>=v.size())
-				continue;	// reducible
-			// find symbol
-			if(((String)v.elementAt(pos+1)).equals(sym))
-			{
-				v.removeElementAt(pos);	// move pointer one symbol to the right
-				v.insertElementAt(POINTER,pos+1);
-				set.addElement(v);
-			}
+			System.gc();
+			mark("gc");
 		}
+	}
 
-		return (set.size()>0 ? closure(set) : null);
+	// end the current phase of the statistics, if they are kept
+	void mark(String phase)
+	{
+		if(stats!=null)
+			stats.mark(phase);
 	}
 
-	// return the state if the set of items is already in the collection, -1 otherwise
-	int noExist(Vector lr0, Vector set) throws Exception
+	/**
+	 * The wall time, CPU time, bytes allocated and peak heap of each phase of a run, for -stats.
+	 * A phase ends at each mark and the next one begins there; the marks of a phase which recurs,
+	 * such as gc, are added up.  The CPU time and allocation of the threads which work for the
+	 * current phase, the emitters of several targets, are added in by them.
+	 * The peak heap is only measured when no other grammar is being built in the JVM meanwhile.
+	 */
+	static final class Stats
 	{
-		int i,j,k,l;
-		for(i=0;i<lr0.size();i++)
+		final Vector phases=new Vector();	// the names of the phases, in order
+		final Hashtable values=new Hashtable();	// a map of phases to { wall ns, cpu ns, allocated bytes, peak heap bytes or -1 }
+		final boolean heap;	// measure the peak heap
+		long wall,cpu,alloc;
+		long othercpu=0,otheralloc=0;
+
+		Stats(boolean heap)
 		{
-			// for each set of items
-			Vector v=(Vector)lr0.elementAt(i);
-			if(v.size()!=set.size())
-				continue;
-			for(j=0;j<v.size();j++)
+			this.heap=heap;
+			start();
+		}
+
+		void start()
+		{
+			wall=System.nanoTime();
+			cpu=cpuTime();
+			alloc=allocatedBytes();
+			if(!heap)
+				return;
+			List<MemoryPoolMXBean> pools=ManagementFactory.getMemoryPoolMXBeans();
+			for(int i=0;i<pools.size();i++)
 			{
-				// for each item
-				Vector v2=(Vector)v.elementAt(j);
-				for(k=0;k<set.size();k++)
-				{
-					// for each item of set
-					Vector vset=(Vector)set.elementAt(k);
-					if(vset.size()!=v2.size())
-					{
-						continue;
-					}
-					for(l=0;l<vset.size();l++)
-					{
-						if(v2.elementAt(l).equals(vset.elementAt(l)))
-						{
-						}
-						else
-						{
-							break;
-						}
-					}
-					if(l==vset.size())
-					{
-						break;	// item matches
-					}
-				}
-				if(k==set.size())
-				{
-					break;	// an item does not match
-				}
+				MemoryPoolMXBean p=pools.get(i);
+				if(p.getType()==MemoryType.HEAP)
+					p.resetPeakUsage();
 			}
-			if(j==v.size())
+		}
+
+		synchronized void mark(String phase)
+		{
+			long w=System.nanoTime()-wall;
+			long c=(cpu<0) ? -1 : cpuTime()-cpu+othercpu;
+			long a=(alloc<0) ? -1 : allocatedBytes()-alloc+otheralloc;
+			long peak=(heap ? 0 : -1);
+			List<MemoryPoolMXBean> pools=ManagementFactory.getMemoryPoolMXBeans();
+			for(int i=0;heap && i<pools.size();i++)
 			{
-				break;	// a set of items matches
+				MemoryPoolMXBean p=pools.get(i);
+				if(p.getType()==MemoryType.HEAP)
+					peak+=p.getPeakUsage().getUsed();
+			}
+			long[] v=(long[])values.get(phase);
+			if(v==null)
+			{
+				phases.addElement(phase);
+				values.put(phase,new long[] { w, c, a, peak });
+			}
+			else
+			{
+				v[0]+=w;
+				v[1]=(c<0) ? -1 : v[1]+c;
+				v[2]=(a<0) ? -1 : v[2]+a;
+				v[3]=Math.max(v[3],peak);
 			}
+			othercpu=0;
+			otheralloc=0;
+			start();
 		}
-		return (i==lr0.size() ? -1 : i);	// if i went pass the limit, set not found in lr0
-	}
 
-	// construct the collection of sets of items and the goto operation(hashtable)
-	void constructCSOI() throws Exception
-	{
-		int i;
-		int istate=0;
-		int state;
-		// set closure of augmented start rule with dot at left as item 1
-		Vector v=new Vector();
-		Vector v2=(Vector)((Vector)rules.elementAt(0)).clone();
-		v2.insertElementAt(POINTER,1);
-		v.addElement(v2);
-		LR0.addElement(closure(v));
-		LR0goto.addElement(new Hashtable());
-		Hashtable ht;
-		while(true)
+		synchronized void addOther(long cpu, long bytes)
 		{
-			// compute goto for each grammar symbol
-			for(i=0;i<terms.size();i++)
+			othercpu+=cpu;
+			otheralloc+=bytes;
+		}
+
+		// CPU time of the current thread, or -1 if the JVM does not measure it
+		static long cpuTime()
+		{
+			ThreadMXBean mx=ManagementFactory.getThreadMXBean();
+			return mx.isCurrentThreadCpuTimeSupported() ? mx.getCurrentThreadCpuTime() : -1;
+		}
+
+		// bytes allocated so far by the current thread, or -1 if the JVM does not count them
+		static long allocatedBytes()
+		{
+			try
 			{
-				v=gotoOp((Vector)LR0.elementAt(istate),(String)terms.elementAt(i));
-				if(v!=null)
-				{
-					state=noExist(LR0,v);
-					if(state==-1)
-					{
-						LR0.addElement(v);
-						LR0goto.addElement(new Hashtable());
-						((Hashtable)LR0goto.elementAt(istate)).put((String)terms.elementAt(i),new Integer(LR0.size()-1));
-					}
-					else
-					{
-						((Hashtable)LR0goto.elementAt(istate)).put((String)terms.elementAt(i),new Integer(state));
-					}
-				}
+				Object mx=ManagementFactory.getThreadMXBean();
+				if(mx instanceof com.sun.management.ThreadMXBean)
+					return ((com.sun.management.ThreadMXBean)mx).getThreadAllocatedBytes(Thread.currentThread().getId());
 			}
-			for(i=0;i<nonterms.size();i++)
+			catch(Throwable t)
 			{
-				v=gotoOp((Vector)LR0.elementAt(istate),(String)nonterms.elementAt(i));
-				if(v!=null)
-				{
-					state=noExist(LR0,v);
-					if(state==-1)
-					{
-						LR0.addElement(v);
-						LR0goto.addElement(new Hashtable());
-						((Hashtable)LR0goto.elementAt(istate)).put((String)nonterms.elementAt(i),new Integer(LR0.size()-1));
-					}
-					else
-					{
-						((Hashtable)LR0goto.elementAt(istate)).put((String)nonterms.elementAt(i),new Integer(state));
-					}
-				}
 			}
-			istate++;
-			if(istate>=LR0.size())
-				break;
+			return -1;
 		}
 	}
 
-	// returns a vector of terminals that can follow the symbol in a derivation
-	Vector follow(String sym) throws Exception
+	// the statistics of the run as a JSON object
+	String statsJson()
 	{
-		Vector f=new Vector();
-		if(sym.equals(startsym))
-			f.addElement(EOI);	// end-of-input marker is in follow(S)
-		int pos,pos2;
-		for(int i=0;i<rules.size();i++)
+		StringBuffer sb=new StringBuffer();
+		sb.append("{\n\t\"grammar\": "+jsonString(filename)+",\n");
+		sb.append("\t\"phases\": [\n");
+		for(int i=0;stats!=null && i<stats.phases.size();i++)
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			// search for sym in rhs
-			pos=1;
-			while((pos=v.indexOf(sym,pos))!=-1)
-			{
-				if(pos+1<v.size())
-				{
-					pos2=pos+1;
-					while(pos2<v.size())
-					{
-						String t=(String)v.elementAt(pos2);
-						Vector v2=first(t);
-						for(int j=0;j<v2.size();j++)
-						{
-							String t2=(String)v2.elementAt(j);
-							if(f.indexOf(t2)==-1)
-								f.addElement(t2);
-						}
-						//if(epsilon.indexOf(t)==-1)	// if symbol is not an lhs of an epsilon production, stop fetching first() of subsequent symbols
-						if(v2.indexOf("")==-1)	// if first(t) does not contain epsilon, stop fetching first() of subsequent symbols
-							break;
-						pos2++;
-					}
-					if(pos2==v.size())
-					{
-						String t=(String)v.elementAt(0);
-						if(t.equals(sym)==false)	// if lhs is a different nonterminal from sym, get its follow()
-						{
-							Vector v3=follow(t);
-							for(int j=0;j<v3.size();j++)
-							{
-								String t2=(String)v3.elementAt(j);
-								if(f.indexOf(t2)==-1)
-									f.addElement(t2);
-							}
-						}
-					}
-				}	// everything that follows the lhs of a rule with sym as the last element is part of follow(sym)
-				else if(((String)v.lastElement()).equals(sym))
-				{
-					String t=(String)v.elementAt(0);
-					if(t.equals(sym))	// if same nonterminal, skip, to avoid stack overflow
-						break;
-					Vector v3=follow(t);
-					for(int j=0;j<v3.size();j++)
-					{
-						String t2=(String)v3.elementAt(j);
-						if(f.indexOf(t2)==-1)
-							f.addElement(t2);
-					}
-					break;
-				}
-				pos++;
-			}
+			String phase=(String)stats.phases.elementAt(i);
+			long[] v=(long[])stats.values.get(phase);
+			sb.append("\t\t{ \"name\": "+jsonString(phase)+", \"wallNanos\": "+v[0]+", \"cpuNanos\": "+v[1]
+				+", \"allocatedBytes\": "+v[2]+(v[3]<0 ? "" : ", \"peakHeapBytes\": "+v[3])+" }"+(i+1<stats.phases.size() ? "," : "")+"\n");
 		}
-		return f;
+		sb.append("\t],\n");
+		int items=0;
+		for(int i=0;i<LR0.size();i++)
+			items+=((Vector)LR0.elementAt(i)).size();
+		sb.append("\t\"states\": "+LR0.size()+",\n");
+		sb.append("\t\"items\": "+items+",\n");
+		sb.append("\t\"terminals\": "+terms.size()+",\n");
+		sb.append("\t\"nonterminals\": "+nonterms.size()+",\n");
+		sb.append("\t\"rules\": "+rules.size()+",\n");
+		sb.append("\t\"conflicts\": { \"shiftReduce\": "+srconflicts+", \"reduceReduce\": "+rrconflicts+" },\n");
+		if(unitcounts!=null)
+			sb.append("\t\"unitBypass\": { \"rules\": "+unitcounts[0]+", \"entries\": "+unitcounts[1]+", \"longestChain\": "+unitcounts[2]+" },\n");
+		if(defred)
+			sb.append("\t\"defaultReductions\": "+defreds+",\n");
+		sb.append("\t\"tableBytes\": "+tableBytes()+",\n");
+		sb.append("\t\"outputs\": {");
+		boolean first=true;
+		for(int i=0;i<OUTPUTS.length;i++)
+		{
+			String content=(String)outputs.get(OUTPUTS[i]);
+			if(content==null)
+				continue;
+			sb.append((first ? " " : ", ")+jsonString(OUTPUTS[i])+": "+content.length());
+			first=false;
+		}
+		sb.append(" }\n}");
+		return sb.toString();
 	}
 
-	Vector first(String sym) throws Exception
+	// the bytes of the tables as laid out by the C backend: termmap, rules, and unless coded directly, action, gototab and defred
+	long tableBytes()
 	{
-		Vector f=new Vector();
+		long n=4L*terms.size()+8L*rules.size();
+		if(!direct)
+			n+=8L*(LR0.size()-defreds)*terms.size()+4L*LR0.size()*nonterms.size();
+		if(defred && !direct)
+			n+=4L*LR0.size();
+		return n;
+	}
 
-		// if a terminal, return it
-		if(terms.indexOf(sym)!=-1)
+	static String jsonString(String s)
+	{
+		StringBuffer sb=new StringBuffer("\"");
+		for(int i=0;i<s.length();i++)
 		{
-			f.addElement(sym);
-			return f;
+			char c=s.charAt(i);
+			if(c=='"' || c=='\\')
+				sb.append('\\').append(c);
+			else if(c<0x20)
+				sb.append("\\u").append(Integer.toHexString(0x10000+c).substring(1));
+			else
+				sb.append(c);
 		}
+		return sb.append('"').toString();
+	}
 
-		// if lhs of an epsilon production, add epsilon ("")
-		if(epsilon.indexOf(sym)!=-1)
+	/**
+	 * Builds the tables of a grammar held in memory, without reading or writing any file.
+	 * Every call works on a generator of its own, so calls may run concurrently; nothing of
+	 * it is kept once the tables are returned, not even by a daemon running in the same JVM.
+	 */
+	public static Tables compile(CharSequence grammar) throws Exception
+	{
+		Jacc jc=new Jacc();
+		jc.input=grammar.toString();
+		jc.collect=false;	// a library call, which must not pause the host for collections
+		jc.shared=false;	// nor keep its grammars in the resident cache
+		jc.build();
+		return jc.tables;
+	}
+
+	// hash of the grammar text, the generator version and the version of the cache entries, so that
+	// entries of another format are never looked up; the target language is left out since code is
+	// emitted from the cached tables
+	String cacheKey() throws Exception
+	{
+		MessageDigest md=MessageDigest.getInstance("SHA-1");
+		md.update(APPNAME.getBytes("UTF-8"));
+		md.update((byte)0);
+		md.update(("cache "+CACHEVERSION).getBytes("UTF-8"));
+		md.update((byte)0);
+		md.update(input.getBytes("UTF-8"));
+		return hex(md.digest());
+	}
+
+	static String hex(byte[] d)
+	{
+		StringBuffer sb=new StringBuffer();
+		for(int i=0;i<d.length;i++)
 		{
-			f.addElement("");
+			sb.append(Character.forDigit((d[i]>>4)&0x0f,16));
+			sb.append(Character.forDigit(d[i]&0x0f,16));
 		}
+		return sb.toString();
+	}
 
-		for(int i=0;i<rules.size();i++)	// for each rule
+	File cacheFile()
+	{
+		return new File(cachedir,cachekey+".jjc");
+	}
+
+	// names the entry last generated from the grammar file; by the hash of its canonical path,
+	// as grammar files of the same name in different directories share the cache directory
+	File lastFile() throws Exception
+	{
+		MessageDigest md=MessageDigest.getInstance("SHA-1");
+		md.update(file(filename).getCanonicalPath().getBytes("UTF-8"));
+		return new File(cachedir,hex(md.digest())+".jjlast");
+	}
+
+	File lastCacheFile()
+	{
+		try
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			if(((String)v.elementAt(0)).equals(sym))	// if symbol is an lhs of this rule
+			BufferedReader in=new BufferedReader(new FileReader(lastFile()));
+			String key=in.readLine();
+			in.close();
+			if(key!=null)
+				return new File(cachedir,key.trim()+".jjc");
+		}
+		catch(Exception e)
+		{
+		}
+		return null;
+	}
+
+	// the entry last generated from the grammar file, from memory in daemon mode, else from the cache directory
+	Hashtable lastEntry()
+	{
+		if(resident!=null)
+		{
+			String key=(String)residentLast.get(file(filename).getAbsolutePath());
+			Hashtable c=(key!=null) ? (Hashtable)resident.get(key) : null;
+			if(c!=null || cachedir==null)
+				return c;
+		}
+		return readCache(lastCacheFile());
+	}
+
+	// returns the stored entry, or null if it is missing, unreadable or of another format
+	Hashtable readCache(File f)
+	{
+		if(f==null || !f.isFile() || f.length()>Integer.MAX_VALUE)
+			return null;
+		try
+		{
+			byte[] b=Files.readAllBytes(f.toPath());
+			DataInputStream in=new DataInputStream(new ByteArrayInputStream(b));
+			if(in.readInt()!=CACHEMAGIC || in.readInt()!=CACHEVERSION)
+				return null;
+			Object c=readValue(in);
+			return (c instanceof Hashtable && in.available()==0) ? (Hashtable)c : null;
+		}
+		catch(Exception e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a value of a cache entry: a tag, then a String as its length and UTF-8 bytes, an Integer as an int,
+	 * an int[] or String[] as its length and elements, a Vector as its size and elements, and a Hashtable as its
+	 * size and keys and values.  Nothing else is stored, so a cache entry never names a class to load.
+	 */
+	static void writeValue(DataOutputStream out, Object v) throws IOException
+	{
+		if(v==null)
+			out.writeByte(TAG_NULL);
+		else if(v instanceof String)
+		{
+			byte[] b=((String)v).getBytes("UTF-8");
+			out.writeByte(TAG_STRING);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+		else if(v instanceof Integer)
+		{
+			out.writeByte(TAG_INTEGER);
+			out.writeInt(((Integer)v).intValue());
+		}
+		else if(v instanceof int[])
+		{
+			int[] a=(int[])v;
+			out.writeByte(TAG_INTS);
+			out.writeInt(a.length);
+			for(int i=0;i<a.length;i++)
+				out.writeInt(a[i]);
+		}
+		else if(v instanceof String[])
+		{
+			String[] a=(String[])v;
+			out.writeByte(TAG_STRINGS);
+			out.writeInt(a.length);
+			for(int i=0;i<a.length;i++)
+				writeValue(out,a[i]);
+		}
+		else if(v instanceof Vector)
+		{
+			Vector a=(Vector)v;
+			out.writeByte(TAG_VECTOR);
+			out.writeInt(a.size());
+			for(int i=0;i<a.size();i++)
+				writeValue(out,a.elementAt(i));
+		}
+		else if(v instanceof Hashtable)
+		{
+			Hashtable h=(Hashtable)v;
+			out.writeByte(TAG_HASHTABLE);
+			out.writeInt(h.size());
+			for(Enumeration e=h.keys();e.hasMoreElements();)
 			{
-				for(int j=1;j<v.size();j++)
-				{
-					String t=(String)v.elementAt(j);
-					if(t.equals(sym))	// if same nonterminal
-					{
-						// continue searching this rule if current symbol is an lhs of an epsilon production
-						if(epsilon.indexOf(t)!=-1)	// TOO RESTRICTIVE: What if t is not epsilon but derives an epsilon?
-							continue;
-						break;	// if same nonterminal, skip, to avoid stack overflow
-					}
-					Vector v2=first(t);
-					for(int k=0;k<v2.size();k++)
-					{
-						String t2=(String)v2.elementAt(k);
-						if(f.indexOf(t2)==-1)
-							f.addElement(t2);
-					}
-					// stop searching this rule if current symbol is not an lhs of an epsilon production
-					//if(epsilon.indexOf(t)==-1)
-					if(v2.indexOf("")==-1)	// stop searching this rule if first() of current symbol does not contain epsilon
-						break;
-				}
+				Object k=e.nextElement();
+				writeValue(out,k);
+				writeValue(out,h.get(k));
 			}
 		}
+		else
+			throw new IOException("Cannot cache a "+v.getClass().getName());
+	}
 
-		return f;
+	// reads a value written by writeValue(); the input is all in memory, so no length may exceed what is left of it
+	static Object readValue(DataInputStream in) throws IOException
+	{
+		int tag=in.readByte();
+		if(tag==TAG_NULL)
+			return null;
+		if(tag==TAG_INTEGER)
+			return Integer.valueOf(in.readInt());
+		int n=in.readInt();
+		if(n<0 || n>in.available())
+			throw new IOException("Bad length in cache entry");
+		if(tag==TAG_STRING)
+		{
+			byte[] b=new byte[n];
+			in.readFully(b);
+			return new String(b,"UTF-8");
+		}
+		if(tag==TAG_INTS)
+		{
+			int[] a=new int[n];
+			for(int i=0;i<n;i++)
+				a[i]=in.readInt();
+			return a;
+		}
+		if(tag==TAG_STRINGS)
+		{
+			String[] a=new String[n];
+			for(int i=0;i<n;i++)
+			{
+				Object o=readValue(in);
+				if(o!=null && !(o instanceof String))
+					throw new IOException("Bad string in cache entry");
+				a[i]=(String)o;
+			}
+			return a;
+		}
+		if(tag==TAG_VECTOR)
+		{
+			Vector a=new Vector(n);
+			for(int i=0;i<n;i++)
+				a.addElement(readValue(in));
+			return a;
+		}
+		if(tag==TAG_HASHTABLE)
+		{
+			Hashtable h=new Hashtable();
+			for(int i=0;i<n;i++)
+			{
+				Object k=readValue(in);
+				Object v=readValue(in);
+				if(k==null || v==null)
+					throw new IOException("Bad entry in cache entry");
+				h.put(k,v);
+			}
+			return h;
+		}
+		throw new IOException("Bad tag in cache entry");
 	}
 
-	// item with dot at right end
-	int ruleIndex(Vector item) throws Exception
+	// restore the grammar and tables from the cache; returns false on a miss or an unreadable entry
+	boolean loadCache()
+	{
+		Hashtable c=(resident!=null) ? (Hashtable)resident.get(cachekey) : null;
+		if(c==null && cachedir!=null)
+		{
+			c=readCache(cacheFile());
+			if(c!=null && resident!=null)
+				resident.put(cachekey,c);
+		}
+		if(c==null)
+			return false;
+		lit=(String)c.get("lit");
+		support=(String)c.get("support");
+		union=(String)c.get("union");
+		startsym=(String)c.get("startsym");
+		conflictlog=(String)c.get("conflictlog");
+		if(conflictlog==null)
+			conflictlog="";
+		terms=(Vector)c.get("terms");
+		nonterms=(Vector)c.get("nonterms");
+		rules=(Vector)c.get("rules");
+		semactions=(Vector)c.get("semactions");
+		LR0=(Vector)c.get("LR0");
+		LR0goto=(Vector)c.get("LR0goto");
+		action=(Vector)c.get("action");
+		ruleprec=(Vector)c.get("ruleprec");
+		prec=(Hashtable)c.get("prec");
+		unionmem=(Hashtable)c.get("unionmem");
+		epsilon=(Vector)c.get("epsilon");
+		lexrules=(Vector)c.get("lexrules");
+		if(lexrules==null)
+			lexrules=new Vector();
+		if(c.get("conflicts")!=null)
+		{
+			srconflicts=((int[])c.get("conflicts"))[0];
+			rrconflicts=((int[])c.get("conflicts"))[1];
+		}
+		input="";
+		return true;
+	}
+
+	// store the grammar and tables; written to a temporary file first so readers never see a partial entry.
+	// Any change to the fields stored here, or to what they hold, must bump CACHEVERSION
+	void saveCache()
+	{
+		Hashtable c=new Hashtable();
+		c.put("lit",lit);
+		c.put("support",support);
+		c.put("union",union);
+		c.put("startsym",startsym);
+		c.put("conflictlog",conflictlog);
+		c.put("terms",terms);
+		c.put("nonterms",nonterms);
+		c.put("rules",rules);
+		c.put("semactions",semactions);
+		c.put("LR0",LR0);
+		c.put("LR0goto",LR0goto);
+		c.put("action",action);
+		c.put("ruleprec",ruleprec);
+		c.put("prec",prec);
+		c.put("unionmem",unionmem);
+		c.put("epsilon",epsilon);
+		c.put("lexrules",lexrules);
+		c.put("conflicts",new int[] { srconflicts, rrconflicts });
+		if(resident!=null)
+			resident.put(cachekey,c);	// shared by later builds, which only read it
+		if(cachedir==null)
+		{
+			saveLast();
+			return;
+		}
+		File tmp=null;
+		try
+		{
+			File dir=new File(cachedir);
+			dir.mkdirs();
+			tmp=File.createTempFile(cachekey,".tmp",dir);
+			DataOutputStream data=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try
+			{
+				data.writeInt(CACHEMAGIC);
+				data.writeInt(CACHEVERSION);
+				writeValue(data,c);
+			}
+			finally
+			{
+				data.close();
+			}
+			moveOver(tmp,cacheFile());
+		}
+		catch(Exception e)
+		{
+			if(tmp!=null)
+				tmp.delete();
+			out.print("Error writing file:"+cacheFile().getPath()+";"+e.toString()+"\r\n");
+			return;	// no .jjlast naming an entry which is not there
+		}
+		saveLast();
+	}
+
+	// remember the entry as the previous version of the grammar file
+	void saveLast()
+	{
+		if(resident!=null)
+		{
+			synchronized(resident)
+			{
+				String old=(String)residentLast.put(file(filename).getAbsolutePath(),cachekey);
+				if(old!=null && !old.equals(cachekey) && !residentLast.contains(old))
+					resident.remove(old);	// keep one automaton per grammar file
+			}
+		}
+		if(cachedir==null)
+			return;
+		File f=null;
+		try
+		{
+			f=lastFile();
+			writeFile(f,cachekey+"\n");
+		}
+		catch(Exception e)
+		{
+			out.print("Error writing file:"+(f!=null ? f.getPath() : cachedir)+";"+e.toString()+"\r\n");
+		}
+	}
+
+	// the trace as text, as trace.txt has always held it
+	void traceText(Writer w) throws Exception
 	{
+		//
+		// trace/check/test
+		//
+		w.write(conflictlog);
+		w.write("***productions, semantic actions and precedences\r\n");
 		int i,j;
 		for(i=0;i<rules.size();i++)
 		{
 			Vector v=(Vector)rules.elementAt(i);
-			// match elements before dot with rule
-			if(v.size()+1!=item.size())
-				continue;
 			for(j=0;j<v.size();j++)
 			{
-				if(((String)v.elementAt(j)).equals((String)item.elementAt(j)))
-    			{
+				w.write((String)v.elementAt(j)+" ");
+			}
+			w.write("\r\n");
+			w.write("\t"+(String)semactions.elementAt(i)+"\r\n");
+			w.write("\t"+(String)ruleprec.elementAt(i)+"\r\n");
+		}
+		w.write("***terminals\r\n");
+		for(i=0;i<terms.size();i++)
+		{
+			w.write((String)terms.elementAt(i)+"\r\n");
+		}
+		w.write("***nonterminals\r\n");
+		for(i=0;i<nonterms.size();i++)
+		{
+			w.write((String)nonterms.elementAt(i)+"\r\n");
+		}
+		w.write("\r\n***nonterminals which are lhs of epsilon productions\r\n");
+		for(i=0;i<epsilon.size();i++)
+		{
+			w.write((String)epsilon.elementAt(i)+"\r\n");
+		}
+		w.write("\r\n***states; sets of items\r\n");
+		for(i=0;i<LR0.size();i++)
+		{
+			Vector v=(Vector)LR0.elementAt(i);
+			w.write("	state "+i+"\r\n");
+			for(j=0;j<v.size();j++)
+			{
+				w.write("		");
+				Vector v2=(Vector)v.elementAt(j);
+				for(int k=0;k<v2.size();k++)
+				{
+					w.write((String)v2.elementAt(k)+" ");
 				}
-				else
+				w.write("\r\n");
+			}
+		}
+		w.write("\r\n***DFA transitions\r\n");
+		for(i=0;i<LR0goto.size();i++)
+		{
+			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
+			w.write("	state "+i+"\r\n");
+			for(j=0;j<terms.size();j++)
+			{
+				Integer state=(Integer)ht.get(terms.elementAt(j));
+				if(state!=null)
 				{
-					break;
+					w.write("		"+(String)terms.elementAt(j)+" --> "+state+"\r\n");
 				}
 			}
-			if(j==v.size())
+			for(j=0;j<nonterms.size();j++)
 			{
-				break;
+				Integer state=(Integer)ht.get(nonterms.elementAt(j));
+				if(state!=null)
+				{
+					w.write("		"+(String)nonterms.elementAt(j)+" --> "+state+"\r\n");
+				}
 			}
 		}
-		return (i==rules.size() ? -1 : i);
+		w.write("\r\n***action table\r\n");
+		for(i=0;i<action.size();i++)
+		{
+			Hashtable ht=(Hashtable)action.elementAt(i);
+			w.write("	state "+i+"\r\n");
+			for(j=0;j<terms.size();j++)
+			{
+				String act=(String)ht.get(terms.elementAt(j));
+				if(act!=null)
+				{
+					w.write("		"+(String)terms.elementAt(j)+" --> "+act+"\r\n");
+				}
+			}
+		}
+		if(unitcounts!=null)
+		{
+			w.write("\r\n***unit rules bypassed\r\n");
+			w.write("\t"+unitcounts[0]+" rules, in "+unitcounts[1]+" shift and goto entries, saving up to "+unitcounts[2]+" reductions each time one is taken\r\n");
+		}
+		if(defred)
+		{
+			w.write("\r\n***default reductions, without a lookahead\r\n");
+			for(i=actionRows();i<tables.numStates();i++)
+				w.write("\tstate "+tables.stateId(i)+" --> r"+tables.defaultReduction(i)+"\r\n");
+		}
+		if(profile!=null || renumber)
+		{
+			w.write("\r\n***tables laid out "+(profile!=null ? "after "+profile : "for locality")+"\r\n");
+			w.write("\tstates, in the order of the tables\r\n\t");
+			for(i=0;i<tables.numStates();i++)
+				w.write(tables.stateId(i)+" ");
+			w.write("\r\n\tterminals, in the order of the tables\r\n\t");
+			for(i=0;i<tables.numTerms();i++)
+				w.write(tables.term(i)+" ");
+			w.write("\r\n");
+			if(ruleorder!=null)
+			{
+				w.write("\trules, in the order of the cases of the semantic actions\r\n\t");
+				for(i=0;i<ruleorder.length;i++)
+					w.write(ruleorder[i]+" ");
+				w.write("\r\n\trules reduced in branches of their own\r\n\t");
+				for(i=0;i<hotrules.length;i++)
+					w.write(hotrules[i]+" ");
+				w.write("\r\n");
+			}
+		}
+/*
+		// test
+		Vector f;
+		String t;
+		t=START;
+		f=follow(t);
+		w.write("\r\n**follow "+t+": ");
+		for(i=0;i<f.size();i++)
+		{
+			w.write((String)f.elementAt(i)+" ");
+		}
+*/
 	}
 
-	// construct the SLR(1) parsing table
-	void constructSLR() throws Exception
+	/**
+	 * Streams a trace of the automaton to a file of its own, for -trace: as text, as trace.txt has always held it;
+	 * as JSON lines, an object for each rule, terminal, nonterminal, state and conflict; or as a Graphviz digraph of
+	 * the states and their transitions.  The states are numbered as in the construction.
+	 * Only the line being written is held in memory; the file replaces the previous one once it is complete.
+	 */
+	void writeTrace() throws Exception
 	{
-		// construct collection of sets of items: done
-		// construct action table
-		trace+="***conflicts\r\n";
-		for(int i=0;i<LR0.size();i++)	// for each set of items
+		File f=(tracefile!=null ? new File(tracefile) : file(traceName())).getAbsoluteFile();
+		File tmp=new File(f.getParentFile(),f.getName()+"."+Long.toHexString(System.nanoTime())+".tmp");
+		Writer w=new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp),"UTF-8"));
+		try
 		{
-			action.addElement(new Hashtable());
-			Vector v=(Vector)LR0.elementAt(i);
-			Hashtable g=(Hashtable)LR0goto.elementAt(i);
-			Hashtable a=(Hashtable)action.elementAt(i);
-			for(int j=0;j<v.size();j++)	// for each item
-			{
-				Vector v2=(Vector)v.elementAt(j);
-				int pos;
-				if((pos=v2.indexOf(POINTER))==-1)
-					throw new Exception("Error; Invalid item\r\n");
-				if(pos+1<v2.size())
-				{
-					// shift?
-					String t=(String)v2.elementAt(pos+1);
-					if(terms.indexOf(t)!=-1)	// if a terminal
-					{
-						if(g.containsKey(t))	// if a transition exists
-						{
-							if(a.containsKey(t))	// a possible conflict?
-							{
-								String t2=(String)a.get(t);
-								if(t2.startsWith("r"))
-								{
-									int irule=Integer.parseInt(t2.substring(1));
-									String pr=(String)ruleprec.elementAt(irule);	// get precedence of this rule
-									String pt=(String)prec.get(t);	// get precedence of this terminal
-									if(pt!=null && pr.length()>0)
-									{
-										// precedence explicitly specified for both rule and terminal
-										int npr=Integer.parseInt(pr.substring(1));
-										int npt=Integer.parseInt(pt.substring(1));
-										if(npt>npr)
-										{
-											// shift if terminal has greater precedence than rule
-											a.put(t,"s"+g.get(t));
-										}
-										else if(npt==npr)
-										{
-											// pt.charAt(0)==pt.charAt(0) should be true
-											if(pt.charAt(0)=='r')
-											{
-												// shift if right associative
-												a.put(t,"s"+g.get(t));
-											}
-										}
-									}
-									else
-									{
-										// default, follow rule of thumb
-										trace+="shift-reduce conflict, state "+i+", token "+t+"; Choosing to shift\r\n";
-										a.put(t,"s"+g.get(t));
-									}
-								}
-								else
-								{
-									a.put(t,"s"+g.get(t));
-								}
-							}
-							else
-							{
-								a.put(t,"s"+g.get(t));
-							}
-						}
-					}
+			if(traceformat.equals("jsonl"))
+				traceJson(w);
+			else if(traceformat.equals("dot"))
+				traceDot(w);
+			else
+				traceText(w);
+			w.close();
+			moveOver(tmp,f);
+		}
+		catch(Exception e)
+		{
+			w.close();
+			tmp.delete();
+			throw e;
+		}
+	}
+
+	// the name of the trace file for the format
+	String traceName()
+	{
+		if("jsonl".equals(traceformat))
+			return "trace.jsonl";
+		if("dot".equals(traceformat))
+			return "trace.dot";
+		return "trace.txt";
+	}
+
+	// the trace as JSON lines
+	void traceJson(Writer w) throws Exception
+	{
+		int i,j;
+		for(i=0;i<rules.size();i++)
+		{
+			Vector v=(Vector)rules.elementAt(i);
+			w.write("{\"type\": \"rule\", \"rule\": "+i+", \"lhs\": "+jsonString((String)v.elementAt(0))
+				+", \"rhs\": "+jsonArray(v,1,v.size())+", \"action\": "+jsonString((String)semactions.elementAt(i))
+				+", \"prec\": "+jsonString((String)ruleprec.elementAt(i))+"}\n");
+		}
+		for(i=0;i<terms.size();i++)
+			w.write("{\"type\": \"terminal\", \"terminal\": "+i+", \"name\": "+jsonString((String)terms.elementAt(i))+"}\n");
+		for(i=0;i<nonterms.size();i++)
+		{
+			String n=(String)nonterms.elementAt(i);
+			w.write("{\"type\": \"nonterminal\", \"nonterminal\": "+i+", \"name\": "+jsonString(n)+", \"epsilon\": "+epsilon.contains(n)+"}\n");
+		}
+		for(i=0;i<LR0.size();i++)
+		{
+			StringBuffer sb=new StringBuffer();
+			sb.append("{\"type\": \"state\", \"state\": "+i+", \"items\": [");
+			Vector v=(Vector)LR0.elementAt(i);
+			for(j=0;j<v.size();j++)
+			{
+				Vector item=(Vector)v.elementAt(j);	// the lhs and the rhs with "." at the dot
+				int dot=item.indexOf(".");
+				Vector rhs=(Vector)item.clone();
+				rhs.removeElementAt(dot);
+				sb.append((j>0 ? ", " : "")+"{\"lhs\": "+jsonString((String)item.elementAt(0))+", \"rhs\": "+jsonArray(rhs,1,rhs.size())+", \"dot\": "+(dot-1)+"}");
+			}
+			sb.append("], \"transitions\": {");
+			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
+			boolean first=true;
+			for(j=0;j<terms.size()+nonterms.size();j++)
+			{
+				String sym=(String)(j<terms.size() ? terms.elementAt(j) : nonterms.elementAt(j-terms.size()));
+				Integer state=(Integer)ht.get(sym);
+				if(state!=null)
+				{
+					sb.append((first ? "" : ", ")+jsonString(sym)+": "+state);
+					first=false;
 				}
-				else
+			}
+			sb.append("}, \"actions\": {");
+			ht=(Hashtable)action.elementAt(i);
+			first=true;
+			for(j=0;j<terms.size();j++)
+			{
+				String act=(String)ht.get(terms.elementAt(j));
+				if(act!=null)
 				{
-					int irule=ruleIndex(v2);	// get rule to which this item corresponds
-					if(irule==0)	// i.e. if S' -> S . (should be the first rule) set action[i,EOI] to accept
+					sb.append((first ? "" : ", ")+jsonString((String)terms.elementAt(j))+": "+jsonString(act));
+					first=false;
+				}
+			}
+			sb.append("}}\n");
+			w.write(sb.toString());
+		}
+		StringTokenizer st=new StringTokenizer(conflictlog,"\r\n");
+		while(st.hasMoreTokens())
+		{
+			String line=st.nextToken();
+			if(!line.startsWith("***"))
+				w.write("{\"type\": \"conflict\", \"message\": "+jsonString(line)+"}\n");
+		}
+		if(unitcounts!=null)
+			w.write("{\"type\": \"unitBypass\", \"rules\": "+unitcounts[0]+", \"entries\": "+unitcounts[1]+", \"longestChain\": "+unitcounts[2]+"}\n");
+		if(defred)
+		{
+			for(i=actionRows();i<tables.numStates();i++)
+				w.write("{\"type\": \"defaultReduction\", \"state\": "+tables.stateId(i)+", \"rule\": "+tables.defaultReduction(i)+"}\n");
+		}
+		if(profile!=null || renumber)
+		{
+			StringBuffer sb=new StringBuffer();
+			sb.append("{\"type\": \"layout\", \"states\": [");
+			for(i=0;i<tables.numStates();i++)
+				sb.append((i>0 ? ", " : "")+tables.stateId(i));
+			sb.append("], \"terminals\": [");
+			for(i=0;i<tables.numTerms();i++)
+				sb.append((i>0 ? ", " : "")+jsonString(tables.term(i)));
+			sb.append("]");
+			if(ruleorder!=null)
+			{
+				sb.append(", \"rules\": [");
+				for(i=0;i<ruleorder.length;i++)
+					sb.append((i>0 ? ", " : "")+ruleorder[i]);
+				sb.append("], \"hotRules\": [");
+				for(i=0;i<hotrules.length;i++)
+					sb.append((i>0 ? ", " : "")+hotrules[i]);
+				sb.append("]");
+			}
+			sb.append("}\n");
+			w.write(sb.toString());
+		}
+	}
+
+	// the strings from..to-1 of v as a JSON array
+	static String jsonArray(Vector v, int from, int to)
+	{
+		StringBuffer sb=new StringBuffer("[");
+		for(int i=from;i<to;i++)
+			sb.append((i>from ? ", " : "")+jsonString((String)v.elementAt(i)));
+		return sb.append(']').toString();
+	}
+
+	// the trace as a Graphviz digraph: a box per state listing its items and reductions,
+	// an edge per transition, dashed for the gotos on nonterminals
+	void traceDot(Writer w) throws Exception
+	{
+		int i,j;
+		w.write("digraph jacc\n{\n");
+		w.write("\tnode [shape=box, fontname=\"monospace\"];\n");
+		for(i=0;i<LR0.size();i++)
+		{
+			StringBuffer sb=new StringBuffer();
+			sb.append("state "+i+"\\l");
+			Vector v=(Vector)LR0.elementAt(i);
+			for(j=0;j<v.size();j++)
+			{
+				Vector item=(Vector)v.elementAt(j);
+				for(int k=0;k<item.size();k++)
+					sb.append((k>0 ? " " : "")+dotString((String)item.elementAt(k)));
+				sb.append("\\l");
+			}
+			Hashtable ht=(Hashtable)action.elementAt(i);
+			for(j=0;j<terms.size();j++)
+			{
+				String act=(String)ht.get(terms.elementAt(j));
+				if(act!=null && !act.startsWith("s"))
+					sb.append(dotString((String)terms.elementAt(j))+" --> "+dotString(act)+"\\l");
+			}
+			w.write("\ts"+i+" [label=\""+sb+"\"];\n");
+		}
+		for(i=0;i<LR0goto.size();i++)
+		{
+			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
+			for(j=0;j<terms.size()+nonterms.size();j++)
+			{
+				String sym=(String)(j<terms.size() ? terms.elementAt(j) : nonterms.elementAt(j-terms.size()));
+				Integer state=(Integer)ht.get(sym);
+				if(state!=null)
+					w.write("\ts"+i+" -> s"+state+" [label=\""+dotString(sym)+"\""+(j<terms.size() ? "" : ", style=dashed")+"];\n");
+			}
+		}
+		w.write("}\n");
+	}
+
+	// s quoted for a DOT string
+	static String dotString(String s)
+	{
+		StringBuffer sb=new StringBuffer();
+		for(int i=0;i<s.length();i++)
+		{
+			char c=s.charAt(i);
+			if(c=='"' || c=='\\')
+				sb.append('\\');
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	Vector closure(Vector set1) throws Exception
+	{	
+		int i,j;
+		Vector set=(Vector)set1.clone();
+		Vector dirty=new Vector();	// vector of non-kernel items processed
+		for(i=0;i<set.size();i++)
+		{
+			// fetch a single item
+			Vector arule=(Vector)set.elementAt(i);
+			// look for the 'dot'
+			if((j=arule.indexOf(POINTER))==-1)
+				throw new Exception("Error; Missing dot in closure\r\n");	// no dot
+			if(j+1>=arule.size())
+				continue;	// reducible
+			String sym=(String)arule.elementAt(j+1);	// symbol after the dot
+			if(dirty.indexOf(sym)==-1)
+			{
+				dirty.addElement(sym);
+			}
+			else
+			{
+				continue;
+			}
+			for(j=0;j<rules.size();j++)
+			{
+				Vector v=(Vector)rules.elementAt(j);
+				if(((String)v.elementAt(0)).equals(sym))
+				{
+					v=(Vector)v.clone();
+					v.insertElementAt(POINTER,1);
+					set.addElement(v);
+				}
+			}
+		}
+		//return set.size()>0 ? set : null;
+		return set;
+	}
+
+	Vector gotoOp(Vector set1, String sym) throws Exception
+	{
+		Vector set=new Vector();
+		for(int i=0;i<set1.size();i++)
+		{
+			// for each item, find presence of symbol after dot
+			Vector v=(Vector)set1.elementAt(i);
+			// find dot
+			int pos;
+			if((pos=v.indexOf(POINTER))==-1)
+				throw new Exception("Error; Missing dot in gotoOp\r\n");
+			if(pos+1>=v.size())
+				continue;	// reducible
+			// find symbol
+			if(((String)v.elementAt(pos+1)).equals(sym))
+			{
+				v=(Vector)v.clone();
+				v.removeElementAt(pos);	// move pointer one symbol to the right
+				v.insertElementAt(POINTER,pos+1);
+				set.addElement(v);
+			}
+		}
+
+		return (set.size()>0 ? closure(set) : null);
+	}
+
+	// return the state if the set of items is already in the collection, -1 otherwise
+	int noExist(Vector lr0, Vector set) throws Exception
+	{
+		int i,j,k,l;
+		for(i=0;i<lr0.size();i++)
+		{
+			// for each set of items
+			Vector v=(Vector)lr0.elementAt(i);
+			if(v.size()!=set.size())
+				continue;
+			for(j=0;j<v.size();j++)
+			{
+				// for each item
+				Vector v2=(Vector)v.elementAt(j);
+				for(k=0;k<set.size();k++)
+				{
+					// for each item of set
+					Vector vset=(Vector)set.elementAt(k);
+					if(vset.size()!=v2.size())
 					{
-						a.put(EOI,"a");
 						continue;
 					}
-					if(irule<0)
-						throw new Exception("Error; Rule index not found\r\n");
-					String pr=(String)ruleprec.elementAt(irule);	// get precedence of this rule
-					// reduce?
-					Vector f=follow((String)v2.elementAt(0));
-					for(int k=0;k<f.size();k++)
+					for(l=0;l<vset.size();l++)
 					{
-						String t=(String)f.elementAt(k);
-						if(a.containsKey(t))	// a possible conflict?
+						if(v2.elementAt(l).equals(vset.elementAt(l)))
 						{
-							String pt=(String)prec.get(t);	// get precedence of this terminal
-							String t2=(String)a.get(t);
-							// default
-							if(t2.startsWith("s"))
-							{
-								if(pt!=null && pr.length()>0)
-								{
-									int npr=Integer.parseInt(pr.substring(1));
-									int npt=Integer.parseInt(pt.substring(1));
-									if(npr>npt)
-									{
-										// reduce if rule has greater precedence than terminal
-										a.put(t,"r"+irule);
-									}
-									else if(npt==npr)
-									{
-										// pt.charAt(0)==pt.charAt(0) should be true
-										if(pt.charAt(0)=='l')
-										{
-											// reduce if left associative
-											a.put(t,"r"+irule);
-										}
-									}
-								}
-								else
-								{
-									trace+="shift-reduce conflict, state "+i+", token "+t+"; Choosing not to reduce\r\n";
-								}
-							}
-							else if(t2.startsWith("r"))
-							{
-								int irule2=Integer.parseInt(t2.substring(1));
-								String pr2=(String)ruleprec.elementAt(irule2);
-								if(pr.length()>0 && pr2.length()>0)
-								{
-									int npr=Integer.parseInt(pr.substring(1));
-									int npr2=Integer.parseInt(pr2.substring(1));
-									if(npr>npr2)
-									{
-										// reduce if rule has greater precedence than terminal
-										a.put(t,"r"+irule);
-									}
-									else if(npr==npr2)
-									{
-										// apply default, associativity types don't seem to matter
-										if(irule2>irule)
-										{
-											a.put(t,"r"+irule);
-										}
-									}
-								}
-								else
-								{
-									trace+="reduce-reduce conflict, state "+i+", token "+t+"; Choosing to reduce with the topmost rule\r\n";
-									if(irule2>irule)
-									{
-										a.put(t,"r"+irule);
-									}
-								}
-							}
-							else
-							{
-								a.put(t,"r"+irule);
-							}
 						}
 						else
 						{
-							a.put(t,"r"+irule);
+							break;
+						}
+					}
+					if(l==vset.size())
+					{
+						break;	// item matches
+					}
+				}
+				if(k==set.size())
+				{
+					break;	// an item does not match
+				}
+			}
+			if(j==v.size())
+			{
+				break;	// a set of items matches
+			}
+		}
+		return (i==lr0.size() ? -1 : i);	// if i went pass the limit, set not found in lr0
+	}
+
+	// construct the collection of sets of items and the goto operation(hashtable)
+	void constructCSOI() throws Exception
+	{
+		int i;
+		int istate=0;
+		int state;
+		// set closure of augmented start rule with dot at left as item 1
+		Vector v=new Vector();
+		Vector v2=(Vector)((Vector)rules.elementAt(0)).clone();
+		v2.insertElementAt(POINTER,1);
+		v.addElement(v2);
+		LR0.addElement(closure(v));
+		LR0goto.addElement(new Hashtable());
+		Hashtable ht;
+		while(true)
+		{
+			// compute goto for each grammar symbol
+			for(i=0;i<terms.size();i++)
+			{
+				v=gotoOp((Vector)LR0.elementAt(istate),(String)terms.elementAt(i));
+				if(v!=null)
+				{
+					state=noExist(LR0,v);
+					if(state==-1)
+					{
+						LR0.addElement(v);
+						LR0goto.addElement(new Hashtable());
+						((Hashtable)LR0goto.elementAt(istate)).put((String)terms.elementAt(i),new Integer(LR0.size()-1));
+					}
+					else
+					{
+						((Hashtable)LR0goto.elementAt(istate)).put((String)terms.elementAt(i),new Integer(state));
+					}
+				}
+			}
+			for(i=0;i<nonterms.size();i++)
+			{
+				v=gotoOp((Vector)LR0.elementAt(istate),(String)nonterms.elementAt(i));
+				if(v!=null)
+				{
+					state=noExist(LR0,v);
+					if(state==-1)
+					{
+						LR0.addElement(v);
+						LR0goto.addElement(new Hashtable());
+						((Hashtable)LR0goto.elementAt(istate)).put((String)nonterms.elementAt(i),new Integer(LR0.size()-1));
+					}
+					else
+					{
+						((Hashtable)LR0goto.elementAt(istate)).put((String)nonterms.elementAt(i),new Integer(state));
+					}
+				}
+			}
+			istate++;
+			if(istate>=LR0.size())
+				break;
+		}
+	}
+
+	// key identifying a set of items; with sorted set the key ignores the order of the items
+	String stateKey(Vector set, boolean sorted)
+	{
+		String[] items=new String[set.size()];
+		for(int i=0;i<items.length;i++)
+		{
+			Vector v=(Vector)set.elementAt(i);
+			StringBuffer sb=new StringBuffer();
+			for(int j=0;j<v.size();j++)
+			{
+				sb.append((String)v.elementAt(j));
+				sb.append('\0');
+			}
+			items[i]=sb.toString();
+		}
+		if(sorted)
+			Arrays.sort(items);
+		StringBuffer sb=new StringBuffer();
+		for(int i=0;i<items.length;i++)
+		{
+			sb.append(items[i]);
+			sb.append('\1');
+		}
+		return sb.toString();
+	}
+
+	// map of each lhs to its productions, in order
+	Hashtable productions(Vector rl)
+	{
+		Hashtable ht=new Hashtable();
+		for(int i=0;i<rl.size();i++)
+		{
+			Vector v=(Vector)rl.elementAt(i);
+			String lhs=(String)v.elementAt(0);
+			StringBuffer sb=new StringBuffer();
+			String t=(String)ht.get(lhs);
+			if(t!=null)
+				sb.append(t);
+			for(int j=1;j<v.size();j++)
+			{
+				sb.append((String)v.elementAt(j));
+				sb.append('\0');
+			}
+			sb.append('\1');
+			ht.put(lhs,sb.toString());
+		}
+		return ht;
+	}
+
+	// the kernels of gotoOp() for every symbol, from a single pass over the items
+	Hashtable kernels(Vector set1) throws Exception
+	{
+		Hashtable ht=new Hashtable();
+		for(int i=0;i<set1.size();i++)
+		{
+			Vector v=(Vector)set1.elementAt(i);
+			int pos;
+			if((pos=v.indexOf(POINTER))==-1)
+				throw new Exception("Error; Missing dot in gotoOp\r\n");
+			if(pos+1>=v.size())
+				continue;	// reducible
+			String sym=(String)v.elementAt(pos+1);
+			Vector set=(Vector)ht.get(sym);
+			if(set==null)
+			{
+				set=new Vector();
+				ht.put(sym,set);
+			}
+			v=(Vector)v.clone();
+			v.removeElementAt(pos);	// move pointer one symbol to the right
+			v.insertElementAt(POINTER,pos+1);
+			set.addElement(v);
+		}
+		return ht;
+	}
+
+	// same as constructCSOI(), but reuses the states of a previous automaton of this grammar.
+	// A previous state is clean if none of the symbols in its items has productions which were edited;
+	// the closure of the kernel of a clean state cannot have changed, so closure() is only
+	// recomputed for kernels that are new or that involve an edited nonterminal.  States are
+	// discovered in the same order as constructCSOI(), so the numbering is that of a clean build.
+	void constructCSOI(Hashtable prev) throws Exception
+	{
+		int i,j;
+		Vector prules=(Vector)prev.get("rules");
+		Vector pLR0=(Vector)prev.get("LR0");
+		if(prules==null || pLR0==null)
+		{
+			constructCSOI();
+			return;
+		}
+
+		// nonterminals whose productions were added, removed or edited
+		Hashtable oldp=productions(prules);
+		Hashtable newp=productions(rules);
+		Hashtable changed=new Hashtable();
+		for(Enumeration e=oldp.keys();e.hasMoreElements();)
+		{
+			String t=(String)e.nextElement();
+			if(!oldp.get(t).equals(newp.get(t)))
+				changed.put(t,t);
+		}
+		for(Enumeration e=newp.keys();e.hasMoreElements();)
+		{
+			String t=(String)e.nextElement();
+			if(!newp.get(t).equals(oldp.get(t)))
+				changed.put(t,t);
+		}
+
+		// index the kernels, in order, of the clean previous states
+		Hashtable pkernels=new Hashtable();
+		for(i=1;i<pLR0.size();i++)
+		{
+			Vector v=(Vector)pLR0.elementAt(i);
+			boolean clean=true;
+			Vector kernel=new Vector();
+			for(j=0;j<v.size() && clean;j++)
+			{
+				Vector v2=(Vector)v.elementAt(j);
+				for(int k=0;k<v2.size();k++)
+				{
+					if(changed.containsKey(v2.elementAt(k)))
+					{
+						clean=false;
+						break;
+					}
+				}
+				if(v2.indexOf(POINTER)>1)	// closure items have the dot right after the lhs
+					kernel.addElement(v2);
+			}
+			if(clean)
+				pkernels.put(stateKey(kernel,false),v);
+		}
+
+		// a set of items is determined by its kernel, so states are looked up by their kernel
+		// and closure() is only run for a state which was not seen before
+		Hashtable index=new Hashtable();	// kernel items, in any order, to state
+		Vector v=new Vector();
+		Vector v2=(Vector)((Vector)rules.elementAt(0)).clone();
+		v2.insertElementAt(POINTER,1);
+		v.addElement(v2);
+		LR0.addElement(closure(v));
+		LR0goto.addElement(new Hashtable());
+		int nsyms=terms.size()+nonterms.size();
+		for(int istate=0;istate<LR0.size();istate++)
+		{
+			Hashtable kernels=kernels((Vector)LR0.elementAt(istate));
+			Hashtable ht=(Hashtable)LR0goto.elementAt(istate);
+			for(i=0;i<nsyms;i++)
+			{
+				String sym=(String)(i<terms.size() ? terms.elementAt(i) : nonterms.elementAt(i-terms.size()));
+				Vector kernel=(Vector)kernels.get(sym);
+				if(kernel==null)
+					continue;
+				String key=stateKey(kernel,true);
+				Integer state=(Integer)index.get(key);
+				if(state==null)
+				{
+					v=(Vector)pkernels.get(stateKey(kernel,false));
+					if(v==null)
+						v=closure(kernel);
+					state=Integer.valueOf(LR0.size());
+					LR0.addElement(v);
+					LR0goto.addElement(new Hashtable());
+					index.put(key,state);
+				}
+				ht.put(sym,state);
+			}
+		}
+	}
+
+	// returns a vector of terminals that can follow the symbol in a derivation
+	Vector follow(String sym) throws Exception
+	{
+		Vector f=(Vector)followsets.get(sym);
+		if(f!=null)
+			return f;
+		f=new Vector();
+		if(sym.equals(startsym))
+			f.addElement(EOI);	// end-of-input marker is in follow(S)
+		int pos,pos2;
+		for(int i=0;i<rules.size();i++)
+		{
+			Vector v=(Vector)rules.elementAt(i);
+			// search for sym in rhs
+			pos=1;
+			while((pos=v.indexOf(sym,pos))!=-1)
+			{
+				if(pos+1<v.size())
+				{
+					pos2=pos+1;
+					while(pos2<v.size())
+					{
+						String t=(String)v.elementAt(pos2);
+						Vector v2=first(t);
+						for(int j=0;j<v2.size();j++)
+						{
+							String t2=(String)v2.elementAt(j);
+							if(f.indexOf(t2)==-1)
+								f.addElement(t2);
+						}
+						//if(epsilon.indexOf(t)==-1)	// if symbol is not an lhs of an epsilon production, stop fetching first() of subsequent symbols
+						if(v2.indexOf("")==-1)	// if first(t) does not contain epsilon, stop fetching first() of subsequent symbols
+							break;
+						pos2++;
+					}
+					if(pos2==v.size())
+					{
+						String t=(String)v.elementAt(0);
+						if(t.equals(sym)==false)	// if lhs is a different nonterminal from sym, get its follow()
+						{
+							Vector v3=follow(t);
+							for(int j=0;j<v3.size();j++)
+							{
+								String t2=(String)v3.elementAt(j);
+								if(f.indexOf(t2)==-1)
+									f.addElement(t2);
+							}
 						}
 					}
+				}	// everything that follows the lhs of a rule with sym as the last element is part of follow(sym)
+				else if(((String)v.lastElement()).equals(sym))
+				{
+					String t=(String)v.elementAt(0);
+					if(t.equals(sym))	// if same nonterminal, skip, to avoid stack overflow
+						break;
+					Vector v3=follow(t);
+					for(int j=0;j<v3.size();j++)
+					{
+						String t2=(String)v3.elementAt(j);
+						if(f.indexOf(t2)==-1)
+							f.addElement(t2);
+					}
+					break;
 				}
+				pos++;
 			}
 		}
-		trace+="\r\n";
+		followsets.put(sym,f);
+		return f;
+	}
+
+	Vector first(String sym) throws Exception
+	{
+		Vector f=new Vector();
+
+		// if a terminal, return it
+		if(terms.indexOf(sym)!=-1)
+		{
+			f.addElement(sym);
+			return f;
+		}
+
+		// if lhs of an epsilon production, add epsilon ("")
+		if(epsilon.indexOf(sym)!=-1)
+		{
+			f.addElement("");
+		}
+
+		for(int i=0;i<rules.size();i++)	// for each rule
+		{
+			Vector v=(Vector)rules.elementAt(i);
+			if(((String)v.elementAt(0)).equals(sym))	// if symbol is an lhs of this rule
+			{
+				for(int j=1;j<v.size();j++)
+				{
+					String t=(String)v.elementAt(j);
+					if(t.equals(sym))	// if same nonterminal
+					{
+						// continue searching this rule if current symbol is an lhs of an epsilon production
+						if(epsilon.indexOf(t)!=-1)	// TOO RESTRICTIVE: What if t is not epsilon but derives an epsilon?
+							continue;
+						break;	// if same nonterminal, skip, to avoid stack overflow
+					}
+					Vector v2=first(t);
+					for(int k=0;k<v2.size();k++)
+					{
+						String t2=(String)v2.elementAt(k);
+						if(f.indexOf(t2)==-1)
+							f.addElement(t2);
+					}
+					// stop searching this rule if current symbol is not an lhs of an epsilon production
+					//if(epsilon.indexOf(t)==-1)
+					if(v2.indexOf("")==-1)	// stop searching this rule if first() of current symbol does not contain epsilon
+						break;
+				}
+			}
+		}
+
+		return f;
+	}
+
+	// item with dot at right end
+	int ruleIndex(Vector item) throws Exception
+	{
+		int i,j;
+		for(i=0;i<rules.size();i++)
+		{
+			Vector v=(Vector)rules.elementAt(i);
+			// match elements before dot with rule
+			if(v.size()+1!=item.size())
+				continue;
+			for(j=0;j<v.size();j++)
+			{
+				if(((String)v.elementAt(j)).equals((String)item.elementAt(j)))
+    			{
+				}
+				else
+				{
+					break;
+				}
+			}
+			if(j==v.size())
+			{
+				break;
+			}
+		}
+		return (i==rules.size() ? -1 : i);
+	}
+
+	// construct the SLR(1) parsing table
+	void constructSLR() throws Exception
+	{
+		// construct collection of sets of items: done
+		// construct action table
+		followsets=new Hashtable();
+		conflictlog+="***conflicts\r\n";
+		for(int i=0;i<LR0.size();i++)	// for each set of items
+		{
+			action.addElement(new Hashtable());
+			Vector v=(Vector)LR0.elementAt(i);
+			Hashtable g=(Hashtable)LR0goto.elementAt(i);
+			Hashtable a=(Hashtable)action.elementAt(i);
+			for(int j=0;j<v.size();j++)	// for each item
+			{
+				Vector v2=(Vector)v.elementAt(j);
+				int pos;
+				if((pos=v2.indexOf(POINTER))==-1)
+					throw new Exception("Error; Invalid item\r\n");
+				if(pos+1<v2.size())
+				{
+					// shift?
+					String t=(String)v2.elementAt(pos+1);
+					if(terms.indexOf(t)!=-1)	// if a terminal
+					{
+						if(g.containsKey(t))	// if a transition exists
+						{
+							if(a.containsKey(t))	// a possible conflict?
+							{
+								String t2=(String)a.get(t);
+								if(t2.startsWith("r"))
+								{
+									int irule=Integer.parseInt(t2.substring(1));
+									String pr=(String)ruleprec.elementAt(irule);	// get precedence of this rule
+									String pt=(String)prec.get(t);	// get precedence of this terminal
+									if(pt!=null && pr.length()>0)
+									{
+										// precedence explicitly specified for both rule and terminal
+										int npr=Integer.parseInt(pr.substring(1));
+										int npt=Integer.parseInt(pt.substring(1));
+										if(npt>npr)
+										{
+											// shift if terminal has greater precedence than rule
+											a.put(t,"s"+g.get(t));
+										}
+										else if(npt==npr)
+										{
+											// pt.charAt(0)==pt.charAt(0) should be true
+											if(pt.charAt(0)=='r')
+											{
+												// shift if right associative
+												a.put(t,"s"+g.get(t));
+											}
+										}
+									}
+									else
+									{
+										// default, follow rule of thumb
+										conflictlog+="shift-reduce conflict, state "+i+", token "+t+"; Choosing to shift\r\n";
+										srconflicts++;
+										a.put(t,"s"+g.get(t));
+									}
+								}
+								else
+								{
+									a.put(t,"s"+g.get(t));
+								}
+							}
+							else
+							{
+								a.put(t,"s"+g.get(t));
+							}
+						}
+					}
+				}
+				else
+				{
+					int irule=ruleIndex(v2);	// get rule to which this item corresponds
+					if(irule==0)	// i.e. if S' -> S . (should be the first rule) set action[i,EOI] to accept
+					{
+						a.put(EOI,"a");
+						continue;
+					}
+					if(irule<0)
+						throw new Exception("Error; Rule index not found\r\n");
+					String pr=(String)ruleprec.elementAt(irule);	// get precedence of this rule
+					// reduce?
+					Vector f=follow((String)v2.elementAt(0));
+					for(int k=0;k<f.size();k++)
+					{
+						String t=(String)f.elementAt(k);
+						if(a.containsKey(t))	// a possible conflict?
+						{
+							String pt=(String)prec.get(t);	// get precedence of this terminal
+							String t2=(String)a.get(t);
+							// default
+							if(t2.startsWith("s"))
+							{
+								if(pt!=null && pr.length()>0)
+								{
+									int npr=Integer.parseInt(pr.substring(1));
+									int npt=Integer.parseInt(pt.substring(1));
+									if(npr>npt)
+									{
+										// reduce if rule has greater precedence than terminal
+										a.put(t,"r"+irule);
+									}
+									else if(npt==npr)
+									{
+										// pt.charAt(0)==pt.charAt(0) should be true
+										if(pt.charAt(0)=='l')
+										{
+											// reduce if left associative
+											a.put(t,"r"+irule);
+										}
+									}
+								}
+								else
+								{
+									conflictlog+="shift-reduce conflict, state "+i+", token "+t+"; Choosing not to reduce\r\n";
+									srconflicts++;
+								}
+							}
+							else if(t2.startsWith("r"))
+							{
+								int irule2=Integer.parseInt(t2.substring(1));
+								String pr2=(String)ruleprec.elementAt(irule2);
+								if(pr.length()>0 && pr2.length()>0)
+								{
+									int npr=Integer.parseInt(pr.substring(1));
+									int npr2=Integer.parseInt(pr2.substring(1));
+									if(npr>npr2)
+									{
+										// reduce if rule has greater precedence than terminal
+										a.put(t,"r"+irule);
+									}
+									else if(npr==npr2)
+									{
+										// apply default, associativity types don't seem to matter
+										if(irule2>irule)
+										{
+											a.put(t,"r"+irule);
+										}
+									}
+								}
+								else
+								{
+									conflictlog+="reduce-reduce conflict, state "+i+", token "+t+"; Choosing to reduce with the topmost rule\r\n";
+									rrconflicts++;
+									if(irule2>irule)
+									{
+										a.put(t,"r"+irule);
+									}
+								}
+							}
+							else
+							{
+								a.put(t,"r"+irule);
+							}
+						}
+						else
+						{
+							a.put(t,"r"+irule);
+						}
+					}
+				}
+			}
+		}
+		conflictlog+="\r\n";
+	}
+
+	/**
+	 * A semantic action scanned into the text between its braces and its references to $$ and $i,
+	 * lits[0] refs[0] lits[1] ... lits[n]; a reference is 0 for $$, i for $i.
+	 * Each backend renders its code from it.
+	 */
+	static final class SemAction
+	{
+		final String[] lits;
+		final int[] refs;
+
+		SemAction(Vector lits, Vector refs)
+		{
+			this.lits=new String[lits.size()];
+			lits.copyInto(this.lits);
+			this.refs=new int[refs.size()];
+			for(int i=0;i<this.refs.length;i++)
+				this.refs[i]=((Integer)refs.elementAt(i)).intValue();
+		}
+	}
+
+	// the scanned action of a rule, scanned on first use
+	SemAction semAction(int ruleno) throws Exception
+	{
+		if(semirs==null || semirs.length!=semactions.size())
+			semirs=new SemAction[semactions.size()];
+		if(semirs[ruleno]==null)
+			semirs[ruleno]=scanSemaction((String)semactions.elementAt(ruleno),ruleno);
+		return semirs[ruleno];
+	}
+
+	// skip strings, character literals and comments; split at the $$'s and $n's in { ... }
+	SemAction scanSemaction(String s, int ruleno)	throws Exception
+	{
+		Vector v=(Vector)rules.elementAt(ruleno);
+		int rhslen=v.size()-1;
+		Vector lits=new Vector();
+		Vector refs=new Vector();
+
+		int pos=1,pos2=1,len=s.length();	// skip '{'
+		char c;
+		while(pos<len-1)
+		{
+			c=s.charAt(pos);
+			if(Character.isWhitespace(c))	// skip whitespace
+			{
+				pos++;
+				continue;
+			}
+			if(c=='\"')	// skip string literal
+			{
+				pos++;
+				while(s.charAt(pos)!='\"')
+				{
+					if(pos>=len-1)
+						throw new Exception("Syntax error in semantic action section\r\n");
+					if(s.charAt(pos)=='\\')	// escape sequence
+					{
+						pos++;
+						if(pos>=len-1)
+							throw new Exception("Syntax error in semantic action section\r\n");
+					}
+					pos++;
+				}
+				pos++;
+				continue;
+			}
+			if(c=='\'')	// skip character literal
+			{
+				pos++;
+				while(s.charAt(pos)!='\'')
+				{
+					if(pos>=len-1)
+						throw new Exception("Syntax error in semantic action section\r\n");
+					if(s.charAt(pos)=='\\')	// escape sequence
+					{
+						pos++;
+						if(pos>=len-1)
+							throw new Exception("Syntax error in semantic action section\r\n");
+					}
+					pos++;
+				}
+				pos++;
+				continue;
+			}
+			if(c=='/')
+			{
+				pos++;
+				if(pos>=len-1)
+					throw new Exception("Syntax error in semantic action section\r\n");
+				if(s.charAt(pos)=='*')
+				{
+					pos++;
+					// comment begins
+					if((pos=s.indexOf("*/",pos))==-1)
+						throw new Exception("Syntax error in semantic action section\r\n");
+					pos+=2;
+				}
+				continue;
+			}
+			if(c=='$')
+			{
+				pos++;
+				if(pos>=len-1)
+					throw new Exception("Syntax error in semantic action section\r\n");
+				if(s.charAt(pos)=='$')
+				{
+					lits.addElement(s.substring(pos2,pos-1));
+					refs.addElement(Integer.valueOf(0));
+					pos++;
+					pos2=pos;
+					continue;
+				}
+				if(Character.isDigit(s.charAt(pos)))
+				{
+					lits.addElement(s.substring(pos2,pos-1));
+					pos2=pos++;
+					while(Character.isDigit(s.charAt(pos)))
+					{
+						pos++;
+					}
+					if(pos>=len-1)
+						throw new Exception("Syntax error in semantic action section\r\n");
+					int idx=Integer.parseInt(s.substring(pos2,pos));
+					if(idx>rhslen || idx<1)
+						throw new Exception("Error in semantic action section, index out of range\r\n");
+					refs.addElement(Integer.valueOf(idx));
+					pos2=pos;
+					continue;
+				}
+				pos++;
+				continue;
+			}
+			pos++;
+		}
+		lits.addElement(s.substring(pos2,pos));
+		return new SemAction(lits,refs);
+	}
+
+/////////////////////////////////////// ANSI C ///////////////////////////////////////
+
+	// replace the $n's, etc. in { ... }
+	String parseSemaction(String s, int ruleno)	throws Exception
+	{
+		Vector v=(Vector)rules.elementAt(ruleno);
+		int rhslen=v.size()-1;
+
+		StringBuffer so=new StringBuffer("{");
+
+		if(s.length()<1)
+		{
+			return " vstackptr-="+(rhslen-1)+";";
+			/*
+			epsilon production contains this case:
+			return " vstackptr++;";
+			and stack value is indeterminate
+			*/
+		}
+
+		SemAction a=semAction(ruleno);
+		if(rhslen>0)
+			so.append("memcpy(&rclval,&vstack[vstackptr-"+(rhslen-1)+"],sizeof(JJSTYPE));\r\n");
+		else	// if an epsilon production
+			so.append("memset(&rclval,0,sizeof(JJSTYPE));\r\n");
+		for(int i=0;i<a.refs.length;i++)
+		{
+			int idx=a.refs[i];
+			so.append(a.lits[i]);
+			if(idx==0)
+				so.append("rclval");
+			else
+				so.append("vstack[vstackptr-"+(rhslen-idx)+"]");
+			String m=(String)unionmem.get((String)v.elementAt(idx));
+			if(m!=null)
+				so.append("."+m);
+		}
+		so.append(a.lits[a.refs.length]);
+		so.append("\r\n");
+		so.append("	memcpy(&vstack[vstackptr-="+(rhslen-1)+"],&rclval,sizeof(JJSTYPE));\r\n");
+		/*
+		epsilon production contains this case:
+		so+="	memcpy(&vstack[++vstackptr],&rclval,sizeof(JJSTYPE));\r\n";
+		*/
+		so.append("	}\r\n");
+		return so.toString();
+	}
+
+	// write ANSI C-code implementation
+	void genANSICCode() throws Exception
+	{
+		int i,j;
+
+		// header
+
+		outputh+="/*\r\n"+APPNAME+"generated header file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n*/\r\n";
+		// literal block
+		outputh+="\r\n/*start of literal block*/\r\n";
+		outputh+=lit;
+		outputh+="/*end of literal block*/\r\n";
+		outputh+="\r\n";
+		outputh+="#include <stdio.h>\r\n";
+		outputh+="#include <string.h>\r\n";
+		if(tables.scanner()!=null)
+		{
+			outputh+="#include <stdlib.h>\r\n";
+			outputh+="#ifndef JJ_NO_MMAP\r\n";
+			outputh+="#include <fcntl.h>\r\n";
+			outputh+="#include <unistd.h>\r\n";
+			outputh+="#include <sys/mman.h>\r\n";
+			outputh+="#include <sys/stat.h>\r\n";
+			outputh+="#endif\r\n";
+		}
+		outputh+="\r\n";
+		if(union.length()>0)
+		{
+			outputh+="typedef union "+union+" JJSTYPE;\r\n";
+		}
+		else
+		{
+			outputh+="#ifndef JJSTYPE\r\n";
+			outputh+="#define JJSTYPE int\r\n";
+			outputh+="#endif\r\n";
+		}
+		outputh+="\r\n";
+		outputh+="#ifndef JJSDEPTH\r\n";
+		outputh+="#define JJSDEPTH 256\r\n";
+		outputh+="#endif\r\n";
+		outputh+="\r\n";
+		outputh+="typedef struct { int inst,param; } ACTION_T;\r\n";
+		outputh+="typedef struct { int nonterm,numsyms; } RULE_T;\r\n";
+		outputh+="\r\n";
+		outputh+="#define NUMTERMS "+tables.numTerms()+"\r\n";
+		outputh+="#define NUMNONTERMS "+tables.numNonterms()+"\r\n";
+		outputh+="#define NUMRULES "+tables.numRules()+"\r\n";
+		outputh+="#define NUMSTATES "+tables.numStates()+"\r\n";
+		if(defred)
+			outputh+="#define NUMACTROWS "+actionRows()+"\r\n";
+		outputh+="#define INST_ERROR -1\r\n";
+		outputh+="#define INST_SHIFT 0\r\n";
+		outputh+="#define INST_REDUCE 1\r\n";
+		outputh+="#define INST_ACCEPT 2\r\n";
+		if(direct)
+			outputh+="#define JJ_DIRECT 1\r\n";
+		if(tables.scanner()!=null)
+		{
+			outputh+="#define JJ_LEX 1\r\n";
+			outputh+="#define NUMLEXCLASSES "+tables.scanner().numClasses()+"\r\n";
+			outputh+="#define NUMLEXSTATES "+tables.scanner().numStates()+"\r\n";
+			outputh+="#define NUMLEXROWS "+tables.scanner().numRows()+"\r\n";
+			outputh+="#define NUMLEXPATTERNS "+tables.scanner().numPatterns()+"\r\n";
+			outputh+="\r\n";
+			outputh+="typedef struct { long off; int len; } JJSPAN;\r\n";
+		}
+		outputh+="\r\n";
+		outputh+="#ifdef JJ_STATS\r\n";
+		outputh+="#define JJSTAT(x) x\r\n";
+		outputh+="void "+PREFIX+"stats_reset();\r\n";
+		outputh+="long "+PREFIX+"stats_shifts();\r\n";
+		outputh+="long "+PREFIX+"stats_reductions(int r);\r\n";
+		outputh+="long "+PREFIX+"stats_visits(int s);\r\n";
+		outputh+="long "+PREFIX+"stats_recoveries();\r\n";
+		outputh+="int "+PREFIX+"stats_maxdepth();\r\n";
+		outputh+="void "+PREFIX+"stats_write(FILE* f);\r\n";
+		outputh+="#else\r\n";
+		outputh+="#define JJSTAT(x)\r\n";
+		outputh+="#endif\r\n";
+
+		// source
+		outputc+="/*\r\n"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
+		outputc+="Notes:\r\n\tYou must provide an implementation of the lexer \'int "+PREFIX+"lex()\'\r\n";
+		outputc+="\twhich returns a token code with ASCII values for character literals and #define constants for other terminals\r\n";
+		outputc+="\tCompile with -DJJ_STATS to count the shifts, reductions, state visits, error recoveries and stack depth of "+PREFIX+"parse()\r\n";
+		outputc+="*/\r\n";
+		outputc+="#include \"j.tab.h\"\r\n";
+		outputc+="\r\n";
+		outputc+="JJSTYPE "+PREFIX+"lval;\r\n";
+		outputc+="int "+PREFIX+"lex();\r\n";
+		outputc+="JJSTYPE vstack[JJSDEPTH];\r\n";
+		outputc+="int vstackptr;\r\n";
+		outputc+="void "+PREFIX+"error(char* errmsg);\r\n";
+
+		// build terminal map
+		// insertion sort the terminals for faster mapping
+		/*
+		for(i=1;i<terms.size();i++)
+		{
+			j=i;
+			String tmp=(String)terms.elementAt(j);
+			int aval=256;
+			if(tmp.charAt(0)=='\'')
+			{
+				aval=Character.digit(tmp.charAt(1),10);
+			}
+			while(j>0)
+			{
+				String tmp2=(String)terms.elementAt(j-1);
+				int aval2=256;
+				if(tmp2.charAt(0)=='\'')
+				{
+					aval2=Character.digit(tmp2.charAt(1),10);
+				}
+				if( aval >  aval2 )
+					break;
+				// shift up
+				terms.setElementAt((String)terms.elementAt(j-1),j);
+				j--;
+			}
+			terms.setElementAt(tmp,j);
+		}
+		*/
+		outputc+="\r\n";
+		outputc+="const int termmap[NUMTERMS]=\r\n{\r\n";
+		for(i=0;i<tables.numTerms();i++)
+		{
+			String t=tables.term(i);
+			if(t.startsWith("\'")==false)
+				outputh+="#define "+t+" "+(256+i)+"\r\n";
+			outputc+=t+",\r\n";
+		}
+		outputc+="};\r\n";
+
+		// build rules array
+		outputc+="\r\n";
+		outputc+="const RULE_T rules[NUMRULES]=\r\n{\r\n";
+		for(i=0;i<tables.numRules();i++)
+		{
+			outputc+="{ "+tables.ruleLhs(i)+","+tables.ruleLength(i)+" },\r\n";
+		}
+		outputc+="};\r\n";
+
+		// build action table
+		if(!direct)
+		{
+			outputc+="\r\n";
+			outputc+="const ACTION_T action["+(defred ? "NUMACTROWS" : "NUMSTATES")+"][NUMTERMS]=\r\n{\r\n";
+			for(i=0;i<actionRows();i++)
+			{
+				outputc+="{";
+				for(j=0;j<tables.numTerms();j++)
+				{
+					int inst=tables.actionInst(i,j);
+					if(inst==Tables.INST_SHIFT)
+					{
+						// shift
+						outputc+="{ INST_SHIFT,"+tables.actionParam(i,j)+"},";
+					}
+					else if(inst==Tables.INST_REDUCE)
+					{
+						// reduce
+						outputc+="{ INST_REDUCE,"+tables.actionParam(i,j)+"},";
+					}
+					else if(inst==Tables.INST_ACCEPT)
+					{
+						// accept
+						outputc+="{ INST_ACCEPT,0 },";
+					}
+					else
+					{
+						// error
+						outputc+="{ INST_ERROR,0 },";
+					}
+				}
+				outputc+=" },\r\n";
+			}
+			outputc+="};\r\n";
+
+			// build goto table
+			outputc+="\r\n";
+			outputc+="const int gototab[NUMSTATES][NUMNONTERMS]=\r\n{\r\n";
+			for(i=0;i<tables.numStates();i++)
+			{
+				outputc+="{";
+				for(j=0;j<tables.numNonterms();j++)
+				{
+					outputc+=tables.gotoState(i,j)+",";
+				}
+				outputc+="},\r\n";
+			}
+			outputc+="};\r\n";
+		}
+
+		// the rule of each state from NUMACTROWS on, which reduces without a lookahead
+		if(defred && !direct)
+			outputc+="\r\nconst int defred[NUMSTATES]=\r\n{\r\n"+numbers(defaultRules())+"\r\n};\r\n";
+
+		// build semantic actions functions
+		outputc+="\r\n";
+		outputc+="void semactions(int r)\r\n";
+		outputc+="{\r\n";
+		outputc+="	JJSTYPE rclval;\r\n";
+		outputc+="	switch(r)\r\n";
+		outputc+="	{\r\n";
+		StringBuffer cases=new StringBuffer();
+		for(i=0;i<semactions.size();i++)
+		{
+			int r=caseRule(i);
+			String t=(String)semactions.elementAt(r);
+			cases.append("/*\r\n"+t+"\r\n*/\r\n");
+			cases.append("	case "+r+":"+parseSemaction(t,r)+"break;\r\n");
+		}
+		outputc+=cases;
+		outputc+="	}\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="void "+PREFIX+"error(char* errmsg)\r\n";
+		outputc+="{\r\n";
+		outputc+="	fprintf(stderr,\"%s\\n\",errmsg);\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="int maptoken(int c)\r\n";
+		outputc+="{\r\n";
+		outputc+="	int i;\r\n";
+		outputc+="	for(i=0;i<NUMTERMS;i++)\r\n";
+		outputc+="	{\r\n";
+		outputc+="		if(termmap[i]==c)\r\n";
+		outputc+="			return i;\r\n";
+		outputc+="	}\r\n";
+		outputc+="	return -1;\r\n";
+		outputc+="}\r\n";
+		outputc+="\r\n";
+		outputc+="int stack[JJSDEPTH];\r\n";
+		outputc+="int stackptr;\r\n";
+		outputc+="\r\n";
+		outputc+="#ifdef JJ_STATS\r\n";
+		outputc+="long jjstat_shifts,jjstat_recoveries;\r\n";
+		outputc+="long jjstat_reductions[NUMRULES];\r\n";
+		outputc+="long jjstat_visits[NUMSTATES];\r\n";
+		outputc+="int jjstat_maxdepth;\r\n";
+		outputc+="\r\n";
+		outputc+="void "+PREFIX+"stats_reset()\r\n";
+		outputc+="{\r\n";
+		outputc+="	jjstat_shifts=jjstat_recoveries=0;\r\n";
+		outputc+="	jjstat_maxdepth=0;\r\n";
+		outputc+="	memset(jjstat_reductions,0,sizeof(jjstat_reductions));\r\n";
+		outputc+="	memset(jjstat_visits,0,sizeof(jjstat_visits));\r\n";
+		outputc+="}\r\n";
+		outputc+="long "+PREFIX+"stats_shifts()	{	return jjstat_shifts;	}\r\n";
+		outputc+="long "+PREFIX+"stats_reductions(int r)	{	return (r>=0 && r<NUMRULES) ? jjstat_reductions[r] : 0;	}\r\n";
+		outputc+="long "+PREFIX+"stats_visits(int s)	{	return (s>=0 && s<NUMSTATES) ? jjstat_visits[s] : 0;	}\r\n";
+		outputc+="long "+PREFIX+"stats_recoveries()	{	return jjstat_recoveries;	}\r\n";
+		outputc+="int "+PREFIX+"stats_maxdepth()	{	return jjstat_maxdepth;	}\r\n";
+		outputc+="\r\n";
+		outputc+="static const int jjstat_stateid[NUMSTATES]=\r\n{\r\n"+numbers(stateIds())+"\r\n};\r\n";
+		outputc+="\r\n";
+		outputc+="/* the counts as a profile for -profile, the states numbered as in the construction */\r\n";
+		outputc+="void "+PREFIX+"stats_write(FILE* f)\r\n";
+		outputc+="{\r\n";
+		outputc+="	int i;\r\n";
+		outputc+="	for(i=0;i<NUMSTATES;i++)\r\n";
+		outputc+="		if(jjstat_visits[i]) fprintf(f,\"s %d %ld\\n\",jjstat_stateid[i],jjstat_visits[i]);\r\n";
+		outputc+="	for(i=0;i<NUMRULES;i++)\r\n";
+		outputc+="		if(jjstat_reductions[i]) fprintf(f,\"r %d %ld\\n\",i,jjstat_reductions[i]);\r\n";
+		outputc+="}\r\n";
+		outputc+="#endif\r\n";
+		outputc+="\r\n";
+		if(direct)
+			outputc+=directCodeC();
+		else
+		{
+			outputc+="int "+PREFIX+"parse()\r\n";
+			outputc+="{\r\n";
+			if(defred)
+			{
+				outputc+="	int c=0,havetok=0;\r\n";	// the lookahead is read when a state needs it
+				outputc+="	int ic,s,inst,param,tmp,recovered=0;\r\n";	// whether an error was recovered from at the end of input
+				outputc+="	stackptr=0;\r\n";
+				outputc+="	vstackptr=-1;\r\n";
+				outputc+="	stack[stackptr]=0;\r\n";
+			}
+			else
+			{
+				outputc+="	int c="+PREFIX+"lex();\r\n";
+				outputc+="	int ic,s,inst,param,tmp,recovered=0;\r\n";
+				outputc+="	stackptr=0;\r\n";
+				outputc+="	vstackptr=0;\r\n";
+				outputc+="	stack[stackptr]=0;\r\n";
+				outputc+="	memcpy(&vstack[vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+			}
+			outputc+="	while(1)\r\n";
+			outputc+="	{\r\n";
+			if(defred)
+			{
+				outputc+="		s=stack[stackptr];\r\n";
+				outputc+="		JJSTAT(jjstat_visits[s]++;)\r\n";
+				outputc+="		if(s>=NUMACTROWS)\r\n";
+				outputc+="		{\r\n";
+				outputc+="			inst=INST_REDUCE;\r\n";
+				outputc+="			param=defred[s];\r\n";
+				outputc+="		}\r\n";
+				outputc+="		else\r\n";
+				outputc+="		{\r\n";
+				outputc+="			if(!havetok)\r\n";
+				outputc+="			{\r\n";
+				outputc+="				c="+PREFIX+"lex();\r\n";
+				outputc+="				if(vstackptr+1>=JJSDEPTH)	{	"+PREFIX+"error(\"error, value stack overflow\\r\\n\");	break;	}\r\n";
+				outputc+="				memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+				outputc+="				havetok=1;\r\n";
+				outputc+="			}\r\n";
+				outputc+="			ic=maptoken(c);\r\n";
+				outputc+="			if(ic<0)\r\n";
+				outputc+="				inst=INST_ERROR;\r\n";
+				outputc+="			else\r\n";
+				outputc+="			{\r\n";
+				outputc+="				inst=action[s][ic].inst;\r\n";
+				outputc+="				param=action[s][ic].param;\r\n";
+				outputc+="			}\r\n";
+				outputc+="		}\r\n";
+			}
+			else
+			{
+				outputc+="		ic=maptoken(c);\r\n";
+				outputc+="		if(ic<0)\r\n";
+				outputc+="		{\r\n";
+				outputc+="			inst=INST_ERROR;\r\n";
+				outputc+="		}\r\n";
+				outputc+="		else\r\n";
+				outputc+="		{\r\n";
+				outputc+="			s=stack[stackptr];\r\n";
+				outputc+="			JJSTAT(jjstat_visits[s]++;)\r\n";
+				outputc+="			inst=action[s][ic].inst;\r\n";
+				outputc+="			param=action[s][ic].param;\r\n";
+				outputc+="		}\r\n";
+			}
+			outputc+="		if(inst==INST_SHIFT)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			if(stackptr+2>=JJSDEPTH)	{	"+PREFIX+"error(\"error, stack overflow\\r\\n\");	break;	}\r\n";
+			outputc+="			stack[++stackptr]=ic;\r\n";
+			outputc+="			stack[++stackptr]=param;\r\n";
+			outputc+="			recovered=0;\r\n";
+			if(defred)
+			{
+				outputc+="			havetok=0;\r\n";	// its value stays on the value stack, as that of the symbol shifted
+			}
+			else
+			{
+				outputc+="			c="+PREFIX+"lex();\r\n";
+				outputc+="			if(vstackptr+1>=JJSDEPTH)	{	"+PREFIX+"error(\"error, value stack overflow\\r\\n\");	break;	}\r\n";
+				outputc+="			memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+			}
+			outputc+="			JJSTAT(jjstat_shifts++; if(stackptr/2+1>jjstat_maxdepth) jjstat_maxdepth=stackptr/2+1;)\r\n";
+			outputc+="		}\r\n";
+			for(int h=0;h<=hotrules.length;h++)
+				outputc+=reduceCodeC(h<hotrules.length ? hotrules[h] : -1);
+			outputc+="		else if(inst==INST_ACCEPT)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			break;\r\n";
+			outputc+="		}\r\n";
+			outputc+="		else\r\n";
+			outputc+="		{\r\n";
+			outputc+="			JJSTAT(jjstat_recoveries++;)\r\n";
+			// the end of input cannot be discarded, so an error found again at it, with no shift between, is final
+			outputc+="			if(recovered)	{	"+PREFIX+"error(\"error!\\r\\n\");	break;	}\r\n";
+			outputc+="			tmp=0;\r\n";
+			outputc+="			ic=maptoken(error);\r\n";
+			if(defred)
+			{
+				// the state which found the error may shift the error token itself, a state which reduces by default not having found it
+				outputc+="			for(;stackptr>=0;stackptr-=2)\r\n";
+				outputc+="			{\r\n";
+				outputc+="				s=stack[stackptr];\r\n";
+				outputc+="				if(s>=NUMACTROWS)	continue;\r\n";
+			}
+			else
+			{
+				outputc+="			while(1)\r\n";
+				outputc+="			{\r\n";
+				outputc+="				stackptr-=2;\r\n";
+				outputc+="				if(stackptr<0)	{	tmp=1; break;	}\r\n";
+				outputc+="				s=stack[stackptr];\r\n";
+			}
+			outputc+="				inst=action[s][ic].inst;\r\n";
+			outputc+="				param=action[s][ic].param;\r\n";
+			outputc+="				if(inst==INST_SHIFT)\r\n";
+			outputc+="				{\r\n";
+			outputc+="					if(stackptr+2>=JJSDEPTH)	{	tmp=1; "+PREFIX+"error(\"error, stack overflow\\r\\n\");	break;	}\r\n";
+			outputc+="					stack[++stackptr]=ic;\r\n";
+			outputc+="					stack[++stackptr]=param;\r\n";
+			outputc+="					recovered=(c==JJEOI);\r\n";
+			if(defred)
+			{
+				outputc+="					havetok=0;\r\n";
+			}
+			else
+			{
+				outputc+="					c="+PREFIX+"lex();\r\n";
+				outputc+="					if(vstackptr+1>=JJSDEPTH)	{	tmp=1; "+PREFIX+"error(\"error, value stack overflow\\r\\n\");	break;	}\r\n";
+				outputc+="					memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+			}
+			outputc+="					break;\r\n";
+			outputc+="				}\r\n";
+			outputc+="			}\r\n";
+			if(defred)
+				outputc+="			if(stackptr<0)	tmp=1;\r\n";
+			outputc+="			if(tmp)	{	"+PREFIX+"error(\"error!\\r\\n\");	break;	}\r\n";
+			outputc+="		}\r\n";
+			outputc+="	}\r\n";
+			outputc+="	return 0;\r\n";
+			outputc+="}\r\n";
+		}
+
+		if(tables.scanner()!=null)
+			outputc+=lexCodeC();
+
+		outputc+="\r\n/*supporting code*/\r\n"+support;
+	}
+
+	// the reduce branch of jjparse(): by rule r, reduced most in the profile, with its length and lhs as constants;
+	// or if r<0 by the rule in param
+	String reduceCodeC(int r)
+	{
+		String p=(r<0 ? "param" : ""+r);
+		String len=(r<0 ? "rules[param].numsyms" : ""+tables.ruleLength(r));
+		String lhs=(r<0 ? "rules[param].nonterm" : ""+tables.ruleLhs(r));
+		String sb="";
+		sb+="		else if(inst==INST_REDUCE"+(r<0 ? "" : " && param=="+r)+")\r\n";
+		sb+="		{\r\n";
+		sb+="			stackptr-=2*"+len+";\r\n";
+		sb+="			if(stackptr<0)	{	"+PREFIX+"error(\"error, stack underflow\\r\\n\");	break;	}\r\n";
+		sb+="			tmp=gototab[stack[stackptr]]["+lhs+"];\r\n";
+		sb+="			stack[++stackptr]="+lhs+";\r\n";
+		sb+="			if(tmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	break;	}\r\n";
+		sb+="			stack[++stackptr]=tmp;\r\n";
+		sb+="			JJSTAT(jjstat_reductions["+p+"]++; if(stackptr/2+1>jjstat_maxdepth) jjstat_maxdepth=stackptr/2+1;)\r\n";
+		if(r>=0 && plainUnit(r))
+		{
+			// $$ is $1, where it is
+		}
+		else if(defred)
+		{
+			// the value of the lookahead is only on the value stack if it has been read
+			sb+="			if(havetok) memcpy(&"+PREFIX+"lval,&vstack[vstackptr--],sizeof(JJSTYPE));\r\n";
+			sb+="			semactions("+p+");\r\n";
+			sb+="			if(havetok) memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+		}
+		else
+		{
+			sb+="			memcpy(&"+PREFIX+"lval,&vstack[vstackptr--],sizeof(JJSTYPE));\r\n";/*temporarily remove value of recently shifted token*/
+			sb+="			semactions("+p+");\r\n";
+			sb+="			memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
+		}
+		sb+="		}\r\n";
+		return sb;
+	}
+
+	/**
+	 * jjparse() coded directly, for -d: each state is a block of code at a label of its own which switches on the
+	 * lookahead to the shift or reduction it calls for, with no action or goto table.  A shift pushes its state as a
+	 * constant and falls or jumps into the block of that state.  A reduction pops the constant length of its rule,
+	 * runs the action and jumps to the goto of its lhs, which switches on the state uncovered to the block of the
+	 * state it enters, the most frequent one being the default.  The stacks are laid out as by the loop over the
+	 * tables, and only error recovery looks up a state held on the stack.
+	 */
+	String directCodeC() throws Exception
+	{
+		StringBuffer sb=new StringBuffer();
+		int i,j,k;
+		int[] errshift=errorShifts();
+		boolean[] shifted=new boolean[tables.numStates()];	// the states entered by a shift
+		boolean[] reduced=new boolean[tables.numRules()];	// the rules reduced by some state
+		for(i=0;i<tables.numStates();i++)
+		{
+			if(i>=actionRows())
+			{
+				reduced[tables.defaultReduction(i)]=true;
+				continue;
+			}
+			for(j=0;j<tables.numTerms();j++)
+			{
+				if(tables.actionInst(i,j)==Tables.INST_SHIFT)
+					shifted[tables.actionParam(i,j)]=true;
+				else if(tables.actionInst(i,j)==Tables.INST_REDUCE)
+					reduced[tables.actionParam(i,j)]=true;
+			}
+		}
+
+		sb.append("/* reads the lookahead onto the value stack; returns its terminal, -1 if it is none and -2 if the stack is full */\r\n");
+		sb.append("static int jjread()\r\n");
+		sb.append("{\r\n");
+		sb.append("	int c="+PREFIX+"lex();\r\n");
+		sb.append("	if(vstackptr+1>=JJSDEPTH)	{	"+PREFIX+"error(\"error, value stack overflow\\r\\n\");	return -2;	}\r\n");
+		sb.append("	memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n");
+		sb.append("	return maptoken(c);\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("/* the state a state shifts the error token to, -1 if none */\r\n");
+		sb.append("static int jjerrshift(int s)\r\n");
+		sb.append("{\r\n");
+		sb.append("	switch(s)\r\n");
+		sb.append("	{\r\n");
+		Vector groups=caseGroups(errshift);
+		for(j=0;j<groups.size();j++)
+		{
+			int[] g=(int[])groups.elementAt(j);
+			sb.append("	");
+			for(k=1;k<g.length;k++)
+				sb.append("case "+g[k]+": ");
+			sb.append("return "+g[0]+";\r\n");
+		}
+		sb.append("	}\r\n");
+		sb.append("	return -1;\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+
+		sb.append("int "+PREFIX+"parse()\r\n");
+		sb.append("{\r\n");
+		if(defred)
+		{
+			sb.append("	int ic=-1,s,tmp,havetok=0,recovered=0;\r\n");	// the lookahead is read when a state needs it
+			sb.append("	stackptr=0;\r\n");
+			sb.append("	vstackptr=-1;\r\n");
+			sb.append("	stack[stackptr]=0;\r\n");
+		}
+		else
+		{
+			sb.append("	int ic,s,tmp,recovered=0;\r\n");	// whether an error was recovered from at the end of input
+			sb.append("	stackptr=0;\r\n");
+			sb.append("	vstackptr=-1;\r\n");
+			sb.append("	stack[stackptr]=0;\r\n");
+			sb.append("	ic=jjread();\r\n");
+		}
+		boolean[] jumped=new boolean[tables.numStates()];	// the states jumped to past their shift, by a goto or error recovery
+		jumped[0]=shifted[0];
+		for(i=0;i<tables.numStates();i++)
+		{
+			if(errshift[i]>=0)
+				jumped[errshift[i]]=true;
+			for(j=0;j<tables.numNonterms();j++)
+			{
+				if(tables.gotoState(i,j)>=0)
+					jumped[tables.gotoState(i,j)]=true;
+			}
+		}
+		if(shifted[0])
+			sb.append("	goto jjs0;\r\n");
+		for(i=0;i<tables.numStates();i++)
+		{
+			if(shifted[i])
+			{
+				sb.append("jjsh"+i+":\r\n");
+				sb.append("	if(stackptr+2>=JJSDEPTH)	{	"+PREFIX+"error(\"error, stack overflow\\r\\n\");	return 0;	}\r\n");
+				sb.append("	stack[++stackptr]=ic;\r\n");
+				sb.append("	stack[++stackptr]="+i+";\r\n");
+				sb.append("	recovered=0;\r\n");
+				if(defred)
+					sb.append("	havetok=0;\r\n");	// its value stays on the value stack, as that of the symbol shifted
+				else
+					sb.append("	if((ic=jjread())==-2)	return 0;\r\n");
+				sb.append("	JJSTAT(jjstat_shifts++; if(stackptr/2+1>jjstat_maxdepth) jjstat_maxdepth=stackptr/2+1;)\r\n");
+			}
+			if(jumped[i])
+				sb.append("jjs"+i+":\r\n");
+			if(i>=actionRows())
+			{
+				sb.append("	JJSTAT(jjstat_visits["+i+"]++;)\r\n");
+				sb.append("	goto jjr"+tables.defaultReduction(i)+";\r\n");
+				continue;
+			}
+			if(defred)
+			{
+				sb.append("	JJSTAT(jjstat_visits["+i+"]++;)\r\n");
+				sb.append("	if(!havetok)\r\n");
+				sb.append("	{\r\n");
+				sb.append("		if((ic=jjread())==-2)	return 0;\r\n");
+				sb.append("		havetok=1;\r\n");
+				sb.append("	}\r\n");
+			}
+			else
+				sb.append("	JJSTAT(if(ic>=0) jjstat_visits["+i+"]++;)\r\n");
+			sb.append("	switch(ic)\r\n");
+			sb.append("	{\r\n");
+			groups=caseGroups(tables.actionRow(i));
+			for(j=0;j<groups.size();j++)
+			{
+				int[] g=(int[])groups.elementAt(j);
+				sb.append("	");
+				for(k=1;k<g.length;k++)
+					sb.append("case "+g[k]+": ");
+				int inst=g[0]&3;
+				if(inst==Tables.INST_SHIFT)
+					sb.append("goto jjsh"+(g[0]>>2)+";\r\n");
+				else if(inst==Tables.INST_REDUCE)
+					sb.append("goto jjr"+(g[0]>>2)+";\r\n");
+				else
+					sb.append("return 0;\r\n");
+			}
+			sb.append("	}\r\n");
+			sb.append("	goto jjerr;\r\n");
+		}
+
+		boolean[] lhs=new boolean[tables.numNonterms()];
+		for(i=0;i<tables.numRules();i++)
+		{
+			if(!reduced[i])
+				continue;
+			lhs[tables.ruleLhs(i)]=true;
+			sb.append("jjr"+i+":\r\n");
+			if(tables.ruleLength(i)>0)
+			{
+				sb.append("	stackptr-="+(2*tables.ruleLength(i))+";\r\n");
+				sb.append("	if(stackptr<0)	{	"+PREFIX+"error(\"error, stack underflow\\r\\n\");	return 0;	}\r\n");
+			}
+			sb.append("	JJSTAT(jjstat_reductions["+i+"]++;)\r\n");
+			if(plainUnit(i))
+			{
+				// $$ is $1, where it is
+			}
+			else if(defred)
+			{
+				// the value of the lookahead is only on the value stack if it has been read
+				sb.append("	if(havetok) memcpy(&"+PREFIX+"lval,&vstack[vstackptr--],sizeof(JJSTYPE));\r\n");
+				sb.append("	semactions("+i+");\r\n");
+				sb.append("	if(havetok) memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n");
+			}
+			else
+			{
+				sb.append("	memcpy(&"+PREFIX+"lval,&vstack[vstackptr--],sizeof(JJSTYPE));\r\n");
+				sb.append("	semactions("+i+");\r\n");
+				sb.append("	memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n");
+			}
+			sb.append("	goto jjg"+tables.ruleLhs(i)+";\r\n");
+		}
+
+		for(i=0;i<tables.numNonterms();i++)
+		{
+			if(!lhs[i])
+				continue;
+			sb.append("jjg"+i+":\r\n");
+			sb.append("	s=stack[stackptr];\r\n");
+			sb.append("	stack[++stackptr]="+i+";\r\n");
+			sb.append("	stackptr++;\r\n");
+			sb.append("	JJSTAT(if(stackptr/2+1>jjstat_maxdepth) jjstat_maxdepth=stackptr/2+1;)\r\n");
+			groups=caseGroups(gotoColumn(i));
+			if(groups.size()==0)
+			{
+				sb.append("	"+PREFIX+"error(\"error in gototab\\r\\n\");\r\n");
+				sb.append("	return 0;\r\n");
+				continue;
+			}
+			int most=mostCases(groups);
+			if(groups.size()>1)
+			{
+				sb.append("	switch(s)\r\n");
+				sb.append("	{\r\n");
+				for(j=0;j<groups.size();j++)
+				{
+					int[] g=(int[])groups.elementAt(j);
+					if(j==most)
+						continue;
+					sb.append("	");
+					for(k=1;k<g.length;k++)
+						sb.append("case "+g[k]+": ");
+					sb.append("stack[stackptr]="+g[0]+"; goto jjs"+g[0]+";\r\n");
+				}
+				sb.append("	}\r\n");
+			}
+			int t=((int[])groups.elementAt(most))[0];
+			sb.append("	stack[stackptr]="+t+";\r\n");
+			sb.append("	goto jjs"+t+";\r\n");
+		}
+
+		// the state which found the error may only shift the error token itself with default reductions
+		sb.append("jjerr:\r\n");
+		sb.append("	JJSTAT(jjstat_recoveries++;)\r\n");
+		// as in the table loop, a second error at the end of input with no shift between is final
+		sb.append("	if(recovered)	{	"+PREFIX+"error(\"error!\\r\\n\");	return 0;	}\r\n");
+		if(defred)
+		{
+			sb.append("	for(tmp=-1;stackptr>=0;stackptr-=2)\r\n");
+			sb.append("		if((tmp=jjerrshift(stack[stackptr]))>=0)\r\n");
+			sb.append("			break;\r\n");
+		}
+		else
+		{
+			sb.append("	do\r\n");
+			sb.append("	{\r\n");
+			sb.append("		stackptr-=2;\r\n");
+			sb.append("		tmp=(stackptr<0 ? -1 : jjerrshift(stack[stackptr]));\r\n");
+			sb.append("	}\r\n");
+			sb.append("	while(tmp<0 && stackptr>=0);\r\n");
+		}
+		sb.append("	if(tmp<0)	{	"+PREFIX+"error(\"error!\\r\\n\");	return 0;	}\r\n");
+		sb.append("	if(stackptr+2>=JJSDEPTH)	{	"+PREFIX+"error(\"error, stack overflow\\r\\n\");	"+PREFIX+"error(\"error!\\r\\n\");	return 0;	}\r\n");
+		sb.append("	stack[++stackptr]="+termIndex(ERROR)+";\r\n");
+		sb.append("	stack[++stackptr]=tmp;\r\n");
+		sb.append("	recovered=(ic=="+termIndex(EOI)+");\r\n");
+		if(defred)
+			sb.append("	havetok=0;\r\n");
+		else
+			sb.append("	if((ic=jjread())==-2)	{	"+PREFIX+"error(\"error!\\r\\n\");	return 0;	}\r\n");
+		sb.append("	switch(tmp)\r\n");
+		sb.append("	{\r\n");
+		groups=caseGroups(errshift);
+		for(j=0;j<groups.size();j++)
+		{
+			int t=((int[])groups.elementAt(j))[0];
+			sb.append("	case "+t+": goto jjs"+t+";\r\n");
+		}
+		sb.append("	}\r\n");
+		sb.append("	return 0;\r\n");
+		sb.append("}\r\n");
+		return sb.toString();
+	}
+
+	// the state each state shifts the error token to, -1 for none
+	int[] errorShifts()
+	{
+		int[] a=new int[tables.numStates()];
+		int e=termIndex(ERROR);
+		for(int i=0;i<a.length;i++)
+			a[i]=(i<actionRows() && e>=0 && tables.actionInst(i,e)==Tables.INST_SHIFT ? tables.actionParam(i,e) : -1);
+		return a;
+	}
+
+	// the index of a terminal in the tables, -1 if there is none of that name
+	int termIndex(String t)
+	{
+		for(int i=0;i<tables.numTerms();i++)
+		{
+			if(tables.term(i).equals(t))
+				return i;
+		}
+		return -1;
+	}
+
+	// the state each state goes to on a nonterminal, -1 for none
+	int[] gotoColumn(int nt)
+	{
+		int[] a=new int[tables.numStates()];
+		for(int i=0;i<a.length;i++)
+			a[i]=tables.gotoState(i,nt);
+		return a;
+	}
+
+	// the index of the group of caseGroups() with the most columns, the first of those
+	static int mostCases(Vector groups)
+	{
+		int most=0;
+		for(int i=1;i<groups.size();i++)
+		{
+			if(((int[])groups.elementAt(i)).length>((int[])groups.elementAt(most)).length)
+				most=i;
+		}
+		return most;
+	}
+
+	// the scanner of the %lex section, reading jjin (stdin by default) through a growing buffer;
+	// jjtext holds the text of the last token until the next call.
+	// Input given to jjlexmap() or jjlexmem() is scanned in place, without copying any text
+	String lexCodeC() throws Exception
+	{
+		Scanner sc=tables.scanner();
+		StringBuffer sb=new StringBuffer();
+		int i,j;
+
+		int[] classes=new int[256];
+		for(i=0;i<classes.length;i++)
+			classes[i]=sc.charClass(i);
+		int[] rows=new int[sc.numStates()];
+		int[] accept=new int[sc.numStates()];
+		for(i=0;i<rows.length;i++)
+		{
+			rows[i]=sc.row(i);
+			accept[i]=sc.accept(i);
+		}
+		int[] tokens=new int[sc.numPatterns()];
+		for(i=0;i<tokens.length;i++)
+			tokens[i]=sc.token(i);
+
+		sb.append("\r\n");
+		sb.append("const int jjlexclass[256]=\r\n{\r\n"+numbers(classes)+"\r\n};\r\n");
+		sb.append("const int jjlexrow[NUMLEXSTATES]=\r\n{\r\n"+numbers(rows)+"\r\n};\r\n");
+		sb.append("const int jjlexnext[NUMLEXROWS][NUMLEXCLASSES]=\r\n{\r\n");
+		for(i=0;i<sc.numRows();i++)
+		{
+			int[] r=new int[sc.numClasses()];
+			for(j=0;j<r.length;j++)
+				r[j]=sc.next(i,j);
+			sb.append("{"+numbers(r)+"},\r\n");
+		}
+		sb.append("};\r\n");
+		sb.append("const int jjlexaccept[NUMLEXSTATES]=\r\n{\r\n"+numbers(accept)+"\r\n};\r\n");
+		sb.append("const int jjlextoken[NUMLEXPATTERNS]=\r\n{\r\n"+numbers(tokens)+"\r\n};\r\n");
+
+		sb.append("\r\n");
+		sb.append("FILE* "+PREFIX+"in;\r\n");
+		sb.append("char* "+PREFIX+"text;\r\n");
+		sb.append("int "+PREFIX+"leng;\r\n");
+		sb.append("JJSPAN "+PREFIX+"span;	/* offset and length of the last token in the input */\r\n");
+		sb.append("static char* jjbuf;\r\n");
+		sb.append("static long jjbufsize,jjbuflen,jjbufpos;\r\n");
+		sb.append("static long jjbufoff;	/* offset of jjbuf in the input */\r\n");
+		sb.append("static int jjmapped;\r\n");
+		sb.append("static char* jjtextbuf;\r\n");
+		sb.append("static int jjtextsize;\r\n");
+		sb.append("\r\n");
+		sb.append("/* scan a region of memory in place; jjtext then points into it and is not terminated */\r\n");
+		sb.append("int "+PREFIX+"lexmem(const char* p,long n)\r\n");
+		sb.append("{\r\n");
+		sb.append("	jjbuf=(char*)p;\r\n");
+		sb.append("	jjbufsize=jjbuflen=n;\r\n");
+		sb.append("	jjbufpos=jjbufoff=0;\r\n");
+		sb.append("	jjmapped=1;\r\n");
+		sb.append("	return 0;\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("#ifndef JJ_NO_MMAP\r\n");
+		sb.append("/* scan a file mapped into memory; returns -1 if it cannot be mapped */\r\n");
+		sb.append("int "+PREFIX+"lexmap(const char* path)\r\n");
+		sb.append("{\r\n");
+		sb.append("	struct stat st;\r\n");
+		sb.append("	void* p=\"\";\r\n");
+		sb.append("	int fd=open(path,O_RDONLY);\r\n");
+		sb.append("	if(fd<0)\r\n");
+		sb.append("		return -1;\r\n");
+		sb.append("	if(fstat(fd,&st)<0)	{	close(fd); return -1;	}\r\n");
+		sb.append("	if(st.st_size>0)\r\n");
+		sb.append("		p=mmap(0,st.st_size,PROT_READ,MAP_PRIVATE,fd,0);\r\n");
+		sb.append("	close(fd);\r\n");
+		sb.append("	if(p==MAP_FAILED)\r\n");
+		sb.append("		return -1;\r\n");
+		sb.append("#ifdef MADV_SEQUENTIAL\r\n");
+		sb.append("	if(st.st_size>0)\r\n");
+		sb.append("		madvise(p,st.st_size,MADV_SEQUENTIAL);\r\n");
+		sb.append("#endif\r\n");
+		sb.append("	return "+PREFIX+"lexmem((const char*)p,(long)st.st_size);\r\n");
+		sb.append("}\r\n");
+		sb.append("#endif\r\n");
+		sb.append("\r\n");
+		sb.append("/* a terminated copy of the text of a span, to be freed by the caller; any span of input scanned in place,\r\n");
+		sb.append("   but only the last token of jjin, whose buffer moves on; NULL if the text is no longer buffered */\r\n");
+		sb.append("char* "+PREFIX+"spanstr(JJSPAN s)\r\n");
+		sb.append("{\r\n");
+		sb.append("	char* t;\r\n");
+		sb.append("	if(s.off<jjbufoff || s.off+s.len>jjbufoff+jjbuflen)\r\n");
+		sb.append("		return 0;\r\n");
+		sb.append("	t=(char*)malloc(s.len+1);\r\n");
+		sb.append("	memcpy(t,jjbuf+(s.off-jjbufoff),s.len);\r\n");
+		sb.append("	t[s.len]=0;\r\n");
+		sb.append("	return t;\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("static int jjlexchar(int i)\r\n");
+		sb.append("{\r\n");
+		sb.append("	long n;\r\n");
+		sb.append("	while(jjbufpos+i>=jjbuflen)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(jjmapped)\r\n");
+		sb.append("			return -1;\r\n");
+		sb.append("		if(jjbufpos>0)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			memmove(jjbuf,jjbuf+jjbufpos,jjbuflen-jjbufpos);\r\n");
+		sb.append("			jjbufoff+=jjbufpos;\r\n");
+		sb.append("			jjbuflen-=jjbufpos;\r\n");
+		sb.append("			jjbufpos=0;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		if(jjbuflen==jjbufsize)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			jjbufsize=(jjbufsize ? 2*jjbufsize : 4096);\r\n");
+		sb.append("			jjbuf=(char*)realloc(jjbuf,jjbufsize);\r\n");
+		sb.append("		}\r\n");
+		sb.append("		n=fread(jjbuf+jjbuflen,1,jjbufsize-jjbuflen,("+PREFIX+"in ? "+PREFIX+"in : stdin));\r\n");
+		sb.append("		if(n<=0)\r\n");
+		sb.append("			return -1;\r\n");
+		sb.append("		jjbuflen+=n;\r\n");
+		sb.append("	}\r\n");
+		sb.append("	return (unsigned char)jjbuf[jjbufpos+i];\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("static void jjlexaction(int p)\r\n");
+		sb.append("{\r\n");
+		sb.append("	switch(p)\r\n");
+		sb.append("	{\r\n");
+		for(i=0;i<sc.numPatterns();i++)
+		{
+			if(sc.action(i).length()>0)
+				sb.append("	case "+i+":"+sc.action(i)+"break;\r\n");
+		}
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("int "+PREFIX+"lex()\r\n");
+		sb.append("{\r\n");
+		sb.append("	int s,c,i,p,len;\r\n");
+		sb.append("	while(1)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		"+PREFIX+"span.off=jjbufoff+jjbufpos;\r\n");
+		sb.append("		if(jjlexchar(0)<0)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			"+PREFIX+"text=\"\";\r\n");
+		sb.append("			"+PREFIX+"leng="+PREFIX+"span.len=0;\r\n");
+		sb.append("			return "+EOI+";\r\n");
+		sb.append("		}\r\n");
+		sb.append("		s=0;\r\n");
+		sb.append("		p=-1;\r\n");
+		sb.append("		len=0;\r\n");
+		sb.append("		for(i=0;(c=jjlexchar(i))>=0;)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			s=jjlexnext[jjlexrow[s]][jjlexclass[c]];\r\n");
+		sb.append("			if(s<0)\r\n");
+		sb.append("				break;\r\n");
+		sb.append("			i++;\r\n");
+		sb.append("			if(jjlexaccept[s]>=0)	{	p=jjlexaccept[s]; len=i;	}\r\n");
+		sb.append("		}\r\n");
+		sb.append("		if(len==0)\r\n");
+		sb.append("			len=1;\r\n");
+		sb.append("		if(jjmapped)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			"+PREFIX+"text=jjbuf+jjbufpos;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		else\r\n");
+		sb.append("		{\r\n");
+		sb.append("			if(len>=jjtextsize)\r\n");
+		sb.append("			{\r\n");
+		sb.append("				jjtextsize=2*len+1;\r\n");
+		sb.append("				jjtextbuf=(char*)realloc(jjtextbuf,jjtextsize);\r\n");
+		sb.append("			}\r\n");
+		sb.append("			memcpy(jjtextbuf,jjbuf+jjbufpos,len);\r\n");
+		sb.append("			jjtextbuf[len]=0;\r\n");
+		sb.append("			"+PREFIX+"text=jjtextbuf;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		"+PREFIX+"leng="+PREFIX+"span.len=len;\r\n");
+		sb.append("		c=(unsigned char)jjbuf[jjbufpos];\r\n");
+		sb.append("		jjbufpos+=len;\r\n");
+		sb.append("		if(p<0)\r\n");
+		sb.append("			return c;	/* matched by no pattern */\r\n");
+		sb.append("		jjlexaction(p);\r\n");
+		sb.append("		if(jjlextoken[p]>=0)\r\n");
+		sb.append("			return termmap[jjlextoken[p]];\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		return sb.toString();
+	}
+
+/////////////////////////////////////// JAVA ///////////////////////////////////////
+
+	// replace the $n's, etc. in { ... }
+	String parseSemaction2(String s, int ruleno)	throws Exception
+	{
+		Vector v=(Vector)rules.elementAt(ruleno);
+		int rhslen=v.size()-1;
+
+		StringBuffer so=new StringBuffer("{");
+
+		if(s.length()<1)
+		{
+			if(rhslen>1)
+				return "for(int rcli=0;rcli<"+(rhslen-1)+";rcli++) vstack.pop(); ";
+			else if(rhslen==1)
+				return " ";	// no use to pop
+			else	// if an epsilon production, push dummy value
+				return "vstack.push(Integer.valueOf(0)); ";
+		}
+
+		SemAction a=semAction(ruleno);
+		if(rhslen>0)
+			so.append("rclval=vstack.elementAt(vstack.size()-1-"+(rhslen-1)+");\r\n");
+		else
+			so.append("rclval=Integer.valueOf(0);\r\n");
+		for(int i=0;i<a.refs.length;i++)
+		{
+			so.append(a.lits[i]);
+			if(a.refs[i]==0)
+				so.append("rclval");
+			else
+				so.append("vstack.elementAt(vstack.size()-1-"+(rhslen-a.refs[i])+")");
+		}
+		so.append(a.lits[a.refs.length]);
+		so.append("\r\n");
+		so.append("	for(int rclj=0;rclj<"+rhslen+";rclj++) vstack.pop();\r\n\tvstack.push(rclval);\r\n");
+		so.append("	}\r\n");
+		return so.toString();
+	}
+
+	// write Java class implementation
+	void genJavaCode() throws Exception
+	{
+		int i,j;
+
+		outputc+="/*\r\n"+APPNAME+" generated file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
+		outputc+="Notes:\r\n\tYou must provide an implementation of the lexer \'String "+PREFIX+"lex()\'\r\n";
+		outputc+="\twhich returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
+		outputc+="\tSet JJSTATS to true to count the shifts, reductions, state visits, error recoveries and stack depth of "+PREFIX+"parse()\r\n";
+		outputc+="*/\r\n";
+		// literal block
+		outputc+="\r\n/*start of literal block*/\r\n";
+		outputc+=lit;
+		outputc+="/*end of literal block*/\r\n\r\n";
+		outputc+="import java.util.Stack;\r\n";
+		outputc+="import java.util.Hashtable;\r\n\r\n";
+		outputc+="public class "+PREFIX+"class\r\n{\r\n";
+		outputc+="final int NUMTERMS="+tables.numTerms()+";\r\n";
+		outputc+="final int NUMNONTERMS="+tables.numNonterms()+";\r\n";
+		outputc+="final int NUMRULES="+tables.numRules()+";\r\n";
+		outputc+="final int NUMSTATES="+tables.numStates()+";\r\n";
+		if(defred)
+			outputc+="final int NUMACTROWS="+actionRows()+";\r\n";
+		outputc+="final int INST_ERROR=-1;\r\n";
+		outputc+="final int INST_SHIFT=0;\r\n";
+		outputc+="final int INST_REDUCE=1;\r\n";
+		outputc+="final int INST_ACCEPT=2;\r\n";
+		outputc+="static final boolean JJSTATS=false;\r\n";
+
+		outputc+="\r\n";
+		outputc+="Object "+PREFIX+"lval;\r\n";
+		outputc+="Stack vstack;\r\n";
+		outputc+="Stack stack;\r\n";
+
+		// build terminal map
+		outputc+="\r\n";
+		outputc+="Hashtable termmap=new Hashtable();\r\n";
+		outputc+=""+PREFIX+"class()\r\n{\r\n";
+		for(i=0;i<tables.numTerms();i++)
+		{
+			outputc+="\ttermmap.put(\""+tables.term(i)+"\",Integer.valueOf("+i+"));\r\n";
+		}
+		outputc+="}\r\n";
+
+		// build rules array
+		outputc+="\r\n";
+		outputc+="final int rules[][]=\r\n{\r\n";
+		for(i=0;i<tables.numRules();i++)
+		{
+			outputc+="{ "+tables.ruleLhs(i)+","+tables.ruleLength(i)+" },\r\n";
+		}
+		outputc+="};\r\n";
+
+		// build action table
+		if(!direct)
+		{
+			outputc+="\r\n";
+			outputc+="final int action[][][]=\r\n{\r\n";
+			for(i=0;i<actionRows();i++)
+			{
+				outputc+="{";
+				for(j=0;j<tables.numTerms();j++)
+				{
+					int inst=tables.actionInst(i,j);
+					if(inst==Tables.INST_SHIFT)
+					{
+						// shift
+						outputc+="{ INST_SHIFT,"+tables.actionParam(i,j)+"},";
+					}
+					else if(inst==Tables.INST_REDUCE)
+					{
+						// reduce
+						outputc+="{ INST_REDUCE,"+tables.actionParam(i,j)+"},";
+					}
+					else if(inst==Tables.INST_ACCEPT)
+					{
+						// accept
+						outputc+="{ INST_ACCEPT,0 },";
+					}
+					else
+					{
+						// error
+						outputc+="{ INST_ERROR,0 },";
+					}
+				}
+				outputc+=" },\r\n";
+			}
+			outputc+="};\r\n";
+
+			// build goto table
+			outputc+="\r\n";
+			outputc+="final int gototab[][]=\r\n{\r\n";
+			for(i=0;i<tables.numStates();i++)
+			{
+				outputc+="{";
+				for(j=0;j<tables.numNonterms();j++)
+				{
+					outputc+=tables.gotoState(i,j)+",";
+				}
+				outputc+="},\r\n";
+			}
+			outputc+="};\r\n";
+		}
+
+		// the rule of each state from NUMACTROWS on, which reduces without a lookahead
+		if(defred && !direct)
+			outputc+="\r\nfinal int defred[]=\r\n{\r\n"+numbers(defaultRules())+"\r\n};\r\n";
+
+		// build semantic actions functions
+		outputc+="\r\n";
+		outputc+="void semactions(int r) throws Exception\r\n";
+		outputc+="{\r\n";
+		outputc+="	Object rclval;\r\n";
+		outputc+="	switch(r)\r\n";
+		outputc+="	{\r\n";
+		StringBuffer cases=new StringBuffer();
+		for(i=0;i<semactions.size();i++)
+		{
+			int r=caseRule(i);
+			String t=(String)semactions.elementAt(r);
+			cases.append("	case "+r+":"+parseSemaction2(t,r)+"break;\r\n");
+		}
+		outputc+=cases;
+		outputc+="	}\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="void "+PREFIX+"error(String errmsg) throws Exception\r\n";
+		outputc+="{\r\n";
+		outputc+="\tthrow new Exception(errmsg);\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="long jjstat_shifts,jjstat_recoveries;\r\n";
+		outputc+="long[] jjstat_reductions=JJSTATS ? new long[NUMRULES] : null;\r\n";
+		outputc+="long[] jjstat_visits=JJSTATS ? new long[NUMSTATES] : null;\r\n";
+		outputc+="int jjstat_maxdepth;\r\n";
+		outputc+="\r\n";
+		outputc+="void "+PREFIX+"stats_reset()\r\n";
+		outputc+="{\r\n";
+		outputc+="	if(JJSTATS)\r\n";
+		outputc+="	{\r\n";
+		outputc+="		jjstat_shifts=jjstat_recoveries=0;\r\n";
+		outputc+="		jjstat_maxdepth=0;\r\n";
+		outputc+="		java.util.Arrays.fill(jjstat_reductions,0);\r\n";
+		outputc+="		java.util.Arrays.fill(jjstat_visits,0);\r\n";
+		outputc+="	}\r\n";
+		outputc+="}\r\n";
+		outputc+="long "+PREFIX+"stats_shifts()	{	return JJSTATS ? jjstat_shifts : 0;	}\r\n";
+		outputc+="long "+PREFIX+"stats_reductions(int r)	{	return (JJSTATS && r>=0 && r<NUMRULES) ? jjstat_reductions[r] : 0;	}\r\n";
+		outputc+="long "+PREFIX+"stats_visits(int s)	{	return (JJSTATS && s>=0 && s<NUMSTATES) ? jjstat_visits[s] : 0;	}\r\n";
+		outputc+="long "+PREFIX+"stats_recoveries()	{	return JJSTATS ? jjstat_recoveries : 0;	}\r\n";
+		outputc+="int "+PREFIX+"stats_maxdepth()	{	return JJSTATS ? jjstat_maxdepth : 0;	}\r\n";
+		outputc+="\r\n";
+		// javac folds the constant test, so the table is only built with the counters on
+		outputc+="static final int[] jjstat_stateid=JJSTATS ? new int[]\r\n{\r\n"+numbers(stateIds())+"\r\n} : null;\r\n";
+		outputc+="\r\n";
+		outputc+="// the counts as a profile for -profile, the states numbered as in the construction\r\n";
+		outputc+="void "+PREFIX+"stats_write(java.io.PrintStream f)\r\n";
+		outputc+="{\r\n";
+		outputc+="	if(!JJSTATS) return;\r\n";
+		outputc+="	for(int i=0;i<NUMSTATES;i++)\r\n";
+		outputc+="		if(jjstat_visits[i]!=0) f.print(\"s \"+jjstat_stateid[i]+\" \"+jjstat_visits[i]+\"\\n\");\r\n";
+		outputc+="	for(int i=0;i<NUMRULES;i++)\r\n";
+		outputc+="		if(jjstat_reductions[i]!=0) f.print(\"r \"+i+\" \"+jjstat_reductions[i]+\"\\n\");\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		if(direct)
+			outputc+=directCodeJava();
+		else
+		{
+			outputc+="int "+PREFIX+"parse() throws Exception\r\n";
+			outputc+="{\r\n";
+			if(defred)
+			{
+				outputc+="	String c=null;\r\n";
+				outputc+="	boolean havetok=false;\r\n";	// the lookahead is read when a state needs it
+			}
+			else
+			{
+				outputc+="	String c="+PREFIX+"lex();\r\n";
+			}
+			outputc+="	boolean recovered=false;\r\n";	// an error was recovered from at the end of input
+			outputc+="	int ic,itmp,s,inst,param=0;\r\n";
+			outputc+="	Object tmp;\r\n";
+			outputc+="	stack=new Stack();\r\n";
+			outputc+="	stack.push(Integer.valueOf(0));\r\n";
+			outputc+="	vstack=new Stack();\r\n";
+			if(!defred)
+				outputc+="	vstack.push("+PREFIX+"lval);\r\n";
+			outputc+="	while(true)\r\n";
+			outputc+="	{\r\n";
+			if(defred)
+			{
+				outputc+="		s=((Integer)stack.peek()).intValue();\r\n";
+				outputc+="		if(JJSTATS) jjstat_visits[s]++;\r\n";
+				outputc+="		if(s>=NUMACTROWS)\r\n";
+				outputc+="		{\r\n";
+				outputc+="			inst=INST_REDUCE;\r\n";
+				outputc+="			param=defred[s];\r\n";
+				outputc+="		}\r\n";
+				outputc+="		else\r\n";
+				outputc+="		{\r\n";
+				outputc+="			if(!havetok)\r\n";
+				outputc+="			{\r\n";
+				outputc+="				c="+PREFIX+"lex();\r\n";
+				outputc+="				vstack.push("+PREFIX+"lval);\r\n";
+				outputc+="				havetok=true;\r\n";
+				outputc+="			}\r\n";
+				outputc+="			tmp=termmap.get(c);\r\n";
+				outputc+="			if(tmp==null)\r\n";
+				outputc+="				inst=INST_ERROR;\r\n";
+				outputc+="			else\r\n";
+				outputc+="			{\r\n";
+				outputc+="				ic=((Integer)tmp).intValue();\r\n";
+				outputc+="				inst=action[s][ic][0];\r\n";
+				outputc+="				param=action[s][ic][1];\r\n";
+				outputc+="			}\r\n";
+				outputc+="		}\r\n";
+			}
+			else
+			{
+				outputc+="		tmp=termmap.get(c);\r\n";
+				outputc+="		if(tmp==null)\r\n";
+				outputc+="		{\r\n";
+				outputc+="			inst=INST_ERROR;\r\n";
+				outputc+="		}\r\n";
+				outputc+="		else\r\n";
+				outputc+="		{\r\n";
+				outputc+="			s=((Integer)stack.peek()).intValue();\r\n";
+				outputc+="			ic=((Integer)tmp).intValue();\r\n";
+				outputc+="			if(JJSTATS) jjstat_visits[s]++;\r\n";
+				outputc+="			inst=action[s][ic][0];\r\n";
+				outputc+="			param=action[s][ic][1];\r\n";
+				outputc+="		}\r\n";
+			}
+			outputc+="		if(inst==INST_SHIFT)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			stack.push(Integer.valueOf(param));\r\n";
+			if(defred)
+			{
+				outputc+="			havetok=false;\r\n";	// its value stays on the value stack, as that of the symbol shifted
+			}
+			else
+			{
+				outputc+="			c="+PREFIX+"lex();\r\n";
+				outputc+="			vstack.push("+PREFIX+"lval);\r\n";
+			}
+			outputc+="			recovered=false;\r\n";
+			outputc+="			if(JJSTATS) { jjstat_shifts++; if(stack.size()>jjstat_maxdepth) jjstat_maxdepth=stack.size(); }\r\n";
+			outputc+="		}\r\n";
+			for(int h=0;h<=hotrules.length;h++)
+				outputc+=reduceCodeJava(h<hotrules.length ? hotrules[h] : -1);
+			outputc+="		else if(inst==INST_ACCEPT)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			break;\r\n";
+			outputc+="		}\r\n";
+			outputc+="		else\r\n";
+			outputc+="		{\r\n";
+			outputc+="			if(JJSTATS) jjstat_recoveries++;\r\n";
+			// the end of input cannot be discarded, so an error found again at it, with no shift between, is final
+			outputc+="			if(recovered) { "+PREFIX+"error(\"error!\\r\\n\"); break; }\r\n";
+			outputc+="			ic=((Integer)termmap.get(\""+ERROR+"\")).intValue();\r\n";
+			outputc+="			itmp=0;\r\n";
+			outputc+="			while(true)\r\n";
+			outputc+="			{\r\n";
+			if(defred)
+			{
+				// the state which found the error may shift the error token itself, a state which reduces by default not having found it
+				outputc+="				if(stack.empty()) { itmp=1; break; }\r\n";
+				outputc+="				s=((Integer)stack.peek()).intValue();\r\n";
+				outputc+="				if(s>=NUMACTROWS) { stack.pop(); continue; }\r\n";
+			}
+			else
+			{
+				// as in the other backends, pop the state which found the error, and check the state uncovered, which
+				// stays below the state it shifts the error token to
+				outputc+="				stack.pop();\r\n";
+				outputc+="				if(stack.empty()) { itmp=1; break; }\r\n";
+				outputc+="				s=((Integer)stack.peek()).intValue();\r\n";
+			}
+			outputc+="				inst=action[s][ic][0];\r\n";
+			outputc+="				param=action[s][ic][1];\r\n";
+			outputc+="				if(inst==INST_SHIFT)\r\n";
+			outputc+="				{\r\n";
+			outputc+="					stack.push(Integer.valueOf(param));\r\n";
+			outputc+="					recovered=c.equals(\""+EOI+"\");\r\n";
+			if(defred)
+			{
+				outputc+="					havetok=false;\r\n";
+			}
+			else
+			{
+				outputc+="					c="+PREFIX+"lex();\r\n";
+				outputc+="					vstack.push("+PREFIX+"lval);\r\n";
+			}
+			outputc+="					break;\r\n";
+			outputc+="				}\r\n";
+			if(defred)
+				outputc+="				stack.pop();\r\n";
+			outputc+="			}\r\n";
+			outputc+="			if(itmp==1) { "+PREFIX+"error(\"error!\\r\\n\"); break; }\r\n";
+			outputc+="		}\r\n";
+			outputc+="	}\r\n";
+			outputc+="	return 0;\r\n";
+			outputc+="}\r\n";
+		}
+
+		if(tables.scanner()!=null)
+			outputc+=lexCodeJava();
+
+		outputc+="\r\n/*supporting code*/\r\n"+support+"\r\n}//end "+PREFIX+"class\r\n";
+	}
+
+	// the reduce branch of jjparse(), see reduceCodeC()
+	String reduceCodeJava(int r)
+	{
+		String p=(r<0 ? "param" : ""+r);
+		String lhs=(r<0 ? "rules[param][0]" : ""+tables.ruleLhs(r));
+		String sb="";
+		sb+="		else if(inst==INST_REDUCE"+(r<0 ? "" : " && param=="+r)+")\r\n";
+		sb+="		{\r\n";
+		if(r<0)
+			sb+="			for(int i=0;i<rules[param][1];i++) stack.pop();\r\n";
+		else
+		{
+			for(int i=0;i<tables.ruleLength(r);i++)
+				sb+="			stack.pop();\r\n";
+		}
+		sb+="			itmp=gototab[((Integer)stack.peek()).intValue()]["+lhs+"];\r\n";
+		sb+="			if(itmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	break;	}\r\n";
+		sb+="			stack.push(Integer.valueOf(itmp));\r\n";
+		sb+="			if(JJSTATS) { jjstat_reductions["+p+"]++; if(stack.size()>jjstat_maxdepth) jjstat_maxdepth=stack.size(); }\r\n";
+		if(r>=0 && plainUnit(r))
+		{
+			// $$ is $1, where it is
+		}
+		else if(defred)
+		{
+			// the value of the lookahead is only on the value stack if it has been read
+			sb+="			if(havetok) "+PREFIX+"lval=vstack.pop();\r\n";
+			sb+="			semactions("+p+");\r\n";
+			sb+="			if(havetok) vstack.push("+PREFIX+"lval);\r\n";
+		}
+		else
+		{
+			sb+="			"+PREFIX+"lval=vstack.pop();\r\n";/*temporarily remove value of recently shifted token*/
+			sb+="			semactions("+p+");\r\n";
+			sb+="			vstack.push("+PREFIX+"lval);\r\n";
+		}
+		sb+="		}\r\n";
+		return sb;
+	}
+
+	/**
+	 * jjparse() coded directly, for -d, as directCodeC() codes it: a case per state switching on the lookahead to
+	 * its shift, with the state as a constant, or to the method of the rule it reduces by.  That pops the constant
+	 * length of the rule and calls the goto method of its lhs, which switches on the state uncovered.  Java having
+	 * no goto, the loop switches on the state once per step, and shifts share the code after the switch.
+	 */
+	String directCodeJava() throws Exception
+	{
+		StringBuffer sb=new StringBuffer();
+		int i,j,k;
+		String havetok=(defred ? "havetok" : "");
+		boolean[] reduced=new boolean[tables.numRules()];	// the rules reduced by some state
+		for(i=0;i<tables.numStates();i++)
+		{
+			if(i>=actionRows())
+			{
+				reduced[tables.defaultReduction(i)]=true;
+				continue;
+			}
+			for(j=0;j<tables.numTerms();j++)
+			{
+				if(tables.actionInst(i,j)==Tables.INST_REDUCE)
+					reduced[tables.actionParam(i,j)]=true;
+			}
+		}
+
+		sb.append("// reads the lookahead onto the value stack and returns its terminal, -1 if it is none\r\n");
+		sb.append("int jjread() throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	Object t=termmap.get("+PREFIX+"lex());\r\n");
+		sb.append("	vstack.push("+PREFIX+"lval);\r\n");
+		sb.append("	return (t==null ? -1 : ((Integer)t).intValue());\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("// the state a state shifts the error token to, -1 if none\r\n");
+		sb.append("int jjerrshift(int s)\r\n");
+		sb.append("{\r\n");
+		sb.append("	switch(s)\r\n");
+		sb.append("	{\r\n");
+		Vector groups=caseGroups(errorShifts());
+		for(j=0;j<groups.size();j++)
+		{
+			int[] g=(int[])groups.elementAt(j);
+			sb.append("	");
+			for(k=1;k<g.length;k++)
+				sb.append("case "+g[k]+": ");
+			sb.append("return "+g[0]+";\r\n");
+		}
+		sb.append("	}\r\n");
+		sb.append("	return -1;\r\n");
+		sb.append("}\r\n");
+
+		boolean[] lhs=new boolean[tables.numNonterms()];
+		for(i=0;i<tables.numRules();i++)
+		{
+			if(!reduced[i])
+				continue;
+			lhs[tables.ruleLhs(i)]=true;
+			sb.append("\r\n");
+			sb.append("int jjreduce"+i+"("+(defred ? "boolean havetok" : "")+") throws Exception\r\n");
+			sb.append("{\r\n");
+			for(j=0;j<tables.ruleLength(i);j++)
+				sb.append("	stack.pop();\r\n");
+			sb.append("	int s=jjgoto"+tables.ruleLhs(i)+"();\r\n");
+			sb.append("	if(JJSTATS) jjstat_reductions["+i+"]++;\r\n");
+			if(plainUnit(i))
+			{
+				// $$ is $1, where it is
+			}
+			else if(defred)
+			{
+				// the value of the lookahead is only on the value stack if it has been read
+				sb.append("	if(havetok) "+PREFIX+"lval=vstack.pop();\r\n");
+				sb.append("	semactions("+i+");\r\n");
+				sb.append("	if(havetok) vstack.push("+PREFIX+"lval);\r\n");
+			}
+			else
+			{
+				sb.append("	"+PREFIX+"lval=vstack.pop();\r\n");
+				sb.append("	semactions("+i+");\r\n");
+				sb.append("	vstack.push("+PREFIX+"lval);\r\n");
+			}
+			sb.append("	return s;\r\n");
+			sb.append("}\r\n");
+		}
+
+		for(i=0;i<tables.numNonterms();i++)
+		{
+			if(!lhs[i])
+				continue;
+			sb.append("\r\n");
+			sb.append("int jjgoto"+i+"() throws Exception\r\n");
+			sb.append("{\r\n");
+			groups=caseGroups(gotoColumn(i));
+			if(groups.size()==0)
+			{
+				sb.append("	"+PREFIX+"error(\"error in gototab\\r\\n\");\r\n");
+				sb.append("	return -1;\r\n");
+				sb.append("}\r\n");
+				continue;
+			}
+			int most=mostCases(groups);
+			sb.append("	int s;\r\n");
+			if(groups.size()>1)
+			{
+				sb.append("	switch(((Integer)stack.peek()).intValue())\r\n");
+				sb.append("	{\r\n");
+				for(j=0;j<groups.size();j++)
+				{
+					int[] g=(int[])groups.elementAt(j);
+					if(j==most)
+						continue;
+					sb.append("	");
+					for(k=1;k<g.length;k++)
+						sb.append("case "+g[k]+": ");
+					sb.append("s="+g[0]+"; break;\r\n");
+				}
+				sb.append("	default: s="+((int[])groups.elementAt(most))[0]+";\r\n");
+				sb.append("	}\r\n");
+			}
+			else
+				sb.append("	s="+((int[])groups.elementAt(most))[0]+";\r\n");
+			sb.append("	stack.push(Integer.valueOf(s));\r\n");
+			sb.append("	if(JJSTATS && stack.size()>jjstat_maxdepth) jjstat_maxdepth=stack.size();\r\n");
+			sb.append("	return s;\r\n");
+			sb.append("}\r\n");
+		}
+
+		sb.append("\r\n");
+		sb.append("int "+PREFIX+"parse() throws Exception\r\n");
+		sb.append("{\r\n");
+		if(defred)
+		{
+			sb.append("	int ic=-1,s=0;\r\n");
+			sb.append("	boolean havetok=false;\r\n");	// the lookahead is read when a state needs it
+		}
+		else
+			sb.append("	int ic,s=0;\r\n");
+		sb.append("	boolean recovered=false;\r\n");	// an error was recovered from at the end of input
+		sb.append("	stack=new Stack();\r\n");
+		sb.append("	stack.push(Integer.valueOf(0));\r\n");
+		sb.append("	vstack=new Stack();\r\n");
+		if(!defred)
+			sb.append("	ic=jjread();\r\n");
+		sb.append("	while(true)\r\n");
+		sb.append("	{\r\n");
+		if(defred)
+		{
+			sb.append("		if(JJSTATS) jjstat_visits[s]++;\r\n");
+			sb.append("		if(s<NUMACTROWS && !havetok)\r\n");
+			sb.append("		{\r\n");
+			sb.append("			ic=jjread();\r\n");
+			sb.append("			havetok=true;\r\n");
+			sb.append("		}\r\n");
+		}
+		else
+			sb.append("		if(JJSTATS && ic>=0) jjstat_visits[s]++;\r\n");
+		sb.append("		jjshift:\r\n");
+		sb.append("		{\r\n");
+		if(tables.numStates()<=JSTATES)
+			sb.append(stateCasesJava(0,tables.numStates(),true));
+		else
+		{
+			// a method per so many states, keeping jjparse() within the size the JIT compiles
+			sb.append("			switch(s/"+JSTATES+")\r\n");
+			sb.append("			{\r\n");
+			for(i=0;i*JSTATES<tables.numStates();i++)
+				sb.append("			case "+i+": s=jjstates"+i+"(s,ic"+(defred ? ",havetok" : "")+"); break;\r\n");
+			sb.append("			}\r\n");
+			sb.append("			if(s>=0) continue;\r\n");	// reduced, to the state it returns
+			sb.append("			if(s==-2) return 0;\r\n");
+			sb.append("			if(s<-2) { s=-3-s; break jjshift; }\r\n");
+		}
+		sb.append("			if(JJSTATS) jjstat_recoveries++;\r\n");
+		// without default reductions, the state which found the error is popped first, as in the table loop;
+		// with them, it may shift the error token itself.  The state which does stays below the state it shifts to
+		if(!defred)
+			sb.append("			stack.pop();\r\n");
+		sb.append("			while(true)\r\n");
+		sb.append("			{\r\n");
+		sb.append("				if(stack.empty()) { "+PREFIX+"error(\"error!\\r\\n\"); return 0; }\r\n");
+		sb.append("				s=jjerrshift(((Integer)stack.peek()).intValue());\r\n");
+		sb.append("				if(s>=0) break;\r\n");
+		sb.append("				stack.pop();\r\n");
+		sb.append("			}\r\n");
+		// a second error at the end of input, with no shift between, is final; see genJavaCode()
+		sb.append("			if(recovered) { "+PREFIX+"error(\"error!\\r\\n\"); return 0; }\r\n");
+		sb.append("			recovered=(ic=="+termIndex(EOI)+");\r\n");
+		sb.append("			stack.push(Integer.valueOf(s));\r\n");
+		if(defred)
+			sb.append("			havetok=false;\r\n");
+		else
+			sb.append("			ic=jjread();\r\n");
+		sb.append("			continue;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		stack.push(Integer.valueOf(s));\r\n");
+		sb.append("		recovered=false;\r\n");
+		if(defred)
+			sb.append("		havetok=false;\r\n");	// its value stays on the value stack, as that of the symbol shifted
+		else
+			sb.append("		ic=jjread();\r\n");
+		sb.append("		if(JJSTATS) { jjstat_shifts++; if(stack.size()>jjstat_maxdepth) jjstat_maxdepth=stack.size(); }\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		for(i=0;tables.numStates()>JSTATES && i*JSTATES<tables.numStates();i++)
+		{
+			// returns the state reduced to, -1 for an error, -2 to accept and -3-t to shift to t
+			sb.append("\r\n");
+			sb.append("int jjstates"+i+"(int s,int ic"+(defred ? ",boolean havetok" : "")+") throws Exception\r\n");
+			sb.append("{\r\n");
+			sb.append(stateCasesJava(i*JSTATES,Math.min((i+1)*JSTATES,tables.numStates()),false));
+			sb.append("	return -1;\r\n");
+			sb.append("}\r\n");
+		}
+		return sb.toString();
+	}
+
+	// the cases of the states from..to-1 of jjparse(), inline, or else of a method of states of its own
+	String stateCasesJava(int from, int to, boolean inline)
+	{
+		StringBuffer sb=new StringBuffer();
+		String in=(inline ? "			" : "	");
+		String havetok=(defred ? "havetok" : "");
+		sb.append(in+"switch(s)\r\n");
+		sb.append(in+"{\r\n");
+		for(int i=from;i<to;i++)
+		{
+			if(i>=actionRows())
+			{
+				String reduce="jjreduce"+tables.defaultReduction(i)+"("+havetok+")";
+				sb.append(in+"case "+i+": "+(inline ? "s="+reduce+"; continue;" : "return "+reduce+";")+"\r\n");
+				continue;
+			}
+			Vector groups=caseGroups(tables.actionRow(i));
+			if(groups.size()==0)
+				continue;
+			sb.append(in+"case "+i+":\r\n");
+			sb.append(in+"	switch(ic)\r\n");
+			sb.append(in+"	{\r\n");
+			for(int j=0;j<groups.size();j++)
+			{
+				int[] g=(int[])groups.elementAt(j);
+				sb.append(in+"	");
+				for(int k=1;k<g.length;k++)
+					sb.append("case "+g[k]+": ");
+				int inst=g[0]&3;
+				String reduce="jjreduce"+(g[0]>>2)+"("+havetok+")";
+				if(inst==Tables.INST_SHIFT)
+					sb.append(inline ? "s="+(g[0]>>2)+"; break jjshift;" : "return "+(-3-(g[0]>>2))+";");
+				else if(inst==Tables.INST_REDUCE)
+					sb.append(inline ? "s="+reduce+"; continue;" : "return "+reduce+";");
+				else
+					sb.append(inline ? "return 0;" : "return -2;");
+				sb.append("\r\n");
+			}
+			sb.append(in+"	}\r\n");
+			sb.append(in+"	break;\r\n");
+		}
+		sb.append(in+"}\r\n");
+		return sb.toString();
+	}
+
+	// the scanner of the %lex section, reading jjin (System.in by default) through a growing buffer.
+	// A file given to jjlexmap() is scanned in place through a window mapped over it; jjtext is then only
+	// materialized from jjspan for the actions which use it.  Both read the input as ISO-8859-1, like the 8-bit patterns
+	String lexCodeJava() throws Exception
+	{
+		Scanner sc=tables.scanner();
+		StringBuffer sb=new StringBuffer();
+		int i,j;
+
+		int[] classes=new int[Scanner.NUMCHARS];
+		for(i=0;i<classes.length;i++)
+			classes[i]=sc.charClass(i);
+		int[] rows=new int[sc.numStates()];
+		int[] accept=new int[sc.numStates()];
+		for(i=0;i<rows.length;i++)
+		{
+			rows[i]=sc.row(i);
+			accept[i]=sc.accept(i);
+		}
+
+		sb.append("\r\n");
+		sb.append("final int jjlexclass[]=\r\n{\r\n"+numbers(classes)+"\r\n};\r\n");
+		sb.append("final int jjlexrow[]=\r\n{\r\n"+numbers(rows)+"\r\n};\r\n");
+		sb.append("final int jjlexnext[][]=\r\n{\r\n");
+		for(i=0;i<sc.numRows();i++)
+		{
+			int[] r=new int[sc.numClasses()];
+			for(j=0;j<r.length;j++)
+				r[j]=sc.next(i,j);
+			sb.append("{"+numbers(r)+"},\r\n");
+		}
+		sb.append("};\r\n");
+		sb.append("final int jjlexaccept[]=\r\n{\r\n"+numbers(accept)+"\r\n};\r\n");
+		sb.append("final String jjlextoken[]=\r\n{\r\n");
+		for(i=0;i<sc.numPatterns();i++)
+			sb.append(sc.tokenName(i)==null ? "null,\r\n" : "\""+sc.tokenName(i)+"\",\r\n");
+		sb.append("};\r\n");
+
+		sb.append("\r\n");
+		sb.append("final java.nio.charset.Charset JJCHARSET=java.nio.charset.Charset.forName(\"ISO-8859-1\");	// of the input, mapped or not\r\n");
+		sb.append("java.io.Reader "+PREFIX+"in=new java.io.InputStreamReader(System.in,JJCHARSET);\r\n");
+		sb.append("String "+PREFIX+"text;	// null for input mapped by jjlexmap(), but in the actions which use it\r\n");
+		sb.append("JJSpan "+PREFIX+"span;	// offset and length of the last token in the input\r\n");
+		sb.append("char[] jjbuf=new char[4096];\r\n");
+		sb.append("int jjbuflen,jjbufpos;\r\n");
+		sb.append("long jjbufoff;	// offset of jjbuf or jjmap in the input\r\n");
+		sb.append("java.nio.channels.FileChannel jjchan;\r\n");
+		sb.append("java.nio.MappedByteBuffer jjmap;\r\n");
+		sb.append("long jjmapsize;\r\n");
+		sb.append("final int JJWINDOW=1<<28;\r\n");
+		sb.append("\r\n");
+		sb.append("class JJSpan\r\n");
+		sb.append("{\r\n");
+		sb.append("	final long off;\r\n");
+		sb.append("	final int len;\r\n");
+		sb.append("	String text;\r\n");
+		sb.append("	JJSpan(long off,int len,String text)	{	this.off=off; this.len=len; this.text=text;	}\r\n");
+		sb.append("	public String toString()\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(text==null)\r\n");
+		sb.append("			text=jjspantext(off,len);\r\n");
+		sb.append("		return text;\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("void "+PREFIX+"lexmap(String path) throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	jjchan=new java.io.RandomAccessFile(path,\"r\").getChannel();\r\n");
+		sb.append("	jjmapsize=jjchan.size();\r\n");
+		sb.append("	jjbufoff=jjbufpos=0;\r\n");
+		sb.append("	jjremap();\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("// move the window to start at the current token\r\n");
+		sb.append("void jjremap() throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	jjbufoff+=jjbufpos;\r\n");
+		sb.append("	jjbufpos=0;\r\n");
+		sb.append("	jjmap=jjchan.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,jjbufoff,Math.min(JJWINDOW,jjmapsize-jjbufoff));\r\n");
+		sb.append("	jjbuflen=jjmap.limit();\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("String jjspantext(long off,int len)\r\n");
+		sb.append("{\r\n");
+		sb.append("	byte[] b=new byte[len];\r\n");
+		sb.append("	try\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(off>=jjbufoff && off+len<=jjbufoff+jjbuflen)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			for(int i=0;i<len;i++)\r\n");
+		sb.append("				b[i]=jjmap.get((int)(off-jjbufoff)+i);\r\n");
+		sb.append("		}\r\n");
+		sb.append("		else\r\n");
+		sb.append("		{\r\n");
+		sb.append("			java.nio.ByteBuffer bb=java.nio.ByteBuffer.wrap(b);\r\n");
+		sb.append("			while(bb.hasRemaining() && jjchan.read(bb,off+bb.position())>0);\r\n");
+		sb.append("		}\r\n");
+		sb.append("		return new String(b,JJCHARSET);\r\n");
+		sb.append("	}\r\n");
+		sb.append("	catch(java.io.IOException e)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		throw new RuntimeException(e.toString());\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("int jjlexchar(int i) throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	if(jjmap!=null)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(jjbufpos+i>=jjbuflen)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			if(jjbufoff+jjbuflen>=jjmapsize || jjbufpos==0)\r\n");
+		sb.append("				return -1;\r\n");
+		sb.append("			jjremap();\r\n");
+		sb.append("		}\r\n");
+		sb.append("		return jjmap.get(jjbufpos+i)&0xff;\r\n");
+		sb.append("	}\r\n");
+		sb.append("	while(jjbufpos+i>=jjbuflen)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(jjbufpos>0)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			System.arraycopy(jjbuf,jjbufpos,jjbuf,0,jjbuflen-jjbufpos);\r\n");
+		sb.append("			jjbufoff+=jjbufpos;\r\n");
+		sb.append("			jjbuflen-=jjbufpos;\r\n");
+		sb.append("			jjbufpos=0;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		if(jjbuflen==jjbuf.length)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			char[] b=new char[2*jjbuf.length];\r\n");
+		sb.append("			System.arraycopy(jjbuf,0,b,0,jjbuflen);\r\n");
+		sb.append("			jjbuf=b;\r\n");
+		sb.append("		}\r\n");
+		sb.append("		int n="+PREFIX+"in.read(jjbuf,jjbuflen,jjbuf.length-jjbuflen);\r\n");
+		sb.append("		if(n<=0)\r\n");
+		sb.append("			return -1;\r\n");
+		sb.append("		jjbuflen+=n;\r\n");
+		sb.append("	}\r\n");
+		sb.append("	return jjbuf[jjbufpos+i];\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("void jjlexaction(int p) throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	switch(p)\r\n");
+		sb.append("	{\r\n");
+		for(i=0;i<sc.numPatterns();i++)
+		{
+			if(sc.action(i).indexOf(PREFIX+"text")>=0)	// materialized from the span, if mapped
+				sb.append("	case "+i+":"+PREFIX+"text="+PREFIX+"span.toString();"+sc.action(i)+"break;\r\n");
+			else if(sc.action(i).length()>0)
+				sb.append("	case "+i+":"+sc.action(i)+"break;\r\n");
+		}
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("String "+PREFIX+"lex() throws Exception\r\n");
+		sb.append("{\r\n");
+		sb.append("	int s,c,i,p,len;\r\n");
+		sb.append("	while(true)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if(jjlexchar(0)<0)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			"+PREFIX+"text=\"\";\r\n");
+		sb.append("			"+PREFIX+"span=new JJSpan(jjbufoff+jjbufpos,0,"+PREFIX+"text);\r\n");
+		sb.append("			return \""+EOI+"\";\r\n");
+		sb.append("		}\r\n");
+		sb.append("		s=0;\r\n");
+		sb.append("		p=-1;\r\n");
+		sb.append("		len=0;\r\n");
+		sb.append("		for(i=0;(c=jjlexchar(i))>=0;)\r\n");
+		sb.append("		{\r\n");
+		sb.append("			s=jjlexnext[jjlexrow[s]][jjlexclass[c<256 ? c : 256]];\r\n");
+		sb.append("			if(s<0)\r\n");
+		sb.append("				break;\r\n");
+		sb.append("			i++;\r\n");
+		sb.append("			if(jjlexaccept[s]>=0)	{	p=jjlexaccept[s]; len=i;	}\r\n");
+		sb.append("		}\r\n");
+		sb.append("		if(len==0)\r\n");
+		sb.append("			len=1;\r\n");
+		sb.append("		"+PREFIX+"text=(jjmap!=null ? null : new String(jjbuf,jjbufpos,len));\r\n");
+		sb.append("		"+PREFIX+"span=new JJSpan(jjbufoff+jjbufpos,len,"+PREFIX+"text);\r\n");
+		sb.append("		c=jjlexchar(0);\r\n");
+		sb.append("		jjbufpos+=len;\r\n");
+		sb.append("		if(p<0)\r\n");
+		sb.append("			return \"\'\"+(char)c+\"\'\";	// matched by no pattern\r\n");
+		sb.append("		jjlexaction(p);\r\n");
+		sb.append("		if(jjlextoken[p]!=null)\r\n");
+		sb.append("			return jjlextoken[p];\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		return sb.toString();
+	}
+
+/////////////////////////////////////// PERL ///////////////////////////////////////
+
+	// the reduce branch of jjparse(), see reduceCodeC()
+	String reduceCodePerl(int r)
+	{
+		String p=(r<0 ? "$param" : ""+r);
+		String len=(r<0 ? "$rules[$param][1]" : ""+tables.ruleLength(r));
+		String lhs=(r<0 ? "$rules[$param][0]" : ""+tables.ruleLhs(r));
+		String sb="";
+		sb+="		elsif($inst==$INST_REDUCE"+(r<0 ? "" : " && $param=="+r)+")\r\n";
+		sb+="		{\r\n";
+		sb+="			$#stack-=2*"+len+";\r\n";
+		sb+="			if($#stack<0)	{	"+PREFIX+"error(\"error, stack underflow\\r\\n\");	last MAINLOOP;	}\r\n";
+		sb+="			$tmp=$gototab[$stack[$#stack]]["+lhs+"];\r\n";
+		sb+="			$stack[++$#stack]="+lhs+";\r\n";
+		sb+="			if($tmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	last MAINLOOP;	}\r\n";
+		sb+="			$stack[++$#stack]=$tmp;\r\n";
+		sb+="			if(JJSTATS) { $jjstat_reductions["+p+"]++; $jjstat_maxdepth=$#stack/2+1 if $#stack/2+1>$jjstat_maxdepth; }\r\n";
+		if(r>=0 && plainUnit(r))
+		{
+			// $$ is $1, where it is
+		}
+		else if(defred)
+		{
+			// the value of the lookahead is only on the value stack if it has been read
+			sb+="			$"+PREFIX+"lval=$vstack[$#vstack--] if $havetok;\r\n";
+			sb+="			semactions("+p+");\r\n";
+			sb+="			$vstack[++$#vstack]=$"+PREFIX+"lval if $havetok;\r\n";
+		}
+		else
+		{
+			sb+="			$"+PREFIX+"lval=$vstack[$#vstack--];\r\n";/*temporarily remove value of recently shifted token*/
+			sb+="			semactions("+p+");\r\n";
+			sb+="			$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
+		}
+		sb+="		}\r\n";
+		return sb;
+	}
+
+	// replace the $n's, etc. in { ... }
+	String parseSemaction3(String s, int ruleno)	throws Exception
+	{
+		Vector v=(Vector)rules.elementAt(ruleno);
+		int rhslen=v.size()-1;
+
+		StringBuffer so=new StringBuffer("{");
+
+		if(s.length()<1)
+		{
+			return " $#vstack-="+(rhslen-1)+";";
+			/*
+			epsilon production contains this case:
+			return " $#vstack++;";
+			and stack value is indeterminate
+			*/
+		}
+
+		SemAction a=semAction(ruleno);
+		if(rhslen>0)
+			so.append("$rclval=$vstack[$#vstack-"+(rhslen-1)+"];\r\n");
+		else	// if an epsilon production
+			so.append("$rclval=0;\r\n");
+		for(int i=0;i<a.refs.length;i++)
+		{
+			so.append(a.lits[i]);
+			if(a.refs[i]==0)
+				so.append("$rclval");
+			else
+				so.append("$vstack[$#vstack-"+(rhslen-a.refs[i])+"]");
+		}
+		so.append(a.lits[a.refs.length]);
+		so.append("\r\n");
+		so.append("	$vstack[$#vstack-="+(rhslen-1)+"]=$rclval;\r\n");
+		/*
+		epsilon production contains this case:
+		so+="	vstack[++$#vstack]=rclval;\r\n";
+		*/
+		so.append("	}\r\n");
+		return so.toString();
+	}
+
+	// write PERL code implementation
+	void genPERLCode() throws Exception
+	{
+		int i,j;
+
+		outputc+="#"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
+		outputc+="#Notes:\r\n#You must provide an implementation of the lexer \'sub "+PREFIX+"lex()\'\r\n";
+		outputc+="#which returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
+		outputc+="#Set JJSTATS in the environment to count the shifts, reductions, state visits, error recoveries and stack depth of "+PREFIX+"parse()\r\n";
+		outputc+="\r\n#start of literal block\r\n";
+		outputc+=lit;
+		outputc+="#end of literal block\r\n\r\n";
+		outputc+="my $NUMTERMS="+tables.numTerms()+";\r\n";
+		outputc+="my $NUMNONTERMS="+tables.numNonterms()+";\r\n";
+		outputc+="my $NUMRULES="+tables.numRules()+";\r\n";
+		outputc+="my $NUMSTATES="+tables.numStates()+";\r\n";
+		if(defred)
+			outputc+="my $NUMACTROWS="+actionRows()+";\r\n";
+		outputc+="my $INST_ERROR=-1;\r\n";
+		outputc+="my $INST_SHIFT=0;\r\n";
+		outputc+="my $INST_REDUCE=1;\r\n";
+		outputc+="my $INST_ACCEPT=2;\r\n";
+		outputc+="use constant JJSTATS => ($ENV{JJSTATS} ? 1 : 0);\r\n";
+
+		outputc+="\r\n";
+		outputc+="my $jjlval;\r\n";
+		outputc+="my @stack;\r\n";
+		outputc+="my @vstack;\r\n";
+
+		// build terminal map
+		outputc+="\r\n";
+		outputc+="my %termmap=\r\n(\r\n";
+		for(i=0;i<tables.numTerms();i++)
+		{
+			String t=tables.term(i);
+			outputc+="\""+t+"\" => "+i+",\r\n";
+		}
+		outputc+=");\r\n";
+
+		// build rules array
+		outputc+="\r\n";
+		outputc+="my @rules=\r\n(\r\n";
+		for(i=0;i<tables.numRules();i++)
+		{
+			outputc+="[ "+tables.ruleLhs(i)+","+tables.ruleLength(i)+" ],\r\n";
+		}
+		outputc+=");\r\n";
+
+		// build action table
+		outputc+="\r\n";
+		outputc+="my @action=\r\n(\r\n";
+		for(i=0;i<actionRows();i++)
+		{
+			outputc+="[";
+			for(j=0;j<tables.numTerms();j++)
+			{
+				int inst=tables.actionInst(i,j);
+				if(inst==Tables.INST_SHIFT)
+				{
+					// shift
+					outputc+="[ $INST_SHIFT,"+tables.actionParam(i,j)+"],";
+				}
+				else if(inst==Tables.INST_REDUCE)
+				{
+					// reduce
+					outputc+="[ $INST_REDUCE,"+tables.actionParam(i,j)+"],";
+				}
+				else if(inst==Tables.INST_ACCEPT)
+				{
+					// accept
+					outputc+="[ $INST_ACCEPT,0 ],";
+				}
+				else
+				{
+					// error
+					outputc+="[ $INST_ERROR,0 ],";
+				}
+			}
+			outputc+=" ],\r\n";
+		}
+		outputc+=");\r\n";
+
+		// build goto table
+		outputc+="\r\n";
+		outputc+="my @gototab=\r\n(\r\n";
+		for(i=0;i<tables.numStates();i++)
+		{
+			outputc+="[";
+			for(j=0;j<tables.numNonterms();j++)
+			{
+				outputc+=tables.gotoState(i,j)+",";
+			}
+			outputc+="],\r\n";
+		}
+		outputc+=");\r\n";
+
+		// the rule of each state from $NUMACTROWS on, which reduces without a lookahead
+		if(defred)
+			outputc+="\r\nmy @defred=\r\n(\r\n"+numbers(defaultRules())+"\r\n);\r\n";
+
+		// build semantic actions functions
+		outputc+="\r\n";
+		outputc+="sub semactions\r\n";
+		outputc+="{\r\n";
+		outputc+="	my $r=shift;\r\n";
+		outputc+="	my $rclval;\r\n";
+		StringBuffer cases=new StringBuffer();
+		for(i=0;i<semactions.size();i++)
+		{
+			int r=caseRule(i);
+			String t=(String)semactions.elementAt(r);
+			if(i==0)
+			{
+				cases.append("	if($r=="+r+")\r\n{\r\n"+parseSemaction3(t,r)+"\r\n}\r\n");
+			}
+			else
+			{
+				cases.append("	elsif($r=="+r+")\r\n{\r\n"+parseSemaction3(t,r)+"\r\n}\r\n");
+			}
+		}
+		outputc+=cases;
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="sub "+PREFIX+"error\r\n";
+		outputc+="{\r\n";
+		outputc+="	my $errmsg=shift;\r\n";
+		outputc+="	print $errmsg.\"\\r\\n\";\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="my ($jjstat_shifts,$jjstat_recoveries,$jjstat_maxdepth)=(0,0,0);\r\n";
+		outputc+="my (@jjstat_reductions,@jjstat_visits);\r\n";
+		outputc+="sub "+PREFIX+"stats_reset	{	($jjstat_shifts,$jjstat_recoveries,$jjstat_maxdepth)=(0,0,0); @jjstat_reductions=(); @jjstat_visits=();	}\r\n";
+		outputc+="sub "+PREFIX+"stats_shifts	{	return $jjstat_shifts;	}\r\n";
+		outputc+="sub "+PREFIX+"stats_reductions	{	my $r=shift; return ($r>=0 && $r<$NUMRULES) ? $jjstat_reductions[$r] || 0 : 0;	}\r\n";
+		outputc+="sub "+PREFIX+"stats_visits	{	my $s=shift; return ($s>=0 && $s<$NUMSTATES) ? $jjstat_visits[$s] || 0 : 0;	}\r\n";
+		outputc+="sub "+PREFIX+"stats_recoveries	{	return $jjstat_recoveries;	}\r\n";
+		outputc+="sub "+PREFIX+"stats_maxdepth	{	return $jjstat_maxdepth;	}\r\n";
+		outputc+="my @jjstat_stateid=\r\n(\r\n"+numbers(stateIds())+"\r\n);\r\n";
+		outputc+="# the counts as a profile for -profile, the states numbered as in the construction\r\n";
+		outputc+="sub "+PREFIX+"stats_write\r\n";
+		outputc+="{\r\n";
+		outputc+="	my $f=shift;\r\n";
+		outputc+="	for(my $i=0;$i<=$#jjstat_visits;$i++) { printf $f \"s %d %d\\n\",$jjstat_stateid[$i],$jjstat_visits[$i] if $jjstat_visits[$i]; }\r\n";
+		outputc+="	for(my $i=0;$i<=$#jjstat_reductions;$i++) { printf $f \"r %d %d\\n\",$i,$jjstat_reductions[$i] if $jjstat_reductions[$i]; }\r\n";
+		outputc+="}\r\n";
+
+		outputc+="\r\n";
+		outputc+="sub "+PREFIX+"parse\r\n";
+		outputc+="{\r\n";
+		if(defred)
+		{
+			outputc+="	my ($c,$havetok);\r\n";	// the lookahead is read when a state needs it
+			outputc+="	my ($ic,$s,$inst,$param,$tmp);\r\n";
+			outputc+="	$stack[++$#stack]=0;\r\n";
+		}
+		else
+		{
+			outputc+="	my $c="+PREFIX+"lex();\r\n";
+			outputc+="	my ($ic,$s,$inst,$param,$tmp);\r\n";
+			outputc+="	$stack[++$#stack]=0;\r\n";
+			outputc+="	$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
+		}
+		outputc+="	my $recovered=0;\r\n";	// an error was recovered from at the end of input
+		outputc+="	MAINLOOP: while(1)\r\n";
+		outputc+="	{\r\n";
+		if(defred)
+		{
+			outputc+="		$s=$stack[$#stack];\r\n";
+			outputc+="		if(JJSTATS) { $jjstat_visits[$s]++; }\r\n";
+			outputc+="		if($s>=$NUMACTROWS)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			$inst=$INST_REDUCE;\r\n";
+			outputc+="			$param=$defred[$s];\r\n";
+			outputc+="		}\r\n";
+			outputc+="		else\r\n";
+			outputc+="		{\r\n";
+			outputc+="			if(!$havetok)\r\n";
+			outputc+="			{\r\n";
+			outputc+="				$c="+PREFIX+"lex();\r\n";
+			outputc+="				$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
+			outputc+="				$havetok=1;\r\n";
+			outputc+="			}\r\n";
+			outputc+="			$ic=$termmap{$c};\r\n";
+			outputc+="			if(not defined $ic)\r\n";
+			outputc+="			{\r\n";
+			outputc+="				$inst=$INST_ERROR;\r\n";
+			outputc+="			}\r\n";
+			outputc+="			else\r\n";
+			outputc+="			{\r\n";
+			outputc+="				$inst=$action[$s][$ic][0];\r\n";
+			outputc+="				$param=$action[$s][$ic][1];\r\n";
+			outputc+="			}\r\n";
+			outputc+="		}\r\n";
+		}
+		else
+		{
+			outputc+="		$ic=$termmap{$c};\r\n";
+			outputc+="		if(not defined $ic)\r\n";
+			outputc+="		{\r\n";
+			outputc+="			$inst=$INST_ERROR;\r\n";
+			outputc+="		}\r\n";
+			outputc+="		else\r\n";
+			outputc+="		{\r\n";
+			outputc+="			$s=$stack[$#stack];\r\n";
+			outputc+="			if(JJSTATS) { $jjstat_visits[$s]++; }\r\n";
+			outputc+="			$inst=$action[$s][$ic][0];\r\n";
+			outputc+="			$param=$action[$s][$ic][1];\r\n";
+			outputc+="		}\r\n";
+		}
+		outputc+="		if($inst==$INST_SHIFT)\r\n";
+		outputc+="		{\r\n";
+		outputc+="			$stack[++$#stack]=$ic;\r\n";
+		outputc+="			$stack[++$#stack]=$param;\r\n";
+		if(defred)
+		{
+			outputc+="			$havetok=0;\r\n";	// its value stays on the value stack, as that of the symbol shifted
+		}
+		else
+		{
+			outputc+="			$c="+PREFIX+"lex();\r\n";
+			outputc+="			$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
+		}
+		outputc+="			$recovered=0;\r\n";
+		outputc+="			if(JJSTATS) { $jjstat_shifts++; $jjstat_maxdepth=$#stack/2+1 if $#stack/2+1>$jjstat_maxdepth; }\r\n";
+		outputc+="		}\r\n";
+		for(int h=0;h<=hotrules.length;h++)
+			outputc+=reduceCodePerl(h<hotrules.length ? hotrules[h] : -1);
+		outputc+="		elsif($inst==$INST_ACCEPT)\r\n";
+		outputc+="		{\r\n";
+		outputc+="			last MAINLOOP;\r\n";
+		outputc+="		}\r\n";
+		outputc+="		else\r\n";
+		outputc+="		{\r\n";
+		outputc+="			if(JJSTATS) { $jjstat_recoveries++; }\r\n";
+		outputc+="			$tmp=0;\r\n";	// not used?
+		// a second error at the end of input, with no shift between, is final; see genJavaCode()
+		outputc+="			if($recovered)	{	"+PREFIX+"error(\"error!\\r\\n\");	last MAINLOOP; };\r\n";
+		outputc+="			$ic=$termmap{\""+ERROR+"\"};\r\n";
+		if(defred)
+		{
+			// the state which found the error may shift the error token itself, a state which reduces by default not having found it
+			outputc+="			for(;;$#stack-=2)\r\n";
+			outputc+="			{\r\n";
+			outputc+="				if($#stack<0)	{	"+PREFIX+"error(\"error!\\r\\n\");	last MAINLOOP; };\r\n";
+			outputc+="				$s=$stack[$#stack];\r\n";
+			outputc+="				next if $s>=$NUMACTROWS;\r\n";
+		}
+		else
+		{
+			outputc+="			while(1)\r\n";
+			outputc+="			{\r\n";
+			outputc+="				$#stack-=2;\r\n";
+			outputc+="				if($#stack<0)	{	"+PREFIX+"error(\"error!\\r\\n\");	last MAINLOOP; };\r\n";
+			outputc+="				$s=$stack[$#stack];\r\n";
+		}
+		outputc+="				$inst=$action[$s][$ic][0];\r\n";
+		outputc+="				$param=$action[$s][$ic][1];\r\n";
+		outputc+="				if($inst==$INST_SHIFT)\r\n";
+		outputc+="				{\r\n";
+		outputc+="					$stack[++$#stack]=$ic;\r\n";
+		outputc+="					$stack[++$#stack]=$param;\r\n";
+		outputc+="					$recovered=($c eq \""+EOI+"\");\r\n";
+		if(defred)
+		{
+			outputc+="					$havetok=0;\r\n";
+		}
+		else
+		{
+			outputc+="					$c="+PREFIX+"lex();\r\n";
+			outputc+="					$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
+		}
+		outputc+="					last;\r\n";
+		outputc+="				}\r\n";
+		outputc+="			}\r\n";
+		outputc+="		}\r\n";
+		outputc+="	}\r\n";
+		outputc+="}\r\n";
+
+		if(tables.scanner()!=null)
+			outputc+=lexCodePERL();
+
+		outputc+="\r\n#supporting code\r\n"+support;
+	}
+
+	// the scanner of the %lex section, over the whole of STDIN read on the first call
+	String lexCodePERL() throws Exception
+	{
+		Scanner sc=tables.scanner();
+		StringBuffer sb=new StringBuffer();
+		int i,j;
+
+		int[] classes=new int[Scanner.NUMCHARS];
+		for(i=0;i<classes.length;i++)
+			classes[i]=sc.charClass(i);
+		int[] rows=new int[sc.numStates()];
+		int[] accept=new int[sc.numStates()];
+		for(i=0;i<rows.length;i++)
+		{
+			rows[i]=sc.row(i);
+			accept[i]=sc.accept(i);
+		}
+
+		sb.append("\r\n");
+		sb.append("my @jjlexclass=\r\n(\r\n"+numbers(classes)+"\r\n);\r\n");
+		sb.append("my @jjlexrow=\r\n(\r\n"+numbers(rows)+"\r\n);\r\n");
+		sb.append("my @jjlexnext=\r\n(\r\n");
+		for(i=0;i<sc.numRows();i++)
+		{
+			int[] r=new int[sc.numClasses()];
+			for(j=0;j<r.length;j++)
+				r[j]=sc.next(i,j);
+			sb.append("["+numbers(r)+"],\r\n");
+		}
+		sb.append(");\r\n");
+		sb.append("my @jjlexaccept=\r\n(\r\n"+numbers(accept)+"\r\n);\r\n");
+		sb.append("my @jjlextoken=\r\n(\r\n");
+		for(i=0;i<sc.numPatterns();i++)
+			sb.append(sc.tokenName(i)==null ? "undef,\r\n" : "\""+sc.tokenName(i)+"\",\r\n");
+		sb.append(");\r\n");
+
+		sb.append("\r\n");
+		sb.append("my $jjinput;\r\n");
+		sb.append("my $jjpos=0;\r\n");
+		sb.append("my $"+PREFIX+"text;\r\n");
+		sb.append("\r\n");
+		sb.append("sub jjlexaction\r\n");
+		sb.append("{\r\n");
+		sb.append("	my $p=shift;\r\n");
+		boolean first=true;
+		for(i=0;i<sc.numPatterns();i++)
+		{
+			if(sc.action(i).length()==0)
+				continue;
+			sb.append((first ? "	if" : "	elsif")+"($p=="+i+")\r\n"+sc.action(i)+"\r\n");
+			first=false;
+		}
+		sb.append("}\r\n");
+		sb.append("\r\n");
+		sb.append("sub "+PREFIX+"lex\r\n");
+		sb.append("{\r\n");
+		sb.append("	if(!defined $jjinput)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		local $/;\r\n");
+		sb.append("		$jjinput=<STDIN>;\r\n");
+		sb.append("		$jjinput=\"\" if !defined $jjinput;\r\n");
+		sb.append("	}\r\n");
+		sb.append("	while(1)\r\n");
+		sb.append("	{\r\n");
+		sb.append("		if($jjpos>=length($jjinput))\r\n");
+		sb.append("		{\r\n");
+		sb.append("			$"+PREFIX+"text=\"\";\r\n");
+		sb.append("			return \""+EOI+"\";\r\n");
+		sb.append("		}\r\n");
+		sb.append("		my ($s,$p,$len,$i)=(0,-1,0,0);\r\n");
+		sb.append("		while($jjpos+$i<length($jjinput))\r\n");
+		sb.append("		{\r\n");
+		sb.append("			my $c=ord(substr($jjinput,$jjpos+$i,1));\r\n");
+		sb.append("			$s=$jjlexnext[$jjlexrow[$s]][$jjlexclass[$c<256 ? $c : 256]];\r\n");
+		sb.append("			last if $s<0;\r\n");
+		sb.append("			$i++;\r\n");
+		sb.append("			if($jjlexaccept[$s]>=0)	{	$p=$jjlexaccept[$s]; $len=$i;	}\r\n");
+		sb.append("		}\r\n");
+		sb.append("		$len=1 if $len==0;\r\n");
+		sb.append("		$"+PREFIX+"text=substr($jjinput,$jjpos,$len);\r\n");
+		sb.append("		$jjpos+=$len;\r\n");
+		sb.append("		return \"\'\".$"+PREFIX+"text.\"\'\" if $p<0;	# matched by no pattern\r\n");
+		sb.append("		jjlexaction($p);\r\n");
+		sb.append("		return $jjlextoken[$p] if defined $jjlextoken[$p];\r\n");
+		sb.append("	}\r\n");
+		sb.append("}\r\n");
+		return sb.toString();
+	}
+
+/////////////////////////////////////// Python ///////////////////////////////////////
+
+	// the reduce branch of jjparse(), see reduceCodeC()
+	String reduceCodePython(int r)
+	{
+		String p=(r<0 ? "param" : ""+r);
+		String len=(r<0 ? "rules[param][1]" : ""+tables.ruleLength(r));
+		String lhs=(r<0 ? "rules[param][0]" : ""+tables.ruleLhs(r));
+		String sb="";
+		sb+="		elif inst==INST_REDUCE"+(r<0 ? "" : " and param=="+r)+":\r\n";
+		sb+="			try:\r\n";
+		sb+="				stack[len(stack)-2*"+len+":]=[]\r\n";
+		sb+="			except:\r\n";
+		sb+="				"+PREFIX+"error(\"error, stack underflow\\r\\n\")\r\n";
+		sb+="				break\r\n";
+		sb+="			tmp=gototab[stack[-1]]["+lhs+"]\r\n";
+		sb+="			stack.append("+lhs+")\r\n";
+		sb+="			if tmp<0:\r\n";
+		sb+="				"+PREFIX+"error(\"error in gototab\\r\\n\")\r\n";
+		sb+="				break\r\n";
+		sb+="			stack.append(tmp)\r\n";
+		sb+="			if stats:\r\n";
+		sb+="				jjstat_reductions["+p+"]+=1\r\n";
+		sb+="				jjstat_maxdepth=max(jjstat_maxdepth,len(stack)//2+1)\r\n";
+		if(r>=0 && plainUnit(r))
+		{
+			// $$ is $1, where it is
+		}
+		else if(defred)
+		{
+			// the value of the lookahead is only on the value stack if it has been read
+			sb+="			if havetok: "+PREFIX+"lval=vstack.pop()\r\n";
+			sb+="			semactions("+p+")\r\n";
+			sb+="			if havetok: vstack.append("+PREFIX+"lval)\r\n";
+		}
+		else
+		{
+			sb+="			"+PREFIX+"lval=vstack.pop()\r\n";/*temporarily remove value of recently shifted token*/
+			sb+="			semactions("+p+")\r\n";
+			sb+="			vstack.append("+PREFIX+"lval)\r\n";
+		}
+		return sb;
+	}
+
+	// replace the $n's, etc. in { ... }
+	String parseSemaction4(String s, int ruleno)	throws Exception
+	{
+		Vector v=(Vector)rules.elementAt(ruleno);
+		int rhslen=v.size()-1;
+
+		StringBuffer so=new StringBuffer();
+
+		if(s.length()<1)
+		{
+			if(rhslen==0)	// if an epsilon production, push dummy value
+				return "\t\tvstack.append(0)";
+			return "\t\tvstack[len(vstack)-"+(rhslen-1)+":]=[]";
+		}
+
+		SemAction a=semAction(ruleno);
+		if(rhslen>0)
+			so.append("\t\trclval=vstack[len(vstack)-"+(rhslen)+"]\r\n");
+		else	// if an epsilon production
+			so.append("\t\trclval=0\r\n");
+		// the action is indented as the statements around it, so the blanks after '{' are dropped
+		String first=a.lits[0];
+		int k=0;
+		while(k<first.length() && (first.charAt(k)==' ' || first.charAt(k)=='\t'))
+			k++;
+		so.append("\t\t"+first.substring(k));
+		for(int i=0;i<a.refs.length;i++)
+		{
+			if(i>0)
+				so.append(a.lits[i]);
+			if(a.refs[i]==0)
+				so.append("rclval");
+			else
+				so.append("vstack[len(vstack)-"+(rhslen-a.refs[i]+1)+"]");
+		}
+		if(a.refs.length>0)
+			so.append(a.lits[a.refs.length]);
+		so.append("\r\n\t\tvstack[len(vstack)-"+(rhslen)+":]=[]\r\n");
+		so.append("\t\tvstack.append(rclval)");
+		return so.toString();
+	}
+
+	// write Python code implementation
+	void genPythonCode() throws Exception
+	{
+		int i,j;
+
+		outputc+="#"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
+		outputc+="#Notes:\r\n#You must provide an implementation of the lexer \'"+PREFIX+"lex()\'\r\n";
+		outputc+="#which returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
+		outputc+="#Set JJSTATS in the environment to count the shifts, reductions, state visits, error recoveries and stack depth of "+PREFIX+"parse()\r\n";
+		outputc+="\r\n#start of literal block\r\n";
+		outputc+=lit;
+		outputc+="#end of literal block\r\n\r\n";
+		outputc+="import os\r\n";
+		outputc+="NUMTERMS="+tables.numTerms()+"\r\n";
+		outputc+="NUMNONTERMS="+tables.numNonterms()+"\r\n";
+		outputc+="NUMRULES="+tables.numRules()+"\r\n";
+		outputc+="NUMSTATES="+tables.numStates()+"\r\n";
+		if(defred)
+			outputc+="NUMACTROWS="+actionRows()+"\r\n";
+		outputc+="INST_ERROR=-1\r\n";
+		outputc+="INST_SHIFT=0\r\n";
+		outputc+="INST_REDUCE=1\r\n";
+		outputc+="INST_ACCEPT=2\r\n";
+		outputc+="JJSTATS=bool(os.environ.get(\"JJSTATS\"))\r\n";
+
+		outputc+="\r\n";
+		outputc+="jjlval=0\r\n";
+		outputc+="stack=[]\r\n";
+		outputc+="vstack=[]\r\n";
+
+		// build terminal map
+		outputc+="\r\n";
+		outputc+="termmap={\r\n";
+		for(i=0;i<tables.numTerms();i++)
+		{
+			String t=tables.term(i);
+			outputc+="\""+t+"\" : "+i+",\r\n";
+		}
+		outputc+="}\r\n";
+
+		// build rules array
+		outputc+="\r\n";
+		outputc+="rules=[\r\n";
+		for(i=0;i<tables.numRules();i++)
+		{
+			outputc+="[ "+tables.ruleLhs(i)+","+tables.ruleLength(i)+" ],\r\n";
+		}
+		outputc+="]\r\n";
+
+		// build action table
+		outputc+="\r\n";
+		outputc+="action=[\r\n";
+		for(i=0;i<actionRows();i++)
+		{
+			outputc+="[";
+			for(j=0;j<tables.numTerms();j++)
+			{
+				int inst=tables.actionInst(i,j);
+				if(inst==Tables.INST_SHIFT)
+				{
+					// shift
+					outputc+="[ INST_SHIFT,"+tables.actionParam(i,j)+"],";
+				}
+				else if(inst==Tables.INST_REDUCE)
+				{
+					// reduce
+					outputc+="[ INST_REDUCE,"+tables.actionParam(i,j)+"],";
+				}
+				else if(inst==Tables.INST_ACCEPT)
+				{
+					// accept
+					outputc+="[ INST_ACCEPT,0 ],";
+				}
+				else
+				{
+					// error
+					outputc+="[ INST_ERROR,0 ],";
+				}
+			}
+			outputc+=" ],\r\n";
+		}
+		outputc+="]\r\n";
+
+		// build goto table
+		outputc+="\r\n";
+		outputc+="gototab=[\r\n";
+		for(i=0;i<tables.numStates();i++)
+		{
+			outputc+="[";
+			for(j=0;j<tables.numNonterms();j++)
+			{
+				outputc+=tables.gotoState(i,j)+",";
+			}
+			outputc+="],\r\n";
+		}
+		outputc+="]\r\n";
+
+		// the rule of each state from NUMACTROWS on, which reduces without a lookahead
+		if(defred)
+			outputc+="\r\ndefred=[\r\n"+numbers(defaultRules())+"\r\n]\r\n";
+
+		// build semantic actions functions
+		outputc+="\r\n";
+		outputc+="def semactions(r):\r\n";
+		outputc+="	global stack,vstack\r\n";
+		StringBuffer cases=new StringBuffer();
+		for(i=0;i<semactions.size();i++)
+		{
+			int r=caseRule(i);
+			String t=(String)semactions.elementAt(r);
+			if(i==0)
+			{
+				cases.append("	if r=="+r+":\r\n"+parseSemaction4(t,r)+"\r\n");
+			}
+			else
+			{
+				cases.append("	elif r=="+r+":\r\n"+parseSemaction4(t,r)+"\r\n");
+			}
+		}
+		outputc+=cases;
+
+		outputc+="\r\n";
+		outputc+="def "+PREFIX+"error(msg):\r\n";
+		outputc+="	print(msg)\r\n";
+
+		outputc+="\r\n";
+		outputc+="jjstat_shifts=0\r\n";
+		outputc+="jjstat_recoveries=0\r\n";
+		outputc+="jjstat_maxdepth=0\r\n";
+		outputc+="jjstat_reductions=[0]*NUMRULES\r\n";
+		outputc+="jjstat_visits=[0]*NUMSTATES\r\n";
+		outputc+="def "+PREFIX+"stats_reset():\r\n";
+		outputc+="	global jjstat_shifts,jjstat_recoveries,jjstat_maxdepth,jjstat_reductions,jjstat_visits\r\n";
+		outputc+="	jjstat_shifts=jjstat_recoveries=jjstat_maxdepth=0\r\n";
+		outputc+="	jjstat_reductions=[0]*NUMRULES\r\n";
+		outputc+="	jjstat_visits=[0]*NUMSTATES\r\n";
+		outputc+="def "+PREFIX+"stats_shifts(): return jjstat_shifts\r\n";
+		outputc+="def "+PREFIX+"stats_reductions(r): return jjstat_reductions[r] if 0<=r<NUMRULES else 0\r\n";
+		outputc+="def "+PREFIX+"stats_visits(s): return jjstat_visits[s] if 0<=s<NUMSTATES else 0\r\n";
+		outputc+="def "+PREFIX+"stats_recoveries(): return jjstat_recoveries\r\n";
+		outputc+="def "+PREFIX+"stats_maxdepth(): return jjstat_maxdepth\r\n";
+		outputc+="jjstat_stateid=[\r\n"+numbers(stateIds())+"\r\n]\r\n";
+		outputc+="# the counts as a profile for -profile, the states numbered as in the construction\r\n";
+		outputc+="def "+PREFIX+"stats_write(f):\r\n";
+		outputc+="	for i in range(NUMSTATES):\r\n";
+		outputc+="		if jjstat_visits[i]: f.write(\"s %d %d\\n\" % (jjstat_stateid[i],jjstat_visits[i]))\r\n";
+		outputc+="	for i in range(NUMRULES):\r\n";
+		outputc+="		if jjstat_reductions[i]: f.write(\"r %d %d\\n\" % (i,jjstat_reductions[i]))\r\n";
+
+		outputc+="\r\n";
+		outputc+="def "+PREFIX+"parse():\r\n";
+		outputc+="	global jjlval,stack,vstack,bufptr\r\n";
+		outputc+="	global jjstat_shifts,jjstat_recoveries,jjstat_maxdepth\r\n";
+		outputc+="	stats=JJSTATS\r\n";
+		outputc+="	recovered=0\r\n";	// an error was recovered from at the end of input
+		if(defred)
+		{
+			outputc+="	havetok=0\r\n";	// the lookahead is read when a state needs it
+			outputc+="	stack.append(0)\r\n";
+			outputc+="	while 1:\r\n";
+			outputc+="		s=stack[-1]\r\n";
+			outputc+="		if stats: jjstat_visits[s]+=1\r\n";
+			outputc+="		if s>=NUMACTROWS:\r\n";
+			outputc+="			inst=INST_REDUCE\r\n";
+			outputc+="			param=defred[s]\r\n";
+			outputc+="		else:\r\n";
+			outputc+="			if not havetok:\r\n";
+			outputc+="				c="+PREFIX+"lex()\r\n";
+			outputc+="				vstack.append("+PREFIX+"lval)\r\n";
+			outputc+="				havetok=1\r\n";
+			outputc+="			try:\r\n";
+			outputc+="				ic=termmap[c]\r\n";
+			outputc+="				inst=action[s][ic][0]\r\n";
+			outputc+="				param=action[s][ic][1]\r\n";
+			outputc+="			except:	inst=INST_ERROR\r\n";
+		}
+		else
+		{
+			outputc+="	c="+PREFIX+"lex()\r\n";
+			outputc+="	stack.append(0)\r\n";
+			outputc+="	vstack.append("+PREFIX+"lval)\r\n";
+			outputc+="	while 1:\r\n";
+			outputc+="		try:\r\n";
+			outputc+="			ic=termmap[c]\r\n";
+			outputc+="			s=stack[-1];\r\n";
+			outputc+="			if stats: jjstat_visits[s]+=1\r\n";
+			outputc+="			inst=action[s][ic][0]\r\n";
+			outputc+="			param=action[s][ic][1]\r\n";
+			outputc+="		except:	inst=INST_ERROR\r\n";
+		}
+		outputc+="		if inst==INST_SHIFT:\r\n";
+		outputc+="			stack.append(ic)\r\n";
+		outputc+="			stack.append(param)\r\n";
+		if(defred)
+		{
+			outputc+="			havetok=0\r\n";	// its value stays on the value stack, as that of the symbol shifted
+		}
+		else
+		{
+			outputc+="			c="+PREFIX+"lex()\r\n";
+			outputc+="			vstack.append("+PREFIX+"lval)\r\n";
+		}
+		outputc+="			recovered=0\r\n";
+		outputc+="			if stats:\r\n";
+		outputc+="				jjstat_shifts+=1\r\n";
+		outputc+="				jjstat_maxdepth=max(jjstat_maxdepth,len(stack)//2+1)\r\n";
+		for(int h=0;h<=hotrules.length;h++)
+			outputc+=reduceCodePython(h<hotrules.length ? hotrules[h] : -1);
+		outputc+="		elif inst==INST_ACCEPT:\r\n";
+		outputc+="			break\r\n";
+		outputc+="		else:\r\n";
+		outputc+="			if stats: jjstat_recoveries+=1\r\n";
+		// as in the Perl parser, a second error at the end of input with no shift between is final
+		outputc+="			if recovered:\r\n";
+		outputc+="				"+PREFIX+"error(\"error!\\r\\n\")\r\n";
+		outputc+="				break\r\n";
+		outputc+="			tmp=0\r\n";
+		outputc+="			ic=termmap[\""+ERROR+"\"]\r\n";
+		outputc+="			while 1:\r\n";
+		if(defred)
+		{
+			// the state which found the error may shift the error token itself, a state which reduces by default not having found it
+			outputc+="				if not stack:\r\n";
+			outputc+="					"+PREFIX+"error(\"error!\\r\\n\")\r\n";
+			outputc+="					tmp=1\r\n";
+			outputc+="					break\r\n";
+			outputc+="				s=stack[-1]\r\n";
+			outputc+="				if s<NUMACTROWS and action[s][ic][0]==INST_SHIFT:\r\n";
+			outputc+="					stack.append(ic)\r\n";
+			outputc+="					stack.append(action[s][ic][1])\r\n";
+			outputc+="					recovered=(c==\""+EOI+"\")\r\n";
+			outputc+="					havetok=0\r\n";
+			outputc+="					break\r\n";
+			outputc+="				stack[-2:]=[]\r\n";
+		}
+		else
+		{
+			outputc+="				try:\r\n";
+			outputc+="					stack.pop()\r\n";
+			outputc+="					stack.pop()\r\n";
+			outputc+="				except:\r\n";
+			outputc+="					"+PREFIX+"error(\"error!\\r\\n\")\r\n";
+			outputc+="					tmp=1\r\n";
+			outputc+="					break\r\n";
+			outputc+="				s=stack[-1]\r\n";
+			outputc+="				inst=action[s][ic][0]\r\n";
+			outputc+="				param=action[s][ic][1]\r\n";
+			outputc+="				if inst==INST_SHIFT:\r\n";
+			outputc+="					stack.append(ic)\r\n";
+			outputc+="					stack.append(param)\r\n";
+			outputc+="					recovered=(c==\""+EOI+"\")\r\n";
+			outputc+="					c="+PREFIX+"lex()\r\n";
+			outputc+="					vstack.append("+PREFIX+"lval)\r\n";
+			outputc+="					break\r\n";
+		}
+		outputc+="			if tmp==1: break\r\n";
+
+		if(tables.scanner()!=null)
+			outputc+=lexCodePython();
+
+		outputc+="\r\n#supporting code\r\n"+support;
+	}
+
+	// generate the code of every target selected by option; the tables are built once and shared,
+	// and with more than one target each emitter runs on its own thread into its own buffers
+	void genCode() throws Exception
+	{
+		Vector targets=new Vector();
+		for(int bit=0x01;bit<=0x08;bit<<=1)
+		{
+			if((option & bit)>0)
+				targets.addElement(Integer.valueOf(bit));
+		}
+		if(targets.size()==1)
+		{
+			genTarget(((Integer)targets.elementAt(0)).intValue());
+			return;
+		}
+
+		for(int i=0;i<semactions.size();i++)
+		{
+			if(((String)semactions.elementAt(i)).length()>0)
+				semAction(i);	// fill in the shared memo before the emitters read it
+		}
+		Emitter[] emitters=new Emitter[targets.size()];
+		for(int i=0;i<emitters.length;i++)
+		{
+			Jacc jc=(Jacc)clone();
+			jc.outputh="";
+			jc.outputc="";
+			emitters[i]=new Emitter(jc,((Integer)targets.elementAt(i)).intValue());
+			emitters[i].start();
+		}
+		for(int i=0;i<emitters.length;i++)
+		{
+			emitters[i].join();
+			if(emitters[i].error!=null)
+				throw emitters[i].error;
+		}
+	}
+
+	// the code of one target, put into outputs under the names of its files
+	void genTarget(int target) throws Exception
+	{
+		if(target==0x01)
+		{
+			genANSICCode();
+			outputs.put("j.tab.h.txt",outputh);
+			outputs.put("j.tab.c.txt",outputc);
+		}
+		else if(target==0x02)
+		{
+			genJavaCode();
+			outputs.put("jjclass.java.txt",outputc);
+		}
+		else if(target==0x04)
+		{
+			genPERLCode();
+			outputs.put("jjscript.pl.txt",outputc);
+		}
+		else if(target==0x08)
+		{
+			genPythonCode();
+			outputs.put("jjscript.py.txt",outputc);
+		}
 	}
 
-/////////////////////////////////////// ANSI C ///////////////////////////////////////
+	// runs the emitter of one target on a copy of the generator which shares everything but the output buffers
+	static final class Emitter extends Thread
+	{
+		final Jacc jc;
+		final int target;
+		Exception error=null;
 
-	// replace the $n's, etc. in { ... }
-	String parseSemaction(String s, int ruleno)	throws Exception
+		Emitter(Jacc jc, int target)
+		{
+			super("jacc-emit-"+target);
+			this.jc=jc;
+			this.target=target;
+		}
+
+		public void run()
+		{
+			long cpu=Stats.cpuTime();
+			long alloc=Stats.allocatedBytes();
+			try
+			{
+				jc.genTarget(target);
+			}
+			catch(Exception e)
+			{
+				error=e;
+			}
+			if(jc.stats!=null)
+				jc.stats.addOther(cpu<0 ? 0 : Stats.cpuTime()-cpu,alloc<0 ? 0 : Stats.allocatedBytes()-alloc);
+		}
+	}
+
+	// the scanner of the %lex section, over the whole of stdin read on the first call;
+	// an action is a line of Python, without its braces
+	String lexCodePython() throws Exception
 	{
-		Vector v=(Vector)rules.elementAt(ruleno);
-		int rhslen=v.size()-1;
+		Scanner sc=tables.scanner();
+		StringBuffer sb=new StringBuffer();
+		int i,j;
 
-		String so="{";
+		int[] classes=new int[Scanner.NUMCHARS];
+		for(i=0;i<classes.length;i++)
+			classes[i]=sc.charClass(i);
+		int[] rows=new int[sc.numStates()];
+		int[] accept=new int[sc.numStates()];
+		for(i=0;i<rows.length;i++)
+		{
+			rows[i]=sc.row(i);
+			accept[i]=sc.accept(i);
+		}
 
-		if(s.length()<1)
+		sb.append("\r\n");
+		sb.append("jjlexclass=[\r\n"+numbers(classes)+"\r\n]\r\n");
+		sb.append("jjlexrow=[\r\n"+numbers(rows)+"\r\n]\r\n");
+		sb.append("jjlexnext=[\r\n");
+		for(i=0;i<sc.numRows();i++)
 		{
-			return " vstackptr-="+(rhslen-1)+";";
-			/*
-			epsilon production contains this case:
-			return " vstackptr++;";
-			and stack value is indeterminate
-			*/
+			int[] r=new int[sc.numClasses()];
+			for(j=0;j<r.length;j++)
+				r[j]=sc.next(i,j);
+			sb.append("["+numbers(r)+"],\r\n");
 		}
+		sb.append("]\r\n");
+		sb.append("jjlexaccept=[\r\n"+numbers(accept)+"\r\n]\r\n");
+		sb.append("jjlextoken=[\r\n");
+		for(i=0;i<sc.numPatterns();i++)
+			sb.append(sc.tokenName(i)==null ? "None,\r\n" : "\""+sc.tokenName(i)+"\",\r\n");
+		sb.append("]\r\n");
 
-		int pos=1,pos2=1,len=s.length();	// skip '{'
-		char c;
-		if(rhslen>0)
-			so+="memcpy(&rclval,&vstack[vstackptr-"+(rhslen-1)+"],sizeof(JJSTYPE));\r\n";
-		else	// if an epsilon production
-			so+="memset(&rclval,0,sizeof(JJSTYPE));\r\n";
-		while(pos<len-1)
+		sb.append("\r\n");
+		sb.append("jjinput=None\r\n");
+		sb.append("jjpos=0\r\n");
+		sb.append(PREFIX+"text=\"\"\r\n");
+		sb.append("\r\n");
+		sb.append("def jjlexaction(p):\r\n");
+		sb.append("	global "+PREFIX+"lval,"+PREFIX+"text\r\n");
+		boolean first=true;
+		for(i=0;i<sc.numPatterns();i++)
 		{
-			c=s.charAt(pos);
-			if(Character.isWhitespace(c))	// skip whitespace
-			{
-				pos++;
+			String a=sc.action(i);
+			if(a.length()==0)
 				continue;
+			sb.append((first ? "	if" : "	elif")+" p=="+i+":\r\n");
+			sb.append("		"+a.substring(1,a.length()-1).trim()+"\r\n");
+			first=false;
+		}
+		sb.append("	return\r\n");
+		sb.append("\r\n");
+		sb.append("def "+PREFIX+"lex():\r\n");
+		sb.append("	global jjinput,jjpos,"+PREFIX+"text\r\n");
+		sb.append("	if jjinput is None:\r\n");
+		sb.append("		import sys\r\n");
+		sb.append("		jjinput=sys.stdin.read()\r\n");
+		sb.append("	while 1:\r\n");
+		sb.append("		if jjpos>=len(jjinput):\r\n");
+		sb.append("			"+PREFIX+"text=\"\"\r\n");
+		sb.append("			return \""+EOI+"\"\r\n");
+		sb.append("		s=0\r\n");
+		sb.append("		p=-1\r\n");
+		sb.append("		n=0\r\n");
+		sb.append("		i=0\r\n");
+		sb.append("		while jjpos+i<len(jjinput):\r\n");
+		sb.append("			s=jjlexnext[jjlexrow[s]][jjlexclass[min(ord(jjinput[jjpos+i]),256)]]\r\n");
+		sb.append("			if s<0: break\r\n");
+		sb.append("			i=i+1\r\n");
+		sb.append("			if jjlexaccept[s]>=0:\r\n");
+		sb.append("				p=jjlexaccept[s]\r\n");
+		sb.append("				n=i\r\n");
+		sb.append("		if n==0: n=1\r\n");
+		sb.append("		"+PREFIX+"text=jjinput[jjpos:jjpos+n]\r\n");
+		sb.append("		jjpos=jjpos+n\r\n");
+		sb.append("		if p<0: return \"\'\"+"+PREFIX+"text+\"\'\"	# matched by no pattern\r\n");
+		sb.append("		jjlexaction(p)\r\n");
+		sb.append("		if jjlextoken[p] is not None: return jjlextoken[p]\r\n");
+		return sb.toString();
+	}
+
+/////////////////////////////////////// MODEL ///////////////////////////////////////
+
+	/**
+	 * Immutable model of a generated parser: the terminals and nonterminals, the productions with
+	 * their semantic actions, and the SLR(1) action and goto tables over the states of the automaton.
+	 * Everything is numbered as in the generated code.
+	 */
+	public static final class Tables
+	{
+		public static final int INST_ERROR=-1;
+		public static final int INST_SHIFT=0;
+		public static final int INST_REDUCE=1;
+		public static final int INST_ACCEPT=2;
+
+		private final String[] terms;
+		private final String[] nonterms;
+		private final String[][] rules;	// the lhs followed by the rhs symbols of each production
+		private final int[] rulelhs;	// the nonterminal number of the lhs of each production
+		private final String[] semactions;
+		private final int[][] inst;	// instruction per state and terminal
+		private final int[][] param;	// state to shift to or rule to reduce with
+		private final int[][] gototab;	// state per state and nonterminal, -1 if none
+		private final int[] stateid;	// the number of each state in the construction, as in trace.txt
+		private final Hashtable termindex=new Hashtable();
+		private final int errorterm;
+		private final int eoiterm;
+		private final Scanner scanner;	// null if there is no %lex section
+
+		Tables(Jacc jc) throws Exception
+		{
+			int i,j;
+			terms=new String[jc.terms.size()];
+			jc.terms.copyInto(terms);
+			for(i=0;i<terms.length;i++)
+				termindex.put(terms[i],Integer.valueOf(i));
+			errorterm=termIndex(jc.ERROR);
+			eoiterm=termIndex(jc.EOI);
+			nonterms=new String[jc.nonterms.size()];
+			jc.nonterms.copyInto(nonterms);
+
+			rules=new String[jc.rules.size()][];
+			rulelhs=new int[rules.length];
+			semactions=new String[rules.length];
+			for(i=0;i<rules.length;i++)
+			{
+				Vector v=(Vector)jc.rules.elementAt(i);
+				rules[i]=new String[v.size()];
+				v.copyInto(rules[i]);
+				rulelhs[i]=jc.nonterms.indexOf(rules[i][0]);
+				if(rulelhs[i]==-1)
+					throw new Exception("Error; lhs not in nonterminal vector\r\n");
+				semactions[i]=(String)jc.semactions.elementAt(i);
 			}
-			if(c=='\"')	// skip string literal
+
+			int nstates=jc.action.size();
+			stateid=new int[nstates];
+			for(i=0;i<nstates;i++)
+				stateid[i]=i;
+			inst=new int[nstates][terms.length];
+			param=new int[nstates][terms.length];
+			gototab=new int[nstates][nonterms.length];
+			for(i=0;i<nstates;i++)
 			{
-				pos++;
-				while(s.charAt(pos)!='\"')
+				Hashtable ht=(Hashtable)jc.action.elementAt(i);
+				for(j=0;j<terms.length;j++)
 				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
+					String t=(String)ht.get(terms[j]);
+					if(t==null)
 					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
+						inst[i][j]=INST_ERROR;
+					}
+					else if(t.startsWith("s"))
+					{
+						inst[i][j]=INST_SHIFT;
+						param[i][j]=Integer.parseInt(t.substring(1));
+					}
+					else if(t.startsWith("r"))
+					{
+						inst[i][j]=INST_REDUCE;
+						param[i][j]=Integer.parseInt(t.substring(1));
+					}
+					else if(t.startsWith("a"))
+					{
+						inst[i][j]=INST_ACCEPT;
+					}
+					else
+					{
+						inst[i][j]=INST_ERROR;
 					}
-					pos++;
 				}
-				pos++;
-				continue;
+				ht=(Hashtable)jc.LR0goto.elementAt(i);
+				for(j=0;j<nonterms.length;j++)
+				{
+					Integer state=(Integer)ht.get(nonterms[j]);
+					gototab[i][j]=(state==null ? -1 : state.intValue());
+				}
 			}
-			if(c=='\'')	// skip character literal
+
+			scanner=(jc.lexrules.size()==0 ? null : new Scanner(jc.lexrules,this));
+		}
+
+		// the tables of t with state n being its state states[n], and terminal n its terminal order[n]
+		private Tables(Tables t, int[] states, int[] order, Vector lexrules) throws Exception
+		{
+			int i,j;
+			if(states.length!=t.numStates() || order.length!=t.numTerms() || states[0]!=0)
+				throw new Exception("Error; bad renumbering of the tables\r\n");
+			int[] number=new int[states.length];	// the new number of each state of t
+			for(i=0;i<states.length;i++)
+				number[states[i]]=i;
+			terms=new String[order.length];
+			for(i=0;i<terms.length;i++)
 			{
-				pos++;
-				while(s.charAt(pos)!='\'')
+				terms[i]=t.terms[order[i]];
+				termindex.put(terms[i],Integer.valueOf(i));
+			}
+			errorterm=termIndex(t.terms[t.errorterm]);
+			eoiterm=termIndex(t.terms[t.eoiterm]);
+			nonterms=t.nonterms;
+			rules=t.rules;
+			rulelhs=t.rulelhs;
+			semactions=t.semactions;
+
+			stateid=new int[states.length];
+			inst=new int[states.length][terms.length];
+			param=new int[states.length][terms.length];
+			gototab=new int[states.length][nonterms.length];
+			for(i=0;i<states.length;i++)
+			{
+				int s=states[i];
+				stateid[i]=t.stateid[s];
+				for(j=0;j<terms.length;j++)
 				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
+					inst[i][j]=t.inst[s][order[j]];
+					param[i][j]=t.param[s][order[j]];
+					if(inst[i][j]==INST_SHIFT)
+						param[i][j]=number[param[i][j]];
 				}
-				pos++;
-				continue;
+				for(j=0;j<nonterms.length;j++)
+					gototab[i][j]=(t.gototab[s][j]<0 ? -1 : number[t.gototab[s][j]]);
 			}
-			if(c=='/')
+
+			scanner=(lexrules.size()==0 ? null : new Scanner(lexrules,this));
+		}
+
+		// these tables with the reductions by the unit rules, units[r] being true for them, bypassed: a shift or a goto
+		// into a state whose only actions reduce by one of them goes on to the state of their lhs, to a fixed point.
+		// counts gets the number of rules bypassed, of entries rewritten, and the most reductions one of them saves
+		Tables bypass(boolean[] units, Vector lexrules, int[] counts) throws Exception
+		{
+			int i,j;
+			int nstates=numStates();
+			int[] states=new int[nstates];
+			for(i=0;i<nstates;i++)
+				states[i]=i;
+			int[] order=new int[numTerms()];
+			for(j=0;j<order.length;j++)
+				order[j]=j;
+			Tables t=new Tables(this,states,order,lexrules);
+
+			int[] only=new int[nstates];	// the unit rule which is all a state does, -1 if none
+			for(i=0;i<nstates;i++)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='*')
+				only[i]=-1;
+				for(j=0;j<terms.length;j++)
 				{
-					pos++;
-					// comment begins
-					if((pos=s.indexOf("*/",pos))==-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					pos+=2;
+					if(inst[i][j]==INST_ERROR)
+						continue;
+					if(inst[i][j]!=INST_REDUCE || !units[param[i][j]] || (only[i]>=0 && only[i]!=param[i][j]))
+					{
+						only[i]=-2;
+						break;
+					}
+					only[i]=param[i][j];
+				}
+				for(j=0;j<nonterms.length && only[i]>=0;j++)
+				{
+					if(gototab[i][j]>=0)
+						only[i]=-2;
 				}
-				continue;
 			}
-			if(c=='$')
+
+			boolean[] used=new boolean[rules.length];
+			for(i=0;i<nstates;i++)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='$')
+				for(j=0;j<terms.length;j++)
 				{
-					so+=s.substring(pos2,pos-1);
-					so+="rclval";
-					String m=(String)unionmem.get((String)v.elementAt(0));
-					if(m!=null)
-						so+="."+m;
-					pos++;
-					pos2=pos;
-					continue;
+					if(inst[i][j]==INST_SHIFT)
+						t.param[i][j]=unitTarget(i,param[i][j],only,used,counts);
 				}
-				if(Character.isDigit(s.charAt(pos)))
+				for(j=0;j<nonterms.length;j++)
 				{
-					so+=s.substring(pos2,pos-1);
-					pos2=pos++;
-					while(Character.isDigit(s.charAt(pos)))
-					{
-						pos++;
-					}
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					int idx=Integer.parseInt(s.substring(pos2,pos));
-					if(idx>rhslen || idx<1)
-						throw new Exception("Error in semantic action section, index out of range\r\n");
-					so+="vstack[vstackptr-"+(rhslen-idx)+"]";
-					String m=(String)unionmem.get((String)v.elementAt(idx));
-					if(m!=null)
-						so+="."+m;
-					pos2=pos;
-					continue;
+					if(gototab[i][j]>=0)
+						t.gototab[i][j]=unitTarget(i,gototab[i][j],only,used,counts);
 				}
-				pos++;
-				continue;
 			}
-			pos++;
+			for(i=0;i<used.length;i++)
+			{
+				if(used[i])
+					counts[0]++;
+			}
+			return t;
 		}
-		so+=s.substring(pos2,pos);
-		so+="\r\n";
-		so+="	memcpy(&vstack[vstackptr-="+(rhslen-1)+"],&rclval,sizeof(JJSTYPE));\r\n";
-		/*
-		epsilon production contains this case:
-		so+="	memcpy(&vstack[++vstackptr],&rclval,sizeof(JJSTYPE));\r\n";
-		*/
-		so+="	}\r\n";
-		return so;
-	}
-
-	// write ANSI C-code implementation
-	void genANSICCode() throws Exception
-	{
-		int i,j;
 
-		// header
+		// the state reached from state s through state q once the reductions by unit rules in q and on are done
+		private int unitTarget(int s, int q, int[] only, boolean[] used, int[] counts)
+		{
+			int n=0;
+			while(only[q]>=0 && n<only.length)	// a cycle of unit rules would be ambiguous, but it is not followed forever
+			{
+				int next=gototab[s][rulelhs[only[q]]];
+				if(next<0)
+					break;
+				used[only[q]]=true;
+				q=next;
+				n++;
+			}
+			if(n>0)
+			{
+				counts[1]++;
+				counts[2]=Math.max(counts[2],n);
+			}
+			return q;
+		}
 
-		outputh+="/*\r\n"+APPNAME+"generated header file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n*/\r\n";
-		// literal block
-		outputh+="\r\n/*start of literal block*/\r\n";
-		outputh+=lit;
-		outputh+="/*end of literal block*/\r\n";
-		outputh+="\r\n";
-		outputh+="#include <stdio.h>\r\n";
-		outputh+="#include <string.h>\r\n";
-		outputh+="\r\n";
-		if(union.length()>0)
+		// these tables with the states and the terminals renumbered: state n of the result is state states[n]
+		// of these, which must leave the start state 0, and terminal n is terminal order[n]
+		Tables renumber(int[] states, int[] order, Vector lexrules) throws Exception
 		{
-			outputh+="typedef union "+union+" JJSTYPE;\r\n";
+			return new Tables(this,states,order,lexrules);
 		}
-		else
+
+		public int numTerms()	{	return terms.length;	}
+		public int numNonterms()	{	return nonterms.length;	}
+		public int numRules()	{	return rules.length;	}
+		public int numStates()	{	return inst.length;	}
+
+		public String term(int t)	{	return terms[t];	}
+		public String nonterm(int n)	{	return nonterms[n];	}
+
+		// the number of a terminal, as returned by the lexer; -1 if unknown
+		public int termIndex(String t)
 		{
-			outputh+="#ifndef JJSTYPE\r\n";
-			outputh+="#define JJSTYPE int\r\n";
-			outputh+="#endif\r\n";
+			Integer i=(Integer)termindex.get(t);
+			return (i==null ? -1 : i.intValue());
 		}
-		outputh+="\r\n";
-		outputh+="#ifndef JJSDEPTH\r\n";
-		outputh+="#define JJSDEPTH 256\r\n";
-		outputh+="#endif\r\n";
-		outputh+="\r\n";
-		outputh+="typedef struct { int inst,param; } ACTION_T;\r\n";
-		outputh+="typedef struct { int nonterm,numsyms; } RULE_T;\r\n";
-		outputh+="\r\n";
-		outputh+="#define NUMTERMS "+terms.size()+"\r\n";
-		outputh+="#define NUMNONTERMS "+nonterms.size()+"\r\n";
-		outputh+="#define NUMRULES "+rules.size()+"\r\n";
-		outputh+="#define NUMSTATES "+LR0.size()+"\r\n";
-		outputh+="#define INST_ERROR -1\r\n";
-		outputh+="#define INST_SHIFT 0\r\n";
-		outputh+="#define INST_REDUCE 1\r\n";
-		outputh+="#define INST_ACCEPT 2\r\n";
 
-		// source
-		outputc+="/*\r\n"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
-		outputc+="Notes:\r\n\tYou must provide an implementation of the lexer \'int "+PREFIX+"lex()\'\r\n";
-		outputc+="\twhich returns a token code with ASCII values for character literals and #define constants for other terminals\r\n";
-		outputc+="*/\r\n";
-		outputc+="#include \"j.tab.h\"\r\n";
-		outputc+="\r\n";
-		outputc+="JJSTYPE "+PREFIX+"lval;\r\n";
-		outputc+="int "+PREFIX+"lex();\r\n";
-		outputc+="JJSTYPE vstack[JJSDEPTH];\r\n";
-		outputc+="int vstackptr;\r\n";
-		outputc+="void "+PREFIX+"error(char* errmsg);\r\n";
+		// the fictitious error token and the end-of-input marker
+		public int errorTerm()	{	return errorterm;	}
+		public int eoiTerm()	{	return eoiterm;	}
 
-		// build terminal map
-		// insertion sort the terminals for faster mapping
-		/*
-		for(i=1;i<terms.size();i++)
+		// the lhs followed by the rhs symbols of a production
+		public String[] rule(int r)	{	return rules[r].clone();	}
+		public int ruleLhs(int r)	{	return rulelhs[r];	}
+		public int ruleLength(int r)	{	return rules[r].length-1;	}
+		public String semaction(int r)	{	return semactions[r];	}
+
+		public int actionInst(int s, int t)	{	return inst[s][t];	}
+		public int actionParam(int s, int t)	{	return param[s][t];	}
+		public int gotoState(int s, int n)	{	return gototab[s][n];	}
+
+		// the rule a state reduces by whatever the lookahead, having no other action; -1 if none
+		public int defaultReduction(int s)
 		{
-			j=i;
-			String tmp=(String)terms.elementAt(j);
-			int aval=256;
-			if(tmp.charAt(0)=='\'')
-			{
-				aval=Character.digit(tmp.charAt(1),10);
-			}
-			while(j>0)
+			int r=-1;
+			for(int j=0;j<terms.length;j++)
 			{
-				String tmp2=(String)terms.elementAt(j-1);
-				int aval2=256;
-				if(tmp2.charAt(0)=='\'')
-				{
-					aval2=Character.digit(tmp2.charAt(1),10);
-				}
-				if( aval >  aval2 )
-					break;
-				// shift up
-				terms.setElementAt((String)terms.elementAt(j-1),j);
-				j--;
+				if(inst[s][j]==INST_ERROR)
+					continue;
+				if(inst[s][j]!=INST_REDUCE || (r>=0 && r!=param[s][j]))
+					return -1;
+				r=param[s][j];
 			}
-			terms.setElementAt(tmp,j);
+			return r;
 		}
-		*/
-		outputc+="\r\n";
-		outputc+="const int termmap[NUMTERMS]=\r\n{\r\n";
-		for(i=0;i<terms.size();i++)
+
+		// the number of a state in the construction, which differs once the tables are renumbered
+		public int stateId(int s)	{	return stateid[s];	}
+
+		// the scanner compiled from the %lex section, null if there is none
+		public Scanner scanner()	{	return scanner;	}
+
+		// the actions of a state encoded as by encodeAction(), and its goto states
+		int[] actionRow(int s)
 		{
-			String t=(String)terms.elementAt(i);
-			if(t.startsWith("\'")==false)
-				outputh+="#define "+t+" "+(256+i)+"\r\n";
-			outputc+=t+",\r\n";
+			int[] row=new int[terms.length];
+			for(int j=0;j<row.length;j++)
+				row[j]=encodeAction(inst[s][j],param[s][j]);
+			return row;
 		}
-		outputc+="};\r\n";
 
-		// build rules array
-		outputc+="\r\n";
-		outputc+="const RULE_T rules[NUMRULES]=\r\n{\r\n";
-		for(i=0;i<rules.size();i++)
+		int[] gotoRow(int s)	{	return gototab[s].clone();	}
+	}
+
+	// the numbers separated by commas, a line per 32
+	static String numbers(int[] a)
+	{
+		StringBuffer sb=new StringBuffer();
+		for(int i=0;i<a.length;i++)
+		{
+			sb.append(a[i]).append(',');
+			if(i%32==31 && i<a.length-1)
+				sb.append("\r\n");
+		}
+		return sb.toString();
+	}
+
+	// the distinct entries of a row other than -1, in order of first appearance;
+	// each as an int[] of the entry followed by the columns holding it
+	static Vector caseGroups(int[] row)
+	{
+		Vector groups=new Vector();
+		Hashtable index=new Hashtable();
+		for(int j=0;j<row.length;j++)
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			int inonterm=nonterms.indexOf((String)v.elementAt(0));
-			if(inonterm==-1)
-				throw new Exception("Error; lhs not in nonterminal vector\r\n");
-			outputc+="{ "+inonterm+","+(v.size()-1)+" },\r\n";
+			if(row[j]==-1)
+				continue;
+			Integer v=Integer.valueOf(row[j]);
+			Vector g=(Vector)index.get(v);
+			if(g==null)
+			{
+				g=new Vector();
+				g.addElement(v);
+				index.put(v,g);
+				groups.addElement(g);
+			}
+			g.addElement(Integer.valueOf(j));
 		}
-		outputc+="};\r\n";
+		for(int i=0;i<groups.size();i++)
+		{
+			Vector g=(Vector)groups.elementAt(i);
+			int[] a=new int[g.size()];
+			for(int j=0;j<a.length;j++)
+				a[j]=((Integer)g.elementAt(j)).intValue();
+			groups.setElementAt(a,i);
+		}
+		return groups;
+	}
 
-		// build action table
-		outputc+="\r\n";
-		outputc+="const ACTION_T action[NUMSTATES][NUMTERMS]=\r\n{\r\n";
-		for(i=0;i<action.size();i++)
+/////////////////////////////////////// LEXER ///////////////////////////////////////
+
+	/**
+	 * The scanner of the %lex section: a minimized DFA over classes of characters which behave alike
+	 * in every pattern, with identical rows of transitions shared.  It finds the longest match,
+	 * the earliest pattern winning a tie.  Patterns are over the 8-bit characters; all the others
+	 * fall in the class of character 256.
+	 */
+	public static final class Scanner
+	{
+		public static final int NUMCHARS=257;
+
+		private final int[] charclass=new int[NUMCHARS];
+		private final int numclasses;
+		private final int[] row;	// row of transitions of each state
+		private final int[][] next;	// next state per row and class, -1 if none
+		private final int[] accept;	// pattern matched on reaching a state, -1 if none
+		private final String[] patterns;
+		private final int[] token;	// terminal returned per pattern, -1 if the text is skipped
+		private final String[] tokens;
+		private final String[] actions;	// code per pattern, in the target language; "" if none
+		private final String eoi;	// the end-of-input marker
+
+		Scanner(Vector lexrules, Tables t) throws Exception
 		{
-			Hashtable ht=(Hashtable)action.elementAt(i);
-			outputc+="{";
-			for(j=0;j<terms.size();j++)
+			int i,j,k;
+			int n=lexrules.size();
+			patterns=new String[n];
+			token=new int[n];
+			tokens=new String[n];
+			actions=new String[n];
+			eoi=t.term(t.eoiTerm());
+
+			// the NFA of all patterns, from a start state with an empty edge to each of them
+			Nfa nfa=new Nfa();
+			int start=nfa.state();
+			for(i=0;i<n;i++)
+			{
+				String[] r=(String[])lexrules.elementAt(i);
+				patterns[i]=r[0];
+				tokens[i]=(r[1].length()==0 ? null : r[1]);
+				token[i]=(tokens[i]==null ? -1 : t.termIndex(tokens[i]));
+				if(tokens[i]!=null && token[i]==-1)
+					throw new Exception("Error; %lex token not a terminal: "+tokens[i]+"\r\n");
+				actions[i]=r[2];
+				Regex re=new Regex(r[0],nfa);
+				int[] f=re.parse();
+				nfa.eps(start,f[0]);
+				nfa.accept(f[1],i);
+			}
+
+			// classes of characters: those on the same edges of the NFA
+			Hashtable signatures=new Hashtable();
+			Vector reps=new Vector();	// a character of each class
+			for(i=0;i<NUMCHARS;i++)
+			{
+				BitSet sig=new BitSet();
+				for(j=0;j<nfa.size;j++)
+				{
+					if(nfa.chars[j]!=null && nfa.chars[j].get(i))
+						sig.set(j);
+				}
+				Integer c=(Integer)signatures.get(sig);
+				if(c==null)
+				{
+					c=Integer.valueOf(reps.size());
+					signatures.put(sig,c);
+					reps.addElement(Integer.valueOf(i));
+				}
+				charclass[i]=c.intValue();
+			}
+			numclasses=reps.size();
+
+			// subset construction
+			Vector dstates=new Vector();	// of BitSets of NFA states
+			Vector dnext=new Vector();	// of int[] per class
+			Hashtable index=new Hashtable();
+			BitSet s0=new BitSet();
+			s0.set(start);
+			nfa.closure(s0);
+			dstates.addElement(s0);
+			index.put(s0,Integer.valueOf(0));
+			for(i=0;i<dstates.size();i++)
 			{
-				String t=(String)terms.elementAt(j);
-				if(ht.containsKey(t))
+				BitSet set=(BitSet)dstates.elementAt(i);
+				int[] tr=new int[numclasses];
+				for(k=0;k<numclasses;k++)
 				{
-					String t2=(String)ht.get(t);
-					if(t2.startsWith("s"))
+					int c=((Integer)reps.elementAt(k)).intValue();
+					BitSet to=new BitSet();
+					for(j=0;j<nfa.size;j++)
 					{
-						// shift
-						outputc+="{ INST_SHIFT,"+t2.substring(1)+"},";
+						if(set.get(j) && nfa.chars[j]!=null && nfa.chars[j].get(c))
+							to.set(nfa.target[j]);
 					}
-					else if(t2.startsWith("r"))
+					if(to.length()==0)
 					{
-						// reduce
-						outputc+="{ INST_REDUCE,"+t2.substring(1)+"},";
+						tr[k]=-1;
+						continue;
 					}
-					else if(t2.startsWith("a"))
+					nfa.closure(to);
+					Integer d=(Integer)index.get(to);
+					if(d==null)
 					{
-						// accept
-						outputc+="{ INST_ACCEPT,0 },";
+						d=Integer.valueOf(dstates.size());
+						dstates.addElement(to);
+						index.put(to,d);
 					}
-					else
+					tr[k]=d.intValue();
+				}
+				dnext.addElement(tr);
+			}
+			int nd=dstates.size();
+			int[] dacc=new int[nd];
+			for(i=0;i<nd;i++)
+			{
+				BitSet set=(BitSet)dstates.elementAt(i);
+				dacc[i]=-1;
+				for(j=0;j<nfa.size;j++)
+				{
+					if(set.get(j) && nfa.accepts[j]!=-1 && (dacc[i]==-1 || nfa.accepts[j]<dacc[i]))
+						dacc[i]=nfa.accepts[j];
+				}
+			}
+			if(dacc[0]!=-1)
+				throw new Exception("Error; %lex pattern matches the empty string: "+patterns[dacc[0]]+"\r\n");
+
+			// minimize, refining the partition by pattern accepted until the blocks are stable
+			int[] block=new int[nd];
+			int nblocks=0;
+			Hashtable keys=new Hashtable();
+			for(i=0;i<nd;i++)
+			{
+				String key=""+dacc[i];
+				Integer b=(Integer)keys.get(key);
+				if(b==null)
+					keys.put(key,b=Integer.valueOf(nblocks++));
+				block[i]=b.intValue();
+			}
+			while(true)
+			{
+				int[] block2=new int[nd];
+				int nblocks2=0;
+				keys=new Hashtable();
+				for(i=0;i<nd;i++)
+				{
+					int[] tr=(int[])dnext.elementAt(i);
+					StringBuffer key=new StringBuffer();
+					key.append(block[i]);
+					for(k=0;k<numclasses;k++)
+						key.append(',').append(tr[k]<0 ? -1 : block[tr[k]]);
+					Integer b=(Integer)keys.get(key.toString());
+					if(b==null)
+						keys.put(key.toString(),b=Integer.valueOf(nblocks2++));
+					block2[i]=b.intValue();
+				}
+				block=block2;
+				if(nblocks2==nblocks)
+					break;
+				nblocks=nblocks2;
+			}
+
+			// number the blocks in order of discovery, so the start state is 0
+			int[] number=new int[nblocks];
+			for(i=0;i<nblocks;i++)
+				number[i]=-1;
+			int[] first=new int[nblocks];	// a DFA state of each minimized state
+			int count=0;
+			number[block[0]]=count;
+			first[count++]=0;
+			for(i=0;i<count;i++)
+			{
+				int[] tr=(int[])dnext.elementAt(first[i]);
+				for(k=0;k<numclasses;k++)
+				{
+					if(tr[k]>=0 && number[block[tr[k]]]==-1)
 					{
-						// error
-						outputc+="{ INST_ERROR,0 },";
+						number[block[tr[k]]]=count;
+						first[count++]=tr[k];
 					}
 				}
-				else
+			}
+
+			// the rows, identical ones shared
+			accept=new int[count];
+			row=new int[count];
+			Vector rows=new Vector();
+			keys=new Hashtable();
+			for(i=0;i<count;i++)
+			{
+				accept[i]=dacc[first[i]];
+				int[] tr=(int[])dnext.elementAt(first[i]);
+				int[] r=new int[numclasses];
+				StringBuffer key=new StringBuffer();
+				for(k=0;k<numclasses;k++)
 				{
-					// error
-					outputc+="{ INST_ERROR,0 },";
+					r[k]=(tr[k]<0 ? -1 : number[block[tr[k]]]);
+					key.append(r[k]).append(',');
 				}
+				Integer b=(Integer)keys.get(key.toString());
+				if(b==null)
+				{
+					keys.put(key.toString(),b=Integer.valueOf(rows.size()));
+					rows.addElement(r);
+				}
+				row[i]=b.intValue();
 			}
-			outputc+=" },\r\n";
+			next=new int[rows.size()][];
+			rows.copyInto(next);
 		}
-		outputc+="};\r\n";
 
-		// build goto table
-		outputc+="\r\n";
-		outputc+="const int gototab[NUMSTATES][NUMNONTERMS]=\r\n{\r\n";
-		for(i=0;i<LR0goto.size();i++)
+		public int numClasses()	{	return numclasses;	}
+		public int numStates()	{	return row.length;	}
+		public int numRows()	{	return next.length;	}
+		public int numPatterns()	{	return patterns.length;	}
+
+		// the class of a character; all characters above 255 are in the class of 256
+		public int charClass(int c)	{	return charclass[c<NUMCHARS-1 ? c : NUMCHARS-1];	}
+		public int row(int s)	{	return row[s];	}
+		public int next(int r, int c)	{	return next[r][c];	}
+		public int accept(int s)	{	return accept[s];	}
+
+		public String pattern(int p)	{	return patterns[p];	}
+		public int token(int p)	{	return token[p];	}
+		public String tokenName(int p)	{	return tokens[p];	}
+		public String action(int p)	{	return actions[p];	}
+
+		/**
+		 * A lexer over the given text for the interpreter, returning the matched text as the value.
+		 * The actions, written in the target language, are not run.
+		 * A character no pattern matches is returned as a literal token.
+		 */
+		public Lexer lexer(final CharSequence in)
 		{
-			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
-			outputc+="{";
-			for(j=0;j<nonterms.size();j++)
+			return new Lexer()
 			{
-				String t=(String)nonterms.elementAt(j);
-				if(ht.containsKey(t))
+				int pos=0;
+				String text=null;
+
+				public String lex()
 				{
-					outputc+=ht.get(t)+",";
+					while(true)
+					{
+						if(pos>=in.length())
+						{
+							text="";
+							return eoi;
+						}
+						int s=0,p=-1,len=0;
+						for(int i=0;pos+i<in.length();)
+						{
+							s=next[row[s]][charClass(in.charAt(pos+i))];
+							if(s<0)
+								break;
+							i++;
+							if(accept[s]>=0)
+							{
+								p=accept[s];
+								len=i;
+							}
+						}
+						if(len==0)
+							len=1;
+						text=in.subSequence(pos,pos+len).toString();
+						pos+=len;
+						if(p<0)
+							return "\'"+text+"\'";
+						if(tokens[p]!=null)
+							return tokens[p];
+					}
 				}
-				else
+
+				public Object value()
 				{
-					outputc+="-1,";
+					return text;
 				}
+			};
+		}
+	}
+
+	// a Thompson NFA; a state has either an edge on a set of characters or empty edges
+	static final class Nfa
+	{
+		int size=0;
+		BitSet[] chars=new BitSet[16];
+		int[] target=new int[16];
+		int[] accepts=new int[16];	// pattern accepted in a state, -1 if none
+		Vector[] eps=new Vector[16];
+
+		int state()
+		{
+			if(size==chars.length)
+			{
+				BitSet[] c=new BitSet[size*2];
+				System.arraycopy(chars,0,c,0,size);
+				chars=c;
+				int[] t=new int[size*2];
+				System.arraycopy(target,0,t,0,size);
+				target=t;
+				int[] a=new int[size*2];
+				System.arraycopy(accepts,0,a,0,size);
+				accepts=a;
+				Vector[] e=new Vector[size*2];
+				System.arraycopy(eps,0,e,0,size);
+				eps=e;
 			}
-			outputc+="},\r\n";
+			accepts[size]=-1;
+			eps[size]=new Vector();
+			return size++;
 		}
-		outputc+="};\r\n";
 
-		// build semantic actions functions
-		outputc+="\r\n";
-		outputc+="void semactions(int r)\r\n";
-		outputc+="{\r\n";
-		outputc+="	JJSTYPE rclval;\r\n";
-		outputc+="	switch(r)\r\n";
-		outputc+="	{\r\n";
-		for(i=0;i<semactions.size();i++)
+		void edge(int from, BitSet c, int to)
 		{
-			String t=(String)semactions.elementAt(i);
-			outputc+="/*\r\n"+t+"\r\n*/\r\n";
-			outputc+="	case "+i+":"+parseSemaction(t,i)+"break;\r\n";
+			chars[from]=c;
+			target[from]=to;
 		}
-		outputc+="	}\r\n";
-		outputc+="}\r\n";
 
-		outputc+="\r\n";
-		outputc+="void "+PREFIX+"error(char* errmsg)\r\n";
-		outputc+="{\r\n";
-		outputc+="	fprintf(stderr,\"%s\\n\",errmsg);\r\n";
-		outputc+="}\r\n";
+		void eps(int from, int to)
+		{
+			eps[from].addElement(Integer.valueOf(to));
+		}
 
-		outputc+="\r\n";
-		outputc+="int maptoken(int c)\r\n";
-		outputc+="{\r\n";
-		outputc+="	int i;\r\n";
-		outputc+="	for(i=0;i<NUMTERMS;i++)\r\n";
-		outputc+="	{\r\n";
-		outputc+="		if(termmap[i]==c)\r\n";
-		outputc+="			return i;\r\n";
-		outputc+="	}\r\n";
-		outputc+="	return -1;\r\n";
-		outputc+="}\r\n";
-		outputc+="\r\n";
-		outputc+="int stack[JJSDEPTH];\r\n";
-		outputc+="int stackptr;\r\n";
-		outputc+="\r\n";
-		outputc+="int "+PREFIX+"parse()\r\n";
-		outputc+="{\r\n";
-		outputc+="	int c="+PREFIX+"lex();\r\n";
-		outputc+="	int ic,s,inst,param,tmp;\r\n";
-		outputc+="	stackptr=0;\r\n";
-		outputc+="	vstackptr=0;\r\n";
-		outputc+="	stack[stackptr]=0;\r\n";
-		outputc+="	memcpy(&vstack[vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
-		outputc+="	while(1)\r\n";
-		outputc+="	{\r\n";
-		outputc+="		ic=maptoken(c);\r\n";
-		outputc+="		if(ic<0)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			inst=INST_ERROR;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			s=stack[stackptr];\r\n";
-		outputc+="			inst=action[s][ic].inst;\r\n";
-		outputc+="			param=action[s][ic].param;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		if(inst==INST_SHIFT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			if(stackptr+2>=JJSDEPTH)	{	"+PREFIX+"error(\"error, stack overflow\\r\\n\");	break;	}\r\n";
-		outputc+="			stack[++stackptr]=ic;\r\n";
-		outputc+="			stack[++stackptr]=param;\r\n";
-		outputc+="			c="+PREFIX+"lex();\r\n";
-		outputc+="			if(vstackptr+1>=JJSDEPTH)	{	"+PREFIX+"error(\"error, value stack overflow\\r\\n\");	break;	}\r\n";
-		outputc+="			memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else if(inst==INST_REDUCE)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			stackptr-=2*rules[param].numsyms;\r\n";
-		outputc+="			if(stackptr<0)	{	"+PREFIX+"error(\"error, stack underflow\\r\\n\");	break;	}\r\n";
-		outputc+="			tmp=gototab[stack[stackptr]][rules[param].nonterm];\r\n";
-		outputc+="			stack[++stackptr]=rules[param].nonterm;\r\n";
-		outputc+="			if(tmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	break;	}\r\n";
-		outputc+="			stack[++stackptr]=tmp;\r\n";
-		outputc+="			memcpy(&"+PREFIX+"lval,&vstack[vstackptr--],sizeof(JJSTYPE));\r\n";/*temporarily remove value of recently shifted token*/
-		outputc+="			semactions(param);\r\n";
-		outputc+="			memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else if(inst==INST_ACCEPT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			break;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			tmp=0;\r\n";
-		outputc+="			ic=maptoken(error);\r\n";
-		outputc+="			while(1)\r\n";
-		outputc+="			{\r\n";
-		outputc+="				stackptr-=2;\r\n";
-		outputc+="				if(stackptr<0)	{	tmp=1; break;	}\r\n";
-		outputc+="				s=stack[stackptr];\r\n";
-		outputc+="				inst=action[s][ic].inst;\r\n";
-		outputc+="				param=action[s][ic].param;\r\n";
-		outputc+="				if(inst==INST_SHIFT)\r\n";
-		outputc+="				{\r\n";
-		outputc+="					if(stackptr+2>=JJSDEPTH)	{	tmp=1; "+PREFIX+"error(\"error, stack overflow\\r\\n\");	break;	}\r\n";
-		outputc+="					stack[++stackptr]=ic;\r\n";
-		outputc+="					stack[++stackptr]=param;\r\n";
-		outputc+="					c="+PREFIX+"lex();\r\n";
-		outputc+="					if(vstackptr+1>=JJSDEPTH)	{	tmp=1; "+PREFIX+"error(\"error, value stack overflow\\r\\n\");	break;	}\r\n";
-		outputc+="					memcpy(&vstack[++vstackptr],&"+PREFIX+"lval,sizeof(JJSTYPE));\r\n";
-		outputc+="					break;\r\n";
-		outputc+="				}\r\n";
-		outputc+="			}\r\n";
-		outputc+="			if(tmp)	{	"+PREFIX+"error(\"error!\\r\\n\");	break;	}\r\n";
-		outputc+="		}\r\n";
-		outputc+="	}\r\n";
-		outputc+="	return 0;\r\n";
-		outputc+="}\r\n";
+		void accept(int s, int pattern)
+		{
+			accepts[s]=pattern;
+		}
 
-		outputc+="\r\n/*supporting code*/\r\n"+support;
+		// add the states reachable through empty edges
+		void closure(BitSet set)
+		{
+			Vector stack=new Vector();
+			for(int i=0;i<size;i++)
+			{
+				if(set.get(i))
+					stack.addElement(Integer.valueOf(i));
+			}
+			while(stack.size()>0)
+			{
+				int s=((Integer)stack.lastElement()).intValue();
+				stack.removeElementAt(stack.size()-1);
+				for(int i=0;i<eps[s].size();i++)
+				{
+					int t=((Integer)eps[s].elementAt(i)).intValue();
+					if(!set.get(t))
+					{
+						set.set(t);
+						stack.addElement(Integer.valueOf(t));
+					}
+				}
+			}
+		}
 	}
 
-/////////////////////////////////////// JAVA ///////////////////////////////////////
-
-	// replace the $n's, etc. in { ... }
-	String parseSemaction2(String s, int ruleno)	throws Exception
+	/**
+	 * Compiles a pattern into fragments { start, end } of an NFA.  The syntax is that of lex:
+	 * alternation |, grouping ( ), repetition * + ?, classes [a-z] and [^...], quoted strings,
+	 * . for any character but newline, and the escapes \n \t \r \f \v and \ followed by any other character.
+	 */
+	static final class Regex
 	{
-		Vector v=(Vector)rules.elementAt(ruleno);
-		int rhslen=v.size()-1;
+		private final String re;
+		private final Nfa nfa;
+		private int pos=0;
 
-		String so="{";
+		Regex(String re, Nfa nfa)
+		{
+			this.re=re;
+			this.nfa=nfa;
+		}
 
-		if(s.length()<1)
+		int[] parse() throws Exception
 		{
-			if(rhslen>1)
-				return "for(int rcli=0;rcli<"+(rhslen-1)+";rcli++) vstack.pop(); ";
-			else if(rhslen==1)
-				return " ";	// no use to pop
-			else	// if an epsilon production, push dummy value
-				return "vstack.push(new Integer(0)); ";
+			int[] f=alt();
+			if(pos<re.length())
+				throw error();
+			return f;
 		}
 
-		int pos=1,pos2=1,len=s.length();	// skip '{'
-		char c;
-		if(rhslen>0)
-			so+="rclval=vstack.elementAt(vstack.size()-1-"+(rhslen-1)+");\r\n";
-		else
-			so+="rclval=new Integer(0);\r\n";
-		while(pos<len-1)
+		Exception error()
 		{
-			c=s.charAt(pos);
-			if(Character.isWhitespace(c))	// skip whitespace
+			return new Exception("Syntax error in %lex section; pattern "+re+"\r\n");
+		}
+
+		int[] alt() throws Exception
+		{
+			int[] f=concat();
+			while(pos<re.length() && re.charAt(pos)=='|')
 			{
 				pos++;
-				continue;
+				int[] g=concat();
+				int s=nfa.state();
+				int e=nfa.state();
+				nfa.eps(s,f[0]);
+				nfa.eps(s,g[0]);
+				nfa.eps(f[1],e);
+				nfa.eps(g[1],e);
+				f=new int[]{ s, e };
 			}
-			if(c=='\"')	// skip string literal
+			return f;
+		}
+
+		int[] concat() throws Exception
+		{
+			int s=nfa.state();
+			int[] f={ s, s };
+			while(pos<re.length() && re.charAt(pos)!='|' && re.charAt(pos)!=')')
 			{
-				pos++;
-				while(s.charAt(pos)!='\"')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
+				int[] g=repeat();
+				nfa.eps(f[1],g[0]);
+				f[1]=g[1];
 			}
-			if(c=='\'')	// skip character literal
+			return f;
+		}
+
+		int[] repeat() throws Exception
+		{
+			int[] f=atom();
+			while(pos<re.length() && "*+?".indexOf(re.charAt(pos))!=-1)
 			{
-				pos++;
-				while(s.charAt(pos)!='\'')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
+				char c=re.charAt(pos++);
+				int s=nfa.state();
+				int e=nfa.state();
+				nfa.eps(s,f[0]);
+				nfa.eps(f[1],e);
+				if(c!='+')
+					nfa.eps(s,e);
+				if(c!='?')
+					nfa.eps(f[1],f[0]);
+				f=new int[]{ s, e };
 			}
-			if(c=='/')
+			return f;
+		}
+
+		int[] atom() throws Exception
+		{
+			char c=re.charAt(pos++);
+			if(c=='(')
 			{
+				int[] f=alt();
+				if(pos>=re.length() || re.charAt(pos)!=')')
+					throw error();
 				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='*')
+				return f;
+			}
+			if(c=='\"')
+			{
+				int s=nfa.state();
+				int[] f={ s, s };
+				while(true)
 				{
-					pos++;
-					// comment begins
-					if((pos=s.indexOf("*/",pos))==-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					pos+=2;
+					if(pos>=re.length())
+						throw error();
+					c=re.charAt(pos++);
+					if(c=='\"')
+						break;
+					BitSet set=new BitSet();
+					set.set(c=='\\' ? escape() : code(c));
+					int e=nfa.state();
+					nfa.edge(f[1],set,e);
+					f[1]=e;
 				}
-				continue;
+				return f;
 			}
-			if(c=='$')
+			BitSet set=new BitSet();
+			if(c=='[')
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='$')
-				{
-					so+=s.substring(pos2,pos-1);
-					so+="rclval";
-					//String m=(String)unionmem.get((String)v.elementAt(0));
-					//if(m!=null)
-					//	so+="."+m;
+				boolean negate=(pos<re.length() && re.charAt(pos)=='^');
+				if(negate)
 					pos++;
-					pos2=pos;
-					continue;
+				boolean firstchar=true;
+				while(true)
+				{
+					if(pos>=re.length())
+						throw error();
+					c=re.charAt(pos++);
+					if(c==']' && !firstchar)
+						break;
+					firstchar=false;
+					int lo=(c=='\\' ? escape() : code(c));
+					int hi=lo;
+					if(pos+1<re.length() && re.charAt(pos)=='-' && re.charAt(pos+1)!=']')
+					{
+						pos++;
+						c=re.charAt(pos++);
+						hi=(c=='\\' ? escape() : code(c));
+						if(hi<lo)
+							throw error();
+					}
+					for(int i=lo;i<=hi;i++)
+						set.set(i);
 				}
-				if(Character.isDigit(s.charAt(pos)))
+				if(negate)
 				{
-					so+=s.substring(pos2,pos-1);
-					pos2=pos++;
-					while(Character.isDigit(s.charAt(pos)))
+					for(int i=0;i<Scanner.NUMCHARS;i++)
 					{
-						pos++;
+						if(set.get(i))
+							set.clear(i);
+						else
+							set.set(i);
 					}
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					int idx=Integer.parseInt(s.substring(pos2,pos));
-					if(idx>rhslen || idx<1)
-						throw new Exception("Error in semantic action section, index out of range\r\n");
-					so+="vstack.elementAt(vstack.size()-1-"+(rhslen-idx)+")";
-					//String m=(String)unionmem.get((String)v.elementAt(idx));
-					//if(m!=null)
-					//	so+="."+m;
-					pos2=pos;
-					continue;
 				}
-				pos++;
-				continue;
 			}
-			pos++;
+			else if(c=='.')
+			{
+				for(int i=0;i<Scanner.NUMCHARS;i++)
+				{
+					if(i!='\n')
+						set.set(i);
+				}
+			}
+			else if(c=='\\')
+			{
+				set.set(escape());
+			}
+			else if("*+?|)".indexOf(c)!=-1)
+			{
+				throw error();
+			}
+			else
+			{
+				set.set(code(c));
+			}
+			int s=nfa.state();
+			int e=nfa.state();
+			nfa.edge(s,set,e);
+			return new int[]{ s, e };
+		}
+
+		// the character after a backslash
+		int escape() throws Exception
+		{
+			if(pos>=re.length())
+				throw error();
+			char c=re.charAt(pos++);
+			switch(c)
+			{
+			case 'n':	return '\n';
+			case 't':	return '\t';
+			case 'r':	return '\r';
+			case 'f':	return '\f';
+			case 'v':	return 11;
+			}
+			return code(c);
+		}
+
+		static int code(char c)
+		{
+			return (c<Scanner.NUMCHARS-1 ? c : Scanner.NUMCHARS-1);
 		}
-		so+=s.substring(pos2,pos);
-		so+="\r\n";
-		so+="	for(int rclj=0;rclj<"+rhslen+";rclj++) vstack.pop();\r\n\tvstack.push(rclval);\r\n";
-		so+="	}\r\n";
-		return so;
 	}
 
-	// write Java class implementation
-	void genJavaCode() throws Exception
+/////////////////////////////////////// INTERPRETER ///////////////////////////////////////
+
+	/**
+	 * Supplies the tokens to an Interpreter, in the place of jjlex() and jjlval of a generated Java parser.
+	 */
+	public interface Lexer
 	{
-		int i,j;
+		// the next token; '<char>' for character literals and the symbol name for other terminals
+		String lex() throws Exception;
+		// the semantic value of the token last returned by lex()
+		Object value();
+	}
 
-		outputc+="/*\r\n"+APPNAME+" generated file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
-		outputc+="Notes:\r\n\tYou must provide an implementation of the lexer \'String "+PREFIX+"lex()\'\r\n";
-		outputc+="\twhich returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
-		outputc+="*/\r\n";
-		// literal block
-		outputc+="\r\n/*start of literal block*/\r\n";
-		outputc+=lit;
-		outputc+="/*end of literal block*/\r\n\r\n";
-		outputc+="import java.util.Stack;\r\n";
-		outputc+="import java.util.Hashtable;\r\n\r\n";
-		outputc+="public class "+PREFIX+"class\r\n{\r\n";
-		outputc+="final int NUMTERMS="+terms.size()+";\r\n";
-		outputc+="final int NUMNONTERMS="+nonterms.size()+";\r\n";
-		outputc+="final int NUMRULES="+rules.size()+";\r\n";
-		outputc+="final int NUMSTATES="+LR0.size()+";\r\n";
-		outputc+="final int INST_ERROR=-1;\r\n";
-		outputc+="final int INST_SHIFT=0;\r\n";
-		outputc+="final int INST_REDUCE=1;\r\n";
-		outputc+="final int INST_ACCEPT=2;\r\n";
+	/**
+	 * The semantic action of a rule; given the values of the rhs symbols ($1..$n), returns the value of the lhs ($$).
+	 */
+	public interface Action
+	{
+		Object reduce(Object[] rhs) throws Exception;
+	}
 
-		outputc+="\r\n";
-		outputc+="Object "+PREFIX+"lval;\r\n";
-		outputc+="Stack vstack;\r\n";
-		outputc+="Stack stack;\r\n";
+	/**
+	 * Runs the LR parsing algorithm directly on a Tables, instead of through generated code.
+	 * An Interpreter keeps no state between calls, so one instance may parse on many threads at once.
+	 */
+	public static final class Interpreter
+	{
+		private final Tables tables;
+		private final Dispatch dispatch;
+		private final Loop loop;	// the loop compiled along with the dispatch, if any
+		private final Action[] actions;
 
-		// build terminal map
-		outputc+="\r\n";
-		outputc+="Hashtable termmap=new Hashtable();\r\n";
-		outputc+=""+PREFIX+"class()\r\n{\r\n";
-		for(i=0;i<terms.size();i++)
+		// actions[r] is the semantic action of rule r; a missing action passes on $1 ($$ is null for an empty production)
+		public Interpreter(Tables tables, Action[] actions)
 		{
-			outputc+="\ttermmap.put(\""+(String)terms.elementAt(i)+"\",new Integer("+i+"));\r\n";
+			this(tables,new TableDispatch(tables),actions);
 		}
-		outputc+="}\r\n";
 
-		// build rules array
-		outputc+="\r\n";
-		outputc+="final int rules[][]=\r\n{\r\n";
-		for(i=0;i<rules.size();i++)
+		// runs on the given dispatch instead of the arrays of the tables; on the one compiled by Jacc.bytecode(),
+		// which is also a Loop, parse() runs the compiled loop instead of its own
+		public Interpreter(Tables tables, Dispatch dispatch, Action[] actions)
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			int inonterm=nonterms.indexOf((String)v.elementAt(0));
-			if(inonterm==-1)
-				throw new Exception("Error; lhs not in nonterminal vector\r\n");
-			outputc+="{ "+inonterm+","+(v.size()-1)+" },\r\n";
+			this.tables=tables;
+			this.dispatch=dispatch;
+			this.loop=(dispatch instanceof Loop ? (Loop)dispatch : null);
+			this.actions=new Action[tables.numRules()];
+			if(actions!=null)
+				System.arraycopy(actions,0,this.actions,0,Math.min(actions.length,this.actions.length));
 		}
-		outputc+="};\r\n";
 
-		// build action table
-		outputc+="\r\n";
-		outputc+="final int action[][][]=\r\n{\r\n";
-		for(i=0;i<action.size();i++)
+		// parses the input and returns the value of the start symbol
+		public Object parse(Lexer lexer) throws Exception
 		{
-			Hashtable ht=(Hashtable)action.elementAt(i);
-			outputc+="{";
-			for(j=0;j<terms.size();j++)
+			if(loop!=null)
+				return loop.parse(lexer,actions);
+			int[] stack=new int[64];	// states; stack[sp] is the current state
+			Object[] vstack=new Object[64];	// vstack[i] is the value of the symbol shifted into stack[i]
+			int sp=0;
+			stack[0]=0;
+			String c=lexer.lex();
+			Object lval=lexer.value();
+			boolean recovered=false;	// an error was recovered from at the end of input
+			while(true)
 			{
-				String t=(String)terms.elementAt(j);
-				if(ht.containsKey(t))
+				int s=stack[sp];
+				int ic=tables.termIndex(c);
+				int act=(ic<0 ? -1 : dispatch.action(s,ic));
+				int inst=(act<0 ? Tables.INST_ERROR : act&3);
+				int param=act>>2;
+				if(inst==Tables.INST_SHIFT)
 				{
-					String t2=(String)ht.get(t);
-					if(t2.startsWith("s"))
+					if(++sp==stack.length)
 					{
-						// shift
-						outputc+="{ INST_SHIFT,"+t2.substring(1)+"},";
+						stack=grow(stack);
+						vstack=grow(vstack);
 					}
-					else if(t2.startsWith("r"))
+					stack[sp]=param;
+					vstack[sp]=lval;
+					c=lexer.lex();
+					lval=lexer.value();
+					recovered=false;
+				}
+				else if(inst==Tables.INST_REDUCE)
+				{
+					int n=dispatch.length(param);
+					Object[] rhs=new Object[n];
+					System.arraycopy(vstack,sp-n+1,rhs,0,n);
+					sp-=n;
+					int g=dispatch.go(stack[sp],dispatch.lhs(param));
+					if(g<0)
+						throw new Exception("error in gototab\r\n");
+					Object v=(actions[param]!=null ? actions[param].reduce(rhs) : (n>0 ? rhs[0] : null));
+					if(++sp==stack.length)
 					{
-						// reduce
-						outputc+="{ INST_REDUCE,"+t2.substring(1)+"},";
+						stack=grow(stack);
+						vstack=grow(vstack);
+					}
+					stack[sp]=g;
+					vstack[sp]=v;
+				}
+				else if(inst==Tables.INST_ACCEPT)
+				{
+					return vstack[sp];
+				}
+				else
+				{
+					// pop states until one shifts the error token, then discard the offending token
+					int error=tables.errorTerm();
+					while(sp>=0 && tables.actionInst(stack[sp],error)!=Tables.INST_SHIFT)
+						sp--;
+					if(sp<0 || recovered)
+						throw new Exception("error!\r\n");
+					param=tables.actionParam(stack[sp],error);
+					if(++sp==stack.length)
+					{
+						stack=grow(stack);
+						vstack=grow(vstack);
 					}
-					else if(t2.startsWith("a"))
+					stack[sp]=param;
+					vstack[sp]=null;
+					if(ic==tables.eoiTerm())
 					{
-						// accept
-						outputc+="{ INST_ACCEPT,0 },";
+						recovered=true;	// the end of input cannot be discarded
 					}
 					else
 					{
-						// error
-						outputc+="{ INST_ERROR,0 },";
+						c=lexer.lex();
+						lval=lexer.value();
 					}
 				}
-				else
-				{
-					// error
-					outputc+="{ INST_ERROR,0 },";
-				}
 			}
-			outputc+=" },\r\n";
 		}
-		outputc+="};\r\n";
 
-		// build goto table
-		outputc+="\r\n";
-		outputc+="final int gototab[][]=\r\n{\r\n";
-		for(i=0;i<LR0goto.size();i++)
+		private static int[] grow(int[] a)
 		{
-			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
-			outputc+="{";
-			for(j=0;j<nonterms.size();j++)
-			{
-				String t=(String)nonterms.elementAt(j);
-				if(ht.containsKey(t))
-				{
-					outputc+=ht.get(t)+",";
-				}
-				else
-				{
-					outputc+="-1,";
-				}
-			}
-			outputc+="},\r\n";
+			int[] b=new int[a.length*2];
+			System.arraycopy(a,0,b,0,a.length);
+			return b;
 		}
-		outputc+="};\r\n";
 
-		// build semantic actions functions
-		outputc+="\r\n";
-		outputc+="void semactions(int r) throws Exception\r\n";
-		outputc+="{\r\n";
-		outputc+="	Object rclval;\r\n";
-		outputc+="	switch(r)\r\n";
-		outputc+="	{\r\n";
-		for(i=0;i<semactions.size();i++)
+		private static Object[] grow(Object[] a)
 		{
-			String t=(String)semactions.elementAt(i);
-			outputc+="	case "+i+":"+parseSemaction2(t,i)+"break;\r\n";
+			Object[] b=new Object[a.length*2];
+			System.arraycopy(a,0,b,0,a.length);
+			return b;
 		}
-		outputc+="	}\r\n";
-		outputc+="}\r\n";
+	}
 
-		outputc+="\r\n";
-		outputc+="void "+PREFIX+"error(String errmsg) throws Exception\r\n";
-		outputc+="{\r\n";
-		outputc+="\tthrow new Exception(errmsg);\r\n";
-		outputc+="}\r\n";
+	/**
+	 * The lookups of the parsing loop.  An action is encoded as (param<<2)|inst, or -1 for an error.
+	 */
+	public interface Dispatch
+	{
+		int action(int state, int term);
+		int go(int state, int nonterm);	// -1 if none
+		int length(int rule);	// the number of rhs symbols
+		int lhs(int rule);	// the nonterminal number of the lhs
+	}
 
-		outputc+="\r\n";
-		outputc+="int "+PREFIX+"parse() throws Exception\r\n";
-		outputc+="{\r\n";
-		outputc+="	String c="+PREFIX+"lex();\r\n";
-		outputc+="	int ic,itmp,s,inst,param=0;\r\n";
-		outputc+="	Object tmp;\r\n";
-		outputc+="	stack=new Stack();\r\n";
-		outputc+="	stack.push(new Integer(0));\r\n";
-		outputc+="	vstack=new Stack();\r\n";
-		outputc+="	vstack.push("+PREFIX+"lval);\r\n";
-		outputc+="	while(true)\r\n";
-		outputc+="	{\r\n";
-		outputc+="		tmp=termmap.get(c);\r\n";
-		outputc+="		if(tmp==null)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			inst=INST_ERROR;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			s=((Integer)stack.peek()).intValue();\r\n";
-		outputc+="			ic=((Integer)tmp).intValue();\r\n";
-		outputc+="			inst=action[s][ic][0];\r\n";
-		outputc+="			param=action[s][ic][1];\r\n";
-		outputc+="		}\r\n";
-		outputc+="		if(inst==INST_SHIFT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			stack.push(new Integer(param));\r\n";
-		outputc+="			c="+PREFIX+"lex();\r\n";
-		outputc+="			vstack.push("+PREFIX+"lval);\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else if(inst==INST_REDUCE)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			for(int i=0;i<rules[param][1];i++) stack.pop();\r\n";
-		outputc+="			itmp=gototab[((Integer)stack.peek()).intValue()][rules[param][0]];\r\n";
-		outputc+="			if(itmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	break;	}\r\n";
-		outputc+="			stack.push(new Integer(itmp));\r\n";
-		outputc+="			"+PREFIX+"lval=vstack.pop();\r\n";/*temporarily remove value of recently shifted token*/
-		outputc+="			semactions(param);\r\n";
-		outputc+="			vstack.push("+PREFIX+"lval);\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else if(inst==INST_ACCEPT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			break;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			ic=((Integer)termmap.get(\""+ERROR+"\")).intValue();\r\n";
-		outputc+="			itmp=0;\r\n";
-		outputc+="			while(true)\r\n";
-		outputc+="			{\r\n";
-		outputc+="				if(stack.empty()) { itmp=1; break; }\r\n";
-		outputc+="				s=((Integer)stack.pop()).intValue();\r\n";
-		outputc+="				inst=action[s][ic][0];\r\n";
-		outputc+="				param=action[s][ic][1];\r\n";
-		outputc+="				if(inst==INST_SHIFT)\r\n";
-		outputc+="				{\r\n";
-		outputc+="					stack.push(new Integer(param));\r\n";
-		outputc+="					c="+PREFIX+"lex();\r\n";
-		outputc+="					vstack.push("+PREFIX+"lval);\r\n";
-		outputc+="					break;\r\n";
-		outputc+="				}\r\n";
-		outputc+="			}\r\n";
-		outputc+="			if(itmp==1) { "+PREFIX+"error(\"error!\\r\\n\"); break; }\r\n";
-		outputc+="		}\r\n";
-		outputc+="	}\r\n";
-		outputc+="	return 0;\r\n";
-		outputc+="}\r\n";
+	/**
+	 * A parsing loop compiled by Jacc.bytecode(), with the tables in its code; it parses as Interpreter.parse() does.
+	 */
+	public interface Loop
+	{
+		// actions[r] is the semantic action of rule r, or null, for every rule r
+		Object parse(Lexer lexer, Action[] actions) throws Exception;
+	}
 
-		outputc+="\r\n/*supporting code*/\r\n"+support+"\r\n}//end "+PREFIX+"class\r\n";
+	static int encodeAction(int inst, int param)
+	{
+		return (inst==Tables.INST_ERROR ? -1 : (param<<2)|inst);
 	}
 
-/////////////////////////////////////// PERL ///////////////////////////////////////
+	// lookups in the arrays of a Tables
+	static final class TableDispatch implements Dispatch
+	{
+		private final int[][] act;
+		private final int[][] gototab;
+		private final int[] length;
+		private final int[] lhs;
 
-	// replace the $n's, etc. in { ... }
-	String parseSemaction3(String s, int ruleno)	throws Exception
+		TableDispatch(Tables t)
+		{
+			act=new int[t.numStates()][t.numTerms()];
+			gototab=new int[t.numStates()][t.numNonterms()];
+			for(int i=0;i<t.numStates();i++)
+			{
+				for(int j=0;j<t.numTerms();j++)
+					act[i][j]=encodeAction(t.actionInst(i,j),t.actionParam(i,j));
+				for(int j=0;j<t.numNonterms();j++)
+					gototab[i][j]=t.gotoState(i,j);
+			}
+			length=new int[t.numRules()];
+			lhs=new int[t.numRules()];
+			for(int i=0;i<t.numRules();i++)
+			{
+				length[i]=t.ruleLength(i);
+				lhs[i]=t.ruleLhs(i);
+			}
+		}
+
+		public int action(int state, int term)	{	return act[state][term];	}
+		public int go(int state, int nonterm)	{	return gototab[state][nonterm];	}
+		public int length(int rule)	{	return length[rule];	}
+		public int lhs(int rule)	{	return lhs[rule];	}
+	}
+
+/////////////////////////////////////// JVM bytecode ///////////////////////////////////////
+
+	/**
+	 * Compiles the tables into a class implementing Loop and Dispatch and defines it in a class loader of
+	 * its own, without generating or compiling any source.  Its parse() is the parsing loop with the states,
+	 * rules and gotos in its code (see LoopCode), which an Interpreter on this dispatch runs instead of
+	 * its own.  Each lookup of Dispatch is a tableswitch on the state (or rule) whose cases return the
+	 * actions, goto states, rhs lengths and lhs as constants.
+	 * A lookup whose method would exceed the 64K limit of the JVM is split into static methods over
+	 * ranges of states, which it calls through a tableswitch; should that still not fit, the lookups
+	 * are left to the arrays, in a TableDispatch.  A loop of more than 8000 bytes, which the JIT compiler
+	 * would not compile, is left out, so that the class is only a Dispatch and an Interpreter runs its own
+	 * loop on the compiled lookups.
+	 */
+	public static Dispatch bytecode(Tables t) throws Exception
 	{
-		Vector v=(Vector)rules.elementAt(ruleno);
-		int rhslen=v.size()-1;
+		final String name="JaccDispatch";
+		ConstPool cp=new ConstPool();
+		int thisclass=cp.classref(name);
+		int superclass=cp.classref("java/lang/Object");
+		int iface=cp.classref("Jacc$Dispatch");
+		int loop=cp.classref("Jacc$Loop");
+		int init=cp.methodref(superclass,"<init>","()V");
+		int codeattr=cp.utf8("Code");
+		int tablesname=cp.utf8("tables");
+		int tablesdesc=cp.utf8("LJacc$Tables;");
+		int tablesfield=cp.fieldref(thisclass,"tables","LJacc$Tables;");
 
-		String so="{";
+		int i,j;
+		int[][] rows=new int[t.numStates()][t.numTerms()];
+		int[][] gotos=new int[t.numStates()][t.numNonterms()];
+		int[][] lengths=new int[1][t.numRules()];
+		int[][] lhs=new int[1][t.numRules()];
+		for(i=0;i<t.numStates();i++)
+		{
+			for(j=0;j<t.numTerms();j++)
+				rows[i][j]=encodeAction(t.actionInst(i,j),t.actionParam(i,j));
+			for(j=0;j<t.numNonterms();j++)
+				gotos[i][j]=t.gotoState(i,j);
+		}
+		for(i=0;i<t.numRules();i++)
+		{
+			lengths[0][i]=t.ruleLength(i);
+			lhs[0][i]=t.ruleLhs(i);
+		}
 
-		if(s.length()<1)
+		// the methods; <init>(Tables) is aload_0, invokespecial Object.<init>, aload_0, aload_1, putfield tables, return
+		Vector methods=new Vector();
+		Code ctor=new Code();
+		ctor.u1(0x2a);
+		ctor.u1(0xb7);
+		ctor.u2(init);
+		ctor.u1(0x2a);
+		ctor.u1(0x2b);
+		ctor.u1(0xb5);
+		ctor.u2(tablesfield);
+		ctor.u1(0xb1);
+		methods.addElement(new MethodInfo(0x0001,cp.utf8("<init>"),cp.utf8("(LJacc$Tables;)V"),2,2,ctor.resolve()));
+		rowMethods(cp,thisclass,"action",rows,methods);
+		rowMethods(cp,thisclass,"go",gotos,methods);
+		methods.addElement(new MethodInfo(0x0001,cp.utf8("length"),cp.utf8("(I)I"),1,2,switchCode(cp,lengths,0,1,1,false)));
+		methods.addElement(new MethodInfo(0x0001,cp.utf8("lhs"),cp.utf8("(I)I"),1,2,switchCode(cp,lhs,0,1,1,false)));
+		for(i=0;i<methods.size();i++)
 		{
-			return " $#vstack-="+(rhslen-1)+";";
-			/*
-			epsilon production contains this case:
-			return " $#vstack++;";
-			and stack value is indeterminate
-			*/
+			if(((MethodInfo)methods.elementAt(i)).code.length>65535)
+				return new TableDispatch(t);
+		}
+		byte[] parse=new LoopCode(cp,thisclass,tablesfield).compile(t);
+		boolean looped=(parse.length<=LoopCode.HUGE);
+		if(looped)
+		{
+			methods.addElement(new MethodInfo(0x0001,cp.utf8("parse"),cp.utf8("(LJacc$Lexer;[LJacc$Action;)Ljava/lang/Object;"),LoopCode.MAXSTACK,LoopCode.MAXLOCALS,parse));
+			methods.addElement(new MethodInfo(0x0002|0x0008,cp.utf8("grow"),cp.utf8("([I)[I"),5,2,growCode(cp,false)));	// private static
+			methods.addElement(new MethodInfo(0x0002|0x0008,cp.utf8("grow"),cp.utf8("([Ljava/lang/Object;)[Ljava/lang/Object;"),5,2,growCode(cp,true)));
 		}
+		if(cp.count>65535)
+			return new TableDispatch(t);
 
-		int pos=1,pos2=1,len=s.length();	// skip '{'
-		char c;
-		if(rhslen>0)
-			so+="$rclval=$vstack[$#vstack-"+(rhslen-1)+"];\r\n";
-		else	// if an epsilon production
-			so+="$rclval=0;\r\n";
-		while(pos<len-1)
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(bytes);
+		out.writeInt(0xcafebabe);
+		out.writeShort(0);
+		out.writeShort(49);	// no StackMapTable needed before version 50
+		cp.write(out);
+		out.writeShort(0x0001|0x0010|0x0020);	// public final super
+		out.writeShort(thisclass);
+		out.writeShort(superclass);
+		out.writeShort(looped ? 2 : 1);
+		out.writeShort(iface);
+		if(looped)
+			out.writeShort(loop);
+		out.writeShort(1);	// fields: private final Tables tables
+		out.writeShort(0x0002|0x0010);
+		out.writeShort(tablesname);
+		out.writeShort(tablesdesc);
+		out.writeShort(0);
+		out.writeShort(methods.size());
+		for(i=0;i<methods.size();i++)
 		{
-			c=s.charAt(pos);
-			if(Character.isWhitespace(c))	// skip whitespace
-			{
-				pos++;
-				continue;
-			}
-			if(c=='\"')	// skip string literal
-			{
-				pos++;
-				while(s.charAt(pos)!='\"')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
-			}
-			if(c=='\'')	// skip character literal
-			{
-				pos++;
-				while(s.charAt(pos)!='\'')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
+			MethodInfo m=(MethodInfo)methods.elementAt(i);
+			out.writeShort(m.access);
+			out.writeShort(m.name);
+			out.writeShort(m.desc);
+			out.writeShort(1);
+			out.writeShort(codeattr);
+			out.writeInt(12+m.code.length);
+			out.writeShort(m.maxstack);
+			out.writeShort(m.maxlocals);
+			out.writeInt(m.code.length);
+			out.write(m.code);
+			out.writeShort(0);	// exception table
+			out.writeShort(0);	// attributes
+		}
+		out.writeShort(0);	// attributes
+		out.close();
+
+		Class<?> c=new Loader(Jacc.class.getClassLoader()).define(name,bytes.toByteArray());
+		return (Dispatch)c.getDeclaredConstructor(new Class<?>[] { Tables.class }).newInstance(new Object[] { t });
+	}
+
+	// the method name(int,int) over the rows of tab: a single switch if it fits in 64K, else a switch on
+	// the state calling private static methods name$0, name$1 and so on, each over a range of the rows
+	static void rowMethods(ConstPool cp, int thisclass, String name, int[][] tab, Vector methods) throws Exception
+	{
+		byte[] code=switchCode(cp,tab,0,tab.length,1,true);
+		if(code.length<=65535)
+		{
+			methods.addElement(new MethodInfo(0x0001,cp.utf8(name),cp.utf8("(II)I"),1,3,code));
+			return;
+		}
+		Vector ranges=new Vector();	// of { from, to }
+		Vector codes=new Vector();
+		splitRows(cp,tab,0,tab.length,ranges,codes);
+		Code c=new Code();
+		int def=c.label();
+		int[] rowlabels=new int[tab.length];
+		int[] calls=new int[ranges.size()];
+		for(int k=0;k<ranges.size();k++)
+		{
+			int[] r=(int[])ranges.elementAt(k);
+			calls[k]=c.label();
+			for(int i=r[0];i<r[1];i++)
+				rowlabels[i]=calls[k];
+		}
+		c.u1(0x1b);	// iload_1
+		c.tableswitch(0,rowlabels,def);
+		for(int k=0;k<ranges.size();k++)
+		{
+			String part=name+"$"+k;
+			c.mark(calls[k]);
+			c.u1(0x1b);	// iload_1
+			c.u1(0x1c);	// iload_2
+			c.u1(0xb8);	// invokestatic
+			c.u2(cp.methodref(thisclass,part,"(II)I"));
+			c.u1(0xac);	// ireturn
+			methods.addElement(new MethodInfo(0x0002|0x0008,cp.utf8(part),cp.utf8("(II)I"),1,2,(byte[])codes.elementAt(k)));	// private static
+		}
+		c.mark(def);
+		c.u1(0x02);	// iconst_m1
+		c.u1(0xac);	// ireturn
+		methods.addElement(new MethodInfo(0x0001,cp.utf8(name),cp.utf8("(II)I"),2,3,c.resolve()));
+	}
+
+	// halves the rows from..to-1 until the static method over each range fits in 64K, or is of a single row
+	static void splitRows(ConstPool cp, int[][] tab, int from, int to, Vector ranges, Vector codes) throws Exception
+	{
+		byte[] code=switchCode(cp,tab,from,to,0,true);
+		if(code.length>65535 && to-from>1)
+		{
+			int mid=(from+to)/2;
+			splitRows(cp,tab,from,mid,ranges,codes);
+			splitRows(cp,tab,mid,to,ranges,codes);
+			return;
+		}
+		ranges.addElement(new int[]{ from, to });
+		codes.addElement(code);
+	}
+
+	// switch on the int argument in local arg, over the rows from..to-1; and on the one in local arg+1, over
+	// the columns, if byrow.  Every case returns a constant; -1 by default, which also covers the -1 entries
+	static byte[] switchCode(ConstPool cp, int[][] tab, int from, int to, int arg, boolean byrow) throws Exception
+	{
+		Code c=new Code();
+		int def=c.label();
+		c.u1(0x1a+arg);	// iload_<arg>
+		if(byrow)
+		{
+			int[] rowlabels=new int[to-from];
+			for(int i=0;i<rowlabels.length;i++)
+				rowlabels[i]=c.label();
+			c.tableswitch(from,rowlabels,def);
+			for(int i=0;i<rowlabels.length;i++)
+			{
+				c.mark(rowlabels[i]);
+				c.u1(0x1a+arg+1);	// iload_<arg+1>
+				caseCode(c,cp,tab[from+i],def);
 			}
-			if(c=='/')
+		}
+		else
+		{
+			caseCode(c,cp,tab[0],def);
+		}
+		c.mark(def);
+		c.u1(0x02);	// iconst_m1
+		c.u1(0xac);	// ireturn
+		return c.resolve();
+	}
+
+	// switch on the int on the stack over the entries of a row, sharing one return per distinct value
+	static void caseCode(Code c, ConstPool cp, int[] row, int def) throws Exception
+	{
+		Hashtable values=new Hashtable();	// value to label
+		Vector order=new Vector();
+		int[] labels=new int[row.length];
+		int n=0;
+		for(int i=0;i<row.length;i++)
+		{
+			if(row[i]==-1)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='*')
-				{
-					pos++;
-					// comment begins
-					if((pos=s.indexOf("*/",pos))==-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					pos+=2;
-				}
+				labels[i]=def;
 				continue;
 			}
-			if(c=='$')
+			Integer v=Integer.valueOf(row[i]);
+			Integer l=(Integer)values.get(v);
+			if(l==null)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='$')
-				{
-					so+=s.substring(pos2,pos-1);
-					so+="$rclval";
-					//String m=(String)unionmem.get((String)v.elementAt(0));
-					//if(m!=null)
-					//	so+="."+m;
-					pos++;
-					pos2=pos;
-					continue;
-				}
-				if(Character.isDigit(s.charAt(pos)))
+				l=Integer.valueOf(c.label());
+				values.put(v,l);
+				order.addElement(v);
+			}
+			labels[i]=l.intValue();
+			n++;
+		}
+		if(n==0)
+		{
+			c.u1(0x57);	// pop
+			c.u1(0x02);	// iconst_m1
+			c.u1(0xac);	// ireturn
+			return;
+		}
+		switchTo(c,labels,def);
+		for(int i=0;i<order.size();i++)
+		{
+			Integer v=(Integer)order.elementAt(i);
+			c.mark(((Integer)values.get(v)).intValue());
+			c.iconst(cp,v.intValue());
+			c.u1(0xac);	// ireturn
+		}
+	}
+
+	// switch on the int on the stack to labels[i], or to def for an i out of range or whose labels[i] is def: a
+	// tableswitch from the first to the last i not going to def, unless a lookupswitch over those is half its size
+	static void switchTo(Code c, int[] labels, int def)
+	{
+		int n=0,lo=-1,hi=-1;
+		for(int i=0;i<labels.length;i++)
+		{
+			if(labels[i]==def)
+				continue;
+			if(lo<0)
+				lo=i;
+			hi=i;
+			n++;
+		}
+		if(n==0)
+		{
+			c.u1(0x57);	// pop
+			c.jump(0xa7,def);
+		}
+		else if(4*(hi-lo+1)+4<=8*n)
+		{
+			int[] l=new int[hi-lo+1];
+			System.arraycopy(labels,lo,l,0,l.length);
+			c.tableswitch(lo,l,def);
+		}
+		else
+		{
+			int[] keys=new int[n];
+			int[] l=new int[n];
+			for(int i=0,k=0;i<labels.length;i++)
+			{
+				if(labels[i]!=def)
 				{
-					so+=s.substring(pos2,pos-1);
-					pos2=pos++;
-					while(Character.isDigit(s.charAt(pos)))
-					{
-						pos++;
-					}
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					int idx=Integer.parseInt(s.substring(pos2,pos));
-					if(idx>rhslen || idx<1)
-						throw new Exception("Error in semantic action section, index out of range\r\n");
-					so+="$vstack[$#vstack-"+(rhslen-idx)+"]";
-					//String m=(String)unionmem.get((String)v.elementAt(idx));
-					//if(m!=null)
-					//	so+="."+m;
-					pos2=pos;
-					continue;
+					keys[k]=i;
+					l[k++]=labels[i];
 				}
-				pos++;
-				continue;
 			}
-			pos++;
+			c.lookupswitch(keys,l,def);
 		}
-		so+=s.substring(pos2,pos);
-		so+="\r\n";
-		so+="	$vstack[$#vstack-="+(rhslen-1)+"]=$rclval;\r\n";
-		/*
-		epsilon production contains this case:
-		so+="	vstack[++$#vstack]=rclval;\r\n";
-		*/
-		so+="	}\r\n";
-		return so;
 	}
 
-	// write PERL code implementation
-	void genPERLCode() throws Exception
+	/**
+	 * The code of the parse(lexer,actions) method of a Loop: the loop of Interpreter.parse() with the tables
+	 * compiled in.  The head of the loop is a tableswitch on the state entered, to a block per state switching
+	 * on the lookahead to the block of its action.  A shift pushes its constant state and enters it; a rule pops
+	 * its constant rhs length, runs its action (building no rhs array if it has none) and goes to the block of
+	 * its lhs, which switches on the uncovered state to push the goto and enter it.  So the stack of states is
+	 * only read by the gotos and the error recovery.  Every state is entered through the one head, rather than
+	 * jumped to directly, which keeps the loop reducible for the JIT compiler.
+	 */
+	static final class LoopCode
 	{
-		int i,j;
-
-		outputc+="#"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
-		outputc+="#Notes:\r\n#You must provide an implementation of the lexer \'sub "+PREFIX+"lex()\'\r\n";
-		outputc+="#which returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
-		outputc+="\r\n#start of literal block\r\n";
-		outputc+=lit;
-		outputc+="#end of literal block\r\n\r\n";
-		outputc+="my $NUMTERMS="+terms.size()+";\r\n";
-		outputc+="my $NUMNONTERMS="+nonterms.size()+";\r\n";
-		outputc+="my $NUMRULES="+rules.size()+";\r\n";
-		outputc+="my $NUMSTATES="+LR0.size()+";\r\n";
-		outputc+="my $INST_ERROR=-1;\r\n";
-		outputc+="my $INST_SHIFT=0;\r\n";
-		outputc+="my $INST_REDUCE=1;\r\n";
-		outputc+="my $INST_ACCEPT=2;\r\n";
+		// the locals of parse(): this, its arguments, the stacks of states and values and their top, the
+		// lookahead and its value, whether an error was recovered from at the end of input, and a reduction
+		static final int LEXER=1, ACTIONS=2, STACK=3, VSTACK=4, SP=5, IC=6, LVAL=7, RECOVERED=8, V=9, RHS=10;
+		static final int MAXLOCALS=11, MAXSTACK=6;
+		// the largest loop left in; HotSpot does not compile a method of more bytes (-XX:HugeMethodLimit)
+		static final int HUGE=8000;
+		// opcodes
+		static final int ILOAD=0x15, ISTORE=0x36, ALOAD=0x19, ASTORE=0x3a, GOTO=0xa7;
 
-		outputc+="\r\n";
-		outputc+="my $jjlval;\r\n";
-		outputc+="my @stack;\r\n";
-		outputc+="my @vstack;\r\n";
+		private final Code c=new Code();
+		private final int dispatch=c.label();
+		private final ConstPool cp;
+		private final int tables,lex,value,termindex,reduce,arraycopy,growints,growvalues,object,exception,exinit;
 
-		// build terminal map
-		outputc+="\r\n";
-		outputc+="my %termmap=\r\n(\r\n";
-		for(i=0;i<terms.size();i++)
+		LoopCode(ConstPool cp, int thisclass, int tablesfield) throws IOException
 		{
-			String t=(String)terms.elementAt(i);
-			outputc+="\""+t+"\" => "+i+",\r\n";
+			this.cp=cp;
+			tables=tablesfield;
+			int lexer=cp.classref("Jacc$Lexer");
+			lex=cp.imethodref(lexer,"lex","()Ljava/lang/String;");
+			value=cp.imethodref(lexer,"value","()Ljava/lang/Object;");
+			termindex=cp.methodref(cp.classref("Jacc$Tables"),"termIndex","(Ljava/lang/String;)I");
+			reduce=cp.imethodref(cp.classref("Jacc$Action"),"reduce","([Ljava/lang/Object;)Ljava/lang/Object;");
+			arraycopy=cp.methodref(cp.classref("java/lang/System"),"arraycopy","(Ljava/lang/Object;ILjava/lang/Object;II)V");
+			growints=cp.methodref(thisclass,"grow","([I)[I");
+			growvalues=cp.methodref(thisclass,"grow","([Ljava/lang/Object;)[Ljava/lang/Object;");
+			object=cp.classref("java/lang/Object");
+			exception=cp.classref("java/lang/Exception");
+			exinit=cp.methodref(exception,"<init>","(Ljava/lang/String;)V");
 		}
-		outputc+=");\r\n";
 
-		// build rules array
-		outputc+="\r\n";
-		outputc+="my @rules=\r\n(\r\n";
-		for(i=0;i<rules.size();i++)
+		byte[] compile(Tables t) throws IOException
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			int inonterm=nonterms.indexOf((String)v.elementAt(0));
-			if(inonterm==-1)
-				throw new Exception("Error; lhs not in nonterminal vector\r\n");
-			outputc+="[ "+inonterm+","+(v.size()-1)+" ],\r\n";
-		}
-		outputc+=");\r\n";
+			int i,j;
+			int[] state=labels(t.numStates());
+			int[] shift=labels(t.numStates());
+			int[] reduction=labels(t.numRules());
+			int[] go=labels(t.numNonterms());
+			int accept=c.label();
+			int error=c.label();
+			int fail=c.label();
+			int gotofail=c.label();
+			boolean[] shifts=new boolean[t.numStates()];
+			boolean[] reduces=new boolean[t.numRules()];
+			boolean[] gotos=new boolean[t.numNonterms()];
 
-		// build action table
-		outputc+="\r\n";
-		outputc+="my @action=\r\n(\r\n";
-		for(i=0;i<action.size();i++)
-		{
-			Hashtable ht=(Hashtable)action.elementAt(i);
-			outputc+="[";
-			for(j=0;j<terms.size();j++)
+			// the stacks, state 0 and the first lookahead
+			c.iconst(cp,64);
+			c.u1(0xbc);	// newarray int
+			c.u1(10);
+			c.local(ASTORE,STACK);
+			c.iconst(cp,64);
+			c.u1(0xbd);	// anewarray Object
+			c.u2(object);
+			c.local(ASTORE,VSTACK);
+			c.u1(0x03);	// iconst_0
+			c.local(ISTORE,SP);
+			c.u1(0x03);
+			c.local(ISTORE,RECOVERED);
+			read();
+			c.u1(0x03);	// iconst_0
+
+			// the loop: a tableswitch on the state entered
+			c.mark(dispatch);
+			c.tableswitch(0,state,fail);
+			for(i=0;i<t.numStates();i++)
 			{
-				String t=(String)terms.elementAt(j);
-				if(ht.containsKey(t))
+				c.mark(state[i]);
+				c.local(ILOAD,IC);
+				int[] l=new int[t.numTerms()];
+				for(j=0;j<l.length;j++)
 				{
-					String t2=(String)ht.get(t);
-					if(t2.startsWith("s"))
-					{
-						// shift
-						outputc+="[ $INST_SHIFT,"+t2.substring(1)+"],";
-					}
-					else if(t2.startsWith("r"))
-					{
-						// reduce
-						outputc+="[ $INST_REDUCE,"+t2.substring(1)+"],";
-					}
-					else if(t2.startsWith("a"))
-					{
-						// accept
-						outputc+="[ $INST_ACCEPT,0 ],";
-					}
-					else
+					int p=t.actionParam(i,j);
+					switch(t.actionInst(i,j))
 					{
-						// error
-						outputc+="[ $INST_ERROR,0 ],";
+					case Tables.INST_SHIFT:	l[j]=shift[p];	shifts[p]=true;	break;
+					case Tables.INST_REDUCE:	l[j]=reduction[p];	reduces[p]=true;	break;
+					case Tables.INST_ACCEPT:	l[j]=accept;	break;
+					default:	l[j]=error;	break;
 					}
 				}
+				switchTo(c,l,error);
+			}
+
+			for(i=0;i<t.numStates();i++)
+			{
+				if(!shifts[i])
+					continue;
+				c.mark(shift[i]);
+				push(i,LVAL);
+				read();
+				c.u1(0x03);	// iconst_0
+				c.local(ISTORE,RECOVERED);
+				enter(i);
+			}
+
+			// $$ is the value of the action, or $1 if it has none (null for an empty production)
+			for(i=0;i<t.numRules();i++)
+			{
+				if(!reduces[i])
+					continue;
+				int n=t.ruleLength(i);
+				int none=c.label();
+				int done=c.label();
+				c.mark(reduction[i]);
+				c.local(ALOAD,ACTIONS);
+				c.iconst(cp,i);
+				c.u1(0x32);	// aaload
+				c.u1(0x59);	// dup
+				c.jump(0xc6,none);	// ifnull
+				c.iconst(cp,n);
+				c.u1(0xbd);	// anewarray Object
+				c.u2(object);
+				if(n>0)
+				{
+					c.local(ASTORE,RHS);
+					c.local(ALOAD,VSTACK);
+					rhs(n);
+					c.local(ALOAD,RHS);
+					c.u1(0x03);	// iconst_0
+					c.iconst(cp,n);
+					c.u1(0xb8);	// invokestatic
+					c.u2(arraycopy);
+					c.local(ALOAD,RHS);
+				}
+				c.u1(0xb9);	// invokeinterface
+				c.u2(reduce);
+				c.u1(2);
+				c.u1(0);
+				c.local(ASTORE,V);
+				c.jump(GOTO,done);
+				c.mark(none);
+				c.u1(0x57);	// pop
+				if(n>0)
+				{
+					c.local(ALOAD,VSTACK);
+					rhs(n);
+					c.u1(0x32);	// aaload
+				}
 				else
 				{
-					// error
-					outputc+="[ $INST_ERROR,0 ],";
+					c.u1(0x01);	// aconst_null
 				}
+				c.local(ASTORE,V);
+				c.mark(done);
+				if(n>0)
+					c.iinc(SP,-n);
+				c.jump(GOTO,go[t.ruleLhs(i)]);
+				gotos[t.ruleLhs(i)]=true;
 			}
-			outputc+=" ],\r\n";
-		}
-		outputc+=");\r\n";
 
-		// build goto table
-		outputc+="\r\n";
-		outputc+="my @gototab=\r\n(\r\n";
-		for(i=0;i<LR0goto.size();i++)
-		{
-			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
-			outputc+="[";
-			for(j=0;j<nonterms.size();j++)
+			for(i=0;i<t.numNonterms();i++)
 			{
-				String t=(String)nonterms.elementAt(j);
-				if(ht.containsKey(t))
+				if(!gotos[i])
+					continue;
+				c.mark(go[i]);
+				c.local(ALOAD,STACK);
+				c.local(ILOAD,SP);
+				c.u1(0x2e);	// iaload
+				int[] l=new int[t.numStates()];
+				int[] target=new int[t.numStates()];	// the label pushing each goto state, or -1
+				for(j=0;j<target.length;j++)
+					target[j]=-1;
+				for(j=0;j<l.length;j++)
 				{
-					outputc+=ht.get(t)+",";
+					int g=t.gotoState(j,i);
+					if(g<0)
+					{
+						l[j]=gotofail;
+						continue;
+					}
+					if(target[g]<0)
+						target[g]=c.label();
+					l[j]=target[g];
 				}
-				else
+				switchTo(c,l,gotofail);
+				for(j=0;j<target.length;j++)
 				{
-					outputc+="-1,";
+					if(target[j]<0)
+						continue;
+					c.mark(target[j]);
+					push(j,V);
+					enter(j);
 				}
 			}
-			outputc+="],\r\n";
-		}
-		outputc+=");\r\n";
 
-		// build semantic actions functions
-		outputc+="\r\n";
-		outputc+="sub semactions\r\n";
-		outputc+="{\r\n";
-		outputc+="	my $r=shift;\r\n";
-		outputc+="	my $rclval;\r\n";
-		for(i=0;i<semactions.size();i++)
-		{
-			String t=(String)semactions.elementAt(i);
-			if(i==0)
+			c.mark(accept);
+			c.local(ALOAD,VSTACK);
+			c.local(ILOAD,SP);
+			c.u1(0x32);	// aaload
+			c.u1(0xb0);	// areturn
+
+			// pop states until one shifts the error token, then discard the offending token
+			c.mark(error);
+			c.local(ILOAD,SP);
+			c.jump(0x9b,fail);	// iflt
+			c.local(ALOAD,STACK);
+			c.local(ILOAD,SP);
+			c.u1(0x2e);	// iaload
+			int pop=c.label();
+			int[] l=new int[t.numStates()];
+			int[] target=new int[t.numStates()];
+			for(j=0;j<target.length;j++)
+				target[j]=-1;
+			for(j=0;j<l.length;j++)
+			{
+				if(t.actionInst(j,t.errorTerm())!=Tables.INST_SHIFT)
+				{
+					l[j]=pop;
+					continue;
+				}
+				int g=t.actionParam(j,t.errorTerm());
+				if(target[g]<0)
+					target[g]=c.label();
+				l[j]=target[g];
+			}
+			switchTo(c,l,pop);
+			c.mark(pop);
+			c.iinc(SP,-1);
+			c.jump(GOTO,error);
+			for(j=0;j<target.length;j++)
 			{
-				outputc+="	if($r=="+i+")\r\n{\r\n"+parseSemaction3(t,i)+"\r\n}\r\n";
+				if(target[j]<0)
+					continue;
+				int discard=c.label();
+				c.mark(target[j]);
+				c.local(ILOAD,RECOVERED);
+				c.jump(0x9a,fail);	// ifne
+				push(j,-1);
+				c.local(ILOAD,IC);
+				c.iconst(cp,t.eoiTerm());
+				c.jump(0xa0,discard);	// if_icmpne
+				c.u1(0x04);	// iconst_1; the end of input cannot be discarded
+				c.local(ISTORE,RECOVERED);
+				enter(j);
+				c.mark(discard);
+				read();
+				enter(j);
 			}
+
+			c.mark(fail);
+			raise("error!\r\n");
+			c.mark(gotofail);
+			raise("error in gototab\r\n");
+			return c.resolve();
+		}
+
+		// enters state s, which is on top of the stack
+		void enter(int s) throws IOException
+		{
+			c.iconst(cp,s);
+			c.jump(GOTO,dispatch);
+		}
+
+		int[] labels(int n)
+		{
+			int[] l=new int[n];
+			for(int i=0;i<n;i++)
+				l[i]=c.label();
+			return l;
+		}
+
+		// ic and lval of the next token
+		void read()
+		{
+			c.u1(0x2a);	// aload_0
+			c.u1(0xb4);	// getfield
+			c.u2(tables);
+			c.local(ALOAD,LEXER);
+			c.u1(0xb9);	// invokeinterface
+			c.u2(lex);
+			c.u1(1);
+			c.u1(0);
+			c.u1(0xb6);	// invokevirtual
+			c.u2(termindex);
+			c.local(ISTORE,IC);
+			c.local(ALOAD,LEXER);
+			c.u1(0xb9);
+			c.u2(value);
+			c.u1(1);
+			c.u1(0);
+			c.local(ASTORE,LVAL);
+		}
+
+		// pushes the state s with the value in local v (null if -1), growing the stacks if full
+		void push(int s, int v) throws IOException
+		{
+			int room=c.label();
+			c.iinc(SP,1);
+			c.local(ILOAD,SP);
+			c.local(ALOAD,STACK);
+			c.u1(0xbe);	// arraylength
+			c.jump(0xa1,room);	// if_icmplt
+			c.local(ALOAD,STACK);
+			c.u1(0xb8);	// invokestatic
+			c.u2(growints);
+			c.local(ASTORE,STACK);
+			c.local(ALOAD,VSTACK);
+			c.u1(0xb8);
+			c.u2(growvalues);
+			c.local(ASTORE,VSTACK);
+			c.mark(room);
+			c.local(ALOAD,STACK);
+			c.local(ILOAD,SP);
+			c.iconst(cp,s);
+			c.u1(0x4f);	// iastore
+			c.local(ALOAD,VSTACK);
+			c.local(ILOAD,SP);
+			if(v<0)
+				c.u1(0x01);	// aconst_null
 			else
+				c.local(ALOAD,v);
+			c.u1(0x53);	// aastore
+		}
+
+		// the index sp-n+1 of the first of n rhs values
+		void rhs(int n) throws IOException
+		{
+			c.local(ILOAD,SP);
+			if(n>1)
 			{
-				outputc+="	elsif($r=="+i+")\r\n{\r\n"+parseSemaction3(t,i)+"\r\n}\r\n";
+				c.iconst(cp,n-1);
+				c.u1(0x64);	// isub
 			}
 		}
-		outputc+="}\r\n";
 
-		outputc+="\r\n";
-		outputc+="sub "+PREFIX+"error\r\n";
-		outputc+="{\r\n";
-		outputc+="	my $errmsg=shift;\r\n";
-		outputc+="	print $errmsg.\"\\r\\n\";\r\n";
-		outputc+="}\r\n";
+		void raise(String msg) throws IOException
+		{
+			c.u1(0xbb);	// new
+			c.u2(exception);
+			c.u1(0x59);	// dup
+			c.u1(0x13);	// ldc_w
+			c.u2(cp.string(msg));
+			c.u1(0xb7);	// invokespecial
+			c.u2(exinit);
+			c.u1(0xbf);	// athrow
+		}
+	}
 
-		outputc+="\r\n";
-		outputc+="sub "+PREFIX+"parse\r\n";
-		outputc+="{\r\n";
-		outputc+="	my $c="+PREFIX+"lex();\r\n";
-		outputc+="	my ($ic,$s,$inst,$param,$tmp);\r\n";
-		outputc+="	$stack[++$#stack]=0;\r\n";
-		outputc+="	$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
-		outputc+="	MAINLOOP: while(1)\r\n";
-		outputc+="	{\r\n";
-		outputc+="		$ic=$termmap{$c};\r\n";
-		outputc+="		if(not defined $ic)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			$inst=$INST_ERROR;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			$s=$stack[$#stack];\r\n";
-		outputc+="			$inst=$action[$s][$ic][0];\r\n";
-		outputc+="			$param=$action[$s][$ic][1];\r\n";
-		outputc+="		}\r\n";
-		outputc+="		if($inst==$INST_SHIFT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			$stack[++$#stack]=$ic;\r\n";
-		outputc+="			$stack[++$#stack]=$param;\r\n";
-		outputc+="			$c="+PREFIX+"lex();\r\n";
-		outputc+="			$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		elsif($inst==$INST_REDUCE)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			$#stack-=2*$rules[$param][1];\r\n";
-		outputc+="			if($#stack<0)	{	"+PREFIX+"error(\"error, stack underflow\\r\\n\");	last MAINLOOP;	}\r\n";
-		outputc+="			$tmp=$gototab[$stack[$#stack]][$rules[$param][0]];\r\n";
-		outputc+="			$stack[++$#stack]=$rules[$param][0];\r\n";
-		outputc+="			if($tmp<0)	{	"+PREFIX+"error(\"error in gototab\\r\\n\");	last MAINLOOP;	}\r\n";
-		outputc+="			$stack[++$#stack]=$tmp;\r\n";
-		outputc+="			$"+PREFIX+"lval=$vstack[$#vstack--];\r\n";/*temporarily remove value of recently shifted token*/
-		outputc+="			semactions($param);\r\n";
-		outputc+="			$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		elsif($inst==$INST_ACCEPT)\r\n";
-		outputc+="		{\r\n";
-		outputc+="			last MAINLOOP;\r\n";
-		outputc+="		}\r\n";
-		outputc+="		else\r\n";
-		outputc+="		{\r\n";
-		outputc+="			$tmp=0;\r\n";	// not used?
-		outputc+="			$ic=$termmap{\""+ERROR+"\"};\r\n";
-		outputc+="			while(1)\r\n";
-		outputc+="			{\r\n";
-		outputc+="				$#stack-=2;\r\n";
-		outputc+="				if($#stack<0)	{	"+PREFIX+"error(\"error!\\r\\n\");	last MAINLOOP; };\r\n";
-		outputc+="				$s=$stack[$#stack];\r\n";
-		outputc+="				$inst=$action[$s][$ic][0];\r\n";
-		outputc+="				$param=$action[$s][$ic][1];\r\n";
-		outputc+="				if($inst==$INST_SHIFT)\r\n";
-		outputc+="				{\r\n";
-		outputc+="					$stack[++$#stack]=$ic;\r\n";
-		outputc+="					$stack[++$#stack]=$param;\r\n";
-		outputc+="					$c="+PREFIX+"lex();\r\n";
-		outputc+="					$vstack[++$#vstack]=$"+PREFIX+"lval;\r\n";
-		outputc+="					last;\r\n";
-		outputc+="				}\r\n";
-		outputc+="			}\r\n";
-		outputc+="		}\r\n";
-		outputc+="	}\r\n";
-		outputc+="}\r\n";
+	// the static method grow() of the class of a Loop over int[] (or Object[] if values): a copy of twice the length
+	static byte[] growCode(ConstPool cp, boolean values) throws IOException
+	{
+		Code c=new Code();
+		c.u1(0x2a);	// aload_0
+		c.u1(0xbe);	// arraylength
+		c.u1(0x05);	// iconst_2
+		c.u1(0x68);	// imul
+		if(values)
+		{
+			c.u1(0xbd);	// anewarray Object
+			c.u2(cp.classref("java/lang/Object"));
+		}
+		else
+		{
+			c.u1(0xbc);	// newarray int
+			c.u1(10);
+		}
+		c.u1(0x4c);	// astore_1
+		c.u1(0x2a);	// aload_0
+		c.u1(0x03);	// iconst_0
+		c.u1(0x2b);	// aload_1
+		c.u1(0x03);	// iconst_0
+		c.u1(0x2a);	// aload_0
+		c.u1(0xbe);	// arraylength
+		c.u1(0xb8);	// invokestatic
+		c.u2(cp.methodref(cp.classref("java/lang/System"),"arraycopy","(Ljava/lang/Object;ILjava/lang/Object;II)V"));
+		c.u1(0x2b);	// aload_1
+		c.u1(0xb0);	// areturn
+		return c.resolve();
+	}
 
-		outputc+="\r\n#supporting code\r\n"+support;
+	// a method of a class file, of which only the Code attribute is written
+	static final class MethodInfo
+	{
+		final int access,name,desc,maxstack,maxlocals;
+		final byte[] code;
+
+		MethodInfo(int access, int name, int desc, int maxstack, int maxlocals, byte[] code)
+		{
+			this.access=access;
+			this.name=name;
+			this.desc=desc;
+			this.maxstack=maxstack;
+			this.maxlocals=maxlocals;
+			this.code=code;
+		}
 	}
 
-/////////////////////////////////////// Python ///////////////////////////////////////
+	// the constant pool of a class file
+	static final class ConstPool
+	{
+		private final ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		private final DataOutputStream out=new DataOutputStream(bytes);
+		private final Hashtable entries=new Hashtable();
+		int count=1;	// the index of the next entry
+
+		int utf8(String s) throws IOException
+		{
+			Integer i=(Integer)entries.get("U"+s);
+			if(i==null)
+			{
+				out.writeByte(1);
+				out.writeUTF(s);
+				entries.put("U"+s,i=Integer.valueOf(count++));
+			}
+			return i.intValue();
+		}
+
+		int classref(String s) throws IOException
+		{
+			int n=utf8(s);
+			Integer i=(Integer)entries.get("C"+s);
+			if(i==null)
+			{
+				out.writeByte(7);
+				out.writeShort(n);
+				entries.put("C"+s,i=Integer.valueOf(count++));
+			}
+			return i.intValue();
+		}
+
+		int methodref(int c, String name, String desc) throws IOException
+		{
+			return member(10,c,name,desc);
+		}
 
-	// replace the $n's, etc. in { ... }
-	String parseSemaction4(String s, int ruleno)	throws Exception
-	{
-		Vector v=(Vector)rules.elementAt(ruleno);
-		int rhslen=v.size()-1;
+		int imethodref(int c, String name, String desc) throws IOException
+		{
+			return member(11,c,name,desc);
+		}
 
-		String so="";
+		int fieldref(int c, String name, String desc) throws IOException
+		{
+			return member(9,c,name,desc);
+		}
 
-		if(s.length()<1)
+		// a field (9), method (10) or interface method (11) of class c
+		private int member(int tag, int c, String name, String desc) throws IOException
 		{
-			return "\t\tvstack[len(vstack)-"+(rhslen-1)+":]=[]";
+			int n=utf8(name);
+			int d=utf8(desc);
+			out.writeByte(12);	// name and type
+			out.writeShort(n);
+			out.writeShort(d);
+			out.writeByte(tag);
+			out.writeShort(c);
+			out.writeShort(count);
+			count+=2;
+			return count-1;
 		}
 
-		int pos=1,pos2=1,len=s.length();	// skip '{'
-		char c;
-		if(rhslen>0)
-			so+="\t\trclval=vstack[len(vstack)-"+(rhslen)+"]\r\n";
-		else	// if an epsilon production
-			so+="\t\trclval=0\r\n";
-		while(pos<len-1)
+		int string(String s) throws IOException
 		{
-			c=s.charAt(pos);
-			if(Character.isWhitespace(c))	// skip whitespace
-			{
-				pos++;
-				continue;
-			}
-			if(c=='\"')	// skip string literal
-			{
-				pos++;
-				while(s.charAt(pos)!='\"')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
-			}
-			if(c=='\'')	// skip character literal
-			{
-				pos++;
-				while(s.charAt(pos)!='\'')
-				{
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					if(s.charAt(pos)=='\\')	// escape sequence
-					{
-						pos++;
-						if(pos>=len-1)
-							throw new Exception("Syntax error in semantic action section\r\n");
-					}
-					pos++;
-				}
-				pos++;
-				continue;
-			}
-			if(c=='/')
+			int n=utf8(s);
+			Integer i=(Integer)entries.get("S"+s);
+			if(i==null)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='*')
-				{
-					pos++;
-					// comment begins
-					if((pos=s.indexOf("*/",pos))==-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					pos+=2;
-				}
-				continue;
+				out.writeByte(8);
+				out.writeShort(n);
+				entries.put("S"+s,i=Integer.valueOf(count++));
 			}
-			if(c=='$')
+			return i.intValue();
+		}
+
+		int integer(int v) throws IOException
+		{
+			Integer i=(Integer)entries.get("I"+v);
+			if(i==null)
 			{
-				pos++;
-				if(pos>=len-1)
-					throw new Exception("Syntax error in semantic action section\r\n");
-				if(s.charAt(pos)=='$')
-				{
-					so+=s.substring(pos2,pos-1);
-					so+="rclval";
-					pos++;
-					pos2=pos;
-					continue;
-				}
-				if(Character.isDigit(s.charAt(pos)))
-				{
-					so+=s.substring(pos2,pos-1);
-					pos2=pos++;
-					while(Character.isDigit(s.charAt(pos)))
-					{
-						pos++;
-					}
-					if(pos>=len-1)
-						throw new Exception("Syntax error in semantic action section\r\n");
-					int idx=Integer.parseInt(s.substring(pos2,pos));
-					if(idx>rhslen || idx<1)
-						throw new Exception("Error in semantic action section, index out of range\r\n");
-					so+="vstack[len(vstack)-"+(rhslen-idx+1)+"]";
-					pos2=pos;
-					continue;
-				}
-				pos++;
-				continue;
+				out.writeByte(3);
+				out.writeInt(v);
+				entries.put("I"+v,i=Integer.valueOf(count++));
 			}
-			pos++;
+			return i.intValue();
+		}
+
+		void write(DataOutputStream o) throws IOException
+		{
+			out.flush();
+			o.writeShort(count);
+			o.write(bytes.toByteArray());
 		}
-		so+="\t\t"+s.substring(pos2,pos);
-		so+="\r\n\t\tvstack[len(vstack)-"+(rhslen)+":]=[]\r\n";
-		so+="\t\tvstack.append(rclval)";
-		return so;
 	}
 
-	// write Python code implementation
-	void genPythonCode() throws Exception
+	// the code of a method, with labels for the 32-bit offsets of the switches
+	static final class Code
 	{
-		int i,j;
-
-		outputc+="#"+APPNAME+" generated source file, by Rhonald C. Lua.  (C) 2000 All rights reserved.\r\n";
-		outputc+="#Notes:\r\n#You must provide an implementation of the lexer \'"+PREFIX+"lex()\'\r\n";
-		outputc+="#which returns a token code in the format \'<char>\' for character literals and the symbol name for other terminals\r\n";
-		outputc+="\r\n#start of literal block\r\n";
-		outputc+=lit;
-		outputc+="#end of literal block\r\n\r\n";
-		outputc+="NUMTERMS="+terms.size()+"\r\n";
-		outputc+="NUMNONTERMS="+nonterms.size()+"\r\n";
-		outputc+="NUMRULES="+rules.size()+"\r\n";
-		outputc+="NUMSTATES="+LR0.size()+"\r\n";
-		outputc+="INST_ERROR=-1\r\n";
-		outputc+="INST_SHIFT=0\r\n";
-		outputc+="INST_REDUCE=1\r\n";
-		outputc+="INST_ACCEPT=2\r\n";
+		private byte[] buf=new byte[256];
+		private int pc=0;
+		private int[] labelpc=new int[16];
+		private int labels=0;
+		private Vector fixups=new Vector();	// of { position, opcode address, label }
 
-		outputc+="\r\n";
-		outputc+="jjlval=0\r\n";
-		outputc+="stack=[]\r\n";
-		outputc+="vstack=[]\r\n";
+		void u1(int b)
+		{
+			if(pc==buf.length)
+			{
+				byte[] b2=new byte[buf.length*2];
+				System.arraycopy(buf,0,b2,0,pc);
+				buf=b2;
+			}
+			buf[pc++]=(byte)b;
+		}
 
-		// build terminal map
-		outputc+="\r\n";
-		outputc+="termmap={\r\n";
-		for(i=0;i<terms.size();i++)
+		void u2(int v)
 		{
-			String t=(String)terms.elementAt(i);
-			outputc+="\""+t+"\" : "+i+",\r\n";
+			u1(v>>8);
+			u1(v);
 		}
-		outputc+="}\r\n";
 
-		// build rules array
-		outputc+="\r\n";
-		outputc+="rules=[\r\n";
-		for(i=0;i<rules.size();i++)
+		void u4(int v)
 		{
-			Vector v=(Vector)rules.elementAt(i);
-			int inonterm=nonterms.indexOf((String)v.elementAt(0));
-			if(inonterm==-1)
-				throw new Exception("Error; lhs not in nonterminal vector\r\n");
-			outputc+="[ "+inonterm+","+(v.size()-1)+" ],\r\n";
+			u2(v>>16);
+			u2(v);
 		}
-		outputc+="]\r\n";
 
-		// build action table
-		outputc+="\r\n";
-		outputc+="action=[\r\n";
-		for(i=0;i<action.size();i++)
+		int label()
 		{
-			Hashtable ht=(Hashtable)action.elementAt(i);
-			outputc+="[";
-			for(j=0;j<terms.size();j++)
+			if(labels==labelpc.length)
 			{
-				String t=(String)terms.elementAt(j);
-				if(ht.containsKey(t))
-				{
-					String t2=(String)ht.get(t);
-					if(t2.startsWith("s"))
-					{
-						// shift
-						outputc+="[ INST_SHIFT,"+t2.substring(1)+"],";
-					}
-					else if(t2.startsWith("r"))
-					{
-						// reduce
-						outputc+="[ INST_REDUCE,"+t2.substring(1)+"],";
-					}
-					else if(t2.startsWith("a"))
-					{
-						// accept
-						outputc+="[ INST_ACCEPT,0 ],";
-					}
-					else
-					{
-						// error
-						outputc+="[ INST_ERROR,0 ],";
-					}
-				}
-				else
-				{
-					// error
-					outputc+="[ INST_ERROR,0 ],";
-				}
+				int[] l=new int[labels*2];
+				System.arraycopy(labelpc,0,l,0,labels);
+				labelpc=l;
 			}
-			outputc+=" ],\r\n";
+			return labels++;
 		}
-		outputc+="]\r\n";
 
-		// build goto table
-		outputc+="\r\n";
-		outputc+="gototab=[\r\n";
-		for(i=0;i<LR0goto.size();i++)
+		void mark(int label)
 		{
-			Hashtable ht=(Hashtable)LR0goto.elementAt(i);
-			outputc+="[";
-			for(j=0;j<nonterms.size();j++)
+			labelpc[label]=pc;
+		}
+
+		void offset(int base, int label)
+		{
+			fixups.addElement(new int[]{ pc, base, label });
+			u4(0);
+		}
+
+		void tableswitch(int lo, int[] targets, int def)
+		{
+			int base=pc;
+			u1(0xaa);
+			while(pc%4!=0)
+				u1(0);
+			offset(base,def);
+			u4(lo);
+			u4(lo+targets.length-1);
+			for(int i=0;i<targets.length;i++)
+				offset(base,targets[i]);
+		}
+
+		// a branch to the label at any distance: goto_w, or the opposite condition jumping over a goto_w
+		void jump(int op, int label)
+		{
+			if(op!=0xa7)
 			{
-				String t=(String)nonterms.elementAt(j);
-				if(ht.containsKey(t))
-				{
-					outputc+=ht.get(t)+",";
-				}
-				else
-				{
-					outputc+="-1,";
-				}
+				u1(op==0xc6 || op==0xc7 ? op^1 : 0x99+((op-0x99)^1));	// ifnull, ifnonnull, or if<cond> 0x99..0xa6
+				u2(8);
 			}
-			outputc+="],\r\n";
+			int base=pc;
+			u1(0xc8);	// goto_w
+			offset(base,label);
 		}
-		outputc+="]\r\n";
 
-		// build semantic actions functions
-		outputc+="\r\n";
-		outputc+="def semactions(r):\r\n";
-		outputc+="	global stack,vstack\r\n";
-		for(i=0;i<semactions.size();i++)
+		// iload (0x15), istore (0x36), aload (0x19) or astore (0x3a) of local n
+		void local(int op, int n)
 		{
-			String t=(String)semactions.elementAt(i);
-			if(i==0)
+			if(n<=3)
 			{
-				outputc+="	if r=="+i+":\r\n"+parseSemaction4(t,i)+"\r\n";
+				u1((op==0x15 ? 0x1a : op==0x36 ? 0x3b : op==0x19 ? 0x2a : 0x4b)+n);
 			}
 			else
 			{
-				outputc+="	elif r=="+i+":\r\n"+parseSemaction4(t,i)+"\r\n";
+				u1(op);
+				u1(n);
 			}
 		}
 
-		outputc+="\r\n";
-		outputc+="def "+PREFIX+"error(msg):\r\n";
-		outputc+="	print msg\r\n";
-
-		outputc+="\r\n";
-		outputc+="def "+PREFIX+"parse():\r\n";
-		outputc+="	global jjlval,stack,vstack,bufptr\r\n";
-		outputc+="	c="+PREFIX+"lex()\r\n";
-		outputc+="	stack.append(0)\r\n";
-		outputc+="	vstack.append("+PREFIX+"lval)\r\n";
-		outputc+="	while 1:\r\n";
-		outputc+="		try:\r\n";
-		outputc+="			ic=termmap[c]\r\n";
-		outputc+="			s=stack[-1];\r\n";
-		outputc+="			inst=action[s][ic][0]\r\n";
-		outputc+="			param=action[s][ic][1]\r\n";
-		outputc+="		except:	inst=INST_ERROR\r\n";
-		outputc+="		if inst==INST_SHIFT:\r\n";
-		outputc+="			stack.append(ic)\r\n";
-		outputc+="			stack.append(param)\r\n";
-		outputc+="			c="+PREFIX+"lex()\r\n";
-		outputc+="			vstack.append("+PREFIX+"lval)\r\n";
-		outputc+="		elif inst==INST_REDUCE:\r\n";
-		outputc+="			try:\r\n";
-		outputc+="				stack[len(stack)-2*rules[param][1]:]=[]\r\n";
-		outputc+="			except:\r\n";
-		outputc+="				"+PREFIX+"error(\"error, stack underflow\\r\\n\")\r\n";
-		outputc+="				break\r\n";
-		outputc+="			tmp=gototab[stack[-1]][rules[param][0]]\r\n";
-		outputc+="			stack.append(rules[param][0])\r\n";
-		outputc+="			if tmp<0:\r\n";
-		outputc+="				"+PREFIX+"error(\"error in gototab\\r\\n\")\r\n";
-		outputc+="				break\r\n";
-		outputc+="			stack.append(tmp)\r\n";
-		outputc+="			"+PREFIX+"lval=vstack.pop()\r\n";/*temporarily remove value of recently shifted token*/
-		outputc+="			semactions(param)\r\n";
-		outputc+="			vstack.append("+PREFIX+"lval)\r\n";
-		outputc+="		elif inst==INST_ACCEPT:\r\n";
-		outputc+="			break\r\n";
-		outputc+="		else:\r\n";
-		outputc+="			tmp=0\r\n";
-		outputc+="			ic=termmap[\""+ERROR+"\"]\r\n";
-		outputc+="			while 1:\r\n";
-		outputc+="				try:\r\n";
-		outputc+="					stack.pop()\r\n";
-		outputc+="					stack.pop()\r\n";
-		outputc+="				except:\r\n";
-		outputc+="					"+PREFIX+"error(\"error!\\r\\n\")\r\n";
-		outputc+="					tmp=1\r\n";
-		outputc+="					break\r\n";
-		outputc+="				s=stack[-1]\r\n";
-		outputc+="				inst=action[s][ic][0]\r\n";
-		outputc+="				param=action[s][ic][1]\r\n";
-		outputc+="				if inst==INST_SHIFT:\r\n";
-		outputc+="					stack.append(ic)\r\n";
-		outputc+="					stack.append(param)\r\n";
-		outputc+="					c="+PREFIX+"lex()\r\n";
-		outputc+="					vstack.append("+PREFIX+"lval)\r\n";
-		outputc+="					break\r\n";
-		outputc+="			if tmp==1: break\r\n";
+		void iinc(int n, int d)
+		{
+			if(d<-128 || d>127)
+			{
+				u1(0xc4);	// wide
+				u1(0x84);
+				u2(n);
+				u2(d);
+			}
+			else
+			{
+				u1(0x84);
+				u1(n);
+				u1(d);
+			}
+		}
 
-		outputc+="\r\n#supporting code\r\n"+support;
-	}
+		void lookupswitch(int[] keys, int[] targets, int def)
+		{
+			int base=pc;
+			u1(0xab);
+			while(pc%4!=0)
+				u1(0);
+			offset(base,def);
+			u4(keys.length);
+			for(int i=0;i<keys.length;i++)
+			{
+				u4(keys[i]);
+				offset(base,targets[i]);
+			}
+		}
 
-	void genCode() throws Exception
-	{
-		if((option & 0x01)>0)
+		void iconst(ConstPool cp, int v) throws IOException
 		{
-			genANSICCode();
-			genTrace();
-			outputc+="\r\n/**********begin trace**********\r\n\r\n"+trace+"\r\n**********end trace**********/\r\n";
+			if(v>=-1 && v<=5)
+			{
+				u1(0x03+v);	// iconst_<v>
+			}
+			else if(v>=-128 && v<=127)
+			{
+				u1(0x10);	// bipush
+				u1(v);
+			}
+			else if(v>=-32768 && v<=32767)
+			{
+				u1(0x11);	// sipush
+				u2(v);
+			}
+			else
+			{
+				u1(0x13);	// ldc_w
+				u2(cp.integer(v));
+			}
 		}
-		else if((option & 0x02)>0)
+
+		byte[] resolve()
 		{
-			genJavaCode();
-			genTrace();
-			outputc+="\r\n/**********begin trace**********\r\n\r\n"+trace+"\r\n**********end trace**********/\r\n";
+			for(int i=0;i<fixups.size();i++)
+			{
+				int[] f=(int[])fixups.elementAt(i);
+				int v=labelpc[f[2]]-f[1];
+				buf[f[0]]=(byte)(v>>24);
+				buf[f[0]+1]=(byte)(v>>16);
+				buf[f[0]+2]=(byte)(v>>8);
+				buf[f[0]+3]=(byte)v;
+			}
+			byte[] b=new byte[pc];
+			System.arraycopy(buf,0,b,0,pc);
+			return b;
 		}
-		else if((option & 0x04)>0)
+	}
+
+	// defines the compiled classes; a loader per class lets each grammar have its own JaccDispatch
+	static final class Loader extends ClassLoader
+	{
+		Loader(ClassLoader parent)
 		{
-			genPERLCode();
-			genTrace();
+			super(parent);
 		}
-		else if((option & 0x08)>0)
+
+		Class<?> define(String name, byte[] b)
 		{
-			genPythonCode();
-			genTrace();
+			return defineClass(name,b,0,b.length);
 		}
 	}
 }
@@ -0,0 +1,292 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * Times the phases of JACC in isolation over synthetic grammars of growing size,
+ * so that the scaling of generation with states and symbols can be tracked across versions.
+ * Every phase is run a few times to warm up and then measured; the median time and the
+ * bytes allocated by the measuring thread are reported per run of the phase.
+ *
+ *	java JaccBench [-family expr,wide,deep] [-sizes 4,16,64] [-warmup n] [-iters n]
+ *
+ * It calls the phases directly, so it is compiled together with the generator
+ * (Jacc1p3.java saved as Jacc.java) into the same, default, package.
+ *
+ * The grammar families are
+ *	expr	an expression grammar with one nonterminal and one binary operator per precedence level
+ *	wide	a statement list with as many kinds of statement, each with its own keyword
+ *	deep	blocks nested as deep, each level with its own brackets
+ * The output is one tab-separated line per grammar and phase.
+ */
+public class JaccBench
+{
+	static int warmup=3;
+	static int iters=5;
+
+	public static void main(String[] args) throws Exception
+	{
+		String families="expr,wide,deep";
+		String sizes="4,16,64";
+		for(int i=0;i<args.length;i++)
+		{
+			if(args[i].equals("-family") && i+1<args.length)
+				families=args[++i];
+			else if(args[i].equals("-sizes") && i+1<args.length)
+				sizes=args[++i];
+			else if(args[i].equals("-warmup") && i+1<args.length)
+				warmup=Integer.parseInt(args[++i]);
+			else if(args[i].equals("-iters") && i+1<args.length)
+				iters=Math.max(1,Integer.parseInt(args[++i]));
+			else
+			{
+				System.out.print("usage: java JaccBench [-family expr,wide,deep] [-sizes 4,16,64] [-warmup n] [-iters n]\r\n");
+				return;
+			}
+		}
+		if(threadAllocatedBytes()<0)
+			System.out.print("# allocation is not measured on this JVM\r\n");
+
+		System.out.print("grammar\tstates\tterms\tnonterms\trules\tphase\tms\tbytes\r\n");
+		StringTokenizer ft=new StringTokenizer(families,",");
+		while(ft.hasMoreTokens())
+		{
+			String family=ft.nextToken();
+			StringTokenizer st=new StringTokenizer(sizes,",");
+			while(st.hasMoreTokens())
+			{
+				int n=Integer.parseInt(st.nextToken());
+				bench(family+n,grammar(family,n));
+			}
+		}
+	}
+
+	// the text of a grammar of the family with the given size
+	static String grammar(String family, int n) throws Exception
+	{
+		StringBuffer sb=new StringBuffer();
+		int i;
+		if(family.equals("expr"))
+		{
+			sb.append("%token NUMBER\r\n");
+			for(i=0;i<n;i++)
+				sb.append("%token OP"+i+"\r\n");
+			sb.append("%%\r\n");
+			sb.append("input : /* empty */\r\n\t| input e0 ';'\r\n\t;\r\n");
+			for(i=0;i<n;i++)
+				sb.append("e"+i+" : e"+i+" OP"+i+" e"+(i+1)+" { $$ = $1 + $3; }\r\n\t| e"+(i+1)+"\r\n\t;\r\n");
+			sb.append("e"+n+" : NUMBER\r\n\t| '(' e0 ')' { $$ = $2; }\r\n\t;\r\n");
+		}
+		else if(family.equals("wide"))
+		{
+			sb.append("%token NUMBER ID\r\n");
+			for(i=0;i<n;i++)
+				sb.append("%token KW"+i+"\r\n");
+			sb.append("%%\r\n");
+			sb.append("stmts : /* empty */\r\n\t| stmts stmt\r\n\t;\r\n");
+			sb.append("stmt : ID '=' NUMBER ';' { $$ = $3; }\r\n");
+			for(i=0;i<n;i++)
+				sb.append("\t| KW"+i+" ID '(' NUMBER ')' ';' { $$ = $4 + "+i+"; }\r\n");
+			sb.append("\t;\r\n");
+		}
+		else if(family.equals("deep"))
+		{
+			sb.append("%token ID\r\n");
+			for(i=0;i<n;i++)
+				sb.append("%token OPEN"+i+" CLOSE"+i+"\r\n");
+			sb.append("%%\r\n");
+			sb.append("input : /* empty */\r\n\t| input b0\r\n\t;\r\n");
+			for(i=0;i<n;i++)
+				sb.append("b"+i+" : OPEN"+i+" l"+i+" CLOSE"+i+" { $$ = $2; }\r\n\t;\r\nl"+i+" : /* empty */\r\n\t| l"+i+" b"+(i+1)+"\r\n\t| l"+i+" ID\r\n\t;\r\n");
+			sb.append("b"+n+" : ID\r\n\t;\r\n");
+		}
+		else
+			throw new Exception("Unknown grammar family "+family+"\r\n");
+		sb.append("%%\r\n");
+		return sb.toString();
+	}
+
+	// a generator which has read the grammar, ready for constructCSOI()
+	static Jacc read(String g) throws Exception
+	{
+		Jacc jc=new Jacc();
+		jc.input=g;
+		jc.preprocess();
+		jc.processdecl();
+		jc.processtrans();
+		return jc;
+	}
+
+	// a generator with the tables of the grammar built, ready for the emitters
+	static Jacc built(String g) throws Exception
+	{
+		Jacc jc=new Jacc();
+		jc.input=g;
+		jc.build();
+		return jc;
+	}
+
+	static void bench(String name, final String g) throws Exception
+	{
+		final Jacc jc=built(g);
+		String prefix=name+"\t"+jc.LR0.size()+"\t"+jc.terms.size()+"\t"+jc.nonterms.size()+"\t"+jc.rules.size()+"\t";
+
+		report(prefix,"read",measure(new Phase() {
+			Jacc run() throws Exception { return read(g); }
+		}));
+		report(prefix,"constructCSOI",measure(new Phase() {
+			Jacc jc;
+			void setup() throws Exception { jc=read(g); }
+			Jacc run() throws Exception { jc.constructCSOI(); return jc; }
+		}));
+		report(prefix,"constructSLR",measure(new Phase() {
+			Jacc jc;
+			void setup() throws Exception { jc=read(g); jc.constructCSOI(); }
+			Jacc run() throws Exception { jc.constructSLR(); return jc; }
+		}));
+
+		// the operations of the construction, each over the whole of the built automaton
+		report(prefix,"closure",measure(new Phase() {
+			Jacc run() throws Exception
+			{
+				for(int i=0;i<jc.LR0.size();i++)
+					jc.closure((Vector)jc.LR0.elementAt(i));
+				return jc;
+			}
+		}));
+		report(prefix,"gotoOp",measure(new Phase() {
+			Jacc run() throws Exception
+			{
+				for(int i=0;i<jc.LR0.size();i++)
+				{
+					Enumeration e=((Hashtable)jc.LR0goto.elementAt(i)).keys();
+					while(e.hasMoreElements())
+						jc.gotoOp((Vector)jc.LR0.elementAt(i),(String)e.nextElement());
+				}
+				return jc;
+			}
+		}));
+		report(prefix,"noExist",measure(new Phase() {
+			Jacc run() throws Exception
+			{
+				for(int i=0;i<jc.LR0.size();i++)
+					jc.noExist(jc.LR0,(Vector)jc.LR0.elementAt(i));
+				return jc;
+			}
+		}));
+		report(prefix,"first",measure(new Phase() {
+			Jacc run() throws Exception
+			{
+				for(int i=0;i<jc.nonterms.size();i++)
+					jc.first((String)jc.nonterms.elementAt(i));
+				return jc;
+			}
+		}));
+		report(prefix,"follow",measure(new Phase() {
+			void setup() { jc.followsets=new Hashtable(); }
+			Jacc run() throws Exception
+			{
+				for(int i=0;i<jc.nonterms.size();i++)
+					jc.follow((String)jc.nonterms.elementAt(i));
+				return jc;
+			}
+		}));
+
+		report(prefix,"genANSICCode",measure(new Emit(jc) {
+			void emit() throws Exception { jc.genANSICCode(); }
+		}));
+		report(prefix,"genJavaCode",measure(new Emit(jc) {
+			void emit() throws Exception { jc.genJavaCode(); }
+		}));
+		report(prefix,"genPERLCode",measure(new Emit(jc) {
+			void emit() throws Exception { jc.genPERLCode(); }
+		}));
+		report(prefix,"genPythonCode",measure(new Emit(jc) {
+			void emit() throws Exception { jc.genPythonCode(); }
+		}));
+	}
+
+	// a phase to measure; setup() is run before every run() and is not measured
+	static abstract class Phase
+	{
+		void setup() throws Exception
+		{
+		}
+
+		abstract Jacc run() throws Exception;	// returns what it built, so it is not optimized away
+	}
+
+	// an emitter, run on the built tables with empty outputs
+	static abstract class Emit extends Phase
+	{
+		final Jacc jc;
+
+		Emit(Jacc jc)
+		{
+			this.jc=jc;
+		}
+
+		void setup()
+		{
+			jc.outputh="";
+			jc.outputc="";
+		}
+
+		Jacc run() throws Exception
+		{
+			emit();
+			return jc;
+		}
+
+		abstract void emit() throws Exception;
+	}
+
+	static Jacc sink;
+
+	// median nanoseconds and allocated bytes of a run of the phase
+	static long[] measure(Phase p) throws Exception
+	{
+		for(int i=0;i<warmup;i++)
+		{
+			p.setup();
+			sink=p.run();
+		}
+		long[] ns=new long[iters];
+		long[] bytes=new long[iters];
+		for(int i=0;i<iters;i++)
+		{
+			p.setup();
+			long b0=threadAllocatedBytes();
+			long t0=System.nanoTime();
+			sink=p.run();
+			ns[i]=System.nanoTime()-t0;
+			bytes[i]=(b0<0) ? -1 : threadAllocatedBytes()-b0;
+		}
+		Arrays.sort(ns);
+		Arrays.sort(bytes);
+		return new long[] { ns[iters/2], bytes[0]>=0 ? bytes[iters/2] : -1 };
+	}
+
+	static void report(String prefix, String phase, long[] m)
+	{
+		System.out.print(prefix+phase+"\t"+(m[0]/1000)/1000.0+"\t"+m[1]+"\r\n");
+	}
+
+	// bytes allocated so far by the current thread, or -1 if the JVM does not count them
+	static long threadAllocatedBytes()
+	{
+		try
+		{
+			Object mx=ManagementFactory.getThreadMXBean();
+			if(mx instanceof com.sun.management.ThreadMXBean)
+				return ((com.sun.management.ThreadMXBean)mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		catch(Throwable t)
+		{
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,379 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * Measures the parsers generated by the ANSI C backend.  For each reference grammar (arithmetic,
+ * JSON and a subset of SQL, the grammars of JaccParserBench with C actions) the j.tab.c and j.tab.h
+ * are generated, with the tables as arrays and, as with -d, with each state coded directly, and
+ * compiled with the system C compiler at each optimization level.  The program built reads a file
+ * of tokens made up beforehand through a stub jjlex() and parses it repeatedly.  Reported are the
+ * tokens parsed per second, the instructions per token where the kernel lets a process count them
+ * (perf_event_open), the bytes of the tables and the size of the code, as given by size(1).
+ *
+ *	java JaccCBench [-grammar arith,json,sql] [-opt 0,2,3] [-tokens n] [-docs n] [-iters n] [-renumber] [-unit] [-defred] [-keep]
+ *
+ * The compiler is $CC, or cc.  With -renumber, -unit and -defred the tables are generated as with those flags of jacc.
+ * The work directory is left in place with -keep.
+ * It is compiled together with the generator (Jacc1p3.java saved as Jacc.java), JaccBench and JaccParserBench.
+ */
+public class JaccCBench
+{
+	// the stub lexer and the driver, read the tokens of a file and parse them repeatedly;
+	// the file holds documents, each the number of its tokens followed by pairs of token code and value
+	static final String SUPPORT=
+		"#include <stdlib.h>\r\n"+
+		"#include <time.h>\r\n"+
+		"#ifdef __linux__\r\n"+
+		"#include <unistd.h>\r\n"+
+		"#include <sys/ioctl.h>\r\n"+
+		"#include <sys/syscall.h>\r\n"+
+		"#include <linux/perf_event.h>\r\n"+
+		"#endif\r\n"+
+		"\r\n"+
+		"long jjresult;\r\n"+
+		"static int* jjtoks;\r\n"+
+		"static long jjpos,jjend;\r\n"+
+		"\r\n"+
+		"int jjlex()\r\n"+
+		"{\r\n"+
+		"\tif(jjpos<jjend) { jjlval=jjtoks[2*jjpos+1]; return jjtoks[2*jjpos++]; }\r\n"+
+		"\treturn JJEOI;\r\n"+
+		"}\r\n"+
+		"\r\n"+
+		"/* a counter of the instructions run in user space, -1 if not allowed */\r\n"+
+		"static int jjcounter()\r\n"+
+		"{\r\n"+
+		"#ifdef __linux__\r\n"+
+		"\tstruct perf_event_attr pe;\r\n"+
+		"\tmemset(&pe,0,sizeof(pe));\r\n"+
+		"\tpe.type=PERF_TYPE_HARDWARE;\r\n"+
+		"\tpe.size=sizeof(pe);\r\n"+
+		"\tpe.config=PERF_COUNT_HW_INSTRUCTIONS;\r\n"+
+		"\tpe.disabled=1;\r\n"+
+		"\tpe.exclude_kernel=1;\r\n"+
+		"\tpe.exclude_hv=1;\r\n"+
+		"\treturn (int)syscall(__NR_perf_event_open,&pe,0,-1,-1,0);\r\n"+
+		"#else\r\n"+
+		"\treturn -1;\r\n"+
+		"#endif\r\n"+
+		"}\r\n"+
+		"\r\n"+
+		"int main(int argc,char** argv)\r\n"+
+		"{\r\n"+
+		"\tFILE* f;\r\n"+
+		"\tlong size,n,i,k,ndocs=0,ntoks=0,iters;\r\n"+
+		"\tint* buf;\r\n"+
+		"\tlong* docs;\r\n"+
+		"\tint fd;\r\n"+
+		"\tlong long instr=-1,tables;\r\n"+
+		"\tstruct timespec t0,t1;\r\n"+
+		"\tif(argc<3 || (f=fopen(argv[1],\"rb\"))==NULL) { fprintf(stderr,\"usage: %s tokens iters\\n\",argv[0]); return 2; }\r\n"+
+		"\titers=atol(argv[2]);\r\n"+
+		"\tfseek(f,0,SEEK_END); size=ftell(f); fseek(f,0,SEEK_SET);\r\n"+
+		"\tbuf=(int*)malloc(size); docs=(long*)malloc(size);\r\n"+
+		"\tif(fread(buf,1,size,f)!=(size_t)size) { fprintf(stderr,\"error reading %s\\n\",argv[1]); return 2; }\r\n"+
+		"\tfclose(f);\r\n"+
+		"\tfor(i=0;i<size/(long)sizeof(int);i+=1+2*buf[i]) { docs[ndocs++]=i; ntoks+=buf[i]; }\r\n"+
+		"\r\n"+
+		"\tfd=jjcounter();\r\n"+
+		"#ifdef __linux__\r\n"+
+		"\tif(fd>=0) { ioctl(fd,PERF_EVENT_IOC_RESET,0); ioctl(fd,PERF_EVENT_IOC_ENABLE,0); }\r\n"+
+		"#endif\r\n"+
+		"\tclock_gettime(CLOCK_MONOTONIC,&t0);\r\n"+
+		"\tfor(k=0;k<iters;k++)\r\n"+
+		"\t\tfor(n=0;n<ndocs;n++)\r\n"+
+		"\t\t{\r\n"+
+		"\t\t\tjjtoks=buf+docs[n]+1; jjpos=0; jjend=buf[docs[n]];\r\n"+
+		"\t\t\tjjparse();\r\n"+
+		"\t\t}\r\n"+
+		"\tclock_gettime(CLOCK_MONOTONIC,&t1);\r\n"+
+		"#ifdef __linux__\r\n"+
+		"\tif(fd>=0) { ioctl(fd,PERF_EVENT_IOC_DISABLE,0); if(read(fd,&instr,sizeof(instr))!=sizeof(instr)) instr=-1; }\r\n"+
+		"#endif\r\n"+
+		"\r\n"+
+		"\ttables=sizeof(termmap)+sizeof(rules);\r\n"+
+		"#ifndef JJ_DIRECT\r\n"+
+		"\ttables+=sizeof(action)+sizeof(gototab);\r\n"+
+		"#endif\r\n"+
+		"\tprintf(\"%ld %lld %lld %lld %ld\\n\",ntoks*iters,(long long)(t1.tv_sec-t0.tv_sec)*1000000000LL+(t1.tv_nsec-t0.tv_nsec),instr,tables,jjresult);\r\n"+
+		"\treturn 0;\r\n"+
+		"}\r\n";
+
+	static final String LITERAL="%{\r\nextern long jjresult;\r\n%}\r\n";
+
+	static final String ARITH=
+		LITERAL+
+		"%token NUMBER\r\n"+
+		"%%\r\n"+
+		"input : /* empty */\r\n\t| input line\r\n\t;\r\n"+
+		"line : expr ';' { jjresult+=$1; }\r\n\t;\r\n"+
+		"expr : term\r\n"+
+		"\t| expr '+' term { $$ = $1 + $3; }\r\n"+
+		"\t| expr '-' term { $$ = $1 - $3; }\r\n\t;\r\n"+
+		"term : factor\r\n"+
+		"\t| term '*' factor { $$ = $1 * $3; }\r\n"+
+		"\t| term '/' factor { $$ = $1 / $3; }\r\n\t;\r\n"+
+		"factor : NUMBER\r\n"+
+		"\t| '(' expr ')' { $$ = $2; }\r\n"+
+		"\t| '-' factor { $$ = -$2; }\r\n\t;\r\n"+
+		"%%\r\n";
+
+	static final String JSON=
+		LITERAL+
+		"%token STRING NUMBER TRUE FALSE NUL\r\n"+
+		"%%\r\n"+
+		"json : value { jjresult++; }\r\n\t;\r\n"+
+		"value : object\r\n\t| array\r\n\t| STRING\r\n\t| NUMBER\r\n\t| TRUE\r\n\t| FALSE\r\n\t| NUL\r\n\t;\r\n"+
+		"object : '{' '}'\r\n\t| '{' members '}'\r\n\t;\r\n"+
+		"members : pair\r\n\t| members ',' pair\r\n\t;\r\n"+
+		"pair : STRING ':' value { jjresult++; }\r\n\t;\r\n"+
+		"array : '[' ']'\r\n\t| '[' elements ']'\r\n\t;\r\n"+
+		"elements : value { jjresult++; }\r\n\t| elements ',' value { jjresult++; }\r\n\t;\r\n"+
+		"%%\r\n";
+
+	static final String SQL=
+		LITERAL+
+		"%token SELECT FROM WHERE AND OR ID NUMBER STRING\r\n"+
+		"%%\r\n"+
+		"script : /* empty */\r\n\t| script stmt ';' { jjresult++; }\r\n\t;\r\n"+
+		"stmt : SELECT cols FROM ID where\r\n\t;\r\n"+
+		"cols : '*'\r\n\t| collist\r\n\t;\r\n"+
+		"collist : ID\r\n\t| collist ',' ID\r\n\t;\r\n"+
+		"where : /* empty */\r\n\t| WHERE cond\r\n\t;\r\n"+
+		"cond : cond OR conj\r\n\t| conj\r\n\t;\r\n"+
+		"conj : conj AND pred\r\n\t| pred\r\n\t;\r\n"+
+		"pred : ID '=' value\r\n\t| ID '<' value\r\n\t| '(' cond ')'\r\n\t;\r\n"+
+		"value : NUMBER\r\n\t| STRING\r\n\t| ID\r\n\t;\r\n"+
+		"%%\r\n";
+
+	static int docs=200;
+	static int iters=50;
+	static boolean renumber=false;
+	static boolean unit=false;
+	static boolean defred=false;
+
+	public static void main(String[] args) throws Exception
+	{
+		String grammars="arith,json,sql";
+		String opts="0,2,3";
+		boolean keep=false;
+		for(int i=0;i<args.length;i++)
+		{
+			if(args[i].equals("-grammar") && i+1<args.length)
+				grammars=args[++i];
+			else if(args[i].equals("-opt") && i+1<args.length)
+				opts=args[++i];
+			else if(args[i].equals("-tokens") && i+1<args.length)
+				JaccParserBench.tokens=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-docs") && i+1<args.length)
+				docs=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-iters") && i+1<args.length)
+				iters=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-renumber"))
+				renumber=true;
+			else if(args[i].equals("-unit"))
+				unit=true;
+			else if(args[i].equals("-defred"))
+				defred=true;
+			else if(args[i].equals("-keep"))
+				keep=true;
+			else
+			{
+				System.out.print("usage: java JaccCBench [-grammar arith,json,sql] [-opt 0,2,3] [-tokens n] [-docs n] [-iters n] [-renumber] [-unit] [-defred] [-keep]\r\n");
+				return;
+			}
+		}
+		String cc=System.getenv("CC");
+		if(cc==null || cc.length()==0)
+			cc="cc";
+
+		File work=File.createTempFile("jacccbench","");
+		work.delete();
+		work.mkdirs();
+		System.out.print("grammar\tcoding\topt\ttokens/s\tinstr/token\ttable bytes\ttext bytes\r\n");
+		try
+		{
+			StringTokenizer gt=new StringTokenizer(grammars,",");
+			while(gt.hasMoreTokens())
+			{
+				String name=gt.nextToken();
+				String g;
+				if(name.equals("arith"))
+					g=ARITH;
+				else if(name.equals("json"))
+					g=JSON;
+				else if(name.equals("sql"))
+					g=SQL;
+				else
+					throw new Exception("Unknown grammar "+name+"\r\n");
+
+				for(int direct=0;direct<2;direct++)
+				{
+					File dir=new File(work,name+(direct>0 ? "-direct" : "-tables"));
+					dir.mkdirs();
+					Jacc jc=generate(dir,g+SUPPORT,direct>0);
+					File toks=new File(dir,"tokens.bin");
+					tokens(jc.tables,name,toks);
+
+					StringTokenizer ot=new StringTokenizer(opts,",");
+					while(ot.hasMoreTokens())
+					{
+						String opt=ot.nextToken();
+						File exe=new File(dir,"bench-O"+opt);
+						String err=run(dir,new String[] { cc, "-O"+opt, "-o", exe.getPath(), "j.tab.c" });
+						if(!exe.isFile())
+							throw new Exception("Error compiling "+dir+"\r\n"+err);
+						String out=run(dir,new String[] { exe.getPath(), toks.getPath(), ""+iters });
+						StringTokenizer st=new StringTokenizer(out);
+						if(st.countTokens()!=5)
+							throw new Exception("Error running "+exe+"\r\n"+out);
+						long ntok=Long.parseLong(st.nextToken());
+						long ns=Long.parseLong(st.nextToken());
+						long instr=Long.parseLong(st.nextToken());
+						long tables=Long.parseLong(st.nextToken());
+						System.out.print(name+"\t"+(direct>0 ? "direct" : "tables")+"\t-O"+opt+"\t"
+							+(long)(ntok*1e9/ns)+"\t"+(instr<0 ? "-" : ""+(double)Math.round(instr*10.0/ntok)/10)+"\t"
+							+tables+"\t"+text(dir,exe)+"\r\n");
+					}
+				}
+			}
+		}
+		finally
+		{
+			if(keep)
+				System.out.print("# work directory "+work+"\r\n");
+			else
+				delete(work);
+		}
+	}
+
+	// j.tab.c and j.tab.h of the grammar, in the directory
+	static Jacc generate(File dir, String g, boolean direct) throws Exception
+	{
+		Jacc jc=new Jacc();
+		jc.input=g;
+		jc.option=1;
+		jc.direct=direct;
+		jc.renumber=renumber;
+		jc.unit=unit;
+		jc.defred=defred;
+		jc.parse();
+		write(new File(dir,"j.tab.h"),(String)jc.outputs.get("j.tab.h.txt"));
+		write(new File(dir,"j.tab.c"),(String)jc.outputs.get("j.tab.c.txt"));
+		return jc;
+	}
+
+	// the documents of the grammar as a file of native ints; the token codes are those of the C backend
+	static void tokens(Jacc.Tables t, String name, File f) throws Exception
+	{
+		Random r=new Random(42);
+		DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+		boolean big=ByteOrder.nativeOrder()==ByteOrder.BIG_ENDIAN;
+		for(int d=0;d<docs;d++)
+		{
+			Vector tv=new Vector();
+			Vector vv=new Vector();
+			if(name.equals("arith"))
+				JaccParserBench.arith(r,tv,vv);
+			else if(name.equals("json"))
+				JaccParserBench.json(r,tv,vv);
+			else
+				JaccParserBench.sql(r,tv,vv);
+			writeInt(out,tv.size(),big);
+			for(int i=0;i<tv.size();i++)
+			{
+				String tok=(String)tv.elementAt(i);
+				Object val=vv.elementAt(i);
+				writeInt(out,tok.charAt(0)=='\'' ? tok.charAt(1) : 256+t.termIndex(tok),big);
+				writeInt(out,(val instanceof Integer) ? ((Integer)val).intValue() : 0,big);
+			}
+		}
+		out.close();
+	}
+
+	static void writeInt(DataOutputStream out, int v, boolean big) throws Exception
+	{
+		out.writeInt(big ? v : Integer.reverseBytes(v));
+	}
+
+	// the size of the code of the program, from size(1), or - if it cannot be run
+	static String text(File dir, File exe)
+	{
+		try
+		{
+			String out=run(dir,new String[] { "size", exe.getPath() });
+			BufferedReader in=new BufferedReader(new StringReader(out));
+			in.readLine();	// text data bss dec hex filename
+			return new StringTokenizer(in.readLine()).nextToken();
+		}
+		catch(Exception e)
+		{
+			return "-";
+		}
+	}
+
+	// the standard output of the command, or of the standard error if it failed
+	static String run(File dir, String[] cmd) throws Exception
+	{
+		ProcessBuilder pb=new ProcessBuilder(cmd);
+		pb.directory(dir);
+		Process p=pb.start();
+		p.getOutputStream().close();
+		final InputStream es=p.getErrorStream();
+		final ByteArrayOutputStream err=new ByteArrayOutputStream();
+		Thread t=new Thread() {
+			public void run()
+			{
+				try
+				{
+					copy(es,err);
+				}
+				catch(Exception e)
+				{
+				}
+			}
+		};
+		t.start();
+		ByteArrayOutputStream out=new ByteArrayOutputStream();
+		copy(p.getInputStream(),out);
+		t.join();
+		if(p.waitFor()!=0 || err.size()>0)
+			return out.toString()+err.toString();
+		return out.toString();
+	}
+
+	static void copy(InputStream in, ByteArrayOutputStream out) throws Exception
+	{
+		byte[] buf=new byte[8192];
+		int n;
+		while((n=in.read(buf))>0)
+			out.write(buf,0,n);
+		in.close();
+	}
+
+	static void write(File f, String s) throws Exception
+	{
+		FileOutputStream out=new FileOutputStream(f);
+		out.write(s.getBytes("UTF-8"));
+		out.close();
+	}
+
+	static void delete(File f)
+	{
+		File[] list=f.listFiles();
+		if(list!=null)
+			for(int i=0;i<list.length;i++)
+				delete(list[i]);
+		f.delete();
+	}
+}
@@ -0,0 +1,239 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+/**
+ * The resident daemon of the generator and its thin client, for
+ *
+ *	java Jacc -daemon socket
+ *	java Jacc -client socket [options] grammar
+ *
+ * They talk over a Unix domain socket, which needs JDK 16 or later, so they are kept apart from Jacc, which
+ * loads this class only for these two options; the generator itself builds and runs without it on older JDKs.
+ * It is compiled together with the generator (Jacc1p3.java saved as Jacc.java).
+ */
+class JaccDaemon
+{
+	// -daemon or -client with their arguments, called by Jacc.main(); returns the exit status
+	static int run(String[] args)
+	{
+		if(args[0].equals("-daemon"))
+		{
+			daemon(args[1]);
+			return 1;	// it only returns when it fails
+		}
+		String[] rest=new String[args.length-2];
+		System.arraycopy(args,2,rest,0,rest.length);
+		return client(args[1],rest);
+	}
+
+	/**
+	 * Serves generate requests on a Unix domain socket at the given path, forever.  A request is the working
+	 * directory of the client and its arguments, one per line, ended by an empty line; the reply is the exit
+	 * status on a line followed by the messages of the run.  The automata of the grammars stay in memory between
+	 * requests, one per grammar file, so regenerating an unchanged grammar only runs the emitters.
+	 * The outputs are written by the daemon, as its user, so only that user may connect: the socket is made
+	 * readable and writable by its owner alone (0600) before it appears at the path, see bind(), and a connection
+	 * from a process of any other user is closed unanswered.  A socket left at the path by a daemon no longer
+	 * running is replaced.
+	 */
+	static void daemon(String path)
+	{
+		Jacc.resident=new Hashtable();
+		ExecutorService pool=Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			Path p=new File(path).getAbsoluteFile().toPath();
+			if(Files.exists(p) && !Files.isRegularFile(p) && !Files.isDirectory(p))
+			{
+				try
+				{
+					SocketChannel.open(UnixDomainSocketAddress.of(p)).close();
+					throw new Exception("a daemon is listening on "+p);
+				}
+				catch(IOException e)
+				{
+					Files.delete(p);	// stale
+				}
+			}
+			ServerSocketChannel server=bind(p);
+			final String owner=Files.getOwner(p).getName();
+			System.out.print("Listening on "+p+"\r\n");
+			while(true)
+			{
+				final SocketChannel s=server.accept();
+				pool.execute(new Runnable() {
+					public void run()
+					{
+						serve(s,owner);
+					}
+				});
+			}
+		}
+		catch(Exception e)
+		{
+			System.out.print("Error in daemon;"+e.toString()+"\r\n");
+			pool.shutdown();
+		}
+	}
+
+	// a server socket at the path, bound in a directory of its own which only its owner may enter, made 0600 there
+	// and then moved to the path, so that no other user can connect to it at any time, whatever the umask
+	static ServerSocketChannel bind(Path p) throws Exception
+	{
+		Path dir=Files.createTempDirectory(p.getParent(),".jaccd",PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		Path tmp=dir.resolve("socket");
+		ServerSocketChannel server=ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try
+		{
+			server.bind(UnixDomainSocketAddress.of(tmp));
+			Files.setPosixFilePermissions(tmp,PosixFilePermissions.fromString("rw-------"));
+			Files.move(tmp,p,StandardCopyOption.ATOMIC_MOVE);
+			return server;
+		}
+		catch(Exception e)
+		{
+			server.close();
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		finally
+		{
+			Files.delete(dir);
+		}
+	}
+
+	// one request of a client, see daemon(); closed unanswered unless the client runs as the owner of the socket.
+	// A request which fails is logged to the daemon's output, as the client only sees that there is no reply
+	static void serve(SocketChannel s, String owner)
+	{
+		try
+		{
+			UnixDomainPrincipal peer=s.getOption(ExtendedSocketOptions.SO_PEERCRED);
+			if(!peer.user().getName().equals(owner))
+			{
+				System.out.print("Error in daemon;refused a connection from "+peer.user().getName()+"\r\n");
+				return;
+			}
+			BufferedReader in=new BufferedReader(new InputStreamReader(Channels.newInputStream(s),"UTF-8"));
+			String dir=in.readLine();
+			Vector v=new Vector();
+			String l;
+			while((l=in.readLine())!=null && l.length()>0)
+				v.addElement(l);
+			if(dir==null || l==null)
+				throw new Exception("incomplete request");
+			String[] args=new String[v.size()];
+			v.copyInto(args);
+
+			ByteArrayOutputStream msgs=new ByteArrayOutputStream();
+			PrintStream ps=new PrintStream(msgs,true,"UTF-8");
+			int status;
+			try
+			{
+				status=Jacc.run(args,new File(dir),ps);
+			}
+			catch(Throwable e)
+			{
+				System.out.print("Error in daemon;"+e.toString()+"\r\n");
+				ps.print(e.toString()+"\r\n");
+				status=1;
+			}
+			ps.flush();
+			OutputStream os=Channels.newOutputStream(s);
+			os.write((status+"\n").getBytes("UTF-8"));
+			msgs.writeTo(os);
+			os.flush();
+		}
+		catch(Throwable e)
+		{
+			System.out.print("Error in daemon;"+e.toString()+"\r\n");
+		}
+		finally
+		{
+			try
+			{
+				s.close();
+			}
+			catch(IOException e)
+			{
+			}
+		}
+	}
+
+	// sends the arguments to a daemon listening on the socket and prints its messages; without a daemon, runs them here.
+	// Returns the exit status of the run
+	static int client(String path, String[] args)
+	{
+		SocketChannel s;
+		try
+		{
+			s=SocketChannel.open(UnixDomainSocketAddress.of(path));
+		}
+		catch(IOException e)
+		{
+			return Jacc.run(args,null,System.out);
+		}
+		try
+		{
+			StringBuffer req=new StringBuffer();
+			req.append(new File("").getAbsolutePath()+"\n");
+			for(int i=0;i<args.length;i++)
+				req.append(args[i]+"\n");
+			req.append("\n");
+			OutputStream os=Channels.newOutputStream(s);
+			os.write(req.toString().getBytes("UTF-8"));
+			os.flush();
+
+			InputStream in=Channels.newInputStream(s);
+			ByteArrayOutputStream line=new ByteArrayOutputStream();
+			int c;
+			while((c=in.read())!=-1 && c!='\n')
+				line.write(c);
+			if(line.size()==0)
+				throw new Exception("no reply");
+			int status=Integer.parseInt(line.toString("UTF-8").trim());
+			byte[] buf=new byte[8192];
+			int n;
+			while((n=in.read(buf))>0)
+				System.out.write(buf,0,n);
+			System.out.flush();
+			return status;
+		}
+		catch(Exception e)
+		{
+			System.out.print("Error talking to daemon;"+e.toString()+"\r\n");
+			return 1;
+		}
+		finally
+		{
+			try
+			{
+				s.close();
+			}
+			catch(IOException e)
+			{
+			}
+		}
+	}
+}
@@ -0,0 +1,457 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures the parsers generated by the Java backend at run time.  For each reference grammar
+ * (arithmetic, JSON and a subset of SQL) the jjclass is generated, compiled in process and loaded,
+ * and then driven with streams of tokens made up in memory beforehand, so that only the parser and
+ * its semantic actions are measured, and once more generated with -d (the rows name/direct).
+ * Reported per grammar are the tokens parsed per second, the bytes allocated per token and the
+ * median and 99th percentile time of a parse.  Each grammar is also run on a Jacc.Interpreter, without
+ * its semantic actions, once over the arrays of the tables (the rows name/table) and once on the parsing
+ * loop compiled by Jacc.bytecode() (name/bytecode).  The compiled loop is one large method, which the JIT
+ * compiler takes a while to compile; its p99 is only steady with a longer warmup, such as -warmup 100.
+ * Every arith parser is first checked to reject a document ending mid-expression.
+ *
+ *	java JaccParserBench [-grammar arith,json,sql] [-tokens n] [-docs n] [-warmup n] [-iters n]
+ *
+ * Every parse is of one document of about n tokens; each round parses the docs documents once.
+ * It needs a JDK, for the compiler, and is compiled together with the generator
+ * (Jacc1p3.java saved as Jacc.java) and JaccBench.
+ */
+public class JaccParserBench
+{
+	// the lexer of every grammar, reading a stream of tokens handed over by the harness
+	static final String SUPPORT=
+		"String[] jjtoks;\r\n"+
+		"Object[] jjvals;\r\n"+
+		"int jjpos;\r\n"+
+		"String jjlex()\r\n{\r\n"+
+		"\tif(jjpos<jjtoks.length) { jjlval=jjvals[jjpos]; return jjtoks[jjpos++]; }\r\n"+
+		"\tjjlval=null; return \"JJEOI\";\r\n}\r\n"+
+		"public static Object jjnew() { return new jjclass(); }\r\n"+
+		"public static int jjrun(Object p, String[] toks, Object[] vals) throws Exception\r\n{\r\n"+
+		"\tjjclass jj=(jjclass)p; jj.jjtoks=toks; jj.jjvals=vals; jj.jjpos=0; jj.result=0; jj.jjparse(); return jj.result;\r\n}\r\n";
+
+	static final String ARITH=
+		"%token NUMBER\r\n"+
+		"%%\r\n"+
+		"input : /* empty */\r\n\t| input line\r\n\t;\r\n"+
+		"line : expr ';' { result+=((Integer)$1).intValue(); }\r\n\t| error ';'\r\n\t;\r\n"+
+		"expr : term\r\n"+
+		"\t| expr '+' term { $$ = Integer.valueOf(((Integer)$1).intValue() + ((Integer)$3).intValue()); }\r\n"+
+		"\t| expr '-' term { $$ = Integer.valueOf(((Integer)$1).intValue() - ((Integer)$3).intValue()); }\r\n\t;\r\n"+
+		"term : factor\r\n"+
+		"\t| term '*' factor { $$ = Integer.valueOf(((Integer)$1).intValue() * ((Integer)$3).intValue()); }\r\n"+
+		"\t| term '/' factor { $$ = Integer.valueOf(((Integer)$1).intValue() / ((Integer)$3).intValue()); }\r\n\t;\r\n"+
+		"factor : NUMBER\r\n"+
+		"\t| '(' expr ')' { $$ = $2; }\r\n"+
+		"\t| '-' factor { $$ = Integer.valueOf(-((Integer)$2).intValue()); }\r\n\t;\r\n"+
+		"%%\r\n"+
+		"int result;\r\n";
+
+	static final String JSON=
+		"%token STRING NUMBER TRUE FALSE NUL\r\n"+
+		"%%\r\n"+
+		"json : value { result++; }\r\n\t;\r\n"+
+		"value : object\r\n\t| array\r\n\t| STRING\r\n\t| NUMBER\r\n\t| TRUE\r\n\t| FALSE\r\n\t| NUL\r\n\t;\r\n"+
+		"object : '{' '}'\r\n\t| '{' members '}'\r\n\t;\r\n"+
+		"members : pair\r\n\t| members ',' pair\r\n\t;\r\n"+
+		"pair : STRING ':' value { result++; }\r\n\t;\r\n"+
+		"array : '[' ']'\r\n\t| '[' elements ']'\r\n\t;\r\n"+
+		"elements : value { result++; }\r\n\t| elements ',' value { result++; }\r\n\t;\r\n"+
+		"%%\r\n"+
+		"int result;\r\n";
+
+	static final String SQL=
+		"%token SELECT FROM WHERE AND OR ID NUMBER STRING\r\n"+
+		"%%\r\n"+
+		"script : /* empty */\r\n\t| script stmt ';' { result++; }\r\n\t;\r\n"+
+		"stmt : SELECT cols FROM ID where\r\n\t;\r\n"+
+		"cols : '*'\r\n\t| collist\r\n\t;\r\n"+
+		"collist : ID\r\n\t| collist ',' ID\r\n\t;\r\n"+
+		"where : /* empty */\r\n\t| WHERE cond\r\n\t;\r\n"+
+		"cond : cond OR conj\r\n\t| conj\r\n\t;\r\n"+
+		"conj : conj AND pred\r\n\t| pred\r\n\t;\r\n"+
+		"pred : ID '=' value\r\n\t| ID '<' value\r\n\t| '(' cond ')'\r\n\t;\r\n"+
+		"value : NUMBER\r\n\t| STRING\r\n\t| ID\r\n\t;\r\n"+
+		"%%\r\n"+
+		"int result;\r\n";
+
+	// an arith document ending mid-expression, which every parser must reject, not recover from for ever at its end
+	static final String[] TRUNCATED={ "NUMBER", "'+'", "NUMBER", "'*'", "NUMBER" };
+
+	static int tokens=2000;
+	static int docs=50;
+	static int warmup=20;
+	static int iters=20;
+
+	public static void main(String[] args) throws Exception
+	{
+		String grammars="arith,json,sql";
+		for(int i=0;i<args.length;i++)
+		{
+			if(args[i].equals("-grammar") && i+1<args.length)
+				grammars=args[++i];
+			else if(args[i].equals("-tokens") && i+1<args.length)
+				tokens=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-docs") && i+1<args.length)
+				docs=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-warmup") && i+1<args.length)
+				warmup=Integer.parseInt(args[++i]);
+			else if(args[i].equals("-iters") && i+1<args.length)
+				iters=Math.max(1,Integer.parseInt(args[++i]));
+			else
+			{
+				System.out.print("usage: java JaccParserBench [-grammar arith,json,sql] [-tokens n] [-docs n] [-warmup n] [-iters n]\r\n");
+				return;
+			}
+		}
+		JavaCompiler javac=ToolProvider.getSystemJavaCompiler();
+		if(javac==null)
+		{
+			System.out.print("No Java compiler; run on a JDK\r\n");
+			return;
+		}
+
+		System.out.print("grammar\ttokens/parse\tparses\ttokens/s\tbytes/token\tp50 us\tp99 us\r\n");
+		String[] names=grammars.split(",");
+		for(int i=0;i<names.length;i++)
+		{
+			String g;
+			if(names[i].equals("arith"))
+				g=ARITH;
+			else if(names[i].equals("json"))
+				g=JSON;
+			else if(names[i].equals("sql"))
+				g=SQL;
+			else
+				throw new Exception("Unknown grammar "+names[i]+"\r\n");
+			String[][] toks=new String[docs][];
+			Object[][] vals=new Object[docs][];
+			documents(names[i],toks,vals);
+			Parser[] p=new Parser[4];
+			p[0]=new Generated(load(javac,names[i],g+SUPPORT,false));
+			p[1]=new Generated(load(javac,names[i],g+SUPPORT,true));
+			Jacc.Tables tables=Jacc.compile(g);
+			p[2]=new Interpreted(tables,new Jacc.TableDispatch(tables));
+			p[3]=new Interpreted(tables,Jacc.bytecode(tables));
+			String[] rows={ names[i], names[i]+"/direct", names[i]+"/table", names[i]+"/bytecode" };
+			for(int k=0;k<p.length;k++)
+			{
+				if(names[i].equals("arith"))
+					reject(rows[k],p[k]);
+				bench(rows[k],toks,vals,p[k]);
+			}
+		}
+	}
+
+	// a parser under measurement
+	static abstract class Parser
+	{
+		abstract void parse(String[] toks, Object[] vals) throws Exception;
+	}
+
+	// the generated jjclass
+	static final class Generated extends Parser
+	{
+		final Method run;
+		final Object parser;
+
+		Generated(Class<?> c) throws Exception
+		{
+			run=c.getMethod("jjrun",new Class<?>[] { Object.class, String[].class, Object[].class });
+			parser=c.getMethod("jjnew").invoke(null);
+		}
+
+		void parse(String[] toks, Object[] vals) throws Exception
+		{
+			try
+			{
+				run.invoke(null,new Object[] { parser, toks, vals });
+			}
+			catch(InvocationTargetException e)
+			{
+				throw new Exception("Parse error; "+e.getCause()+"\r\n");
+			}
+		}
+	}
+
+	// an Interpreter over the tables, on the given dispatch and without semantic actions
+	static final class Interpreted extends Parser
+	{
+		final Jacc.Interpreter interp;
+		final String eoi;
+
+		Interpreted(Jacc.Tables t, Jacc.Dispatch d)
+		{
+			interp=new Jacc.Interpreter(t,d,null);
+			eoi=t.term(t.eoiTerm());
+		}
+
+		void parse(final String[] toks, final Object[] vals) throws Exception
+		{
+			interp.parse(new Jacc.Lexer()
+			{
+				int pos=-1;
+				public String lex()	{	return (++pos<toks.length ? toks[pos] : eoi);	}
+				public Object value()	{	return (pos<vals.length ? vals[pos] : null);	}
+			});
+		}
+	}
+
+	// the jjclass of the grammar, generated (with -d if direct), compiled into a directory of its own and loaded
+	static Class<?> load(JavaCompiler javac, String name, String g, boolean direct) throws Exception
+	{
+		Jacc jc=new Jacc();
+		jc.input=g;
+		jc.option=2;
+		jc.direct=direct;
+		jc.parse();
+		String src=(String)jc.outputs.get("jjclass.java.txt");
+
+		File dir=File.createTempFile("jaccbench-"+name,"");
+		dir.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();	// deleted in the reverse order, after its files
+		File f=new File(dir,"jjclass.java");
+		f.deleteOnExit();
+		new File(dir,"jjclass.class").deleteOnExit();
+		FileOutputStream out=new FileOutputStream(f);
+		out.write(src.getBytes("UTF-8"));
+		out.close();
+		ByteArrayOutputStream err=new ByteArrayOutputStream();
+		if(javac.run(null,err,err,"-nowarn","-encoding","UTF-8","-d",dir.getPath(),f.getPath())!=0)
+			throw new Exception("Error compiling the parser of "+name+"\r\n"+err.toString());
+		URLClassLoader cl=new URLClassLoader(new URL[] { dir.toURI().toURL() },JaccParserBench.class.getClassLoader());
+		return cl.loadClass("jjclass");
+	}
+
+	// the documents of the grammar, the same for every parser
+	static void documents(String name, String[][] toks, Object[][] vals)
+	{
+		Random r=new Random(42);
+		for(int i=0;i<toks.length;i++)
+		{
+			Vector t=new Vector();
+			Vector v=new Vector();
+			if(name.equals("arith"))
+				arith(r,t,v);
+			else if(name.equals("json"))
+				json(r,t,v);
+			else
+				sql(r,t,v);
+			toks[i]=new String[t.size()];
+			t.copyInto(toks[i]);
+			vals[i]=new Object[v.size()];
+			v.copyInto(vals[i]);
+		}
+	}
+
+	// checks that the parser rejects the truncated document with a syntax error
+	static void reject(String name, Parser p) throws Exception
+	{
+		Object[] vals={ Integer.valueOf(1), null, Integer.valueOf(2), null, Integer.valueOf(3) };
+		try
+		{
+			p.parse(TRUNCATED,vals);
+		}
+		catch(Exception e)
+		{
+			if(e.getMessage()!=null && e.getMessage().indexOf("error!")>=0)
+				return;
+			throw new Exception(name+" failed on a truncated document; "+e+"\r\n");
+		}
+		throw new Exception(name+" accepted a truncated document\r\n");
+	}
+
+	static void bench(String name, String[][] toks, Object[][] vals, Parser p) throws Exception
+	{
+		long total=0;
+		for(int i=0;i<docs;i++)
+			total+=toks[i].length;
+
+		for(int k=0;k<warmup;k++)
+			for(int i=0;i<docs;i++)
+				p.parse(toks[i],vals[i]);
+
+		long[] ns=new long[iters*docs];
+		long time=0;
+		long b0=JaccBench.threadAllocatedBytes();
+		for(int k=0;k<iters;k++)
+		{
+			for(int i=0;i<docs;i++)
+			{
+				long t0=System.nanoTime();
+				p.parse(toks[i],vals[i]);
+				ns[k*docs+i]=System.nanoTime()-t0;
+				time+=ns[k*docs+i];
+			}
+		}
+		long bytes=(b0<0) ? -1 : JaccBench.threadAllocatedBytes()-b0;
+		Arrays.sort(ns);
+
+		long ntok=total*iters;
+		System.out.print(name+"\t"+total/docs+"\t"+ns.length+"\t"+(long)(ntok*1e9/time)+"\t"
+			+(bytes<0 ? "-" : ""+(bytes/ntok))+"\t"
+			+ns[ns.length/2]/1000+"\t"+ns[Math.min(ns.length-1,(int)(ns.length*0.99))]/1000+"\r\n");
+	}
+
+	// lines of expressions over small numbers, up to about the given number of tokens
+	static void arith(Random r, Vector t, Vector v)
+	{
+		while(t.size()<tokens)
+		{
+			expr(r,t,v,0);
+			tok(t,v,"';'",null);
+		}
+	}
+
+	static void expr(Random r, Vector t, Vector v, int depth)
+	{
+		int n=1+r.nextInt(4);
+		for(int i=0;i<n;i++)
+		{
+			char op=' ';
+			if(i>0)
+			{
+				op="+-*/".charAt(r.nextInt(4));
+				tok(t,v,"'"+op+"'",null);
+			}
+			if(op!='/' && depth<4 && r.nextInt(5)==0)	// divide by numbers only, never by zero
+			{
+				tok(t,v,"'('",null);
+				expr(r,t,v,depth+1);
+				tok(t,v,"')'",null);
+			}
+			else
+			{
+				if(r.nextInt(8)==0)
+					tok(t,v,"'-'",null);
+				tok(t,v,"NUMBER",Integer.valueOf(1+r.nextInt(9)));
+			}
+		}
+	}
+
+	// an array of objects, up to about the given number of tokens
+	static void json(Random r, Vector t, Vector v)
+	{
+		tok(t,v,"'['",null);
+		boolean first=true;
+		while(t.size()<tokens)
+		{
+			if(!first)
+				tok(t,v,"','",null);
+			first=false;
+			value(r,t,v,0);
+		}
+		tok(t,v,"']'",null);
+	}
+
+	static void value(Random r, Vector t, Vector v, int depth)
+	{
+		int k=(depth<3) ? r.nextInt(8) : 2+r.nextInt(6);
+		if(k==0)
+		{
+			tok(t,v,"'{'",null);
+			int n=r.nextInt(5);
+			for(int i=0;i<n;i++)
+			{
+				if(i>0)
+					tok(t,v,"','",null);
+				tok(t,v,"STRING","key"+i);
+				tok(t,v,"':'",null);
+				value(r,t,v,depth+1);
+			}
+			tok(t,v,"'}'",null);
+		}
+		else if(k==1)
+		{
+			tok(t,v,"'['",null);
+			int n=r.nextInt(5);
+			for(int i=0;i<n;i++)
+			{
+				if(i>0)
+					tok(t,v,"','",null);
+				value(r,t,v,depth+1);
+			}
+			tok(t,v,"']'",null);
+		}
+		else if(k<4)
+			tok(t,v,"STRING","s"+r.nextInt(100));
+		else if(k<6)
+			tok(t,v,"NUMBER",Double.valueOf(r.nextDouble()));
+		else
+			tok(t,v,(new String[] { "TRUE", "FALSE", "NUL" })[r.nextInt(3)],null);
+	}
+
+	// select statements, up to about the given number of tokens
+	static void sql(Random r, Vector t, Vector v)
+	{
+		while(t.size()<tokens)
+		{
+			tok(t,v,"SELECT",null);
+			if(r.nextInt(4)==0)
+				tok(t,v,"'*'",null);
+			else
+			{
+				int n=1+r.nextInt(4);
+				for(int i=0;i<n;i++)
+				{
+					if(i>0)
+						tok(t,v,"','",null);
+					tok(t,v,"ID","c"+i);
+				}
+			}
+			tok(t,v,"FROM",null);
+			tok(t,v,"ID","t"+r.nextInt(10));
+			if(r.nextInt(3)>0)
+			{
+				tok(t,v,"WHERE",null);
+				cond(r,t,v,0);
+			}
+			tok(t,v,"';'",null);
+		}
+	}
+
+	static void cond(Random r, Vector t, Vector v, int depth)
+	{
+		int n=1+r.nextInt(3);
+		for(int i=0;i<n;i++)
+		{
+			if(i>0)
+				tok(t,v,r.nextBoolean() ? "AND" : "OR",null);
+			if(depth<2 && r.nextInt(4)==0)
+			{
+				tok(t,v,"'('",null);
+				cond(r,t,v,depth+1);
+				tok(t,v,"')'",null);
+			}
+			else
+			{
+				tok(t,v,"ID","c"+r.nextInt(4));
+				tok(t,v,r.nextBoolean() ? "'='" : "'<'",null);
+				if(r.nextBoolean())
+					tok(t,v,"NUMBER",Integer.valueOf(r.nextInt(1000)));
+				else
+					tok(t,v,"STRING","v"+r.nextInt(100));
+			}
+		}
+	}
+
+	static void tok(Vector t, Vector v, String tok, Object val)
+	{
+		t.addElement(tok);
+		v.addElement(val);
+	}
+}
@@ -0,0 +1,327 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * Measures the parsers generated by the Perl and Python backends.  For each reference grammar
+ * (arithmetic, JSON and a subset of SQL, the grammars of JaccParserBench with Perl and Python actions)
+ * jjscript.pl and jjscript.py are generated and run on the installed interpreters over a file of tokens
+ * made up beforehand, which a stub jjlex() replays.  Reported are the tokens parsed per second and the
+ * peak resident memory of the interpreter (VmHWM), where /proc tells it.
+ *
+ *	java JaccScriptBench [-grammar arith,json,sql] [-lang pl,py] [-tokens n] [-docs n] [-iters n] [-keep]
+ *
+ * The interpreters are $PERL, or perl, and $PYTHON, or python3.  The work directory is left in place with -keep.
+ * It is compiled together with the generator (Jacc1p3.java saved as Jacc.java), JaccBench, JaccParserBench
+ * and JaccCBench.
+ */
+public class JaccScriptBench
+{
+	// the token file holds two lines per document: the tokens, and their values with - for none
+	static final String PERL_SUPPORT=
+		"use Time::HiRes;\r\n"+
+		"my (@jjtoks,@jjvals,$jjpos);\r\n"+
+		"sub jjlex\r\n"+
+		"{\r\n"+
+		"\tif($jjpos<=$#jjtoks) { $jjlval=$jjvals[$jjpos]; return $jjtoks[$jjpos++]; }\r\n"+
+		"\t$jjlval=0;\r\n"+
+		"\treturn \"JJEOI\";\r\n"+
+		"}\r\n"+
+		"sub jjhwm\r\n"+
+		"{\r\n"+
+		"\tmy $kb=-1;\r\n"+
+		"\tif(open(my $f,'<','/proc/self/status')) { while(<$f>) { $kb=$1 if /^VmHWM:\\s*(\\d+)/; } close($f); }\r\n"+
+		"\treturn $kb;\r\n"+
+		"}\r\n"+
+		"my @docs;\r\n"+
+		"my $ntok=0;\r\n"+
+		"open(my $in,'<',$ARGV[0]) or die \"error reading $ARGV[0]\\n\";\r\n"+
+		"while(my $t=<$in>)\r\n"+
+		"{\r\n"+
+		"\tmy $v=<$in>;\r\n"+
+		"\tmy @t=split(' ',$t);\r\n"+
+		"\tmy @v=map { $_ eq '-' ? 0 : $_ } split(' ',$v);\r\n"+
+		"\tpush(@docs,[\\@t,\\@v]);\r\n"+
+		"\t$ntok+=scalar(@t);\r\n"+
+		"}\r\n"+
+		"close($in);\r\n"+
+		"my $t0=Time::HiRes::time();\r\n"+
+		"for(my $k=0;$k<$ARGV[1];$k++)\r\n"+
+		"{\r\n"+
+		"\tforeach my $d (@docs)\r\n"+
+		"\t{\r\n"+
+		"\t\t@jjtoks=@{$d->[0]}; @jjvals=@{$d->[1]}; $jjpos=0; @stack=(); @vstack=();\r\n"+
+		"\t\tjjparse();\r\n"+
+		"\t}\r\n"+
+		"}\r\n"+
+		"my $t1=Time::HiRes::time();\r\n"+
+		"printf(\"%d %d %d\\n\",$ntok*$ARGV[1],($t1-$t0)*1e9,jjhwm());\r\n";
+
+	static final String PYTHON_SUPPORT=
+		"import sys, time\r\n"+
+		"jjtoks=[]\r\n"+
+		"jjvals=[]\r\n"+
+		"jjpos=0\r\n"+
+		"def jjlex():\r\n"+
+		"\tglobal jjlval,jjpos\r\n"+
+		"\tif jjpos<len(jjtoks):\r\n"+
+		"\t\tjjlval=jjvals[jjpos]\r\n"+
+		"\t\tjjpos+=1\r\n"+
+		"\t\treturn jjtoks[jjpos-1]\r\n"+
+		"\tjjlval=0\r\n"+
+		"\treturn \"JJEOI\"\r\n"+
+		"def jjhwm():\r\n"+
+		"\ttry:\r\n"+
+		"\t\tfor l in open('/proc/self/status'):\r\n"+
+		"\t\t\tif l.startswith('VmHWM:'):\r\n"+
+		"\t\t\t\treturn int(l.split()[1])\r\n"+
+		"\texcept IOError:\r\n"+
+		"\t\tpass\r\n"+
+		"\treturn -1\r\n"+
+		"def jjbench(path,iters):\r\n"+
+		"\tglobal jjtoks,jjvals,jjpos,stack,vstack\r\n"+
+		"\tdocs=[]\r\n"+
+		"\tntok=0\r\n"+
+		"\tlines=open(path).read().split('\\n')\r\n"+
+		"\tfor i in range(0,len(lines)-1,2):\r\n"+
+		"\t\tt=lines[i].split()\r\n"+
+		"\t\tv=[0 if x=='-' else int(x) for x in lines[i+1].split()]\r\n"+
+		"\t\tdocs.append((t,v))\r\n"+
+		"\t\tntok+=len(t)\r\n"+
+		"\tt0=time.time()\r\n"+
+		"\tfor k in range(iters):\r\n"+
+		"\t\tfor d in docs:\r\n"+
+		"\t\t\tjjtoks,jjvals=d\r\n"+
+		"\t\t\tjjpos=0\r\n"+
+		"\t\t\tstack=[]\r\n"+
+		"\t\t\tvstack=[]\r\n"+
+		"\t\t\tjjparse()\r\n"+
+		"\tt1=time.time()\r\n"+
+		"\tprint(\"%d %d %d\" % (ntok*iters,int((t1-t0)*1e9),jjhwm()))\r\n"+
+		"jjbench(sys.argv[1],int(sys.argv[2]))\r\n";
+
+	// the grammars, in Perl then in Python; jjresult keeps the actions from being idle
+	static final String[] ARITH=
+	{
+		"%token NUMBER\r\n"+
+		"%%\r\n"+
+		"input : /* empty */\r\n\t| input line\r\n\t;\r\n"+
+		"line : expr ';' { $jjresult+=$1; }\r\n\t;\r\n"+
+		"expr : term\r\n\t| expr '+' term { $$ = $1 + $3; }\r\n\t| expr '-' term { $$ = $1 - $3; }\r\n\t;\r\n"+
+		"term : factor\r\n\t| term '*' factor { $$ = $1 * $3; }\r\n\t| term '/' factor { $$ = int($1 / $3); }\r\n\t;\r\n"+
+		"factor : NUMBER\r\n\t| '(' expr ')' { $$ = $2; }\r\n\t| '-' factor { $$ = -$2; }\r\n\t;\r\n"+
+		"%%\r\n",
+
+		"%{\r\njjresult=[0]\r\n%}\r\n"+
+		"%token NUMBER\r\n"+
+		"%%\r\n"+
+		"input : /* empty */\r\n\t| input line\r\n\t;\r\n"+
+		"line : expr ';' { jjresult[0]+=$1 }\r\n\t;\r\n"+
+		"expr : term\r\n\t| expr '+' term { $$ = $1 + $3 }\r\n\t| expr '-' term { $$ = $1 - $3 }\r\n\t;\r\n"+
+		"term : factor\r\n\t| term '*' factor { $$ = $1 * $3 }\r\n\t| term '/' factor { $$ = int($1 / $3) }\r\n\t;\r\n"+
+		"factor : NUMBER\r\n\t| '(' expr ')' { $$ = $2 }\r\n\t| '-' factor { $$ = -$2 }\r\n\t;\r\n"+
+		"%%\r\n"
+	};
+
+	static final String[] JSON=
+	{
+		"%token STRING NUMBER TRUE FALSE NUL\r\n"+
+		"%%\r\n"+
+		"json : value { $jjresult++; }\r\n\t;\r\n"+
+		"value : object\r\n\t| array\r\n\t| STRING\r\n\t| NUMBER\r\n\t| TRUE\r\n\t| FALSE\r\n\t| NUL\r\n\t;\r\n"+
+		"object : '{' '}'\r\n\t| '{' members '}'\r\n\t;\r\n"+
+		"members : pair\r\n\t| members ',' pair\r\n\t;\r\n"+
+		"pair : STRING ':' value { $jjresult++; }\r\n\t;\r\n"+
+		"array : '[' ']'\r\n\t| '[' elements ']'\r\n\t;\r\n"+
+		"elements : value { $jjresult++; }\r\n\t| elements ',' value { $jjresult++; }\r\n\t;\r\n"+
+		"%%\r\n",
+
+		"%{\r\njjresult=[0]\r\n%}\r\n"+
+		"%token STRING NUMBER TRUE FALSE NUL\r\n"+
+		"%%\r\n"+
+		"json : value { jjresult[0]+=1 }\r\n\t;\r\n"+
+		"value : object\r\n\t| array\r\n\t| STRING\r\n\t| NUMBER\r\n\t| TRUE\r\n\t| FALSE\r\n\t| NUL\r\n\t;\r\n"+
+		"object : '{' '}'\r\n\t| '{' members '}'\r\n\t;\r\n"+
+		"members : pair\r\n\t| members ',' pair\r\n\t;\r\n"+
+		"pair : STRING ':' value { jjresult[0]+=1 }\r\n\t;\r\n"+
+		"array : '[' ']'\r\n\t| '[' elements ']'\r\n\t;\r\n"+
+		"elements : value { jjresult[0]+=1 }\r\n\t| elements ',' value { jjresult[0]+=1 }\r\n\t;\r\n"+
+		"%%\r\n"
+	};
+
+	static final String[] SQL=
+	{
+		"%token SELECT FROM WHERE AND OR ID NUMBER STRING\r\n"+
+		"%%\r\n"+
+		"script : /* empty */\r\n\t| script stmt ';' { $jjresult++; }\r\n\t;\r\n"+
+		"stmt : SELECT cols FROM ID where\r\n\t;\r\n"+
+		"cols : '*'\r\n\t| collist\r\n\t;\r\n"+
+		"collist : ID\r\n\t| collist ',' ID\r\n\t;\r\n"+
+		"where : /* empty */\r\n\t| WHERE cond\r\n\t;\r\n"+
+		"cond : cond OR conj\r\n\t| conj\r\n\t;\r\n"+
+		"conj : conj AND pred\r\n\t| pred\r\n\t;\r\n"+
+		"pred : ID '=' value\r\n\t| ID '<' value\r\n\t| '(' cond ')'\r\n\t;\r\n"+
+		"value : NUMBER\r\n\t| STRING\r\n\t| ID\r\n\t;\r\n"+
+		"%%\r\n",
+
+		"%{\r\njjresult=[0]\r\n%}\r\n"+
+		"%token SELECT FROM WHERE AND OR ID NUMBER STRING\r\n"+
+		"%%\r\n"+
+		"script : /* empty */\r\n\t| script stmt ';' { jjresult[0]+=1 }\r\n\t;\r\n"+
+		"stmt : SELECT cols FROM ID where\r\n\t;\r\n"+
+		"cols : '*'\r\n\t| collist\r\n\t;\r\n"+
+		"collist : ID\r\n\t| collist ',' ID\r\n\t;\r\n"+
+		"where : /* empty */\r\n\t| WHERE cond\r\n\t;\r\n"+
+		"cond : cond OR conj\r\n\t| conj\r\n\t;\r\n"+
+		"conj : conj AND pred\r\n\t| pred\r\n\t;\r\n"+
+		"pred : ID '=' value\r\n\t| ID '<' value\r\n\t| '(' cond ')'\r\n\t;\r\n"+
+		"value : NUMBER\r\n\t| STRING\r\n\t| ID\r\n\t;\r\n"+
+		"%%\r\n"
+	};
+
+	static int docs=50;
+	static int iters=5;
+
+	public static void main(String[] args) throws Exception
+	{
+		String grammars="arith,json,sql";
+		String langs="pl,py";
+		boolean keep=false;
+		for(int i=0;i<args.length;i++)
+		{
+			if(args[i].equals("-grammar") && i+1<args.length)
+				grammars=args[++i];
+			else if(args[i].equals("-lang") && i+1<args.length)
+				langs=args[++i];
+			else if(args[i].equals("-tokens") && i+1<args.length)
+				JaccParserBench.tokens=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-docs") && i+1<args.length)
+				docs=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-iters") && i+1<args.length)
+				iters=Math.max(1,Integer.parseInt(args[++i]));
+			else if(args[i].equals("-keep"))
+				keep=true;
+			else
+			{
+				System.out.print("usage: java JaccScriptBench [-grammar arith,json,sql] [-lang pl,py] [-tokens n] [-docs n] [-iters n] [-keep]\r\n");
+				return;
+			}
+		}
+
+		File work=File.createTempFile("jaccscriptbench","");
+		work.delete();
+		work.mkdirs();
+		System.out.print("grammar\tlang\ttokens/s\tpeak kB\r\n");
+		try
+		{
+			StringTokenizer gt=new StringTokenizer(grammars,",");
+			while(gt.hasMoreTokens())
+			{
+				String name=gt.nextToken();
+				String[] g;
+				if(name.equals("arith"))
+					g=ARITH;
+				else if(name.equals("json"))
+					g=JSON;
+				else if(name.equals("sql"))
+					g=SQL;
+				else
+					throw new Exception("Unknown grammar "+name+"\r\n");
+
+				File dir=new File(work,name);
+				dir.mkdirs();
+				File toks=new File(dir,"tokens.txt");
+				tokens(name,toks);
+
+				StringTokenizer lt=new StringTokenizer(langs,",");
+				while(lt.hasMoreTokens())
+				{
+					String lang=lt.nextToken();
+					String interp;
+					File script;
+					Jacc jc=new Jacc();
+					if(lang.equals("pl"))
+					{
+						jc.input=g[0]+PERL_SUPPORT;
+						jc.option=4;
+						script=new File(dir,"jjscript.pl");
+						interp=System.getenv("PERL");
+						if(interp==null || interp.length()==0)
+							interp="perl";
+					}
+					else if(lang.equals("py"))
+					{
+						jc.input=g[1]+PYTHON_SUPPORT;
+						jc.option=8;
+						script=new File(dir,"jjscript.py");
+						interp=System.getenv("PYTHON");
+						if(interp==null || interp.length()==0)
+							interp="python3";
+					}
+					else
+						throw new Exception("Unknown language "+lang+"\r\n");
+					jc.parse();
+					JaccCBench.write(script,(String)jc.outputs.get(lang.equals("pl") ? "jjscript.pl.txt" : "jjscript.py.txt"));
+
+					String out;
+					try
+					{
+						out=JaccCBench.run(dir,new String[] { interp, script.getPath(), toks.getPath(), ""+iters });
+					}
+					catch(Exception e)
+					{
+						System.out.print(name+"\t"+lang+"\t-\t-\t# cannot run "+interp+"\r\n");
+						continue;
+					}
+					StringTokenizer st=new StringTokenizer(out);
+					if(st.countTokens()!=3)
+						throw new Exception("Error running "+script+"\r\n"+out);
+					long ntok=Long.parseLong(st.nextToken());
+					long ns=Long.parseLong(st.nextToken());
+					long kb=Long.parseLong(st.nextToken());
+					System.out.print(name+"\t"+lang+"\t"+(long)(ntok*1e9/ns)+"\t"+(kb<0 ? "-" : ""+kb)+"\r\n");
+				}
+			}
+		}
+		finally
+		{
+			if(keep)
+				System.out.print("# work directory "+work+"\r\n");
+			else
+				JaccCBench.delete(work);
+		}
+	}
+
+	// the documents of the grammar, two lines each, the tokens and their values
+	static void tokens(String name, File f) throws Exception
+	{
+		Random r=new Random(42);
+		Writer out=new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(f)),"UTF-8");
+		for(int d=0;d<docs;d++)
+		{
+			Vector tv=new Vector();
+			Vector vv=new Vector();
+			if(name.equals("arith"))
+				JaccParserBench.arith(r,tv,vv);
+			else if(name.equals("json"))
+				JaccParserBench.json(r,tv,vv);
+			else
+				JaccParserBench.sql(r,tv,vv);
+			StringBuffer t=new StringBuffer();
+			StringBuffer v=new StringBuffer();
+			for(int i=0;i<tv.size();i++)
+			{
+				Object val=vv.elementAt(i);
+				t.append(i>0 ? " " : "").append((String)tv.elementAt(i));
+				v.append(i>0 ? " " : "").append((val instanceof Integer) ? val.toString() : "-");
+			}
+			out.write(t+"\n"+v+"\n");
+		}
+		out.close();
+	}
+}